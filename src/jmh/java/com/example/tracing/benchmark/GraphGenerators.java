@@ -0,0 +1,171 @@
+package com.example.tracing.benchmark;
+
+import com.example.tracing.model.Connection;
+import com.example.tracing.model.Microservice;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+
+/**
+ * Generators of synthetic microservice graphs for the benchmarks. All of them are deterministic for a given seed, the
+ * microservices are named "S0", "S1", ... and the latencies are drawn uniformly from [{@link #MIN_LATENCY},
+ * {@link #MAX_LATENCY}].
+ */
+public final class GraphGenerators {
+
+    public static final int MIN_LATENCY = 1;
+    public static final int MAX_LATENCY = 10;
+
+    private GraphGenerators() {
+    }
+
+    public enum Topology {
+        /**
+         * Each microservice calls {@code averageOutDegree} random other microservices.
+         */
+        RANDOM_SPARSE,
+        /**
+         * Each connection exists with probability 1/2, {@code averageOutDegree} is ignored.
+         */
+        DENSE,
+        /**
+         * A ring S0 -> S1 -> ... -> S0 with {@code averageOutDegree - 1} random chords per microservice.
+         */
+        RING_WITH_CHORDS,
+        /**
+         * Preferential attachment: each new microservice connects to {@code averageOutDegree} existing ones chosen
+         * proportionally to their degree, in a random direction, so a few hubs take most of the connections.
+         */
+        SCALE_FREE,
+        /**
+         * Each microservice calls {@code averageOutDegree} random microservices among the next
+         * {@code 4 * averageOutDegree} ones, so there are no cycles, like a layered call graph.
+         */
+        DAG;
+
+        public SimpleDirectedWeightedGraph<Microservice, Connection> generate(int vertexCount, int averageOutDegree,
+            long seed)
+        {
+            Random random = new Random(seed);
+            switch (this) {
+                case RANDOM_SPARSE:
+                    return randomSparse(vertexCount, averageOutDegree, random);
+                case DENSE:
+                    return dense(vertexCount, random);
+                case RING_WITH_CHORDS:
+                    return ringWithChords(vertexCount, averageOutDegree - 1, random);
+                case SCALE_FREE:
+                    return scaleFree(vertexCount, averageOutDegree, random);
+                case DAG:
+                    return dag(vertexCount, averageOutDegree, random);
+                default:
+                    throw new IllegalStateException("Unknown topology " + this);
+            }
+        }
+    }
+
+    public static SimpleDirectedWeightedGraph<Microservice, Connection> randomSparse(int vertexCount, int outDegree,
+        Random random)
+    {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = withVertices(vertexCount);
+        for (int v = 0; v < vertexCount; v++) {
+            for (int i = 0; i < Math.min(outDegree, vertexCount - 1); i++) {
+                while (!connect(g, v, random.nextInt(vertexCount), random)) {
+                    // retry until a new connection is added
+                }
+            }
+        }
+        return g;
+    }
+
+    public static SimpleDirectedWeightedGraph<Microservice, Connection> dense(int vertexCount, Random random) {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = withVertices(vertexCount);
+        for (int v = 0; v < vertexCount; v++) {
+            for (int u = 0; u < vertexCount; u++) {
+                if (random.nextBoolean()) {
+                    connect(g, v, u, random);
+                }
+            }
+        }
+        return g;
+    }
+
+    public static SimpleDirectedWeightedGraph<Microservice, Connection> ringWithChords(int vertexCount, int chordsPerVertex,
+        Random random)
+    {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = withVertices(vertexCount);
+        for (int v = 0; v < vertexCount; v++) {
+            connect(g, v, (v + 1) % vertexCount, random);
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            for (int i = 0; i < Math.min(chordsPerVertex, vertexCount - 2); i++) {
+                while (!connect(g, v, random.nextInt(vertexCount), random)) {
+                    // retry until a new connection is added
+                }
+            }
+        }
+        return g;
+    }
+
+    public static SimpleDirectedWeightedGraph<Microservice, Connection> scaleFree(int vertexCount, int edgesPerVertex,
+        Random random)
+    {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = withVertices(vertexCount);
+        // every vertex appears in this list once per incident connection, so sampling from it is proportional to degree
+        List<Integer> endpoints = new ArrayList<>();
+        endpoints.add(0);
+        for (int v = 1; v < vertexCount; v++) {
+            for (int i = 0; i < Math.min(edgesPerVertex, v); i++) {
+                int u = endpoints.get(random.nextInt(endpoints.size()));
+                boolean added = random.nextBoolean() ? connect(g, v, u, random) : connect(g, u, v, random);
+                if (added) {
+                    endpoints.add(u);
+                    endpoints.add(v);
+                }
+            }
+        }
+        return g;
+    }
+
+    public static SimpleDirectedWeightedGraph<Microservice, Connection> dag(int vertexCount, int outDegree,
+        Random random)
+    {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = withVertices(vertexCount);
+        for (int v = 0; v < vertexCount; v++) {
+            int nextCount = Math.min(4 * outDegree, vertexCount - 1 - v);
+            for (int i = 0; i < Math.min(outDegree, nextCount); i++) {
+                while (!connect(g, v, v + 1 + random.nextInt(nextCount), random)) {
+                    // retry until a new connection is added
+                }
+            }
+        }
+        return g;
+    }
+
+    public static Microservice microservice(int v) {
+        return new Microservice("S" + v);
+    }
+
+    private static SimpleDirectedWeightedGraph<Microservice, Connection> withVertices(int vertexCount) {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (int v = 0; v < vertexCount; v++) {
+            g.addVertex(microservice(v));
+        }
+        return g;
+    }
+
+    private static boolean connect(SimpleDirectedWeightedGraph<Microservice, Connection> g, int source, int target,
+        Random random)
+    {
+        Microservice sourceVertex = microservice(source);
+        Microservice targetVertex = microservice(target);
+        if (source == target || g.containsEdge(sourceVertex, targetVertex)) {
+            return false;
+        }
+        Connection c = new Connection(MIN_LATENCY + random.nextInt(MAX_LATENCY - MIN_LATENCY + 1));
+        g.addEdge(sourceVertex, targetVertex, c);
+        g.setEdgeWeight(sourceVertex, targetVertex, c.getLatencyInMs());
+        return true;
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.tracing.benchmark;
+
+import com.example.tracing.benchmark.GraphGenerators.Topology;
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.util.CompactGraphFile;
+import com.example.tracing.util.GraphBuilder;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of loading a graph at startup: parsing the text input against reading the compact graph file written from
+ * the same graph. Both files are in the page cache after the first iteration, so this measures the CPU cost of loading.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GraphLoadingBenchmark {
+
+    @Param({"10000", "100000"})
+    public int vertexCount;
+
+    @Param({"4"})
+    public int averageOutDegree;
+
+    private Path directory;
+    private Path input;
+    private Path compactFile;
+
+    @Setup
+    public void setUp() throws IOException {
+        CompactServiceGraph g = CompactServiceGraph.fromGraph(Topology.RANDOM_SPARSE.generate(vertexCount,
+            averageOutDegree, 42));
+        directory = Files.createTempDirectory("graph-loading");
+        input = directory.resolve("input.txt");
+        try (Writer writer = Files.newBufferedWriter(input, StandardCharsets.UTF_8)) {
+            for (int v = 0; v < g.getVertexCount(); v++) {
+                for (int e = g.getFirstEdge(v); e < g.getEdgeEnd(v); e++) {
+                    writer.write(g.getName(v) + ">" + g.getName(g.getEdgeTarget(e)) + ":" + g.getEdgeLatency(e) + ",\n");
+                }
+            }
+        }
+        compactFile = directory.resolve("input.bin");
+        CompactGraphFile.write(g, compactFile);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        Files.delete(input);
+        Files.delete(compactFile);
+        Files.delete(directory);
+    }
+
+    @Benchmark
+    public CompactServiceGraph parseInputFile() throws IOException {
+        return GraphBuilder.buildCompactGraphFromFile(input);
+    }
+
+    @Benchmark
+    public CompactServiceGraph readCompactFile() throws IOException {
+        return CompactGraphFile.read(compactFile);
+    }
+}
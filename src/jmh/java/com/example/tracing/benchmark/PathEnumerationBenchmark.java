@@ -0,0 +1,192 @@
+package com.example.tracing.benchmark;
+
+import com.example.tracing.TraversalMetrics;
+import com.example.tracing.algorithm.AllSimpleAndNonSimpleDirectedPaths;
+import com.example.tracing.algorithm.AllSimpleAndNonSimpleDirectedPaths.Pruning;
+import com.example.tracing.algorithm.AllSimpleAndNonSimpleDirectedPaths.SearchStrategy;
+import com.example.tracing.algorithm.PathTrie;
+import com.example.tracing.algorithm.QueryRecorder;
+import com.example.tracing.algorithm.Traversal;
+import com.example.tracing.benchmark.GraphGenerators.Topology;
+import com.example.tracing.model.Connection;
+import com.example.tracing.model.Microservice;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the queries that enumerate paths. Their cost is exponential in the hop or weight limit, so the graphs
+ * are small, run with {@code -prof gc} to see the allocation rate and with {@code -p} to try other sizes and limits.
+ * The traces go from the first microservice to the one in the middle, or from the first one back to itself.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PathEnumerationBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Graph {
+
+        @Param({"RANDOM_SPARSE", "DENSE", "RING_WITH_CHORDS", "SCALE_FREE"})
+        public Topology topology;
+
+        @Param({"16", "32"})
+        public int vertexCount;
+
+        @Param({"2", "4"})
+        public int averageOutDegree;
+
+        SimpleDirectedWeightedGraph<Microservice, Connection> g;
+        Microservice source;
+        Microservice target;
+
+        @Setup
+        public void setUp() {
+            g = topology.generate(vertexCount, averageOutDegree, 42);
+            source = GraphGenerators.microservice(0);
+            target = GraphGenerators.microservice(vertexCount / 2);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class HopLimit {
+
+        @Param({"3", "5"})
+        public int maxHops;
+    }
+
+    @State(Scope.Benchmark)
+    public static class WeightLimit {
+
+        @Param({"10", "15"})
+        public int weightLimit;
+    }
+
+    /**
+     * Records the metrics of the queries in {@link TraversalMetrics}, compare with the benchmarks not using it to see the
+     * cost of the recording over the default no-op recorder.
+     */
+    @State(Scope.Benchmark)
+    public static class Recording {
+
+        @Setup
+        public void setUp() {
+            Traversal.setRecorder(new TraversalMetrics());
+        }
+
+        @TearDown
+        public void tearDown() {
+            Traversal.setRecorder(QueryRecorder.NO_OP);
+        }
+    }
+
+    /**
+     * The slow variant enumerates all the paths up to weightLimit / minEdgeWeight hops, so it gets its own smaller limits.
+     */
+    @State(Scope.Benchmark)
+    public static class SlowWeightLimit {
+
+        @Param({"4", "6"})
+        public int slowWeightLimit;
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> allPathsWithPathLengthUpToMax(Graph graph, HopLimit limit) {
+        return Traversal.getAllPathsWithPathLengthUpToMax(graph.g, graph.source, graph.target, limit.maxHops);
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> allCyclesWithPathLengthUpToMax(Graph graph, HopLimit limit) {
+        return Traversal.getAllPathsWithPathLengthUpToMax(graph.g, graph.source, graph.source, limit.maxHops);
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> allPathsWithExactPathLength(Graph graph, HopLimit limit) {
+        return Traversal.getAllPathsWithExactPathLength(graph.g, graph.source, graph.target, limit.maxHops);
+    }
+
+    @Benchmark
+    public long streamAllPathsWithPathLengthUpToMax(Graph graph, HopLimit limit) {
+        return Traversal.streamAllPathsWithPathLengthUpToMax(graph.g, graph.source, graph.target, limit.maxHops).count();
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> allPathsWithWeightLessThanSlow(Graph graph, SlowWeightLimit limit) {
+        return Traversal.getAllPathsWithWeightLessThanSlow(graph.g, graph.source, graph.target, limit.slowWeightLimit,
+            GraphGenerators.MIN_LATENCY);
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> allPathsWithWeightLessThan(Graph graph, WeightLimit limit) {
+        return Traversal.getAllPathsWithWeightLessThan(graph.g, graph.source, graph.target, limit.weightLimit);
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> allPathsWithWeightLessThanRecorded(Graph graph, WeightLimit limit,
+        Recording recording)
+    {
+        return Traversal.getAllPathsWithWeightLessThan(graph.g, graph.source, graph.target, limit.weightLimit);
+    }
+
+    @Benchmark
+    public PathTrie<Microservice, Connection> pathTrieWithWeightLessThan(Graph graph, WeightLimit limit) {
+        return Traversal.getPathTrieWithWeightLessThan(graph.g, graph.source, graph.target, limit.weightLimit);
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> allCyclesWithWeightLessThan(Graph graph, WeightLimit limit) {
+        return Traversal.getAllPathsWithWeightLessThan(graph.g, graph.source, graph.source, limit.weightLimit);
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> allPathsWithWeightLessThanDepthFirst(Graph graph, WeightLimit limit) {
+        return new AllSimpleAndNonSimpleDirectedPaths<>(graph.g, SearchStrategy.DFS)
+            .getAllPathsWithWeightLessThan(graph.source, graph.target, limit.weightLimit);
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> allPathsWithWeightLessThanPruned(Graph graph, WeightLimit limit) {
+        return new AllSimpleAndNonSimpleDirectedPaths<>(graph.g, SearchStrategy.BFS, Pruning.DISTANCE_TO_TARGET)
+            .getAllPathsWithWeightLessThan(graph.source, graph.target, limit.weightLimit);
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> allPathsWithWeightLessThanDepthFirstPruned(Graph graph,
+        WeightLimit limit)
+    {
+        return new AllSimpleAndNonSimpleDirectedPaths<>(graph.g, SearchStrategy.DFS, Pruning.DISTANCE_TO_TARGET)
+            .getAllPathsWithWeightLessThan(graph.source, graph.target, limit.weightLimit);
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> allPathsWithWeightLessThanInParallel(Graph graph, WeightLimit limit) {
+        return Traversal.getAllPathsWithWeightLessThanInParallel(graph.g, graph.source, graph.target, limit.weightLimit,
+            Runtime.getRuntime().availableProcessors());
+    }
+
+    @Benchmark
+    public long countPathsWithWeightLessThanInParallel(Graph graph, WeightLimit limit) {
+        return new AllSimpleAndNonSimpleDirectedPaths<>(graph.g)
+            .countPathsWithWeightLessThanInParallel(graph.source, graph.target, limit.weightLimit);
+    }
+
+    @Benchmark
+    public long streamAllPathsWithWeightLessThan(Graph graph, WeightLimit limit) {
+        return Traversal.streamAllPathsWithWeightLessThan(graph.g, graph.source, graph.target, limit.weightLimit).count();
+    }
+}
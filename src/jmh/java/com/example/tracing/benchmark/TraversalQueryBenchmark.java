@@ -0,0 +1,202 @@
+package com.example.tracing.benchmark;
+
+import com.example.tracing.algorithm.BatchQueryExecutor;
+import com.example.tracing.algorithm.EdgeHashIndex;
+import com.example.tracing.algorithm.ShortestLatencyIndex;
+import com.example.tracing.algorithm.StronglyConnectedComponents;
+import com.example.tracing.algorithm.Traversal;
+import com.example.tracing.benchmark.GraphGenerators.Topology;
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.Connection;
+import com.example.tracing.model.Microservice;
+import com.example.tracing.model.Query;
+import com.example.tracing.model.Query.Kind;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.GraphWalk;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks of the queries that are polynomial or pseudo-polynomial in the graph size and the limits: walks, counting
+ * and shortest paths. Path counts grow exponentially with the limits and overflow {@code long} on dense graphs, that's
+ * why {@link Topology#DENSE} is not in the default parameters, add it with {@code -p topology=DENSE} and small limits.
+ * Add {@link Topology#DAG} the same way to see the counting of the traces of a graph without cycles.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TraversalQueryBenchmark {
+
+    @State(Scope.Benchmark)
+    public static class Graph {
+
+        @Param({"RANDOM_SPARSE", "RING_WITH_CHORDS", "SCALE_FREE"})
+        public Topology topology;
+
+        @Param({"100", "1000"})
+        public int vertexCount;
+
+        @Param({"2", "4"})
+        public int averageOutDegree;
+
+        SimpleDirectedWeightedGraph<Microservice, Connection> g;
+        CompactServiceGraph compactGraph;
+        ShortestLatencyIndex shortestLatencies;
+        Microservice source;
+        Microservice target;
+        List<Microservice> walk;
+        EdgeHashIndex edges;
+        int[] walkIds;
+        BatchQueryExecutor executor;
+
+        @Setup
+        public void setUp() {
+            g = topology.generate(vertexCount, averageOutDegree, 42);
+            compactGraph = CompactServiceGraph.fromGraph(g);
+            shortestLatencies = new ShortestLatencyIndex(compactGraph);
+            source = GraphGenerators.microservice(0);
+            target = GraphGenerators.microservice(vertexCount / 2);
+            walk = randomWalk(g, source, 20, new Random(42));
+            edges = new EdgeHashIndex(compactGraph);
+            walkIds = walk.stream().mapToInt(compactGraph::getVertexId).toArray();
+            executor = new BatchQueryExecutor(compactGraph);
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class HopLimit {
+
+        @Param({"6", "16"})
+        public int maxHops;
+    }
+
+    @State(Scope.Benchmark)
+    public static class WeightLimit {
+
+        @Param({"30", "60"})
+        public int weightLimit;
+    }
+
+    @State(Scope.Benchmark)
+    public static class TraceCount {
+
+        @Param({"10"})
+        public int k;
+    }
+
+    @Benchmark
+    public Optional<GraphWalk<Microservice, Connection>> graphWalk(Graph graph) {
+        return Traversal.getGraphWalk(graph.g, graph.walk);
+    }
+
+    @Benchmark
+    public long graphWalkCompact(Graph graph) {
+        return graph.edges.getWalkLatency(graph.walkIds);
+    }
+
+    @Benchmark
+    public long countPathsWithPathLengthUpToMax(Graph graph, HopLimit limit) {
+        return Traversal.countPathsWithPathLengthUpToMax(graph.g, graph.source, graph.target, limit.maxHops);
+    }
+
+    @Benchmark
+    public long countPathsWithPathLengthUpToMaxCompact(Graph graph, HopLimit limit) {
+        return Traversal.countPathsWithPathLengthUpToMax(graph.compactGraph, graph.source, graph.target, limit.maxHops);
+    }
+
+    @Benchmark
+    public long countPathsWithExactPathLength(Graph graph, HopLimit limit) {
+        return Traversal.countPathsWithExactPathLength(graph.g, graph.source, graph.target, limit.maxHops);
+    }
+
+    @Benchmark
+    public long countPathsWithExactPathLengthCompact(Graph graph, HopLimit limit) {
+        return Traversal.countPathsWithExactPathLength(graph.compactGraph, graph.source, graph.target, limit.maxHops);
+    }
+
+    @Benchmark
+    public long countPathsWithWeightLessThan(Graph graph, WeightLimit limit) {
+        return Traversal.countPathsWithWeightLessThan(graph.g, graph.source, graph.target, limit.weightLimit);
+    }
+
+    @Benchmark
+    public long countPathsWithWeightLessThanCompact(Graph graph, WeightLimit limit) {
+        return Traversal.countPathsWithWeightLessThan(graph.compactGraph, graph.source, graph.target, limit.weightLimit);
+    }
+
+    @Benchmark
+    public List<String> countPathsWithWeightLessThanBatch(Graph graph, WeightLimit limit) {
+        return graph.executor.execute(List.of(Query.limited(Kind.COUNT_LATENCY_LESS_THAN, graph.source, graph.target,
+            limit.weightLimit)));
+    }
+
+    @Benchmark
+    public StronglyConnectedComponents buildStronglyConnectedComponents(Graph graph) {
+        return new StronglyConnectedComponents(graph.compactGraph);
+    }
+
+    @Benchmark
+    public Optional<GraphPath<Microservice, Connection>> shortestPath(Graph graph) {
+        return Traversal.getShortestPath(graph.g, graph.source, graph.target);
+    }
+
+    @Benchmark
+    public Optional<GraphPath<Microservice, Connection>> shortestCycle(Graph graph) {
+        return Traversal.getShortestPath(graph.g, graph.source, graph.source);
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> kLowestLatencyTraces(Graph graph, TraceCount traceCount) {
+        return Traversal.getKLowestLatencyTraces(graph.g, graph.source, graph.target, traceCount.k, true);
+    }
+
+    @Benchmark
+    public List<GraphPath<Microservice, Connection>> kLowestLatencySimpleTraces(Graph graph, TraceCount traceCount) {
+        return Traversal.getKLowestLatencyTraces(graph.g, graph.source, graph.target, traceCount.k, false);
+    }
+
+    @Benchmark
+    public OptionalInt shortestLatencyFromIndex(Graph graph) {
+        return graph.shortestLatencies.getShortestLatency(graph.source, graph.target);
+    }
+
+    @Benchmark
+    public ShortestLatencyIndex buildShortestLatencyIndex(Graph graph) {
+        ShortestLatencyIndex index = new ShortestLatencyIndex(graph.compactGraph);
+        // Dijkstra based index is built lazily per source vertex
+        index.getShortestLatency(graph.source, graph.target);
+        return index;
+    }
+
+    private static List<Microservice> randomWalk(SimpleDirectedWeightedGraph<Microservice, Connection> g,
+        Microservice start, int hops, Random random)
+    {
+        List<Microservice> walk = new ArrayList<>();
+        Microservice current = start;
+        walk.add(current);
+        for (int i = 0; i < hops && g.outDegreeOf(current) > 0; i++) {
+            List<Connection> outgoing = new ArrayList<>(g.outgoingEdgesOf(current));
+            current = g.getEdgeTarget(outgoing.get(random.nextInt(outgoing.size())));
+            walk.add(current);
+        }
+        return walk;
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.tracing;
+
+import com.example.tracing.algorithm.BatchQueryExecutor;
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.Connection;
+import com.example.tracing.model.Microservice;
+import com.google.inject.internal.util.Preconditions;
+import org.jetbrains.annotations.NotNull;
+import org.jgrapht.Graph;
+import org.jgrapht.graph.AsUnmodifiableGraph;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+
+/**
+ * Immutable version of the topology published by {@link LiveGraph}: the compact graph, the executor keeping its indexes
+ * and, on demand, an unmodifiable jgrapht copy of the graph for the {@link com.example.tracing.algorithm.Traversal}
+ * queries. Everything a reader gets from one snapshot is about the same version of the topology, however the topology
+ * changes while the reader is using it.
+ */
+public final class GraphSnapshot {
+
+    private final long version;
+    private final BatchQueryExecutor executor;
+    private volatile Graph<Microservice, Connection> graph;
+
+    GraphSnapshot(long version, @NotNull BatchQueryExecutor executor) {
+        this.version = version;
+        this.executor = Preconditions.checkNotNull(executor);
+    }
+
+    /**
+     * @return number of the snapshot, increasing with each topology published by the same {@link LiveGraph}
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    public CompactServiceGraph getCompactGraph() {
+        return executor.getGraph();
+    }
+
+    public BatchQueryExecutor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Copies the compact graph to a jgrapht graph the first time it's called, racing readers may each build a copy but
+     * all of them get the same topology.
+     *
+     * @return unmodifiable graph with the microservices and connections of the snapshot
+     */
+    public Graph<Microservice, Connection> getGraph() {
+        Graph<Microservice, Connection> g = graph;
+        if (g == null) {
+            g = toGraph(executor.getGraph());
+            graph = g;
+        }
+        return g;
+    }
+
+    private static Graph<Microservice, Connection> toGraph(CompactServiceGraph compactGraph) {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        Microservice[] microservices = new Microservice[compactGraph.getVertexCount()];
+        for (int v = 0; v < microservices.length; v++) {
+            microservices[v] = compactGraph.getMicroservice(v);
+            g.addVertex(microservices[v]);
+        }
+        for (int v = 0; v < microservices.length; v++) {
+            for (int e = compactGraph.getFirstEdge(v); e < compactGraph.getEdgeEnd(v); e++) {
+                Connection c = new Connection(compactGraph.getEdgeLatency(e));
+                g.addEdge(microservices[v], microservices[compactGraph.getEdgeTarget(e)], c);
+                g.setEdgeWeight(c, c.getLatencyInMs());
+            }
+        }
+        return new AsUnmodifiableGraph<>(g);
+    }
+
+    @Override
+    public String toString() {
+        return "GraphSnapshot{" +
+            "version=" + version +
+            ", graph=" + executor.getGraph() +
+            '}';
+    }
+}
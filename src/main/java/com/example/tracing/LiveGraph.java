@@ -0,0 +1,200 @@
+package com.example.tracing;
+
+import com.example.tracing.algorithm.BatchQueryExecutor;
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.ConnectionChange;
+import com.example.tracing.util.GraphBuilder;
+import com.google.inject.internal.util.Preconditions;
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Topology that changes while it's being queried. Readers take the current {@link GraphSnapshot} by a volatile read and
+ * never block, writers build the next snapshot aside and publish it by swapping the reference, so a reader keeps
+ * answering about the snapshot it took until it takes a new one. Writers are serialized, so no change is lost.
+ * The next snapshot is either the current one with {@link ConnectionChange}s applied, sharing the indexes the changes
+ * don't affect, or a graph loaded by {@link GraphBuilder} from scratch, e.g. by the background reloading of the input
+ * file.
+ */
+public class LiveGraph implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(LiveGraph.class);
+    // how long closing waits for a reload in flight, a reload that outlives it still doesn't publish
+    private static final Duration CLOSE_TIMEOUT = Duration.ofSeconds(10);
+
+    private final AtomicReference<GraphSnapshot> snapshot;
+    private final Object writeLock = new Object();
+    private ScheduledExecutorService reloader;
+
+    public LiveGraph(@NotNull CompactServiceGraph graph) {
+        this.snapshot = new AtomicReference<>(new GraphSnapshot(0, new BatchQueryExecutor(graph)));
+    }
+
+    /**
+     * @return snapshot of the current topology
+     */
+    public GraphSnapshot getSnapshot() {
+        return snapshot.get();
+    }
+
+    /**
+     * Publishes the current topology with the changes applied.
+     *
+     * @param changes changes of the connections, applied in order
+     * @return the published snapshot
+     * @throws IllegalArgumentException if an added connection is already in the graph or a removed or updated one
+     *     isn't, the current snapshot is kept then
+     */
+    public GraphSnapshot applyChanges(@NotNull List<ConnectionChange> changes) {
+        synchronized (writeLock) {
+            GraphSnapshot current = snapshot.get();
+            return publish(current, current.getExecutor().withChanges(changes));
+        }
+    }
+
+    /**
+     * Publishes the graph in place of the current topology.
+     *
+     * @return the published snapshot
+     */
+    public GraphSnapshot replace(@NotNull CompactServiceGraph graph) {
+        // the indexes are built before taking the lock, so a slow build doesn't hold up the changes
+        BatchQueryExecutor executor = new BatchQueryExecutor(graph);
+        synchronized (writeLock) {
+            return publish(snapshot.get(), executor);
+        }
+    }
+
+    /**
+     * Loads the graph from the input file or the compact graph file and publishes it in place of the current topology.
+     *
+     * @return the published snapshot
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the input doesn't match the format, the current snapshot is kept then
+     */
+    public GraphSnapshot reload(@NotNull Path input) throws IOException {
+        return replace(GraphBuilder.loadCompactGraph(input));
+    }
+
+    /**
+     * Checks the input file on a background thread every {@code interval} and reloads it when its modification time or
+     * size changes. A file that cannot be read or doesn't match the format is logged and the current snapshot is kept.
+     *
+     * @param input graph input file the current topology was loaded from
+     * @param interval time between two checks of the file
+     * @throws IOException if the file cannot be read now
+     */
+    public void startReloading(@NotNull Path input, @NotNull Duration interval) throws IOException {
+        Preconditions.checkArgument(!interval.isNegative() && !interval.isZero(), "Interval must be positive");
+        FileVersion loadedVersion = new FileVersion(input);
+        ScheduledExecutorService executor;
+        synchronized (writeLock) {
+            Preconditions.checkState(reloader == null, "Graph is already being reloaded");
+            executor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+                Thread thread = new Thread(runnable, "graph-reloader");
+                thread.setDaemon(true);
+                return thread;
+            });
+            reloader = executor;
+        }
+        executor.scheduleWithFixedDelay(new Runnable() {
+            private FileVersion lastVersion = loadedVersion;
+
+            @Override
+            public void run() {
+                try {
+                    FileVersion version = new FileVersion(input);
+                    if (!version.equals(lastVersion)) {
+                        lastVersion = version;
+                        BatchQueryExecutor loaded = new BatchQueryExecutor(GraphBuilder.loadCompactGraph(input));
+                        synchronized (writeLock) {
+                            // closed while loading
+                            if (reloader != executor) {
+                                return;
+                            }
+                            GraphSnapshot reloaded = publish(snapshot.get(), loaded);
+                            LOG.debug("Reloaded {} from {}", reloaded, input);
+                        }
+                    }
+                } catch (IOException | IllegalArgumentException e) {
+                    LOG.error("Graph cannot be reloaded from {}: {}", input, e.getMessage());
+                }
+            }
+        }, interval.toNanos(), interval.toNanos(), TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Stops the background reloading, if started, and waits for a reload in flight to finish. No reload publishes a
+     * snapshot after this returns and the reloading can be started again. The last published snapshot stays readable.
+     */
+    @Override
+    public void close() {
+        ScheduledExecutorService executor;
+        synchronized (writeLock) {
+            executor = reloader;
+            reloader = null;
+        }
+        if (executor == null) {
+            return;
+        }
+        executor.shutdownNow();
+        // outside the lock, as the reload in flight takes it to publish
+        try {
+            if (!executor.awaitTermination(CLOSE_TIMEOUT.toNanos(), TimeUnit.NANOSECONDS)) {
+                LOG.warn("Graph reloader didn't stop within {}", CLOSE_TIMEOUT);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private GraphSnapshot publish(GraphSnapshot current, BatchQueryExecutor executor) {
+        GraphSnapshot next = new GraphSnapshot(current.getVersion() + 1, executor);
+        snapshot.set(next);
+        return next;
+    }
+
+    /**
+     * Modification time and size of a file, to tell whether it has changed since it was loaded.
+     */
+    private static final class FileVersion {
+
+        private final FileTime lastModifiedTime;
+        private final long size;
+
+        FileVersion(Path path) throws IOException {
+            this.lastModifiedTime = Files.getLastModifiedTime(path);
+            this.size = Files.size(path);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            FileVersion that = (FileVersion) o;
+            return size == that.size && lastModifiedTime.equals(that.lastModifiedTime);
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(lastModifiedTime, size);
+        }
+    }
+}
@@ -0,0 +1,217 @@
+package com.example.tracing;
+
+import com.example.tracing.algorithm.BatchQueryExecutor;
+import com.example.tracing.algorithm.QueryMeasurement;
+import com.example.tracing.algorithm.QueryRecorder;
+import com.example.tracing.model.Query;
+import com.example.tracing.util.QueryParser;
+import com.google.inject.internal.util.Preconditions;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Keeps the graph and its indexes in memory and answers queries over a line protocol, so the graph is loaded and the
+ * code is compiled by the JIT once instead of on every run of {@link TracingApp}. Each line is a query in the format of
+ * a query file line, see {@link QueryParser}, and is answered by one line: the result of the query as printed by
+ * {@link TracingApp}, or {@value #ERROR_PREFIX} followed by the reason if the query doesn't match the format or its limit
+ * is above the maximum of its kind. Blank lines and lines starting with {@code #} are not answered.
+ * The protocol is served either on a reader and a writer, e.g. stdin and stdout, or on a TCP socket bound to the
+ * loopback address, with a thread per connection taken from a cached pool. Each query is answered about the snapshot of
+ * the {@link LiveGraph} current when the query is read, so the topology can change while the server is running.
+ * The answered queries are measured and handed over to a {@link QueryRecorder}, their type is the keyword of the query.
+ */
+public class QueryServer implements Closeable {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryServer.class);
+    public static final String ERROR_PREFIX = "ERROR ";
+    public static final String ERROR_LIMIT_TOO_LARGE_FORMAT = "Limit %d of %s is larger than the maximum %d";
+    // the hop-bounded counts take time proportional to the hops, the latency-bounded ones to the latency
+    public static final int DEFAULT_MAX_HOP_LIMIT = 100_000;
+    public static final int DEFAULT_MAX_LATENCY_LIMIT = 1_000_000;
+
+    private final LiveGraph graph;
+    private final QueryRecorder recorder;
+    private final int maxHopLimit;
+    private final int maxLatencyLimit;
+    private final ExecutorService connectionThreads;
+    private volatile ServerSocket serverSocket;
+
+    public QueryServer(@NotNull LiveGraph graph) {
+        this(graph, QueryRecorder.NO_OP);
+    }
+
+    /**
+     * @param recorder recorder of the metrics of the answered queries
+     */
+    public QueryServer(@NotNull LiveGraph graph, @NotNull QueryRecorder recorder) {
+        this(graph, recorder, DEFAULT_MAX_HOP_LIMIT, DEFAULT_MAX_LATENCY_LIMIT);
+    }
+
+    /**
+     * @param recorder recorder of the metrics of the answered queries
+     * @param maxHopLimit largest limit of the hop-bounded queries that is answered
+     * @param maxLatencyLimit largest limit of the latency-bounded queries that is answered
+     */
+    public QueryServer(@NotNull LiveGraph graph, @NotNull QueryRecorder recorder, int maxHopLimit, int maxLatencyLimit) {
+        Preconditions.checkArgument(maxHopLimit >= 0, "Max hop limit cannot be negative");
+        Preconditions.checkArgument(maxLatencyLimit >= 0, "Max latency limit cannot be negative");
+        this.graph = Preconditions.checkNotNull(graph);
+        this.recorder = Preconditions.checkNotNull(recorder);
+        this.maxHopLimit = maxHopLimit;
+        this.maxLatencyLimit = maxLatencyLimit;
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.connectionThreads = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, "query-connection-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * @param line a line of the protocol
+     * @return answer to the query on the line, or {@code null} if the line is blank or a comment
+     */
+    public String answer(@NotNull String line) {
+        String trimmedLine = line.trim();
+        if (trimmedLine.isEmpty() || trimmedLine.startsWith("#")) {
+            return null;
+        }
+        Query query;
+        try {
+            query = QueryParser.parseQuery(trimmedLine);
+        } catch (IllegalArgumentException e) {
+            return ERROR_PREFIX + e.getMessage();
+        }
+        if (query.getKind().isLimited()) {
+            int maxLimit = query.getKind() == Query.Kind.COUNT_LATENCY_LESS_THAN ? maxLatencyLimit : maxHopLimit;
+            if (query.getLimit() > maxLimit) {
+                return ERROR_PREFIX + String.format(ERROR_LIMIT_TOO_LARGE_FORMAT, query.getLimit(),
+                    query.getKind().getKeyword(), maxLimit);
+            }
+        }
+        if (!recorder.isEnabled()) {
+            return graph.getSnapshot().getExecutor().execute(List.of(query)).get(0);
+        }
+        QueryMeasurement measurement = QueryMeasurement.start(query.getKind().getKeyword());
+        String answer;
+        try {
+            answer = graph.getSnapshot().getExecutor().execute(List.of(query)).get(0);
+        } catch (RuntimeException | Error e) {
+            recorder.record(measurement.fail(0, 0, e));
+            throw e;
+        }
+        // the executor answers by dynamic programming and indexes, it expands no labels
+        recorder.record(measurement.finish(0, 0, getPathsProduced(query, answer)));
+        return answer;
+    }
+
+    /**
+     * @return number of traces counted by a counting query, otherwise 1 if the trace exists and 0 if it doesn't
+     */
+    private static long getPathsProduced(Query query, String answer) {
+        if (answer.equals(BatchQueryExecutor.NO_SUCH_TRACE)) {
+            return 0;
+        }
+        if (!query.getKind().isLimited()) {
+            return 1;
+        }
+        // the answer is COUNT_OVERFLOWS if the count doesn't fit into long, which is reported as the largest long
+        return answer.equals(BatchQueryExecutor.COUNT_OVERFLOWS) ? Long.MAX_VALUE : Long.parseLong(answer);
+    }
+
+    /**
+     * Answers the queries read from the reader until the end of the input, flushing the writer after each answer.
+     * Neither of them is closed.
+     *
+     * @throws IOException if reading or writing fails
+     */
+    public void serve(@NotNull Reader in, @NotNull Writer out) throws IOException {
+        BufferedReader lines = in instanceof BufferedReader ? (BufferedReader) in : new BufferedReader(in);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            String answer = answer(line);
+            if (answer != null) {
+                out.write(answer);
+                out.write('\n');
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Binds the server socket to the port of the loopback address.
+     *
+     * @param port port to listen on, 0 for any free one
+     * @return port the socket is bound to
+     * @throws IOException if the socket cannot be bound
+     */
+    public int bind(int port) throws IOException {
+        Preconditions.checkState(serverSocket == null, "Server is already bound");
+        serverSocket = new ServerSocket(port, 0, InetAddress.getLoopbackAddress());
+        LOG.debug("Listening on {}", serverSocket.getLocalSocketAddress());
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Accepts connections on the socket bound by {@link #bind(int)} and serves each of them on its own thread until the
+     * server is closed.
+     *
+     * @throws IOException if accepting a connection fails for any reason but closing the server
+     */
+    public void acceptConnections() throws IOException {
+        ServerSocket socket = serverSocket;
+        Preconditions.checkState(socket != null, "Server is not bound");
+        while (!socket.isClosed()) {
+            Socket connection;
+            try {
+                connection = socket.accept();
+            } catch (SocketException e) {
+                if (socket.isClosed()) {
+                    break;
+                }
+                throw e;
+            }
+            connectionThreads.execute(() -> serve(connection));
+        }
+    }
+
+    /**
+     * Stops accepting connections, the connections being served are closed when their clients close them.
+     */
+    @Override
+    public void close() throws IOException {
+        if (serverSocket != null) {
+            serverSocket.close();
+        }
+        connectionThreads.shutdown();
+    }
+
+    private void serve(Socket connection) {
+        try (connection;
+            Reader in = new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8);
+            Writer out = new BufferedWriter(new OutputStreamWriter(connection.getOutputStream(), StandardCharsets.UTF_8)))
+        {
+            serve(in, out);
+        } catch (IOException e) {
+            LOG.error("Connection from {} failed: {}", connection.getRemoteSocketAddress(), e.getMessage());
+        }
+    }
+}
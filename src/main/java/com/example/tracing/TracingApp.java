@@ -1,63 +1,111 @@
 package com.example.tracing;
 
+import com.example.tracing.algorithm.BatchQueryExecutor;
 import com.example.tracing.algorithm.Traversal;
-import com.example.tracing.model.Connection;
-import com.example.tracing.model.Microservice;
-import com.example.tracing.util.FileReaderUtil;
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.Query;
+import com.example.tracing.util.CompactGraphFile;
 import com.example.tracing.util.GraphBuilder;
-import java.io.FileNotFoundException;
-import java.util.AbstractMap;
+import com.example.tracing.util.QueryParser;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
 import java.util.List;
-import java.util.Scanner;
-import java.util.function.Consumer;
-import org.jgrapht.GraphPath;
-import org.jgrapht.graph.GraphWalk;
-import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+import javax.management.JMException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 public class TracingApp {
 
     private static final Logger LOG = LoggerFactory.getLogger(TracingApp.class);
-    private static final Consumer<GraphWalk<Microservice, Connection>> TRACE_PATH_LATENCY = walk -> LOG
-        .info("{}", Double.valueOf(walk.getWeight()).intValue());
-    private static final Runnable TRACE_NOT_EXISTS = () -> LOG.info("NO SUCH TRACE");
-    private static final Consumer<GraphPath<Microservice, Connection>> TRACE_WEIGHT = path -> LOG
-        .info("{}", Double.valueOf(path.getWeight()).intValue());
+    // the ten queries of the README, run when no query file is given
+    private static final String DEFAULT_QUERIES = "/queries.txt";
+    private static final String SERVE_OPTION = "--serve";
+    private static final String WRITE_COMPACT_OPTION = "--write-compact";
+    // how often the server checks the input file for changes
+    private static final Duration RELOAD_INTERVAL = Duration.ofSeconds(5);
 
-    public static void main(String[] args) throws FileNotFoundException {
-        if (args.length != 1) {
-            throw new IllegalArgumentException("Application takes exactly one argument - file with input graph.");
-        }
-        Scanner s = FileReaderUtil.getInitializedScanner(args[0]);
-        AbstractMap.SimpleImmutableEntry<SimpleDirectedWeightedGraph<Microservice, Connection>, Integer> graphAndMinimalWeight =
-            GraphBuilder.buildGraphFromInput(s);
-        SimpleDirectedWeightedGraph<Microservice, Connection> g = graphAndMinimalWeight.getKey();
-        // was needed for the com.example.tracing.algorithm.Traversal.getAllPathsWithWeightLessThanSlow
-        int minimalEdgeWeight = graphAndMinimalWeight.getValue();
-
-        Traversal.getGraphWalk(g, List.of(new Microservice("A"), new Microservice("B"), new Microservice("C")))
-            .ifPresentOrElse(TRACE_PATH_LATENCY, TRACE_NOT_EXISTS);
-        Traversal.getGraphWalk(g, List.of(new Microservice("A"), new Microservice("D")))
-            .ifPresentOrElse(TRACE_PATH_LATENCY, TRACE_NOT_EXISTS);
-        Traversal.getGraphWalk(g, List.of(new Microservice("A"), new Microservice("D"), new Microservice("C")))
-            .ifPresentOrElse(TRACE_PATH_LATENCY, TRACE_NOT_EXISTS);
-        Traversal.getGraphWalk(g,
-            List.of(new Microservice("A"), new Microservice("E"), new Microservice("B"), new Microservice("C"),
-                new Microservice("D")))
-            .ifPresentOrElse(TRACE_PATH_LATENCY, TRACE_NOT_EXISTS);
-        Traversal.getGraphWalk(g, List.of(new Microservice("A"), new Microservice("E"), new Microservice("D")))
-            .ifPresentOrElse(TRACE_PATH_LATENCY, TRACE_NOT_EXISTS);
-
-        LOG.info("{}", Traversal.getAllPathsWithPathLengthUpToMax(g, new Microservice("C"), new Microservice("C"), 3).size());
-        LOG.info("{}", Traversal.getAllPathsWithExactPathLength(g, new Microservice("A"), new Microservice("C"), 4).size());
+    public static void main(String[] args) throws IOException {
+        if (args.length > 0 && args[0].equals(SERVE_OPTION)) {
+            serve(args);
+            return;
+        }
+        if (args.length > 0 && args[0].equals(WRITE_COMPACT_OPTION)) {
+            writeCompact(args);
+            return;
+        }
+        if (args.length != 1 && args.length != 2) {
+            throw new IllegalArgumentException(
+                "Application takes one or two arguments - file with input graph and optionally file with queries.");
+        }
+        CompactServiceGraph compactGraph = GraphBuilder.loadCompactGraph(Paths.get(args[0]));
+        List<Query> queries;
+        if (args.length == 2) {
+            queries = QueryParser.parseQueries(Paths.get(args[1]));
+        } else {
+            try (Reader reader = new InputStreamReader(TracingApp.class.getResourceAsStream(DEFAULT_QUERIES),
+                StandardCharsets.UTF_8))
+            {
+                queries = QueryParser.parseQueries(reader);
+            }
+        }
 
-        Traversal.getShortestPath(g, new Microservice("A"), new Microservice("C"))
-            .ifPresentOrElse(TRACE_WEIGHT, TRACE_NOT_EXISTS);
-        Traversal.getShortestPath(g, new Microservice("B"), new Microservice("B"))
-            .ifPresentOrElse(TRACE_WEIGHT, TRACE_NOT_EXISTS);
+        for (String result : new BatchQueryExecutor(compactGraph).execute(queries)) {
+            LOG.info("{}", result);
+        }
+    }
 
-        LOG.info("{}", Traversal.getAllPathsWithWeightLessThan(g, new Microservice("C"), new Microservice("C"), 30).size());
+    /**
+     * Loads the graph once and answers queries line by line, on stdin and stdout or on a local port if one is given. The
+     * graph is reloaded in the background when the input file changes. The metrics of the queries are exposed over JMX,
+     * see {@link TraversalMetrics}.
+     */
+    private static void serve(String[] args) throws IOException {
+        if (args.length != 2 && args.length != 3) {
+            throw new IllegalArgumentException(
+                "Server mode takes file with input graph and optionally port to listen on after " + SERVE_OPTION + ".");
+        }
+        Path input = Paths.get(args[1]);
+        TraversalMetrics metrics = new TraversalMetrics();
+        try {
+            metrics.register(ManagementFactory.getPlatformMBeanServer());
+        } catch (JMException e) {
+            LOG.warn("Query metrics are not exposed over JMX: {}", e.getMessage());
+        }
+        Traversal.setRecorder(metrics);
+        try (LiveGraph graph = new LiveGraph(GraphBuilder.loadCompactGraph(input));
+            QueryServer server = new QueryServer(graph, metrics))
+        {
+            graph.startReloading(input, RELOAD_INTERVAL);
+            if (args.length == 3) {
+                int port = server.bind(Integer.parseInt(args[2]));
+                LOG.info("Answering queries about {} on port {}", graph.getSnapshot().getCompactGraph(), port);
+                server.acceptConnections();
+            } else {
+                Writer out = new OutputStreamWriter(System.out, StandardCharsets.UTF_8);
+                server.serve(new InputStreamReader(System.in, StandardCharsets.UTF_8), out);
+            }
+        }
     }
 
+    /**
+     * Parses the graph input file once and writes the graph to a compact graph file, which loads faster and can be given
+     * in place of the input file afterwards.
+     */
+    private static void writeCompact(String[] args) throws IOException {
+        if (args.length != 3) {
+            throw new IllegalArgumentException(
+                "Application takes file with input graph and compact graph file to write after " + WRITE_COMPACT_OPTION + ".");
+        }
+        CompactServiceGraph compactGraph = GraphBuilder.buildCompactGraphFromFile(Paths.get(args[1]));
+        CompactGraphFile.write(compactGraph, Paths.get(args[2]));
+        LOG.info("Wrote {} to {}", compactGraph, args[2]);
+    }
 }
@@ -0,0 +1,228 @@
+package com.example.tracing;
+
+import com.example.tracing.algorithm.QueryRecorder;
+import com.example.tracing.model.QueryMetrics;
+import com.google.inject.internal.util.Preconditions;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Aggregates the {@link QueryMetrics} of the queries per query type: the number of queries and of the failed ones, the
+ * total and the maximum of the wall time, the allocated bytes and the labels expanded, the largest queue and the traces
+ * produced. The unknown allocations and labels are left out of the totals and the maxima. The
+ * aggregates are read over JMX, see {@link #register(MBeanServer)}, and are updated by the threads answering the
+ * queries, each type under its own lock.
+ */
+public class TraversalMetrics implements QueryRecorder, TraversalMetricsMXBean {
+
+    public static final String OBJECT_NAME = "com.example.tracing:type=TraversalMetrics";
+
+    private final ConcurrentMap<String, Aggregate> aggregates = new ConcurrentHashMap<>();
+
+    @Override
+    public void record(@NotNull QueryMetrics metrics) {
+        Preconditions.checkNotNull(metrics);
+        aggregates.computeIfAbsent(metrics.getQueryType(), Aggregate::new).add(metrics);
+    }
+
+    @Override
+    public List<QueryTypeMetrics> getQueryTypes() {
+        List<QueryTypeMetrics> queryTypes = new ArrayList<>(aggregates.size());
+        for (Aggregate aggregate : aggregates.values()) {
+            queryTypes.add(aggregate.snapshot());
+        }
+        queryTypes.sort(Comparator.comparing(QueryTypeMetrics::getQueryType));
+        return queryTypes;
+    }
+
+    @Override
+    public long getQueryCount() {
+        long queryCount = 0;
+        for (Aggregate aggregate : aggregates.values()) {
+            queryCount += aggregate.getQueryCount();
+        }
+        return queryCount;
+    }
+
+    @Override
+    public void reset() {
+        aggregates.clear();
+    }
+
+    /**
+     * Registers the metrics under {@value #OBJECT_NAME}.
+     *
+     * @param server e.g. the platform MBean server
+     * @return name the metrics are registered under
+     * @throws JMException if the metrics cannot be registered, e.g. other metrics are already registered under the name
+     */
+    public ObjectName register(@NotNull MBeanServer server) throws JMException {
+        ObjectName name = new ObjectName(OBJECT_NAME);
+        server.registerMBean(this, name);
+        return name;
+    }
+
+    /**
+     * Metrics of all the queries of one type recorded so far.
+     */
+    public static final class QueryTypeMetrics {
+
+        private final String queryType;
+        private final long queryCount;
+        private final long failedQueryCount;
+        private final long totalWallTimeNanos;
+        private final long maxWallTimeNanos;
+        private final long totalAllocatedBytes;
+        private final long maxAllocatedBytes;
+        private final long totalLabelsExpanded;
+        private final long maxLabelsExpanded;
+        private final int maxPeakQueueSize;
+        private final long totalPathsProduced;
+
+        QueryTypeMetrics(String queryType, long queryCount, long failedQueryCount, long totalWallTimeNanos,
+            long maxWallTimeNanos, long totalAllocatedBytes, long maxAllocatedBytes, long totalLabelsExpanded,
+            long maxLabelsExpanded, int maxPeakQueueSize, long totalPathsProduced)
+        {
+            this.queryType = queryType;
+            this.queryCount = queryCount;
+            this.failedQueryCount = failedQueryCount;
+            this.totalWallTimeNanos = totalWallTimeNanos;
+            this.maxWallTimeNanos = maxWallTimeNanos;
+            this.totalAllocatedBytes = totalAllocatedBytes;
+            this.maxAllocatedBytes = maxAllocatedBytes;
+            this.totalLabelsExpanded = totalLabelsExpanded;
+            this.maxLabelsExpanded = maxLabelsExpanded;
+            this.maxPeakQueueSize = maxPeakQueueSize;
+            this.totalPathsProduced = totalPathsProduced;
+        }
+
+        public String getQueryType() {
+            return queryType;
+        }
+
+        public long getQueryCount() {
+            return queryCount;
+        }
+
+        /**
+         * @return number of the queries that threw, included in {@link #getQueryCount()}
+         */
+        public long getFailedQueryCount() {
+            return failedQueryCount;
+        }
+
+        public long getTotalWallTimeNanos() {
+            return totalWallTimeNanos;
+        }
+
+        public long getMaxWallTimeNanos() {
+            return maxWallTimeNanos;
+        }
+
+        public long getMeanWallTimeNanos() {
+            return queryCount == 0 ? 0 : totalWallTimeNanos / queryCount;
+        }
+
+        /**
+         * @return bytes allocated by the queries whose allocations were measured, see
+         *     {@link QueryMetrics#UNKNOWN_ALLOCATED_BYTES}
+         */
+        public long getTotalAllocatedBytes() {
+            return totalAllocatedBytes;
+        }
+
+        public long getMaxAllocatedBytes() {
+            return maxAllocatedBytes;
+        }
+
+        public long getTotalLabelsExpanded() {
+            return totalLabelsExpanded;
+        }
+
+        public long getMaxLabelsExpanded() {
+            return maxLabelsExpanded;
+        }
+
+        public int getMaxPeakQueueSize() {
+            return maxPeakQueueSize;
+        }
+
+        public long getTotalPathsProduced() {
+            return totalPathsProduced;
+        }
+
+        @Override
+        public String toString() {
+            return "QueryTypeMetrics{" +
+                "queryType='" + queryType + '\'' +
+                ", queryCount=" + queryCount +
+                ", failedQueryCount=" + failedQueryCount +
+                ", totalWallTimeNanos=" + totalWallTimeNanos +
+                ", maxWallTimeNanos=" + maxWallTimeNanos +
+                ", totalAllocatedBytes=" + totalAllocatedBytes +
+                ", maxAllocatedBytes=" + maxAllocatedBytes +
+                ", totalLabelsExpanded=" + totalLabelsExpanded +
+                ", maxLabelsExpanded=" + maxLabelsExpanded +
+                ", maxPeakQueueSize=" + maxPeakQueueSize +
+                ", totalPathsProduced=" + totalPathsProduced +
+                '}';
+        }
+    }
+
+    private static final class Aggregate {
+
+        private final String queryType;
+        private long queryCount;
+        private long failedQueryCount;
+        private long totalWallTimeNanos;
+        private long maxWallTimeNanos;
+        private long totalAllocatedBytes;
+        private long maxAllocatedBytes;
+        private long totalLabelsExpanded;
+        private long maxLabelsExpanded;
+        private int maxPeakQueueSize;
+        private long totalPathsProduced;
+
+        Aggregate(String queryType) {
+            this.queryType = queryType;
+        }
+
+        synchronized void add(QueryMetrics metrics) {
+            queryCount++;
+            if (metrics.isFailed()) {
+                failedQueryCount++;
+            }
+            totalWallTimeNanos += metrics.getWallTimeNanos();
+            maxWallTimeNanos = Math.max(maxWallTimeNanos, metrics.getWallTimeNanos());
+            if (metrics.getAllocatedBytes() != QueryMetrics.UNKNOWN_ALLOCATED_BYTES) {
+                totalAllocatedBytes += metrics.getAllocatedBytes();
+                maxAllocatedBytes = Math.max(maxAllocatedBytes, metrics.getAllocatedBytes());
+            }
+            if (metrics.getLabelsExpanded() != QueryMetrics.UNKNOWN_LABELS_EXPANDED) {
+                totalLabelsExpanded += metrics.getLabelsExpanded();
+                maxLabelsExpanded = Math.max(maxLabelsExpanded, metrics.getLabelsExpanded());
+            }
+            maxPeakQueueSize = Math.max(maxPeakQueueSize, metrics.getPeakQueueSize());
+            // a count that overflowed is reported as Long.MAX_VALUE, the total stays there
+            long paths = totalPathsProduced + metrics.getPathsProduced();
+            totalPathsProduced = paths < 0 ? Long.MAX_VALUE : paths;
+        }
+
+        synchronized long getQueryCount() {
+            return queryCount;
+        }
+
+        synchronized QueryTypeMetrics snapshot() {
+            return new QueryTypeMetrics(queryType, queryCount, failedQueryCount, totalWallTimeNanos, maxWallTimeNanos,
+                totalAllocatedBytes, maxAllocatedBytes, totalLabelsExpanded, maxLabelsExpanded, maxPeakQueueSize,
+                totalPathsProduced);
+        }
+    }
+}
@@ -0,0 +1,24 @@
+package com.example.tracing;
+
+import java.util.List;
+
+/**
+ * Management interface of {@link TraversalMetrics}.
+ */
+public interface TraversalMetricsMXBean {
+
+    /**
+     * @return metrics aggregated per query type, in the order of the type names
+     */
+    List<TraversalMetrics.QueryTypeMetrics> getQueryTypes();
+
+    /**
+     * @return number of queries recorded of all the types
+     */
+    long getQueryCount();
+
+    /**
+     * Forgets all the queries recorded so far.
+     */
+    void reset();
+}
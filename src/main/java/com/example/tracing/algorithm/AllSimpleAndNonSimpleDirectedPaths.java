@@ -3,9 +3,25 @@ package com.example.tracing.algorithm;
 import com.google.inject.internal.util.Preconditions;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+import java.util.function.ToDoubleFunction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.jetbrains.annotations.NotNull;
 import org.jgrapht.Graph;
 import org.jgrapht.GraphPath;
@@ -14,25 +30,70 @@ import org.jgrapht.graph.GraphWalk;
 
 /**
  * An algorithm that uses BFS and labeling to find all paths between two sets of nodes in a weighted directed graph
- * with non-simple paths and with a path weight limit
+ * with non-simple paths and with a path weight or path length limit. Alternatively it can use DFS, see {@link SearchStrategy}.
+ * The partial paths that cannot reach a target vertex within the limit can be pruned, see {@link Pruning}, and the
+ * sequential searches can be stopped by a {@link SearchBudget}, returning the paths found so far.
  *
  * @param <V> the graph vertex type
  * @param <E> the graph edge type
  */
 public class AllSimpleAndNonSimpleDirectedPaths<V, E> {
 
+    // the parallel search splits the search tree into subtrees of the partial paths of at most this length
+    static final int MAX_SPLIT_PATH_LENGTH = 8;
+    // and stops splitting when the worker already has this many tasks nobody has stolen
+    static final int MAX_SURPLUS_TASKS = 3;
+
     private final Graph<V, E> graph;
+    private final SearchStrategy searchStrategy;
+    private final Pruning pruning;
+    private final SearchStatistics statistics; // null if the searches are not measured
 
     /**
-     * Creates a new instance.
+     * Creates a new instance that uses {@link SearchStrategy#BFS}.
      *
      * @param graph the input graph that must be a directed, weighted graph with no self-loops.
      */
     public AllSimpleAndNonSimpleDirectedPaths(@NotNull Graph<V, E> graph) {
+        this(graph, SearchStrategy.BFS);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param graph the input graph that must be a directed, weighted graph with no self-loops.
+     * @param searchStrategy the way the paths are searched
+     */
+    public AllSimpleAndNonSimpleDirectedPaths(@NotNull Graph<V, E> graph, @NotNull SearchStrategy searchStrategy) {
+        this(graph, searchStrategy, Pruning.NONE);
+    }
+
+    /**
+     * Creates a new instance.
+     *
+     * @param graph the input graph that must be a directed, weighted graph with no self-loops.
+     * @param searchStrategy the way the paths are searched
+     * @param pruning the way the partial paths that cannot become paths are discarded
+     */
+    public AllSimpleAndNonSimpleDirectedPaths(@NotNull Graph<V, E> graph, @NotNull SearchStrategy searchStrategy,
+        @NotNull Pruning pruning)
+    {
+        this(graph, searchStrategy, pruning, null);
+    }
+
+    /**
+     * Creates a new instance whose searches add the labels they expand to the statistics, see {@link SearchStatistics}.
+     */
+    AllSimpleAndNonSimpleDirectedPaths(Graph<V, E> graph, SearchStrategy searchStrategy, Pruning pruning,
+        SearchStatistics statistics)
+    {
         Preconditions.checkArgument(!GraphTests.hasSelfLoops(graph), "Graph may not have self-loops");
         GraphTests.requireDirected(graph);
         GraphTests.requireWeighted(graph);
         this.graph = graph;
+        this.searchStrategy = Preconditions.checkNotNull(searchStrategy);
+        this.pruning = Preconditions.checkNotNull(pruning);
+        this.statistics = statistics;
     }
 
     /**
@@ -47,60 +108,1191 @@ public class AllSimpleAndNonSimpleDirectedPaths<V, E> {
         @NotNull V sourceVertex,
         @NotNull V targetVertex,
         double weightLimit)
+    {
+        return streamAllPathsWithWeightLessThan(sourceVertex, targetVertex, weightLimit).collect(Collectors.toList());
+    }
+
+    /**
+     * Lazily calculates all the paths including non-simple ones from the source vertex to the target vertex. Each path is
+     * handed over as soon as it's discovered, in the same order as {@link #getAllPathsWithWeightLessThan(Object, Object, double)}
+     * returns them (which depends on the {@link SearchStrategy}), so the paths don't have to be kept in memory and the search stops as soon as the stream is
+     * short-circuited, e.g. by {@link Stream#limit(long)}.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param weightLimit weight limit of the path, only the paths that have weight less than {@code weightLimit} will be returned
+     * @return sequential stream of all paths from the source vertex to the target vertex
+     */
+    public Stream<GraphPath<V, E>> streamAllPathsWithWeightLessThan(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        double weightLimit)
+    {
+        Preconditions.checkNotNull(targetVertex);
+        return streamAllPaths(sourceVertex, Collections.singleton(targetVertex), weightLimit, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Calculates all the paths including non-simple ones from the source vertex to each of the target vertices in one
+     * search, which costs as much as {@link #getAllPathsWithWeightLessThan(Object, Object, double)} for a single target
+     * vertex.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertices the target vertices
+     * @param weightLimit weight limit of the path, only the paths that have weight less than {@code weightLimit} will be returned
+     * @return paths from the source vertex to each of the target vertices in the order of the target vertices, the
+     *     paths to each vertex are in the same order as {@link #getAllPathsWithWeightLessThan(Object, Object, double)}
+     *     returns them
+     */
+    public Map<V, List<GraphPath<V, E>>> getAllPathsByTargetWithWeightLessThan(
+        @NotNull V sourceVertex,
+        @NotNull Set<V> targetVertices,
+        double weightLimit)
+    {
+        Map<V, List<GraphPath<V, E>>> pathsByTarget = new LinkedHashMap<>();
+        for (V targetVertex : targetVertices) {
+            pathsByTarget.put(targetVertex, new ArrayList<>());
+        }
+        streamAllPathsWithWeightLessThan(sourceVertex, targetVertices, weightLimit)
+            .forEach(path -> pathsByTarget.get(path.getEndVertex()).add(path));
+        return pathsByTarget;
+    }
+
+    /**
+     * Calculates all the paths including non-simple ones from the source vertex to every vertex of the graph in one
+     * search, see {@link #getAllPathsByTargetWithWeightLessThan(Object, Set, double)}.
+     *
+     * @return paths from the source vertex to each of the vertices that can be reached by a path lighter than the
+     *     limit, in the order of {@link Graph#vertexSet()}
+     */
+    public Map<V, List<GraphPath<V, E>>> getAllPathsByTargetWithWeightLessThan(@NotNull V sourceVertex, double weightLimit) {
+        Map<V, List<GraphPath<V, E>>> pathsByTarget = getAllPathsByTargetWithWeightLessThan(sourceVertex,
+            graph.vertexSet(), weightLimit);
+        pathsByTarget.values().removeIf(List::isEmpty);
+        return pathsByTarget;
+    }
+
+    /**
+     * Calculates the same paths in the same order as {@link #getAllPathsWithWeightLessThan(Object, Object, double)} with
+     * {@link SearchStrategy#BFS}, but returns them as a {@link PathTrie}, so the paths share their common prefixes and
+     * are built only when they are asked for. The search holds every partial path it expands until it's over, about 16
+     * bytes each, so use {@link Pruning#DISTANCE_TO_TARGET} to keep out the ones that cannot reach the target vertex.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param weightLimit weight limit of the path, only the paths that have weight less than {@code weightLimit} will be returned
+     * @return all paths from the source vertex to the target vertex
+     */
+    public PathTrie<V, E> getPathTrieWithWeightLessThan(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        double weightLimit)
+    {
+        Preconditions.checkNotNull(targetVertex);
+        return searchPathTrie(newSearch(sourceVertex, Collections.singleton(targetVertex), weightLimit, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Budgeted counterpart of {@link #getPathTrieWithWeightLessThan(Object, Object, double)}, builds the trie of the
+     * same paths in the same order, but stops as soon as the search exceeds the budget. The nodes of the trie count as
+     * the labels of the search.
+     *
+     * @return the trie, or the trie of the paths found before the search exceeded the budget flagged as truncated
+     */
+    public PartialResult<PathTrie<V, E>> getPathTrieWithWeightLessThan(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        double weightLimit,
+        @NotNull SearchBudget budget)
+    {
+        Preconditions.checkNotNull(targetVertex);
+        SearchBudget.Tracker tracker = Preconditions.checkNotNull(budget).start();
+        return tracker.toResult(searchPathTrie(newSearch(sourceVertex, Collections.singleton(targetVertex), weightLimit,
+            Integer.MAX_VALUE, tracker)));
+    }
+
+    /**
+     * Calculates the same paths in the same order as {@link #streamAllPathsWithLengthUpToMax(Object, Object, int)} with
+     * {@link SearchStrategy#BFS} and returns them as a {@link PathTrie}. The search holds every partial path it
+     * expands until it's over, about 20 bytes each.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param maxPathLength maximal number of edges of the path
+     * @return all paths from the source vertex to the target vertex
+     */
+    public PathTrie<V, E> getPathTrieWithLengthUpToMax(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        int maxPathLength)
+    {
+        Preconditions.checkNotNull(targetVertex);
+        return searchPathTrie(newSearch(sourceVertex, Collections.singleton(targetVertex), Double.POSITIVE_INFINITY,
+            maxPathLength));
+    }
+
+    /**
+     * Budgeted counterpart of {@link #getPathTrieWithLengthUpToMax(Object, Object, int)}, see
+     * {@link #getPathTrieWithWeightLessThan(Object, Object, double, SearchBudget)}.
+     *
+     * @return the trie, or the trie of the paths found before the search exceeded the budget flagged as truncated
+     */
+    public PartialResult<PathTrie<V, E>> getPathTrieWithLengthUpToMax(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        int maxPathLength,
+        @NotNull SearchBudget budget)
+    {
+        Preconditions.checkNotNull(targetVertex);
+        SearchBudget.Tracker tracker = Preconditions.checkNotNull(budget).start();
+        return tracker.toResult(searchPathTrie(newSearch(sourceVertex, Collections.singleton(targetVertex),
+            Double.POSITIVE_INFINITY, maxPathLength, tracker)));
+    }
+
+    /**
+     * Lazily calculates all the paths including non-simple ones from the source vertex to any of the target vertices,
+     * in the order of the search, see {@link #streamAllPathsWithWeightLessThan(Object, Object, double)}.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertices the target vertices
+     * @param weightLimit weight limit of the path, only the paths that have weight less than {@code weightLimit} will be returned
+     * @return sequential stream of all paths from the source vertex to the target vertices
+     */
+    public Stream<GraphPath<V, E>> streamAllPathsWithWeightLessThan(
+        @NotNull V sourceVertex,
+        @NotNull Set<V> targetVertices,
+        double weightLimit)
+    {
+        return streamAllPaths(sourceVertex, targetVertices, weightLimit, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Lazily calculates all the paths including non-simple ones from the source vertex to the target vertex that have at
+     * least one and at most {@code maxPathLength} edges.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param maxPathLength maximal number of edges of the path
+     * @return sequential stream of all paths from the source vertex to the target vertex
+     */
+    public Stream<GraphPath<V, E>> streamAllPathsWithLengthUpToMax(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        int maxPathLength)
+    {
+        Preconditions.checkNotNull(targetVertex);
+        return streamAllPaths(sourceVertex, Collections.singleton(targetVertex), Double.POSITIVE_INFINITY, maxPathLength);
+    }
+
+    /**
+     * Calculates the same paths in the same order as {@link #getAllPathsWithWeightLessThan(Object, Object, double)}
+     * within the budget, so a limit too high for the graph cannot run the search for minutes or exhaust the heap.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param weightLimit weight limit of the path, only the paths that have weight less than {@code weightLimit} will be returned
+     * @param budget limits of the search
+     * @return all paths from the source vertex to the target vertex, or the ones found before the search exceeded the
+     *     budget flagged as truncated
+     */
+    public PartialResult<List<GraphPath<V, E>>> getAllPathsWithWeightLessThan(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        double weightLimit,
+        @NotNull SearchBudget budget)
+    {
+        return getAllPaths(sourceVertex, targetVertex, weightLimit, Integer.MAX_VALUE, budget);
+    }
+
+    /**
+     * Calculates the same paths in the same order as {@link #streamAllPathsWithLengthUpToMax(Object, Object, int)}
+     * within the budget, see {@link #getAllPathsWithWeightLessThan(Object, Object, double, SearchBudget)}.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param maxPathLength maximal number of edges of the path
+     * @param budget limits of the search
+     * @return all paths from the source vertex to the target vertex, or the ones found before the search exceeded the
+     *     budget flagged as truncated
+     */
+    public PartialResult<List<GraphPath<V, E>>> getAllPathsWithLengthUpToMax(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        int maxPathLength,
+        @NotNull SearchBudget budget)
+    {
+        return getAllPaths(sourceVertex, targetVertex, Double.POSITIVE_INFINITY, maxPathLength, budget);
+    }
+
+    /**
+     * Calculates the paths with both a weight and a length limit within the budget.
+     */
+    PartialResult<List<GraphPath<V, E>>> getAllPaths(V sourceVertex, V targetVertex, double weightLimit,
+        int maxPathLength, SearchBudget budget)
+    {
+        Preconditions.checkNotNull(targetVertex);
+        SearchBudget.Tracker tracker = Preconditions.checkNotNull(budget).start();
+        Spliterator<GraphPath<V, E>> spliterator = newSpliterator(sourceVertex, Collections.singleton(targetVertex),
+            weightLimit, maxPathLength, tracker);
+        List<GraphPath<V, E>> paths = new ArrayList<>();
+        while (!tracker.isExceeded() && spliterator.tryAdvance(paths::add)) {
+            if (!tracker.tryAddPath(paths.get(paths.size() - 1).getLength())) {
+                paths.remove(paths.size() - 1); // one path more than the budget allows
+            }
+        }
+        return tracker.toResult(paths);
+    }
+
+    private Stream<GraphPath<V, E>> streamAllPaths(V sourceVertex, Set<V> targetVertices, double weightLimit,
+        int maxPathLength)
+    {
+        return StreamSupport.stream(newSpliterator(sourceVertex, targetVertices, weightLimit, maxPathLength, null),
+            false);
+    }
+
+    /**
+     * @param budget tracker of the budget of the search, null if it's unlimited
+     */
+    private Spliterator<GraphPath<V, E>> newSpliterator(V sourceVertex, Set<V> targetVertices, double weightLimit,
+        int maxPathLength, SearchBudget.Tracker budget)
     {
         Preconditions.checkNotNull(sourceVertex);
+        Preconditions.checkNotNull(targetVertices);
+
+        if (searchStrategy == SearchStrategy.DFS) {
+            return new DepthFirstSpliterator(newSearch(sourceVertex, targetVertices, weightLimit, maxPathLength),
+                new int[0], 0, 0., budget);
+        } else if (pruning == Pruning.NONE) {
+            return new LabelSpliterator(sourceVertex, targetVertices, weightLimit, maxPathLength, vertex -> 0., budget);
+        }
+        GraphIndex<V, E> index = new GraphIndex<>(graph);
+        double[] distancesToTargets = getDistancesToTargets(index, getTargetFlags(index, targetVertices));
+        return new LabelSpliterator(sourceVertex, targetVertices, weightLimit, maxPathLength,
+            vertex -> distancesToTargets[index.getVertexId(vertex)], budget);
+    }
+
+    /**
+     * Parallel counterpart of {@link #getAllPathsWithWeightLessThan(Object, Object, double)} that runs in the common
+     * {@link ForkJoinPool}, see {@link #getAllPathsWithWeightLessThanInParallel(Object, Object, double, int)}.
+     */
+    public List<GraphPath<V, E>> getAllPathsWithWeightLessThanInParallel(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        double weightLimit)
+    {
+        return getAllPathsWithWeightLessThanInParallel(sourceVertex, targetVertex, weightLimit, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Calculates the same paths in the same order as {@link #getAllPathsWithWeightLessThan(Object, Object, double)}
+     * using a {@link ForkJoinPool} of the given parallelism. The search tree is split into the subtrees of the partial
+     * paths of the first few edges out of the source vertex, each of them is searched by DFS in its own task and idle
+     * workers steal the pending ones. The results of the subtrees are concatenated in the order of their partial paths,
+     * which gives the DFS order, and sorted by path length for {@link SearchStrategy#BFS}.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param weightLimit weight limit of the path, only the paths that have weight less than {@code weightLimit} will be returned
+     * @param parallelism number of worker threads
+     * @return all paths from the source vertex to the target vertex
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    public List<GraphPath<V, E>> getAllPathsWithWeightLessThanInParallel(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        double weightLimit,
+        int parallelism)
+    {
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return getAllPathsWithWeightLessThanInParallel(sourceVertex, targetVertex, weightLimit, pool);
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Budgeted counterpart of {@link #getAllPathsWithWeightLessThanInParallel(Object, Object, double, int)}. All the
+     * tasks share the budget: they add their labels to a common count and stop once any of them exceeds a limit. Since
+     * the subtrees are searched at the same time, the paths found within the budget are not the first ones of the
+     * order of the search, but they are returned in that order.
+     *
+     * @return the paths, or the ones found before the search exceeded the budget flagged as truncated
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    public PartialResult<List<GraphPath<V, E>>> getAllPathsWithWeightLessThanInParallel(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        double weightLimit,
+        int parallelism,
+        @NotNull SearchBudget budget)
+    {
+        SearchBudget.Tracker tracker = Preconditions.checkNotNull(budget).start();
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return tracker.toResult(getAllPathsWithWeightLessThanInParallel(sourceVertex, targetVertex, weightLimit, pool,
+                tracker));
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private List<GraphPath<V, E>> getAllPathsWithWeightLessThanInParallel(V sourceVertex, V targetVertex,
+        double weightLimit, ForkJoinPool pool)
+    {
+        return getAllPathsWithWeightLessThanInParallel(sourceVertex, targetVertex, weightLimit, pool, null);
+    }
+
+    /**
+     * @param budget tracker of the budget of the search, null if it's unlimited
+     */
+    private List<GraphPath<V, E>> getAllPathsWithWeightLessThanInParallel(V sourceVertex, V targetVertex,
+        double weightLimit, ForkJoinPool pool, SearchBudget.Tracker budget)
+    {
         Preconditions.checkNotNull(targetVertex);
+        Search search = newSearch(sourceVertex, Collections.singleton(targetVertex), weightLimit, Integer.MAX_VALUE,
+            budget);
+        if (budget != null && !budget.tryStart()) {
+            return new ArrayList<>();
+        }
+        List<GraphPath<V, E>> paths = pool.invoke(new PathSearchTask(search, new int[0], 0.));
+        if (searchStrategy == SearchStrategy.BFS) {
+            // DFS finds the paths of the same length in the same order as BFS, so a stable sort is enough
+            paths.sort(Comparator.comparingInt(GraphPath::getLength));
+        }
+        return paths;
+    }
 
-        Queue<Label<V>> openLabels = new ArrayDeque<>(); // queue containing the labels that will be expanded
-        List<Label<V>> targetVertexLabels = new ArrayList<>(); // list of the labels encoding the path from the target to the source vertex
-        openLabels.add(new Label<>(null, sourceVertex));
+    /**
+     * Parallel counterpart of {@link #countPathsWithWeightLessThan(Object, Object, int)} that runs in the common
+     * {@link ForkJoinPool}, see {@link #countPathsWithWeightLessThanInParallel(Object, Object, double, int)}.
+     */
+    public long countPathsWithWeightLessThanInParallel(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        double weightLimit)
+    {
+        Search search = newSearch(sourceVertex, Collections.singleton(targetVertex), weightLimit, Integer.MAX_VALUE);
+        return ForkJoinPool.commonPool().invoke(new PathCountTask(search, new int[0], 0.));
+    }
+
+    /**
+     * Counts the paths {@link #getAllPathsWithWeightLessThanInParallel(Object, Object, double, int)} would return
+     * without building them, summing up the counts of the subtrees. Unlike
+     * {@link #countPathsWithWeightLessThan(Object, Object, int)} it enumerates the paths, so it's exponential, but it
+     * works with any positive edge weights.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param weightLimit weight limit of the path, only the paths that have weight less than {@code weightLimit} are counted
+     * @param parallelism number of worker threads
+     * @return number of paths from the source vertex to the target vertex
+     * @throws IllegalArgumentException if {@code parallelism} is not positive
+     */
+    public long countPathsWithWeightLessThanInParallel(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        double weightLimit,
+        int parallelism)
+    {
+        Search search = newSearch(sourceVertex, Collections.singleton(targetVertex), weightLimit, Integer.MAX_VALUE);
+        ForkJoinPool pool = new ForkJoinPool(parallelism);
+        try {
+            return pool.invoke(new PathCountTask(search, new int[0], 0.));
+        } finally {
+            pool.shutdown();
+        }
+    }
 
-        while (!openLabels.isEmpty()) {
-            Label<V> expandedLabel = openLabels.poll();
-            // expand each label by finding all the outgoing edges for the vertex associated with the label
+    private Search newSearch(V sourceVertex, Collection<V> targetVertices, double weightLimit, int maxPathLength) {
+        return newSearch(sourceVertex, targetVertices, weightLimit, maxPathLength, null);
+    }
+
+    /**
+     * @param budget tracker of the budget of the search, null if it's unlimited
+     */
+    private Search newSearch(V sourceVertex, Collection<V> targetVertices, double weightLimit, int maxPathLength,
+        SearchBudget.Tracker budget)
+    {
+        Preconditions.checkNotNull(sourceVertex);
+        Preconditions.checkArgument(graph.containsVertex(sourceVertex), "no such vertex in graph: " + sourceVertex);
+        GraphIndex<V, E> index = new GraphIndex<>(graph);
+        boolean[] isTarget = getTargetFlags(index, targetVertices);
+        double[] distancesToTargets = pruning == Pruning.NONE
+            ? new double[index.getVertexCount()]
+            : getDistancesToTargets(index, isTarget);
+        return new Search(index, index.getVertexId(sourceVertex), isTarget, distancesToTargets, weightLimit,
+            maxPathLength, budget);
+    }
+
+    private static <V> boolean[] getTargetFlags(GraphIndex<V, ?> index, Collection<V> targetVertices) {
+        boolean[] isTarget = new boolean[index.getVertexCount()];
+        for (V targetVertex : targetVertices) {
+            int targetId = index.getVertexId(Preconditions.checkNotNull(targetVertex));
+            if (targetId >= 0) {
+                isTarget[targetId] = true;
+            }
+        }
+        return isTarget;
+    }
+
+    /**
+     * Runs Dijkstra from all the target vertices at once over the reversed edges.
+     *
+     * @return weight of the lightest path from each vertex to any of the target vertices, 0 for the target vertices
+     *     and infinity for the vertices that cannot reach any
+     */
+    private static double[] getDistancesToTargets(GraphIndex<?, ?> index, boolean[] isTarget) {
+        int vertexCount = index.getVertexCount();
+        int[] offsets = index.getOffsets();
+        int[] targets = index.getTargets();
+        double[] weights = index.getWeights();
+        // incoming edges of the vertex v are in range [reverseOffsets[v], reverseOffsets[v + 1]) of reverseEdges
+        int[] reverseOffsets = new int[vertexCount + 1];
+        for (int target : targets) {
+            reverseOffsets[target + 1]++;
+        }
+        for (int v = 0; v < vertexCount; v++) {
+            reverseOffsets[v + 1] += reverseOffsets[v];
+        }
+        int[] reverseEdges = new int[targets.length];
+        int[] reverseSources = new int[targets.length];
+        int[] nextSlot = Arrays.copyOf(reverseOffsets, vertexCount);
+        for (int v = 0; v < vertexCount; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int slot = nextSlot[targets[e]]++;
+                reverseEdges[slot] = e;
+                reverseSources[slot] = v;
+            }
+        }
+        double[] distances = new double[vertexCount];
+        Arrays.fill(distances, Double.POSITIVE_INFINITY);
+        KLowestWeightPaths.MinHeap heap = new KLowestWeightPaths.MinHeap();
+        for (int v = 0; v < vertexCount; v++) {
+            if (isTarget[v]) {
+                distances[v] = 0;
+                heap.add(0, v);
+            }
+        }
+        while (!heap.isEmpty()) {
+            double distance = heap.peekKey();
+            int v = heap.poll();
+            if (distance > distances[v]) {
+                continue; // stale entry of a vertex reached by a lighter path since
+            }
+            for (int r = reverseOffsets[v]; r < reverseOffsets[v + 1]; r++) {
+                double sourceDistance = distance + weights[reverseEdges[r]];
+                if (sourceDistance < distances[reverseSources[r]]) {
+                    distances[reverseSources[r]] = sourceDistance;
+                    heap.add(sourceDistance, reverseSources[r]);
+                }
+            }
+        }
+        return distances;
+    }
+
+    /**
+     * Counts all the paths including non-simple ones from the source vertex to the target vertex without building them.
+     * Unlike {@link #getAllPathsWithWeightLessThan(Object, Object, double)}, which is exponential in the number of
+     * paths, it's pseudo-polynomial: O(weightLimit * (V + E)) time, as paths are counted per (vertex, path weight) state.
+     * Requires edge weights to be positive integers. It's the size of the list the enumeration returns, also when the
+     * vertices are not in the graph: a source vertex that is not in the graph is rejected and a target vertex that is
+     * not in the graph has no path to it.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param weightLimit weight limit of the path, only the paths that have weight less than {@code weightLimit} are counted
+     * @return number of paths from the source vertex to the target vertex, 0 if the target vertex is not in the graph
+     * @throws IllegalArgumentException if the source vertex is not in the graph or any of the edge weights is not a
+     *     positive integer
+     * @throws ArithmeticException if the number of paths doesn't fit into {@code long}
+     */
+    public long countPathsWithWeightLessThan(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        int weightLimit)
+    {
+        Preconditions.checkNotNull(sourceVertex);
+        Preconditions.checkNotNull(targetVertex);
+
+        GraphIndex<V, E> index = new GraphIndex<>(graph);
+        int sourceId = getSourceVertexId(index, sourceVertex);
+        int targetId = index.getVertexId(targetVertex);
+        if (targetId < 0) {
+            return 0;
+        }
+        return WeightBoundedWalkCounter.countWalksFrom(index.getOffsets(), index.getTargets(), index.getIntegerWeights(),
+            sourceId, weightLimit)[targetId];
+    }
+
+    /**
+     * Counts the paths like {@link #countPathsWithWeightLessThan(Object, Object, int)} from the source vertex to each of
+     * the target vertices in one pass, which costs as much as counting them for a single target vertex.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertices the target vertices
+     * @param weightLimit weight limit of the path, only the paths that have weight less than {@code weightLimit} are counted
+     * @return number of paths from the source vertex to each of the target vertices in the order of the target vertices,
+     *     0 for the ones that are not in the graph
+     * @throws IllegalArgumentException if the source vertex is not in the graph or any of the edge weights is not a
+     *     positive integer
+     * @throws ArithmeticException if the number of paths to any vertex doesn't fit into {@code long}
+     */
+    public Map<V, Long> countPathsByTargetWithWeightLessThan(
+        @NotNull V sourceVertex,
+        @NotNull Set<V> targetVertices,
+        int weightLimit)
+    {
+        Preconditions.checkNotNull(sourceVertex);
+        Preconditions.checkNotNull(targetVertices);
+
+        GraphIndex<V, E> index = new GraphIndex<>(graph);
+        long[] pathCounts = WeightBoundedWalkCounter.countWalksFrom(index.getOffsets(), index.getTargets(),
+            index.getIntegerWeights(), getSourceVertexId(index, sourceVertex), weightLimit);
+        Map<V, Long> pathCountsByTarget = new LinkedHashMap<>();
+        for (V targetVertex : targetVertices) {
+            int targetId = index.getVertexId(Preconditions.checkNotNull(targetVertex));
+            pathCountsByTarget.put(targetVertex, targetId < 0 ? 0 : pathCounts[targetId]);
+        }
+        return pathCountsByTarget;
+    }
+
+    /**
+     * Counts the paths from the source vertex to every vertex of the graph in one pass, see
+     * {@link #countPathsByTargetWithWeightLessThan(Object, Set, int)}.
+     *
+     * @return number of paths from the source vertex to each of the vertices that can be reached by a path lighter than
+     *     the limit, in the order of {@link Graph#vertexSet()}
+     */
+    public Map<V, Long> countPathsByTargetWithWeightLessThan(@NotNull V sourceVertex, int weightLimit) {
+        Map<V, Long> pathCountsByTarget = countPathsByTargetWithWeightLessThan(sourceVertex, graph.vertexSet(),
+            weightLimit);
+        pathCountsByTarget.values().removeIf(count -> count == 0);
+        return pathCountsByTarget;
+    }
+
+    /**
+     * Counts the paths like {@link #countPathsWithWeightLessThan(Object, Object, int)}, but by their weight, in the same
+     * pass, so the distribution of the path weights is computed without enumerating the paths.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param weightLimit weight limit of the path, only the paths that have weight less than {@code weightLimit} are counted
+     * @return number of paths from the source vertex to the target vertex indexed by path weight, the length is
+     *     {@code weightLimit} or 0 if the limit is not positive, all zeros if the target vertex is not in the graph
+     * @throws IllegalArgumentException if the source vertex is not in the graph or any of the edge weights is not a
+     *     positive integer
+     * @throws ArithmeticException if the number of paths of any weight doesn't fit into {@code long}
+     */
+    public long[] countPathsByWeightWithWeightLessThan(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        int weightLimit)
+    {
+        Preconditions.checkNotNull(sourceVertex);
+        Preconditions.checkNotNull(targetVertex);
+
+        GraphIndex<V, E> index = new GraphIndex<>(graph);
+        int sourceId = getSourceVertexId(index, sourceVertex);
+        int targetId = index.getVertexId(targetVertex);
+        if (targetId < 0) {
+            return new long[Math.max(weightLimit, 0)];
+        }
+        return WeightBoundedWalkCounter.countWalksByWeight(index.getOffsets(), index.getTargets(),
+            index.getIntegerWeights(), sourceId, targetId, weightLimit);
+    }
+
+    /**
+     * @return id of the source vertex, checked the same way as the enumeration checks it
+     */
+    private static <V> int getSourceVertexId(GraphIndex<V, ?> index, V sourceVertex) {
+        int sourceId = index.getVertexId(sourceVertex);
+        Preconditions.checkArgument(sourceId >= 0, "no such vertex in graph: " + sourceVertex);
+        return sourceId;
+    }
+
+    /**
+     * Counts all the paths including non-simple ones from the source vertex to the target vertex with at most
+     * {@code maxPathLength} edges by their weight without building them, in O(maxPathLength^2 * maxEdgeWeight * E) time
+     * at worst, memory growing with the heaviest path reached rather than with the limit.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param maxPathLength maximal number of edges of the path
+     * @return number of paths from the source vertex to the target vertex indexed by path weight, the length is the
+     *     weight of the heaviest path plus one, at least 1
+     * @throws IllegalArgumentException if any of the edge weights is not a positive integer or a path reaches a weight
+     *     over 2^24 - 1, the histogram would take more than 128 MB then
+     * @throws ArithmeticException if the number of paths of any weight doesn't fit into {@code long}
+     */
+    public long[] countPathsByWeightWithLengthUpToMax(
+        @NotNull V sourceVertex,
+        @NotNull V targetVertex,
+        int maxPathLength)
+    {
+        Preconditions.checkNotNull(sourceVertex);
+        Preconditions.checkNotNull(targetVertex);
+
+        GraphIndex<V, E> index = new GraphIndex<>(graph);
+        int sourceId = index.getVertexId(sourceVertex);
+        int targetId = index.getVertexId(targetVertex);
+        if (sourceId < 0 || targetId < 0) {
+            return new long[1];
+        }
+        return HopBoundedPathCounter.countPathsByWeightFrom(index.getOffsets(), index.getTargets(),
+            index.getIntegerWeights(), sourceId, targetId, maxPathLength);
+    }
+
+    /**
+     * Runs BFS building the prefix tree of all the partial paths. Nodes are created in the order BFS expands them, so the
+     * nodes themselves are the queue and the node to expand next is the one after the last expanded. When the search is
+     * over, the nodes that are not on a path to a target vertex are dropped. If the search has a budget, it stops when
+     * the budget is exceeded and the trie holds the paths found so far.
+     * <p>
+     * Until then every partial path expanded is a node holding its parent, edge and weight, 16 bytes, and its length,
+     * 4 bytes more, if the search has a length limit, so the peak memory is proportional to the number of labels of
+     * the search, not to the paths found. {@link Pruning#DISTANCE_TO_TARGET} keeps the partial paths that cannot reach
+     * a target vertex within the weight limit out of the trie.
+     */
+    private PathTrie<V, E> searchPathTrie(Search search) {
+        int[] offsets = search.offsets;
+        int[] targets = search.targets;
+        double[] weights = search.weights;
+        int[] parents = new int[16];
+        int[] edges = new int[16];
+        double[] nodeWeights = new double[16];
+        // the lengths are needed only to stop at the length limit
+        int[] nodeLengths = search.maxPathLength == Integer.MAX_VALUE ? null : new int[16];
+        long nodeBytes = SearchBudget.TRIE_NODE_BYTES + (nodeLengths == null ? 0 : Integer.BYTES);
+        int[] pathNodes = new int[16];
+        int nodeCount = 1; // the root
+        int pathCount = 0;
+        int peakQueueSize = 1;
+        parents[PathTrie.ROOT] = -1;
+        nodeWeights[PathTrie.ROOT] = 0;
+        for (int node = PathTrie.ROOT; node < nodeCount; node++) {
+            // the nodes after the one being expanded are the queue
+            peakQueueSize = Math.max(peakQueueSize, nodeCount - node);
+            if (nodeLengths != null && nodeLengths[node] >= search.maxPathLength) {
+                continue;
+            }
+            if (search.budget != null && !search.budget.tryExpand(nodeCount * nodeBytes)) {
+                break;
+            }
+            int v = node == PathTrie.ROOT ? search.sourceId : targets[edges[node]];
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                double partialPathWeight = nodeWeights[node] + weights[e];
+                if (!search.canExtend(e, partialPathWeight)) {
+                    continue;
+                }
+                if (nodeCount == parents.length) {
+                    Preconditions.checkState(nodeCount < Integer.MAX_VALUE / 2, "Too many partial paths");
+                    parents = Arrays.copyOf(parents, 2 * nodeCount);
+                    edges = Arrays.copyOf(edges, 2 * nodeCount);
+                    nodeWeights = Arrays.copyOf(nodeWeights, 2 * nodeCount);
+                    if (nodeLengths != null) {
+                        nodeLengths = Arrays.copyOf(nodeLengths, 2 * nodeCount);
+                    }
+                }
+                parents[nodeCount] = node;
+                edges[nodeCount] = e;
+                nodeWeights[nodeCount] = partialPathWeight;
+                if (nodeLengths != null) {
+                    nodeLengths[nodeCount] = nodeLengths[node] + 1;
+                }
+                if (search.isTarget[targets[e]]
+                    && (search.budget == null || search.budget.tryAddResult(SearchBudget.TRIE_PATH_BYTES)))
+                {
+                    if (pathCount == pathNodes.length) {
+                        pathNodes = Arrays.copyOf(pathNodes, 2 * pathCount);
+                    }
+                    pathNodes[pathCount++] = nodeCount;
+                }
+                nodeCount++;
+            }
+        }
+        if (statistics != null) {
+            statistics.add(nodeCount, peakQueueSize);
+        }
+        // keep only the prefixes of the paths, renumbered in order, so parents still precede their children
+        int[] newNodes = new int[nodeCount];
+        newNodes[PathTrie.ROOT] = 1;
+        for (int i = 0; i < pathCount; i++) {
+            for (int node = pathNodes[i]; newNodes[node] == 0; node = parents[node]) {
+                newNodes[node] = 1;
+            }
+        }
+        int keptCount = 0;
+        for (int node = PathTrie.ROOT; node < nodeCount; node++) {
+            if (newNodes[node] != 0) {
+                newNodes[node] = keptCount;
+                parents[keptCount] = node == PathTrie.ROOT ? -1 : newNodes[parents[node]];
+                edges[keptCount] = edges[node];
+                keptCount++;
+            } else {
+                newNodes[node] = -1;
+            }
+        }
+        for (int i = 0; i < pathCount; i++) {
+            pathNodes[i] = newNodes[pathNodes[i]];
+        }
+        return new PathTrie<>(graph, search.index, search.sourceId, Arrays.copyOf(parents, keptCount),
+            Arrays.copyOf(edges, keptCount), Arrays.copyOf(pathNodes, pathCount));
+    }
+
+    /**
+     * Creates a path from source vertex to the target vertex. The path is built by unfolding the label until label
+     * with {@code null} as preceding label is reached.
+     *
+     * @param l label encoding a path from target vertex to the source vertex
+     * @return a path from source vertex to the target vertex
+     */
+    private GraphPath<V, E> buildPathFromLabel(Label<V> l) {
+        double pathWeight = l.getWeight();
+        V targetVertex = l.getAssociatedNode();
+        List<E> edges = new ArrayList<>(l.getLength());
+        Label<V> precedingLabel = l.getPrecedingLabel();
+        do {
+            edges.add(graph.getEdge(precedingLabel.getAssociatedNode(), l.getAssociatedNode()));
+            l = precedingLabel;
+            precedingLabel = precedingLabel.getPrecedingLabel();
+        } while (precedingLabel != null);
+        // reverse because edges were collected in the order from the target vertex to the source vertex
+        Collections.reverse(edges);
+        return new GraphWalk<>(graph, l.getAssociatedNode(), targetVertex, edges, pathWeight);
+    }
+
+    public Graph<V, E> getGraph() {
+        return graph;
+    }
+
+    public SearchStrategy getSearchStrategy() {
+        return searchStrategy;
+    }
+
+    public Pruning getPruning() {
+        return pruning;
+    }
+
+    /**
+     * Defines the order in which the partial paths are expanded.
+     */
+    public enum SearchStrategy {
+        /**
+         * Expands partial paths in the order of their length, so the paths are found in the order of their length too.
+         * Every partial path is kept in memory until it's expanded, so memory grows with the number of partial paths.
+         */
+        BFS,
+        /**
+         * Expands the most recent partial path first, keeping only the current path on a stack of edge ids, so memory
+         * is proportional to the maximal path length and no objects are allocated per expansion.
+         */
+        DFS
+    }
+
+    /**
+     * Defines which partial paths are discarded before they reach the weight limit.
+     */
+    public enum Pruning {
+        /**
+         * Expands a partial path as long as it's lighter than the weight limit.
+         */
+        NONE,
+        /**
+         * Expands a partial path only if its weight plus the weight of the lightest path from its last vertex to a
+         * target vertex is less than the weight limit, like A* does, so the branches that cannot get back to a target
+         * vertex within the limit are cut off. The lightest paths are found once per search by Dijkstra over the
+         * reversed edges. The paths found are the same, in the same order, as long as path weights are sums computed
+         * exactly, e.g. of integer weights such as latencies.
+         */
+        DISTANCE_TO_TARGET
+    }
+
+    /**
+     * Runs BFS over the labels one expansion at a time, i.e. only as far as needed to hand over the next path.
+     */
+    private class LabelSpliterator extends Spliterators.AbstractSpliterator<GraphPath<V, E>> {
+
+        private final Set<V> targetVertices;
+        private final double weightLimit;
+        private final int maxPathLength;
+        private final ToDoubleFunction<V> distanceToTargets; // lower bound of the weight of the rest of a path
+        private final SearchBudget.Tracker budget; // null if the search is unlimited
+        private final Queue<Label<V>> openLabels = new ArrayDeque<>(); // queue containing the labels that will be expanded
+        private final Queue<Label<V>> targetVertexLabels = new ArrayDeque<>(); // labels of the found paths not handed over yet
+        private long expandedLabelCount;
+        private long addedLabelCount; // expanded labels already added to the statistics
+        private int peakQueueSize = 1;
+
+        LabelSpliterator(V sourceVertex, Set<V> targetVertices, double weightLimit, int maxPathLength,
+            ToDoubleFunction<V> distanceToTargets, SearchBudget.Tracker budget)
+        {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.targetVertices = targetVertices;
+            this.weightLimit = weightLimit;
+            this.maxPathLength = maxPathLength;
+            this.distanceToTargets = distanceToTargets;
+            this.budget = budget;
+            openLabels.add(new Label<>(null, sourceVertex));
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super GraphPath<V, E>> action) {
+            while (targetVertexLabels.isEmpty() && !openLabels.isEmpty()) {
+                if (budget != null && !budget.tryExpand(openLabels.size() * SearchBudget.LABEL_BYTES)) {
+                    openLabels.clear();
+                    break;
+                }
+                expand(openLabels.poll());
+            }
+            // added once per path handed over, so a short-circuited stream has its labels counted too
+            if (statistics != null) {
+                statistics.add(expandedLabelCount - addedLabelCount, peakQueueSize);
+                addedLabelCount = expandedLabelCount;
+            }
+            if (targetVertexLabels.isEmpty()) {
+                return false;
+            }
+            action.accept(buildPathFromLabel(targetVertexLabels.poll()));
+            return true;
+        }
+
+        private void expand(Label<V> expandedLabel) {
+            expandedLabelCount++;
+            if (expandedLabel.getLength() >= maxPathLength) {
+                return;
+            }
+            // expand the label by finding all the outgoing edges for the vertex associated with the label
             for (E outgoingEdge : graph.outgoingEdgesOf(expandedLabel.getAssociatedNode())) {
                 V neighbourVertex = graph.getEdgeTarget(outgoingEdge);
                 double partialPathWeight = expandedLabel.getWeight() + graph.getEdgeWeight(outgoingEdge);
-                if (partialPathWeight >= weightLimit) {
+                if (partialPathWeight + distanceToTargets.applyAsDouble(neighbourVertex) >= weightLimit) {
                     continue;
-                } else if (neighbourVertex.equals(targetVertex)) {
-                    targetVertexLabels.add(new Label<>(expandedLabel, neighbourVertex, partialPathWeight));
                 }
-                openLabels.add(new Label<>(expandedLabel, neighbourVertex, partialPathWeight));
+                Label<V> label = new Label<>(expandedLabel, neighbourVertex, partialPathWeight);
+                if (targetVertices.contains(neighbourVertex)) {
+                    targetVertexLabels.add(label);
+                }
+                openLabels.add(label);
             }
+            peakQueueSize = Math.max(peakQueueSize, openLabels.size());
+        }
+    }
+
+    /**
+     * Parameters of a DFS over a {@link GraphIndex} shared by all the subtrees of the search tree.
+     */
+    private class Search {
+
+        private final GraphIndex<V, E> index;
+        private final int[] offsets;
+        private final int[] targets;
+        private final double[] weights;
+        private final int sourceId;
+        private final boolean[] isTarget; // whether the paths ending in the vertex are handed over
+        private final double[] distancesToTargets; // lower bound of the weight of the rest of a path, see Pruning
+        private final double weightLimit;
+        private final int maxPathLength;
+        private final SearchBudget.Tracker budget; // null if the search is unlimited, the subtrees fork it
+
+        Search(GraphIndex<V, E> index, int sourceId, boolean[] isTarget, double[] distancesToTargets, double weightLimit,
+            int maxPathLength, SearchBudget.Tracker budget)
+        {
+            this.index = index;
+            this.offsets = index.getOffsets();
+            this.targets = index.getTargets();
+            this.weights = index.getWeights();
+            this.sourceId = sourceId;
+            this.isTarget = isTarget;
+            this.distancesToTargets = distancesToTargets;
+            this.weightLimit = weightLimit;
+            this.maxPathLength = maxPathLength;
+            this.budget = budget;
+        }
+
+        /**
+         * @return whether the partial path extended by the edge can still become a path within the weight limit
+         */
+        boolean canExtend(int edge, double partialPathWeight) {
+            return partialPathWeight + distancesToTargets[targets[edge]] < weightLimit;
         }
 
-        return buildPathsFromLabels(targetVertexLabels);
+        int getLastVertex(int[] pathEdges, int pathLength) {
+            return pathLength == 0 ? sourceId : targets[pathEdges[pathLength - 1]];
+        }
+
+        GraphPath<V, E> buildPath(int[] pathEdges, int pathLength, double pathWeight) {
+            List<E> edges = new ArrayList<>(pathLength);
+            for (int i = 0; i < pathLength; i++) {
+                edges.add(index.getEdge(pathEdges[i]));
+            }
+            return new GraphWalk<>(graph, index.getVertex(sourceId), index.getVertex(getLastVertex(pathEdges, pathLength)),
+                edges, pathWeight);
+        }
     }
 
     /**
-     * Creates a path from source vertex to the target vertex. The path is built by unfolding each of the labels until label
-     * with {@code null} as preceding label is reached.
+     * Runs iterative DFS over a {@link GraphIndex} one step at a time, i.e. only as far as needed to hand over the next
+     * path. The current path is kept on a stack of edge ids together with the position of the next edge to try and the
+     * path weight at each depth, the stack is grown by doubling when the path gets longer than ever before.
+     * The search can be limited to the subtree of a partial path, which stays at the bottom of the stack and isn't
+     * handed over itself.
+     */
+    private class DepthFirstSpliterator extends Spliterators.AbstractSpliterator<GraphPath<V, E>> {
+
+        private final Search search;
+        private final int[] offsets;
+        private final int[] targets;
+        private final double[] weights;
+        private final int prefixLength;
+        private final SearchBudget.Tracker budget; // null if the search is unlimited
+        private int[] pathEdges; // edge ids of the current path
+        private int[] nextEdges; // id of the next edge to try at each depth
+        private double[] pathWeights; // weight of the current path up to each depth
+        private int depth;
+        private long pushCount;
+        private long addedPushCount; // pushes already added to the statistics
+        private int maxDepth;
+
+        DepthFirstSpliterator(Search search, int[] prefixEdges, int prefixLength, double prefixWeight,
+            SearchBudget.Tracker budget)
+        {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.search = search;
+            this.offsets = search.offsets;
+            this.targets = search.targets;
+            this.weights = search.weights;
+            this.prefixLength = prefixLength;
+            this.budget = budget;
+            this.pathEdges = Arrays.copyOf(prefixEdges, prefixLength + 16);
+            this.nextEdges = new int[prefixLength + 17];
+            this.pathWeights = new double[prefixLength + 17];
+            this.depth = prefixLength;
+            this.maxDepth = prefixLength;
+            nextEdges[depth] = offsets[search.getLastVertex(prefixEdges, prefixLength)];
+            pathWeights[depth] = prefixWeight;
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super GraphPath<V, E>> action) {
+            if (!advance()) {
+                return false;
+            }
+            // added once per path handed over, so a short-circuited stream has its labels counted too
+            addStatistics();
+            action.accept(search.buildPath(pathEdges, depth, pathWeights[depth]));
+            return true;
+        }
+
+        /**
+         * Moves to the next path that ends in the target vertex.
+         *
+         * @return false if there are no more paths
+         */
+        boolean advance() {
+            while (depth >= prefixLength) {
+                int vertex = search.getLastVertex(pathEdges, depth);
+                if (depth >= search.maxPathLength || nextEdges[depth] == offsets[vertex + 1]) {
+                    depth--; // all the outgoing edges are tried, backtrack
+                    continue;
+                }
+                int edge = nextEdges[depth]++;
+                double partialPathWeight = pathWeights[depth] + weights[edge];
+                if (!search.canExtend(edge, partialPathWeight)) {
+                    continue;
+                }
+                if (budget != null && !budget.tryExpand(depth * SearchBudget.STACK_FRAME_BYTES)) {
+                    depth = prefixLength - 1; // the search is over
+                    break;
+                }
+                push(edge, partialPathWeight);
+                if (search.isTarget[targets[edge]]) {
+                    return true;
+                }
+            }
+            addStatistics();
+            return false;
+        }
+
+        /**
+         * Adds the partial paths pushed, which are the labels of DFS, and the deepest stack since the last call to the
+         * statistics of the search.
+         */
+        private void addStatistics() {
+            if (statistics != null) {
+                statistics.add(pushCount - addedPushCount, maxDepth - prefixLength);
+                addedPushCount = pushCount;
+            }
+        }
+
+        private void push(int edge, double partialPathWeight) {
+            if (depth == pathEdges.length) {
+                pathEdges = Arrays.copyOf(pathEdges, 2 * depth);
+                nextEdges = Arrays.copyOf(nextEdges, 2 * depth + 1);
+                pathWeights = Arrays.copyOf(pathWeights, 2 * depth + 1);
+            }
+            pathEdges[depth++] = edge;
+            nextEdges[depth] = offsets[targets[edge]];
+            pathWeights[depth] = partialPathWeight;
+            pushCount++;
+            maxDepth = Math.max(maxDepth, depth);
+        }
+    }
+
+    /**
+     * Searches the subtree of a partial path from the source vertex, either by DFS or by forking a subtask per outgoing
+     * edge of the last vertex of the partial path. Splitting stops at {@link #MAX_SPLIT_PATH_LENGTH} or when the
+     * worker has more than {@link #MAX_SURPLUS_TASKS} tasks waiting to be stolen, so there are just enough tasks to keep
+     * all the workers busy. The results of the subtasks are merged in the order of the edges, which is the DFS order.
      *
-     * @param targetVertexLabels list of labels, each of which encodes a path from target vertex to the source vertex
-     * @return a list of paths from source vertex to the target vertex
+     * @param <R> the result type
      */
-    private List<GraphPath<V, E>> buildPathsFromLabels(List<Label<V>> targetVertexLabels) {
-        List<GraphPath<V, E>> allPaths = new ArrayList<>();
-        for (Label<V> l : targetVertexLabels) {
-            double pathWeight = l.getWeight();
-            V targetVertex = l.getAssociatedNode();
-            List<E> edges = new ArrayList<>();
-            Label<V> precedingLabel = l.getPrecedingLabel();
-            do {
-                edges.add(graph.getEdge(precedingLabel.getAssociatedNode(), l.getAssociatedNode()));
-                l = precedingLabel;
-                precedingLabel = precedingLabel.getPrecedingLabel();
-            } while (precedingLabel != null);
-            // reverse because edges were collected in the order from the target vertex to the source vertex
-            Collections.reverse(edges);
-            allPaths.add(new GraphWalk<>(graph, l.getAssociatedNode(), targetVertex, edges, pathWeight));
+    private abstract class SubtreeTask<R> extends RecursiveTask<R> {
+
+        private static final long serialVersionUID = 1L;
+
+        final Search search;
+        final int[] prefixEdges; // edge ids of the partial path
+        final double prefixWeight;
+
+        SubtreeTask(Search search, int[] prefixEdges, double prefixWeight) {
+            this.search = search;
+            this.prefixEdges = prefixEdges;
+            this.prefixWeight = prefixWeight;
+        }
+
+        @Override
+        protected R compute() {
+            int prefixLength = prefixEdges.length;
+            if (search.budget != null && search.budget.isExceeded()) {
+                return merge(Collections.emptyList());
+            }
+            if (prefixLength >= MAX_SPLIT_PATH_LENGTH || prefixLength >= search.maxPathLength
+                || getSurplusQueuedTaskCount() > MAX_SURPLUS_TASKS)
+            {
+                SearchBudget.Tracker budget = search.budget == null ? null : search.budget.fork();
+                R result = searchSubtree(new DepthFirstSpliterator(search, prefixEdges, prefixLength, prefixWeight,
+                    budget), budget);
+                if (budget != null) {
+                    budget.flush();
+                }
+                return result;
+            }
+            int vertex = search.getLastVertex(prefixEdges, prefixLength);
+            List<SubtreeTask<R>> subtasks = new ArrayList<>(search.offsets[vertex + 1] - search.offsets[vertex]);
+            for (int e = search.offsets[vertex]; e < search.offsets[vertex + 1]; e++) {
+                double partialPathWeight = prefixWeight + search.weights[e];
+                if (search.canExtend(e, partialPathWeight)) {
+                    int[] partialPathEdges = Arrays.copyOf(prefixEdges, prefixLength + 1);
+                    partialPathEdges[prefixLength] = e;
+                    subtasks.add(createSubtask(partialPathEdges, partialPathWeight));
+                }
+            }
+            if (statistics != null) {
+                statistics.add(subtasks.size(), 0);
+            }
+            ForkJoinTask.invokeAll(subtasks);
+            return merge(subtasks);
+        }
+
+        /**
+         * @return true if the partial path itself is a path from the source to a target vertex
+         */
+        boolean isPath() {
+            return prefixEdges.length > 0 && search.isTarget[search.getLastVertex(prefixEdges, prefixEdges.length)];
         }
-        return allPaths;
+
+        abstract SubtreeTask<R> createSubtask(int[] partialPathEdges, double partialPathWeight);
+
+        /**
+         * @param budget tracker of the budget of the spliterator, null if the search is unlimited
+         * @return result for the partial path and its subtree searched by the given spliterator
+         */
+        abstract R searchSubtree(DepthFirstSpliterator spliterator, SearchBudget.Tracker budget);
+
+        /**
+         * @return result for the partial path and the subtrees of the given completed subtasks
+         */
+        abstract R merge(List<SubtreeTask<R>> subtasks);
     }
 
-    public Graph<V, E> getGraph() {
-        return graph;
+    private class PathSearchTask extends SubtreeTask<List<GraphPath<V, E>>> {
+
+        private static final long serialVersionUID = 1L;
+
+        PathSearchTask(Search search, int[] prefixEdges, double prefixWeight) {
+            super(search, prefixEdges, prefixWeight);
+        }
+
+        @Override
+        SubtreeTask<List<GraphPath<V, E>>> createSubtask(int[] partialPathEdges, double partialPathWeight) {
+            return new PathSearchTask(search, partialPathEdges, partialPathWeight);
+        }
+
+        @Override
+        List<GraphPath<V, E>> searchSubtree(DepthFirstSpliterator spliterator, SearchBudget.Tracker budget) {
+            List<GraphPath<V, E>> paths = newPathList();
+            if (budget == null) {
+                spliterator.forEachRemaining(paths::add);
+                return paths;
+            }
+            while (!budget.isExceeded() && spliterator.tryAdvance(paths::add)) {
+                if (!budget.tryAddPath(paths.get(paths.size() - 1).getLength())) {
+                    paths.remove(paths.size() - 1); // one path more than the budget allows
+                }
+            }
+            return paths;
+        }
+
+        @Override
+        List<GraphPath<V, E>> merge(List<SubtreeTask<List<GraphPath<V, E>>>> subtasks) {
+            List<GraphPath<V, E>> paths = newPathList();
+            for (SubtreeTask<List<GraphPath<V, E>>> subtask : subtasks) {
+                paths.addAll(subtask.join());
+            }
+            return paths;
+        }
+
+        private List<GraphPath<V, E>> newPathList() {
+            List<GraphPath<V, E>> paths = new ArrayList<>();
+            // DFS hands over a path before the paths that extend it
+            if (isPath() && (search.budget == null || search.budget.tryAddPath(prefixEdges.length))) {
+                paths.add(search.buildPath(prefixEdges, prefixEdges.length, prefixWeight));
+            }
+            return paths;
+        }
+    }
+
+    private class PathCountTask extends SubtreeTask<Long> {
+
+        private static final long serialVersionUID = 1L;
+
+        PathCountTask(Search search, int[] prefixEdges, double prefixWeight) {
+            super(search, prefixEdges, prefixWeight);
+        }
+
+        @Override
+        SubtreeTask<Long> createSubtask(int[] partialPathEdges, double partialPathWeight) {
+            return new PathCountTask(search, partialPathEdges, partialPathWeight);
+        }
+
+        @Override
+        Long searchSubtree(DepthFirstSpliterator spliterator, SearchBudget.Tracker budget) {
+            long count = isPath() ? 1 : 0;
+            while (spliterator.advance()) {
+                count++;
+            }
+            return count;
+        }
+
+        @Override
+        Long merge(List<SubtreeTask<Long>> subtasks) {
+            long count = isPath() ? 1 : 0;
+            for (SubtreeTask<Long> subtask : subtasks) {
+                count += subtask.join();
+            }
+            return count;
+        }
     }
 
     /**
@@ -112,6 +1304,7 @@ public class AllSimpleAndNonSimpleDirectedPaths<V, E> {
         private final Label<V> precedingLabel;
         private final V associatedNode;
         private final double weight;
+        private final int length;
 
         public Label(Label<V> precedingLabel, @NotNull V associatedNode) {
             this(precedingLabel, associatedNode, 0.);
@@ -122,6 +1315,7 @@ public class AllSimpleAndNonSimpleDirectedPaths<V, E> {
             this.associatedNode = Preconditions.checkNotNull(associatedNode);
             Preconditions.checkArgument(weight >= 0);
             this.weight = weight;
+            this.length = precedingLabel == null ? 0 : precedingLabel.getLength() + 1;
         }
 
         public Label<V> getPrecedingLabel() {
@@ -136,6 +1330,10 @@ public class AllSimpleAndNonSimpleDirectedPaths<V, E> {
             return weight;
         }
 
+        public int getLength() {
+            return length;
+        }
+
         @Override
         public String toString() {
             return "{" +
@@ -0,0 +1,244 @@
+package com.example.tracing.algorithm;
+
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.ConnectionChange;
+import com.example.tracing.model.Microservice;
+import com.example.tracing.model.Query;
+import com.example.tracing.model.Query.Kind;
+import com.google.inject.internal.util.Preconditions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Answers many queries about the same graph at once. The counting queries are grouped by source microservice and each
+ * group shares one pass of dynamic programming: the hop-bounded ones are answered from the vectors of path counts
+ * propagated hop by hop up to the highest limit of the group, the latency-bounded ones by counting up to the highest
+ * latency limit of the group. The path counts by hops are kept in a {@link HopCountCache} and the shortest latencies in a
+ * {@link ShortestLatencyIndex}, which runs one Dijkstra per source, so they are shared by the batches executed by the
+ * same instance too. Walk latencies are looked up in an {@link EdgeHashIndex}. The counting queries to a target in an
+ * earlier {@link StronglyConnectedComponents component} than the source are answered without counting, and the ones from
+ * a source that reaches no cycle by one pass of topological dynamic programming whenever the limit is above the longest
+ * path to the target. Results are returned in the order of the queries.
+ */
+public class BatchQueryExecutor {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BatchQueryExecutor.class);
+    public static final String NO_SUCH_TRACE = "NO SUCH TRACE";
+    public static final String COUNT_OVERFLOWS = "COUNT OVERFLOWS";
+
+    private final CompactServiceGraph graph;
+    private final ShortestLatencyIndex shortestLatencies;
+    private final HopCountCache hopCounts;
+    private final EdgeHashIndex edges;
+    private final StronglyConnectedComponents components;
+
+    public BatchQueryExecutor(@NotNull CompactServiceGraph graph) {
+        this(Preconditions.checkNotNull(graph), new ShortestLatencyIndex(graph), new HopCountCache(graph),
+            new StronglyConnectedComponents(graph));
+    }
+
+    private BatchQueryExecutor(CompactServiceGraph graph, ShortestLatencyIndex shortestLatencies,
+        HopCountCache hopCounts, StronglyConnectedComponents components)
+    {
+        this.graph = graph;
+        this.shortestLatencies = shortestLatencies;
+        this.hopCounts = hopCounts;
+        this.edges = new EdgeHashIndex(graph);
+        this.components = components;
+    }
+
+    /**
+     * Creates the executor of the graph with the changes applied, repairing the shortest latencies and keeping the path
+     * counts the changes don't affect, and the components if only latencies change, instead of computing them again.
+     * This executor keeps answering about the graph without the changes.
+     *
+     * @param changes changes of the connections, applied in order
+     * @return executor of the changed graph
+     * @throws IllegalArgumentException if an added connection is already in the graph or a removed or updated one isn't
+     */
+    public BatchQueryExecutor withChanges(@NotNull List<ConnectionChange> changes) {
+        CompactServiceGraph updatedGraph = graph.withChanges(changes);
+        LOG.debug("Applied {} changes to {}", changes.size(), updatedGraph);
+        return new BatchQueryExecutor(updatedGraph, shortestLatencies.withChanges(updatedGraph, changes),
+            hopCounts.withChanges(updatedGraph, changes), components.withChanges(updatedGraph, changes));
+    }
+
+    /**
+     * @param queries queries about the graph
+     * @return result of each query: the latency or {@link #NO_SUCH_TRACE} for the latency queries and the number of
+     *     traces or {@link #COUNT_OVERFLOWS} for the counting ones
+     */
+    public List<String> execute(@NotNull List<Query> queries) {
+        String[] results = new String[queries.size()];
+        // positions of the counting queries grouped by source vertex id
+        Map<Integer, List<Integer>> hopQueries = new LinkedHashMap<>();
+        Map<Integer, List<Integer>> latencyQueries = new LinkedHashMap<>();
+        for (int i = 0; i < queries.size(); i++) {
+            Query query = queries.get(i);
+            int sourceId = graph.getVertexId(query.getSourceVertex());
+            int targetId = graph.getVertexId(query.getTargetVertex());
+            switch (query.getKind()) {
+                case WALK_LATENCY:
+                    results[i] = getWalkLatency(query.getMicroservices());
+                    break;
+                case SHORTEST_LATENCY:
+                    int latency = shortestLatencies.getShortestLatency(sourceId, targetId);
+                    results[i] = latency == ShortestLatencyIndex.NO_SUCH_TRACE ? NO_SUCH_TRACE : Integer.toString(latency);
+                    break;
+                case COUNT_UP_TO_HOPS:
+                case COUNT_EXACT_HOPS:
+                case COUNT_LATENCY_LESS_THAN:
+                    if (sourceId == CompactServiceGraph.NO_SUCH_VERTEX || targetId == CompactServiceGraph.NO_SUCH_VERTEX
+                        || !components.mayHavePath(sourceId, targetId))
+                    {
+                        results[i] = "0";
+                    } else {
+                        Map<Integer, List<Integer>> group =
+                            query.getKind() == Kind.COUNT_LATENCY_LESS_THAN ? latencyQueries : hopQueries;
+                        group.computeIfAbsent(sourceId, id -> new ArrayList<>()).add(i);
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown query kind " + query.getKind());
+            }
+        }
+        LOG.debug("Counting hops from {} and latencies from {} sources", hopQueries.size(), latencyQueries.size());
+        hopQueries.forEach((sourceId, positions) -> countHops(queries, sourceId, positions, results));
+        latencyQueries.forEach((sourceId, positions) -> countLatencies(queries, sourceId, positions, results));
+        return Arrays.asList(results);
+    }
+
+    public CompactServiceGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return index of the connections of the graph for validating traces given by vertex ids in bulk
+     */
+    public EdgeHashIndex getEdgeHashIndex() {
+        return edges;
+    }
+
+    /**
+     * @return strongly connected components of the graph, shared by the executors of the same topology
+     */
+    public StronglyConnectedComponents getComponents() {
+        return components;
+    }
+
+    private String getWalkLatency(List<Microservice> microservices) {
+        int[] vertexIds = new int[microservices.size()];
+        for (int i = 0; i < vertexIds.length; i++) {
+            vertexIds[i] = graph.getVertexId(microservices.get(i));
+        }
+        long latency = edges.getWalkLatency(vertexIds);
+        return latency == EdgeHashIndex.NO_SUCH_TRACE ? NO_SUCH_TRACE : Long.toString(latency);
+    }
+
+    /**
+     * Answers the hop-bounded queries from the count vectors of the source, the vectors are computed for the highest
+     * limit of the queries and reused by the later batches. If the source reaches no cycle, the queries whose limit
+     * is above the longest path to the target are answered from the paths of the DAG instead.
+     */
+    private void countHops(List<Query> queries, int sourceId, List<Integer> positions, String[] results) {
+        StronglyConnectedComponents.DagPaths dagPaths =
+            components.isAcyclicFrom(sourceId) ? components.getDagPathsFrom(sourceId) : null;
+        for (int position : positions) {
+            Query query = queries.get(position);
+            int targetId = graph.getVertexId(query.getTargetVertex());
+            boolean upToMax = query.getKind() == Kind.COUNT_UP_TO_HOPS;
+            try {
+                long count;
+                if (dagPaths != null && upToMax && dagPaths.getMaxPathLength(targetId) <= query.getLimit()) {
+                    count = dagPaths.getPathCount(targetId);
+                } else if (dagPaths != null && !upToMax && dagPaths.getMaxPathLength(targetId) < query.getLimit()) {
+                    // no path is that long
+                    count = 0;
+                } else {
+                    count = upToMax
+                        ? hopCounts.countPathsWithLengthUpToMax(sourceId, targetId, query.getLimit())
+                        : hopCounts.countPathsWithExactLength(sourceId, targetId, query.getLimit());
+                }
+                results[position] = Long.toString(count);
+            } catch (ArithmeticException e) {
+                LOG.error("Number of traces of the query {} overflows", query);
+                results[position] = COUNT_OVERFLOWS;
+            }
+        }
+    }
+
+    /**
+     * Answers the latency-bounded queries of the source. If the source reaches no cycle, the queries whose limit is
+     * above the longest path to the target are answered from the paths of the DAG, the others are counted by
+     * {@link #countLatencyLimits(List, int, List, String[])}.
+     */
+    private void countLatencies(List<Query> queries, int sourceId, List<Integer> positions, String[] results) {
+        if (!components.isAcyclicFrom(sourceId)) {
+            countLatencyLimits(queries, sourceId, positions, results);
+            return;
+        }
+        StronglyConnectedComponents.DagPaths dagPaths = components.getDagPathsFrom(sourceId);
+        List<Integer> unanswered = new ArrayList<>();
+        for (int position : positions) {
+            Query query = queries.get(position);
+            int targetId = graph.getVertexId(query.getTargetVertex());
+            if (dagPaths.getMaxPathWeight(targetId) >= query.getLimit()) {
+                unanswered.add(position);
+                continue;
+            }
+            try {
+                results[position] = Long.toString(dagPaths.getPathCount(targetId));
+            } catch (ArithmeticException e) {
+                LOG.error("Number of traces of the query {} overflows", query);
+                results[position] = COUNT_OVERFLOWS;
+            }
+        }
+        if (!unanswered.isEmpty()) {
+            countLatencyLimits(queries, sourceId, unanswered, results);
+        }
+    }
+
+    /**
+     * Counts the paths from the source for all the distinct latency limits of the queries in one pass. If a count
+     * overflows, the queries with the highest limit get {@link #COUNT_OVERFLOWS} and the lower limits are counted again
+     * without it, since a pass up to a lower limit never reaches the heavier paths that overflowed.
+     */
+    private void countLatencyLimits(List<Query> queries, int sourceId, List<Integer> positions, String[] results) {
+        int[] weightLimits = positions.stream().mapToInt(position -> queries.get(position).getLimit())
+            .sorted()
+            .distinct()
+            .toArray();
+        for (int limitCount = weightLimits.length; limitCount > 0; limitCount--) {
+            int[] countedLimits = Arrays.copyOf(weightLimits, limitCount);
+            long[][] pathCounts;
+            try {
+                pathCounts = WeightBoundedWalkCounter.countWalksFrom(graph.getOffsets(), graph.getTargets(),
+                    graph.getLatencies(), sourceId, countedLimits);
+            } catch (ArithmeticException e) {
+                int overflowingLimit = weightLimits[limitCount - 1];
+                LOG.error("Number of traces from {} with latency less than {} overflows", graph.getName(sourceId),
+                    overflowingLimit);
+                for (int position : positions) {
+                    if (queries.get(position).getLimit() == overflowingLimit) {
+                        results[position] = COUNT_OVERFLOWS;
+                    }
+                }
+                continue;
+            }
+            for (int position : positions) {
+                Query query = queries.get(position);
+                int limit = Arrays.binarySearch(countedLimits, query.getLimit());
+                if (limit >= 0) {
+                    results[position] = Long.toString(pathCounts[limit][graph.getVertexId(query.getTargetVertex())]);
+                }
+            }
+            return;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.tracing.algorithm;
+
+/**
+ * Lets another thread stop the searches given a {@link SearchBudget} with this token, e.g. when the client that asked
+ * for the traces disconnects. Cancellation is cooperative: a search checks the token every
+ * {@value SearchBudget#CHECK_INTERVAL} labels and returns the paths found so far as a truncated {@link PartialResult}.
+ * A cancelled token stays cancelled, so the searches started with it afterwards stop right away.
+ */
+public final class CancellationToken {
+
+    private volatile boolean cancelled;
+
+    public void cancel() {
+        cancelled = true;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.tracing.algorithm;
+
+import com.example.tracing.model.CompactServiceGraph;
+import com.google.inject.internal.util.Preconditions;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Open-addressing hash table of the connections of a {@link CompactServiceGraph} keyed by the source and target vertex
+ * ids packed into a {@code long}, {@code sourceId << 32 | targetId}. A lookup is a multiplicative hash and a linear
+ * probe over two flat arrays kept at most half full, so validating a trace given by vertex ids costs a few memory reads
+ * per hop instead of the binary search of {@link CompactServiceGraph#findEdge(int, int)}, and allocates nothing.
+ * Traces are validated one by one or in batches flattened into one array of vertex ids, see
+ * {@link #getWalkLatencies(int[], int[])}.
+ */
+public final class EdgeHashIndex {
+
+    public static final long NO_SUCH_TRACE = -1;
+    // packed ids are never negative, so this key marks an empty slot
+    private static final long EMPTY = -1;
+    // 2^64 divided by the golden ratio, spreads the packed ids over the high bits of the product
+    private static final long MULTIPLIER = 0x9E3779B97F4A7C15L;
+
+    private final CompactServiceGraph graph;
+    private final long[] keys;
+    private final int[] edgeIds;
+    private final int shift;
+
+    public EdgeHashIndex(@NotNull CompactServiceGraph graph) {
+        this.graph = Preconditions.checkNotNull(graph);
+        // at least twice as many slots as connections
+        int capacityBits = 64 - Long.numberOfLeadingZeros(Math.max(2L * graph.getEdgeCount(), 2) - 1);
+        Preconditions.checkArgument(capacityBits < 31, "Graph has too many connections");
+        this.keys = new long[1 << capacityBits];
+        this.edgeIds = new int[keys.length];
+        this.shift = 64 - capacityBits;
+        Arrays.fill(keys, EMPTY);
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        for (int v = 0; v < graph.getVertexCount(); v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                long key = pack(v, targets[e]);
+                int slot = slot(key);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & (keys.length - 1);
+                }
+                keys[slot] = key;
+                edgeIds[slot] = e;
+            }
+        }
+    }
+
+    /**
+     * @return id of the connection or {@link CompactServiceGraph#NO_SUCH_EDGE} if the vertices are not connected or
+     *     any of the ids is negative
+     */
+    public int findEdge(int sourceId, int targetId) {
+        if ((sourceId | targetId) < 0) {
+            return CompactServiceGraph.NO_SUCH_EDGE;
+        }
+        long key = pack(sourceId, targetId);
+        for (int slot = slot(key); keys[slot] != EMPTY; slot = (slot + 1) & (keys.length - 1)) {
+            if (keys[slot] == key) {
+                return edgeIds[slot];
+            }
+        }
+        return CompactServiceGraph.NO_SUCH_EDGE;
+    }
+
+    /**
+     * @param vertexIds ids of the microservices of the trace in order, e.g. from {@link CompactServiceGraph#getVertexId(String)}
+     * @return latency of the trace, 0 for a single microservice, or {@link #NO_SUCH_TRACE} if any two consecutive
+     *     microservices are not connected or any id is {@link CompactServiceGraph#NO_SUCH_VERTEX}
+     */
+    public long getWalkLatency(@NotNull int[] vertexIds) {
+        return getWalkLatency(vertexIds, 0, vertexIds.length);
+    }
+
+    /**
+     * Computes the latency like {@link #getWalkLatency(int[])} of the trace in range [{@code from}, {@code to}) of the
+     * array.
+     */
+    public long getWalkLatency(@NotNull int[] vertexIds, int from, int to) {
+        Preconditions.checkArgument(from >= 0 && from < to && to <= vertexIds.length, "Trace must have a microservice");
+        if (vertexIds[from] < 0 || vertexIds[from] >= graph.getVertexCount()) {
+            return NO_SUCH_TRACE;
+        }
+        int[] latencies = graph.getLatencies();
+        long latency = 0;
+        for (int i = from + 1; i < to; i++) {
+            int edge = findEdge(vertexIds[i - 1], vertexIds[i]);
+            if (edge == CompactServiceGraph.NO_SUCH_EDGE) {
+                return NO_SUCH_TRACE;
+            }
+            latency += latencies[edge];
+        }
+        return latency;
+    }
+
+    /**
+     * Computes the latencies of a batch of traces flattened into one array the way the connections of a graph are:
+     * trace {@code i} is the range [{@code traceOffsets[i]}, {@code traceOffsets[i + 1]}) of {@code vertexIds}.
+     *
+     * @param vertexIds ids of the microservices of all the traces
+     * @param traceOffsets start of each trace followed by the end of the last one
+     * @return latency of each trace or {@link #NO_SUCH_TRACE}, see {@link #getWalkLatency(int[])}
+     */
+    public long[] getWalkLatencies(@NotNull int[] vertexIds, @NotNull int[] traceOffsets) {
+        Preconditions.checkArgument(traceOffsets.length > 0, "Trace offsets must end with the end of the last trace");
+        long[] latencies = new long[traceOffsets.length - 1];
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = getWalkLatency(vertexIds, traceOffsets[i], traceOffsets[i + 1]);
+        }
+        return latencies;
+    }
+
+    /**
+     * @param traces ids of the microservices of each trace
+     * @return latency of each trace or {@link #NO_SUCH_TRACE}, see {@link #getWalkLatency(int[])}
+     */
+    public long[] getWalkLatencies(@NotNull int[][] traces) {
+        long[] latencies = new long[traces.length];
+        for (int i = 0; i < traces.length; i++) {
+            latencies[i] = getWalkLatency(traces[i]);
+        }
+        return latencies;
+    }
+
+    public CompactServiceGraph getGraph() {
+        return graph;
+    }
+
+    private int slot(long key) {
+        return (int) ((key * MULTIPLIER) >>> shift);
+    }
+
+    private static long pack(int sourceId, int targetId) {
+        return ((long) sourceId << 32) | targetId;
+    }
+}
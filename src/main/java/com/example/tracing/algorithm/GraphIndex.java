@@ -0,0 +1,103 @@
+package com.example.tracing.algorithm;
+
+import com.google.inject.internal.util.Preconditions;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jgrapht.Graph;
+
+/**
+ * Snapshot of a graph where vertices are mapped to dense int ids and outgoing edges are stored in compressed sparse row
+ * layout, i.e. the outgoing edges of the vertex {@code v} are the ones in range [{@code offsets[v]}, {@code offsets[v + 1]}).
+ * Used by the algorithms that would otherwise pay a hash lookup per {@code outgoingEdgesOf}/{@code getEdgeTarget} call.
+ *
+ * @param <V> the graph vertex type
+ * @param <E> the graph edge type
+ */
+class GraphIndex<V, E> {
+
+    static final String ERROR_WEIGHTS_MUST_BE_POSITIVE_INTEGERS = "Edge weights must be positive integers";
+
+    private final List<V> vertices;
+    private final Map<V, Integer> vertexIds;
+    private final int[] offsets;
+    private final int[] targets;
+    private final List<E> edges;
+    private final double[] weights;
+
+    GraphIndex(@NotNull Graph<V, E> graph) {
+        int vertexCount = graph.vertexSet().size();
+        int edgeCount = graph.edgeSet().size();
+        this.vertices = new ArrayList<>(graph.vertexSet());
+        this.vertexIds = new HashMap<>(2 * vertexCount);
+        for (int i = 0; i < vertexCount; i++) {
+            vertexIds.put(vertices.get(i), i);
+        }
+        this.offsets = new int[vertexCount + 1];
+        this.targets = new int[edgeCount];
+        this.edges = new ArrayList<>(edgeCount);
+        this.weights = new double[edgeCount];
+        int edgeId = 0;
+        for (int v = 0; v < vertexCount; v++) {
+            offsets[v] = edgeId;
+            for (E edge : graph.outgoingEdgesOf(vertices.get(v))) {
+                targets[edgeId] = vertexIds.get(graph.getEdgeTarget(edge));
+                weights[edgeId] = graph.getEdgeWeight(edge);
+                edges.add(edge);
+                edgeId++;
+            }
+        }
+        offsets[vertexCount] = edgeId;
+    }
+
+    int getVertexCount() {
+        return vertices.size();
+    }
+
+    /**
+     * @return id of the vertex or -1 if the vertex is not in the graph
+     */
+    int getVertexId(V vertex) {
+        Integer id = vertexIds.get(vertex);
+        return id == null ? -1 : id;
+    }
+
+    V getVertex(int vertexId) {
+        return vertices.get(vertexId);
+    }
+
+    int[] getOffsets() {
+        return offsets;
+    }
+
+    int[] getTargets() {
+        return targets;
+    }
+
+    E getEdge(int edgeId) {
+        return edges.get(edgeId);
+    }
+
+    double[] getWeights() {
+        return weights;
+    }
+
+    /**
+     * Returns edge weights as ints, which is required by the algorithms doing dynamic programming over path weight.
+     *
+     * @return edge weights indexed by edge id
+     * @throws IllegalArgumentException if any of the edge weights is not a positive integer
+     */
+    int[] getIntegerWeights() {
+        int[] integerWeights = new int[weights.length];
+        for (int i = 0; i < weights.length; i++) {
+            double weight = weights[i];
+            Preconditions.checkArgument(weight > 0 && weight <= Integer.MAX_VALUE && weight == Math.rint(weight),
+                ERROR_WEIGHTS_MUST_BE_POSITIVE_INTEGERS);
+            integerWeights[i] = (int) weight;
+        }
+        return integerWeights;
+    }
+}
@@ -0,0 +1,345 @@
+package com.example.tracing.algorithm;
+
+import com.google.inject.internal.util.Preconditions;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphTests;
+
+/**
+ * Counts non-simple paths (walks) with a given number of edges, i.e. hops, without enumerating them. The number of paths
+ * of exactly k hops between each pair of vertices is the k-th power of the adjacency matrix, so all pairs are answered by
+ * repeated squaring in O(V^3 * log k), and a single pair by propagating a vector of path counts k times along the edges
+ * in O(k * (V + E)).
+ * The empty path from a vertex to itself is not counted, i.e. only paths with at least one edge are counted.
+ *
+ * @param <V> the graph vertex type
+ * @param <E> the graph edge type
+ */
+public class HopBoundedPathCounter<V, E> {
+
+    // heaviest weight a histogram of the counting by weight holds, the histogram takes 128 MB then
+    static final int MAX_HISTOGRAM_WEIGHT = (1 << 24) - 1;
+
+    private final GraphIndex<V, E> index;
+    private long[][] adjacencyMatrix;
+
+    /**
+     * Creates a new instance.
+     *
+     * @param graph the input graph that must be a directed graph with no self-loops.
+     */
+    public HopBoundedPathCounter(@NotNull Graph<V, E> graph) {
+        Preconditions.checkArgument(!GraphTests.hasSelfLoops(graph), "Graph may not have self-loops");
+        GraphTests.requireDirected(graph);
+        this.index = new GraphIndex<>(graph);
+    }
+
+    /**
+     * Counts the paths from the source vertex to the target vertex that have exactly {@code pathLength} edges.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param pathLength number of edges of the path
+     * @return number of paths from the source vertex to the target vertex
+     * @throws ArithmeticException if the number of paths doesn't fit into {@code long}
+     */
+    public long countPathsWithExactLength(@NotNull V sourceVertex, @NotNull V targetVertex, int pathLength) {
+        return countPaths(sourceVertex, targetVertex, pathLength, false);
+    }
+
+    /**
+     * Counts the paths from the source vertex to the target vertex that have at most {@code maxPathLength} edges.
+     *
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param maxPathLength maximal number of edges of the path
+     * @return number of paths from the source vertex to the target vertex
+     * @throws ArithmeticException if the number of paths doesn't fit into {@code long}
+     */
+    public long countPathsWithLengthUpToMax(@NotNull V sourceVertex, @NotNull V targetVertex, int maxPathLength) {
+        return countPaths(sourceVertex, targetVertex, maxPathLength, true);
+    }
+
+    /**
+     * Counts the paths with exactly {@code pathLength} edges between all pairs of vertices in one pass.
+     *
+     * @param pathLength number of edges of the path
+     * @return matrix where the element [i][j] is the number of paths from the vertex {@link #getVertex(int) i} to the
+     *     vertex {@link #getVertex(int) j}
+     * @throws ArithmeticException if the number of paths doesn't fit into {@code long}
+     */
+    public long[][] getExactLengthPathCounts(int pathLength) {
+        return pathLength <= 0 ? new long[getVertexCount()][getVertexCount()] : power(pathLength);
+    }
+
+    /**
+     * Counts the paths with at most {@code maxPathLength} edges between all pairs of vertices in one pass.
+     *
+     * @param maxPathLength maximal number of edges of the path
+     * @return matrix where the element [i][j] is the number of paths from the vertex {@link #getVertex(int) i} to the
+     *     vertex {@link #getVertex(int) j}
+     * @throws ArithmeticException if the number of paths doesn't fit into {@code long}
+     */
+    public long[][] getLengthUpToMaxPathCounts(int maxPathLength) {
+        return maxPathLength <= 0 ? new long[getVertexCount()][getVertexCount()] : powerAndSum(maxPathLength)[1];
+    }
+
+    public int getVertexCount() {
+        return index.getVertexCount();
+    }
+
+    /**
+     * @return id of the vertex in the matrices returned by this instance or -1 if the vertex is not in the graph
+     */
+    public int getVertexId(@NotNull V vertex) {
+        return index.getVertexId(vertex);
+    }
+
+    public V getVertex(int vertexId) {
+        return index.getVertex(vertexId);
+    }
+
+    private long countPaths(V sourceVertex, V targetVertex, int hops, boolean upToMax) {
+        Preconditions.checkNotNull(sourceVertex);
+        Preconditions.checkNotNull(targetVertex);
+
+        int sourceId = index.getVertexId(sourceVertex);
+        int targetId = index.getVertexId(targetVertex);
+        if (sourceId < 0 || targetId < 0) {
+            return 0;
+        }
+        return countPathsFrom(index.getOffsets(), index.getTargets(), sourceId, hops, upToMax)[targetId];
+    }
+
+    /**
+     * Counts the paths with at least one edge from the source vertex by propagating a vector of path counts along the edges
+     * once per hop.
+     *
+     * @param offsets CSR offsets, outgoing edges of vertex {@code v} are in range [{@code offsets[v]}, {@code offsets[v + 1]})
+     * @param targets target vertex of each edge
+     * @param source id of the source vertex
+     * @param hops exact or maximal number of edges of the path
+     * @param upToMax whether the paths with less than {@code hops} edges are counted as well
+     * @return number of paths ending in each of the vertices, indexed by vertex id
+     * @throws ArithmeticException if a count overflows {@code long}
+     */
+    static long[] countPathsFrom(int[] offsets, int[] targets, int source, int hops, boolean upToMax) {
+        int vertexCount = offsets.length - 1;
+        long[] pathCounts = new long[vertexCount];
+        long[] current = new long[vertexCount];
+        long[] next = new long[vertexCount];
+        current[source] = 1;
+        for (int hop = 1; hop <= hops; hop++) {
+            propagate(offsets, targets, current, next);
+            long[] swap = current;
+            current = next;
+            next = swap;
+            Arrays.fill(next, 0);
+            if (upToMax || hop == hops) {
+                for (int v = 0; v < vertexCount; v++) {
+                    pathCounts[v] = Math.addExact(pathCounts[v], current[v]);
+                }
+            }
+        }
+        return pathCounts;
+    }
+
+    /**
+     * Counts the paths with 1 to {@code maxPathLength} edges from the source to the target vertex by their weight,
+     * propagating a histogram of path weights per vertex along the edges once per hop. A vertex gets its histogram when
+     * the first path reaches it and it grows with the heaviest path reaching it, so the memory depends on the weights
+     * actually reached, not on the limit. The histograms of two hops are kept and recycled, and the propagation stops
+     * as soon as no path can be extended, e.g. after the longest path of an acyclic graph.
+     *
+     * @param weights positive integer weight of each edge
+     * @param target id of the target vertex
+     * @return histogram of path weights, element {@code w} is the number of paths of weight {@code w}, the length is
+     *     the weight of the heaviest path plus one, at least 1
+     * @throws ArithmeticException if a count overflows {@code long}
+     * @throws IllegalArgumentException if a path reaches a weight over {@link #MAX_HISTOGRAM_WEIGHT}
+     */
+    static long[] countPathsByWeightFrom(int[] offsets, int[] targets, int[] weights, int source, int target,
+        int maxPathLength)
+    {
+        int vertexCount = offsets.length - 1;
+        long[] histogram = new long[1];
+        long[][] current = new long[vertexCount][];
+        long[][] next = new long[vertexCount][];
+        // heaviest weight with a path ending in each vertex, -1 if no path ends in it
+        int[] currentMaxWeights = new int[vertexCount];
+        int[] nextMaxWeights = new int[vertexCount];
+        Arrays.fill(currentMaxWeights, -1);
+        Arrays.fill(nextMaxWeights, -1);
+        current[source] = new long[] {1};
+        currentMaxWeights[source] = 0;
+        for (int hop = 1; hop <= maxPathLength; hop++) {
+            boolean extended = false;
+            for (int v = 0; v < vertexCount; v++) {
+                int maxWeight = currentMaxWeights[v];
+                if (maxWeight < 0) {
+                    continue;
+                }
+                long[] counts = current[v];
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int u = targets[e];
+                    int weight = weights[e];
+                    long extendedMaxWeight = (long) maxWeight + weight;
+                    Preconditions.checkArgument(extendedMaxWeight <= MAX_HISTOGRAM_WEIGHT,
+                        "Path weights are too large for a histogram");
+                    long[] extendedCounts = next[u];
+                    if (extendedCounts == null || extendedCounts.length <= extendedMaxWeight) {
+                        int length = (int) Math.min(MAX_HISTOGRAM_WEIGHT + 1,
+                            Math.max(extendedMaxWeight + 1, extendedCounts == null ? 0 : 2L * extendedCounts.length));
+                        extendedCounts = extendedCounts == null ? new long[length] : Arrays.copyOf(extendedCounts, length);
+                        next[u] = extendedCounts;
+                    }
+                    for (int w = 0; w <= maxWeight; w++) {
+                        if (counts[w] != 0) {
+                            extendedCounts[w + weight] = Math.addExact(extendedCounts[w + weight], counts[w]);
+                        }
+                    }
+                    nextMaxWeights[u] = (int) Math.max(nextMaxWeights[u], extendedMaxWeight);
+                    extended = true;
+                }
+            }
+            if (!extended) {
+                break;
+            }
+            int targetMaxWeight = nextMaxWeights[target];
+            if (targetMaxWeight >= 0) {
+                if (histogram.length <= targetMaxWeight) {
+                    histogram = Arrays.copyOf(histogram, targetMaxWeight + 1);
+                }
+                for (int w = 0; w <= targetMaxWeight; w++) {
+                    histogram[w] = Math.addExact(histogram[w], next[target][w]);
+                }
+            }
+            // the histograms of this hop are cleared and receive the ones of the next hop
+            for (int v = 0; v < vertexCount; v++) {
+                if (currentMaxWeights[v] >= 0) {
+                    Arrays.fill(current[v], 0, currentMaxWeights[v] + 1, 0);
+                    currentMaxWeights[v] = -1;
+                }
+            }
+            long[][] swap = current;
+            current = next;
+            next = swap;
+            int[] swapMaxWeights = currentMaxWeights;
+            currentMaxWeights = nextMaxWeights;
+            nextMaxWeights = swapMaxWeights;
+        }
+        return histogram;
+    }
+
+    /**
+     * Extends the paths by one hop: adds the number of paths ending in each vertex to the counts of its neighbours.
+     *
+     * @param current number of paths ending in each of the vertices
+     * @param next all zeros, receives the number of paths with one more edge ending in each of the vertices
+     * @throws ArithmeticException if a count overflows {@code long}
+     */
+    static void propagate(int[] offsets, int[] targets, long[] current, long[] next) {
+        for (int v = 0; v < current.length; v++) {
+            long count = current[v];
+            if (count == 0) {
+                continue;
+            }
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                next[targets[e]] = Math.addExact(next[targets[e]], count);
+            }
+        }
+    }
+
+    /**
+     * Raises the adjacency matrix to the k-th power by repeated squaring, without the sum of the lower powers, so only
+     * A^k and the powers it's built from have to fit into {@code long}.
+     */
+    private long[][] power(int k) {
+        long[][] a = getAdjacencyMatrix();
+        long[][] power = copy(a);
+        for (int bit = Integer.highestOneBit(k) >> 1; bit > 0; bit >>= 1) {
+            power = multiply(power, power);
+            if ((k & bit) != 0) {
+                power = multiply(power, a);
+            }
+        }
+        return power;
+    }
+
+    /**
+     * Computes A^k and A + A^2 + ... + A^k, where A is the adjacency matrix, by processing the bits of k from the most
+     * significant one: P(2m) = P(m)^2, S(2m) = S(m) + P(m) * S(m), P(m + 1) = P(m) * A, S(m + 1) = S(m) + P(m + 1).
+     *
+     * @return two element array containing A^k and the sum of powers of A up to k
+     */
+    private long[][][] powerAndSum(int k) {
+        long[][] a = getAdjacencyMatrix();
+        long[][] power = copy(a);
+        long[][] sum = copy(a);
+        for (int bit = Integer.highestOneBit(k) >> 1; bit > 0; bit >>= 1) {
+            sum = add(sum, multiply(power, sum));
+            power = multiply(power, power);
+            if ((k & bit) != 0) {
+                power = multiply(power, a);
+                sum = add(sum, power);
+            }
+        }
+        return new long[][][] {power, sum};
+    }
+
+    private long[][] getAdjacencyMatrix() {
+        if (adjacencyMatrix == null) {
+            int[] offsets = index.getOffsets();
+            int[] targets = index.getTargets();
+            long[][] matrix = new long[getVertexCount()][getVertexCount()];
+            for (int v = 0; v < matrix.length; v++) {
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    matrix[v][targets[e]]++;
+                }
+            }
+            adjacencyMatrix = matrix;
+        }
+        return adjacencyMatrix;
+    }
+
+    private static long[][] multiply(long[][] x, long[][] y) {
+        int n = x.length;
+        long[][] product = new long[n][n];
+        for (int i = 0; i < n; i++) {
+            long[] productRow = product[i];
+            for (int k = 0; k < n; k++) {
+                long xik = x[i][k];
+                if (xik == 0) {
+                    continue;
+                }
+                long[] yRow = y[k];
+                for (int j = 0; j < n; j++) {
+                    if (yRow[j] != 0) {
+                        productRow[j] = Math.addExact(productRow[j], Math.multiplyExact(xik, yRow[j]));
+                    }
+                }
+            }
+        }
+        return product;
+    }
+
+    private static long[][] add(long[][] x, long[][] y) {
+        int n = x.length;
+        long[][] sum = new long[n][n];
+        for (int i = 0; i < n; i++) {
+            for (int j = 0; j < n; j++) {
+                sum[i][j] = Math.addExact(x[i][j], y[i][j]);
+            }
+        }
+        return sum;
+    }
+
+    private static long[][] copy(long[][] x) {
+        long[][] copy = new long[x.length][];
+        for (int i = 0; i < x.length; i++) {
+            copy[i] = x[i].clone();
+        }
+        return copy;
+    }
+}
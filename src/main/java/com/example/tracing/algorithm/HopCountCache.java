@@ -0,0 +1,337 @@
+package com.example.tracing.algorithm;
+
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.ConnectionChange;
+import com.example.tracing.model.Microservice;
+import com.google.inject.internal.util.Preconditions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Remembers the hop-bounded path counts of a {@link CompactServiceGraph} between queries. For each source vertex it
+ * keeps the vectors of the number of paths with exactly 1, 2, ..., k hops ending in each vertex, where k is the highest
+ * number of hops asked so far, so a query with k + 1 hops costs one more propagation of the counts along the edges and
+ * a query with at most k hops costs an array lookup per hop. Once the vector for some number of hops is all zeros, e.g.
+ * when the graph has no cycles reachable from the source, the longer paths are known not to exist and no more vectors
+ * are kept.
+ * The vectors of at most {@code maxSources} source vertices are kept, the least recently used source is evicted first.
+ * Each vector takes 8 bytes per vertex and the vectors of all the sources take at most {@code maxBytes}, i.e. each
+ * source keeps at most {@code maxBytes / maxSources / (8 * V)} of them. A query with more hops than a source keeps
+ * vectors for, e.g. a hop limit far beyond the length of a cycle, propagates the last kept vector further with two
+ * vectors of scratch and doesn't keep the result, so it costs O(V + E) per extra hop and O(V) memory.
+ * The cache is thread-safe.
+ * After a change of the topology {@link #withChanges(CompactServiceGraph, List)} keeps the vectors of the sources the
+ * change doesn't affect.
+ */
+public class HopCountCache {
+
+    public static final int DEFAULT_MAX_SOURCES = 64;
+    public static final long DEFAULT_MAX_BYTES = 256L << 20;
+
+    private final CompactServiceGraph graph;
+    private final int maxSources;
+    private final long maxBytes;
+    private final int maxVectorsPerSource; // the vector of the empty path included
+    private final Map<Integer, CountVectors> countVectorsBySource;
+
+    public HopCountCache(@NotNull CompactServiceGraph graph) {
+        this(graph, DEFAULT_MAX_SOURCES);
+    }
+
+    /**
+     * @param graph the graph of microservices
+     * @param maxSources maximal number of source vertices whose count vectors are kept
+     */
+    public HopCountCache(@NotNull CompactServiceGraph graph, int maxSources) {
+        this(graph, maxSources, DEFAULT_MAX_BYTES);
+    }
+
+    /**
+     * @param graph the graph of microservices
+     * @param maxSources maximal number of source vertices whose count vectors are kept
+     * @param maxBytes maximal number of bytes of the count vectors of all the sources
+     */
+    public HopCountCache(@NotNull CompactServiceGraph graph, int maxSources, long maxBytes) {
+        Preconditions.checkArgument(maxSources > 0, "Cache must keep at least one source");
+        Preconditions.checkArgument(maxBytes >= 0, "Max bytes cannot be negative");
+        this.graph = Preconditions.checkNotNull(graph);
+        this.maxSources = maxSources;
+        this.maxBytes = maxBytes;
+        long vectorBytes = (long) Long.BYTES * Math.max(graph.getVertexCount(), 1);
+        // the vector of the empty path is kept even if it's over the budget, it's where the propagation starts
+        this.maxVectorsPerSource = (int) Math.max(1, Math.min(Integer.MAX_VALUE, maxBytes / maxSources / vectorBytes));
+        this.countVectorsBySource = newCountVectorsMap();
+    }
+
+    /**
+     * Creates the cache of the changed graph from this one. Latency changes don't change the number of paths, so the
+     * vectors are shared with this cache when no connection is added or removed. Otherwise the vectors of a source are
+     * kept only if no path from it reaches the source of an added or removed connection, i.e. the source of the
+     * connection has zero paths in all its vectors, and are extended by the changed graph from then on.
+     *
+     * @param updatedGraph the graph of this cache with the changes applied, see
+     *     {@link CompactServiceGraph#withChanges(List)}
+     * @param changes changes of the connections
+     * @return cache of the changed graph with the same capacity, this cache is not modified
+     */
+    public HopCountCache withChanges(@NotNull CompactServiceGraph updatedGraph, @NotNull List<ConnectionChange> changes) {
+        HopCountCache updatedCache = new HopCountCache(updatedGraph, maxSources, maxBytes);
+        List<Integer> changedSources = new ArrayList<>();
+        boolean connectionsChanged = false;
+        for (ConnectionChange change : changes) {
+            if (change.getKind() != ConnectionChange.Kind.UPDATE_LATENCY) {
+                connectionsChanged = true;
+                int sourceId = graph.getVertexId(change.getSourceVertex());
+                // a microservice new to the graph isn't reached by the paths counted so far
+                if (sourceId != CompactServiceGraph.NO_SUCH_VERTEX) {
+                    changedSources.add(sourceId);
+                }
+            }
+        }
+        boolean sameTopology = !connectionsChanged && updatedGraph.getVertexCount() == graph.getVertexCount();
+        synchronized (this) {
+            // iterated from the least to the most recently used, so the copy keeps the order
+            countVectorsBySource.forEach((sourceId, countVectors) -> {
+                if (sameTopology) {
+                    updatedCache.countVectorsBySource.put(sourceId, countVectors);
+                } else if (!countVectors.reachesAny(changedSources)) {
+                    updatedCache.countVectorsBySource.put(sourceId, countVectors.copy(updatedGraph.getVertexCount()));
+                }
+            });
+        }
+        return updatedCache;
+    }
+
+    private Map<Integer, CountVectors> newCountVectorsMap() {
+        // access order makes the least recently used source the eldest entry
+        return new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, CountVectors> eldest) {
+                return size() > HopCountCache.this.maxSources;
+            }
+        };
+    }
+
+    /**
+     * @return number of paths from the source to the target microservice with exactly {@code pathLength} edges, 0 if
+     *     any of them is not in the graph
+     * @throws ArithmeticException if the number of paths doesn't fit into {@code long}
+     */
+    public long countPathsWithExactLength(@NotNull Microservice sourceVertex, @NotNull Microservice targetVertex,
+        int pathLength)
+    {
+        return countPaths(sourceVertex, targetVertex, pathLength, false);
+    }
+
+    /**
+     * @return number of paths from the source to the target microservice with 1 to {@code maxPathLength} edges, 0 if
+     *     any of them is not in the graph
+     * @throws ArithmeticException if the number of paths doesn't fit into {@code long}
+     */
+    public long countPathsWithLengthUpToMax(@NotNull Microservice sourceVertex, @NotNull Microservice targetVertex,
+        int maxPathLength)
+    {
+        return countPaths(sourceVertex, targetVertex, maxPathLength, true);
+    }
+
+    /**
+     * @return number of paths from the source to the target vertex with exactly {@code pathLength} edges
+     * @throws ArithmeticException if the number of paths doesn't fit into {@code long}
+     */
+    public long countPathsWithExactLength(int sourceId, int targetId, int pathLength) {
+        Preconditions.checkElementIndex(targetId, graph.getVertexCount());
+        if (pathLength <= 0) {
+            return 0;
+        }
+        return getCountVectors(sourceId).count(graph, targetId, pathLength, false, maxVectorsPerSource);
+    }
+
+    /**
+     * @return number of paths from the source to the target vertex with 1 to {@code maxPathLength} edges
+     * @throws ArithmeticException if the number of paths doesn't fit into {@code long}
+     */
+    public long countPathsWithLengthUpToMax(int sourceId, int targetId, int maxPathLength) {
+        Preconditions.checkElementIndex(targetId, graph.getVertexCount());
+        if (maxPathLength <= 0) {
+            return 0;
+        }
+        return getCountVectors(sourceId).count(graph, targetId, maxPathLength, true, maxVectorsPerSource);
+    }
+
+    /**
+     * @return number of source vertices whose count vectors are kept now
+     */
+    public synchronized int getCachedSourceCount() {
+        return countVectorsBySource.size();
+    }
+
+    /**
+     * @return number of bytes of the count vectors kept now
+     */
+    public synchronized long getCachedBytes() {
+        long cachedBytes = 0;
+        for (CountVectors countVectors : countVectorsBySource.values()) {
+            cachedBytes += countVectors.getBytes();
+        }
+        return cachedBytes;
+    }
+
+    public CompactServiceGraph getGraph() {
+        return graph;
+    }
+
+    public int getMaxSources() {
+        return maxSources;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    private long countPaths(Microservice sourceVertex, Microservice targetVertex, int hops, boolean upToMax) {
+        int sourceId = graph.getVertexId(sourceVertex);
+        int targetId = graph.getVertexId(targetVertex);
+        if (sourceId == CompactServiceGraph.NO_SUCH_VERTEX || targetId == CompactServiceGraph.NO_SUCH_VERTEX) {
+            return 0;
+        }
+        return upToMax
+            ? countPathsWithLengthUpToMax(sourceId, targetId, hops)
+            : countPathsWithExactLength(sourceId, targetId, hops);
+    }
+
+    private synchronized CountVectors getCountVectors(int sourceId) {
+        Preconditions.checkElementIndex(sourceId, graph.getVertexCount());
+        return countVectorsBySource.computeIfAbsent(sourceId, id -> new CountVectors(graph.getVertexCount(), id));
+    }
+
+    /**
+     * Count vectors of a source vertex, extended on demand up to a maximal number of vectors. The vectors are never
+     * modified once computed, so they can be shared by the caches of graphs with the same topology.
+     */
+    private static final class CountVectors {
+
+        // element h is the number of paths with exactly h edges ending in each vertex
+        private final List<long[]> pathCountsByLength;
+        private boolean exhausted; // the last vector is all zeros
+
+        CountVectors(int vertexCount, int sourceId) {
+            long[] emptyPath = new long[vertexCount];
+            emptyPath[sourceId] = 1;
+            pathCountsByLength = new ArrayList<>();
+            pathCountsByLength.add(emptyPath);
+        }
+
+        private CountVectors(List<long[]> pathCountsByLength, boolean exhausted) {
+            this.pathCountsByLength = pathCountsByLength;
+            this.exhausted = exhausted;
+        }
+
+        /**
+         * Counts the paths from the kept vectors, extending them up to {@code maxVectors} vectors, and propagates the
+         * last kept vector further without keeping the result if the paths are longer.
+         *
+         * @param hops exact or maximal number of edges of the path, positive
+         * @param upToMax whether the paths with less than {@code hops} edges are counted as well
+         * @return number of paths ending in the target vertex
+         * @throws ArithmeticException if a count overflows {@code long}
+         */
+        long count(CompactServiceGraph graph, int targetId, int hops, boolean upToMax, int maxVectors) {
+            long[] lastPathCounts;
+            int lastPathLength;
+            long pathCount = 0;
+            synchronized (this) {
+                extend(graph, Math.min(hops, maxVectors - 1));
+                int keptHops = Math.min(hops, pathCountsByLength.size() - 1);
+                if (upToMax) {
+                    for (int pathLength = 1; pathLength <= keptHops; pathLength++) {
+                        pathCount = Math.addExact(pathCount, pathCountsByLength.get(pathLength)[targetId]);
+                    }
+                } else if (keptHops == hops) {
+                    pathCount = pathCountsByLength.get(hops)[targetId];
+                }
+                if (keptHops == hops || exhausted) {
+                    return pathCount;
+                }
+                lastPathLength = pathCountsByLength.size() - 1;
+                lastPathCounts = pathCountsByLength.get(lastPathLength);
+            }
+            // the kept vectors are immutable, the lock isn't held while propagating further
+            long[] current = lastPathCounts;
+            long[] next = new long[current.length];
+            long[] spare = new long[current.length];
+            for (int pathLength = lastPathLength + 1; pathLength <= hops; pathLength++) {
+                HopBoundedPathCounter.propagate(graph.getOffsets(), graph.getTargets(), current, next);
+                if (isAllZeros(next)) {
+                    break;
+                }
+                if (upToMax || pathLength == hops) {
+                    pathCount = Math.addExact(pathCount, next[targetId]);
+                }
+                // the kept vector is never written to
+                long[] previous = current == lastPathCounts ? spare : current;
+                current = next;
+                next = previous;
+                Arrays.fill(next, 0);
+            }
+            return pathCount;
+        }
+
+        private void extend(CompactServiceGraph graph, int pathLength) {
+            while (pathCountsByLength.size() <= pathLength && !exhausted) {
+                long[] pathCounts = pathCountsByLength.get(pathCountsByLength.size() - 1);
+                long[] extendedPathCounts = new long[pathCounts.length];
+                HopBoundedPathCounter.propagate(graph.getOffsets(), graph.getTargets(), pathCounts, extendedPathCounts);
+                exhausted = isAllZeros(extendedPathCounts);
+                if (!exhausted) {
+                    pathCountsByLength.add(extendedPathCounts);
+                }
+            }
+        }
+
+        synchronized long getBytes() {
+            long bytes = 0;
+            for (long[] pathCounts : pathCountsByLength) {
+                bytes += (long) Long.BYTES * pathCounts.length;
+            }
+            return bytes;
+        }
+
+        /**
+         * @return true if any of the computed vectors has paths ending in any of the vertices
+         */
+        synchronized boolean reachesAny(List<Integer> vertexIds) {
+            for (long[] pathCounts : pathCountsByLength) {
+                for (int vertexId : vertexIds) {
+                    if (pathCounts[vertexId] != 0) {
+                        return true;
+                    }
+                }
+            }
+            return false;
+        }
+
+        /**
+         * @return copy of the vectors extended with zeros to the vertex count, to be extended independently of these
+         */
+        synchronized CountVectors copy(int vertexCount) {
+            List<long[]> copiedPathCounts = new ArrayList<>(pathCountsByLength.size());
+            for (long[] pathCounts : pathCountsByLength) {
+                copiedPathCounts.add(pathCounts.length == vertexCount ? pathCounts : Arrays.copyOf(pathCounts, vertexCount));
+            }
+            return new CountVectors(copiedPathCounts, exhausted);
+        }
+
+        private static boolean isAllZeros(long[] counts) {
+            for (long count : counts) {
+                if (count != 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+    }
+}
@@ -0,0 +1,559 @@
+package com.example.tracing.algorithm;
+
+import com.google.inject.internal.util.Preconditions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.jetbrains.annotations.NotNull;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.GraphTests;
+import org.jgrapht.graph.GraphWalk;
+
+/**
+ * Finds the k paths with the lowest weight from a source to a target vertex of a weighted directed graph, one at a time
+ * in ascending order of weight, so nothing heavier than the path handed over last is ever searched. The empty path from
+ * a vertex to itself is never returned, the paths from a vertex to itself are its cycles.
+ * <ul>
+ * <li>Non-simple paths are found by labeling with a priority queue: the labels are popped in ascending order of weight
+ * and each vertex is expanded at most k times, since a prefix of one of the k lowest paths to the target is one of the k
+ * lowest paths to its last vertex. Labels are int ids into arrays of parent label, edge and weight. Each of the at
+ * most k * V expansions adds a label per outgoing edge, so the search holds O(k * E) labels; the labels popped after
+ * their vertex was expanded k times have no children and are reused.</li>
+ * <li>Simple paths are found by Yen's algorithm: each next path deviates from one of the paths found so far at some
+ * vertex and the lowest deviation is found by Dijkstra with the edges and the vertices of the shared prefix banned.
+ * Only the found paths and the candidate deviations are kept.</li>
+ * </ul>
+ * Paths with equal weight are returned in an unspecified but deterministic order.
+ *
+ * @param <V> the graph vertex type
+ * @param <E> the graph edge type
+ */
+public class KLowestWeightPaths<V, E> {
+
+    private final Graph<V, E> graph;
+    private final SearchStatistics statistics; // null if the searches are not measured
+
+    /**
+     * @param graph the input graph that must be a directed, weighted graph with no self-loops and non-negative weights
+     */
+    public KLowestWeightPaths(@NotNull Graph<V, E> graph) {
+        this(graph, null);
+    }
+
+    /**
+     * Creates a new instance whose searches add the labels they expand to the statistics, see {@link SearchStatistics}.
+     * The labels of Yen's search are the vertices expanded by its Dijkstra searches.
+     */
+    KLowestWeightPaths(Graph<V, E> graph, SearchStatistics statistics) {
+        Preconditions.checkArgument(!GraphTests.hasSelfLoops(graph), "Graph may not have self-loops");
+        GraphTests.requireDirected(graph);
+        GraphTests.requireWeighted(graph);
+        this.graph = graph;
+        this.statistics = statistics;
+    }
+
+    /**
+     * @param sourceVertex the source vertex
+     * @param targetVertex the target vertex
+     * @param k maximal number of paths
+     * @param allowNonSimple whether the paths may visit a vertex more than once
+     * @return at most k paths with the lowest weight in ascending order of weight
+     */
+    public List<GraphPath<V, E>> getPaths(@NotNull V sourceVertex, @NotNull V targetVertex, int k,
+        boolean allowNonSimple)
+    {
+        return streamPaths(sourceVertex, targetVertex, k, allowNonSimple).collect(Collectors.toList());
+    }
+
+    /**
+     * Budgeted counterpart of {@link #getPaths(Object, Object, int, boolean)}, finds the same paths in the same order,
+     * but stops as soon as the search exceeds the budget. The labels of Yen's search are the vertices expanded by its
+     * Dijkstra searches, and the candidate deviations count towards its memory.
+     *
+     * @return the paths, or the ones found before the search exceeded the budget flagged as truncated
+     */
+    public PartialResult<List<GraphPath<V, E>>> getPaths(@NotNull V sourceVertex, @NotNull V targetVertex, int k,
+        boolean allowNonSimple, @NotNull SearchBudget budget)
+    {
+        SearchBudget.Tracker tracker = Preconditions.checkNotNull(budget).start();
+        Spliterator<GraphPath<V, E>> spliterator = newSpliterator(sourceVertex, targetVertex, k, allowNonSimple,
+            tracker);
+        List<GraphPath<V, E>> paths = new ArrayList<>();
+        while (!tracker.isExceeded() && spliterator.tryAdvance(paths::add)) {
+            if (!tracker.tryAddPath(paths.get(paths.size() - 1).getLength())) {
+                paths.remove(paths.size() - 1); // one path more than the budget allows
+            }
+        }
+        return tracker.toResult(paths);
+    }
+
+    /**
+     * Streaming counterpart of {@link #getPaths(Object, Object, int, boolean)}, each path is searched only when the
+     * stream asks for it, so a short-circuiting stream stops the search early.
+     */
+    public Stream<GraphPath<V, E>> streamPaths(@NotNull V sourceVertex, @NotNull V targetVertex, int k,
+        boolean allowNonSimple)
+    {
+        return StreamSupport.stream(newSpliterator(sourceVertex, targetVertex, k, allowNonSimple, null), false);
+    }
+
+    /**
+     * @param budget tracker of the budget of the search, null if it's unlimited
+     */
+    private Spliterator<GraphPath<V, E>> newSpliterator(V sourceVertex, V targetVertex, int k, boolean allowNonSimple,
+        SearchBudget.Tracker budget)
+    {
+        Preconditions.checkNotNull(sourceVertex);
+        Preconditions.checkNotNull(targetVertex);
+        Preconditions.checkArgument(graph.containsVertex(sourceVertex), "no such vertex in graph: " + sourceVertex);
+        Preconditions.checkArgument(graph.containsVertex(targetVertex), "no such vertex in graph: " + targetVertex);
+        Preconditions.checkArgument(k >= 0, "k cannot be negative");
+        GraphIndex<V, E> index = new GraphIndex<>(graph);
+        for (double weight : index.getWeights()) {
+            Preconditions.checkArgument(weight >= 0, "Edge weights cannot be negative");
+        }
+        int sourceId = index.getVertexId(sourceVertex);
+        int targetId = index.getVertexId(targetVertex);
+        return allowNonSimple
+            ? new LabelSpliterator(index, sourceId, targetId, k, budget)
+            : new YenSpliterator(index, sourceId, targetId, k, budget);
+    }
+
+    public Graph<V, E> getGraph() {
+        return graph;
+    }
+
+    private GraphPath<V, E> buildPath(GraphIndex<V, E> index, int sourceId, int targetId, int[] pathEdges,
+        double pathWeight)
+    {
+        List<E> edges = new ArrayList<>(pathEdges.length);
+        for (int edge : pathEdges) {
+            edges.add(index.getEdge(edge));
+        }
+        return new GraphWalk<>(graph, index.getVertex(sourceId), index.getVertex(targetId), edges, pathWeight);
+    }
+
+    /**
+     * Labeling search of the non-simple paths, see the class comment.
+     */
+    private class LabelSpliterator extends Spliterators.AbstractSpliterator<GraphPath<V, E>> {
+
+        private final GraphIndex<V, E> index;
+        private final int[] offsets;
+        private final int[] targets;
+        private final double[] weights;
+        private final int sourceId;
+        private final int targetId;
+        private final int k;
+        private final SearchBudget.Tracker budget; // null if the search is unlimited
+        private final int[] expansions; // number of times each vertex was expanded
+        private final MinHeap openLabels = new MinHeap();
+        // label l is the path ending with labelEdges[l], whose prefix is the label labelParents[l]
+        private int[] labelParents = new int[16];
+        private int[] labelEdges = new int[16];
+        private double[] labelWeights = new double[16];
+        private int labelCount;
+        private int[] freeLabels = new int[16]; // labels popped without being expanded, to be reused
+        private int freeLabelCount;
+        private int pathCount;
+        private long expandedLabelCount;
+        private long addedLabelCount; // expanded labels already added to the statistics
+        private int peakQueueSize = 1;
+
+        LabelSpliterator(GraphIndex<V, E> index, int sourceId, int targetId, int k, SearchBudget.Tracker budget) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.index = index;
+            this.offsets = index.getOffsets();
+            this.targets = index.getTargets();
+            this.weights = index.getWeights();
+            this.sourceId = sourceId;
+            this.targetId = targetId;
+            this.k = k;
+            this.budget = budget;
+            this.expansions = new int[index.getVertexCount()];
+            openLabels.add(0, addLabel(-1, -1, 0));
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super GraphPath<V, E>> action) {
+            while (pathCount < k && !openLabels.isEmpty()) {
+                int label = openLabels.poll();
+                int vertex = label == 0 ? sourceId : targets[labelEdges[label]];
+                // the empty path is expanded without counting it, so a cycle through the source can be expanded k times
+                if (label != 0) {
+                    if (expansions[vertex] == k) {
+                        freeLabel(label);
+                        continue;
+                    }
+                    expansions[vertex]++;
+                }
+                if (budget != null && !budget.tryExpand(labelCount * SearchBudget.ARRAY_LABEL_BYTES
+                    + openLabels.size() * SearchBudget.HEAP_ENTRY_BYTES))
+                {
+                    break;
+                }
+                expandedLabelCount++;
+                for (int e = offsets[vertex]; e < offsets[vertex + 1]; e++) {
+                    if (expansions[targets[e]] < k) {
+                        double weight = labelWeights[label] + weights[e];
+                        openLabels.add(weight, addLabel(label, e, weight));
+                    }
+                }
+                peakQueueSize = Math.max(peakQueueSize, openLabels.size());
+                if (label != 0 && vertex == targetId) {
+                    pathCount++;
+                    addStatistics();
+                    action.accept(buildPath(index, sourceId, targetId, getPathEdges(label), labelWeights[label]));
+                    return true;
+                }
+            }
+            addStatistics();
+            return false;
+        }
+
+        private void addStatistics() {
+            if (statistics != null) {
+                statistics.add(expandedLabelCount - addedLabelCount, peakQueueSize);
+                addedLabelCount = expandedLabelCount;
+            }
+        }
+
+        private void freeLabel(int label) {
+            if (freeLabelCount == freeLabels.length) {
+                freeLabels = Arrays.copyOf(freeLabels, 2 * freeLabelCount);
+            }
+            freeLabels[freeLabelCount++] = label;
+        }
+
+        private int addLabel(int parent, int edge, double weight) {
+            if (freeLabelCount > 0) {
+                int label = freeLabels[--freeLabelCount];
+                labelParents[label] = parent;
+                labelEdges[label] = edge;
+                labelWeights[label] = weight;
+                return label;
+            }
+            if (labelCount == labelEdges.length) {
+                labelParents = Arrays.copyOf(labelParents, 2 * labelCount);
+                labelEdges = Arrays.copyOf(labelEdges, 2 * labelCount);
+                labelWeights = Arrays.copyOf(labelWeights, 2 * labelCount);
+            }
+            labelParents[labelCount] = parent;
+            labelEdges[labelCount] = edge;
+            labelWeights[labelCount] = weight;
+            return labelCount++;
+        }
+
+        private int[] getPathEdges(int label) {
+            int length = 0;
+            for (int l = label; l != 0; l = labelParents[l]) {
+                length++;
+            }
+            int[] pathEdges = new int[length];
+            for (int l = label; l != 0; l = labelParents[l]) {
+                pathEdges[--length] = labelEdges[l];
+            }
+            return pathEdges;
+        }
+    }
+
+    /**
+     * Yen's search of the simple paths, see the class comment.
+     */
+    private class YenSpliterator extends Spliterators.AbstractSpliterator<GraphPath<V, E>> {
+
+        private final GraphIndex<V, E> index;
+        private final int[] offsets;
+        private final int[] targets;
+        private final double[] weights;
+        private final int sourceId;
+        private final int targetId;
+        private final int k;
+        private final SearchBudget.Tracker budget; // null if the search is unlimited
+        private final List<CandidatePath> paths = new ArrayList<>();
+        private final List<CandidatePath> candidates = new ArrayList<>();
+        private final MinHeap candidateOrder = new MinHeap();
+        private final Set<CandidatePath> seenCandidates = new HashSet<>();
+        // Dijkstra state, reused by every search
+        private final double[] distances;
+        private final int[] predecessors;
+        private final int[] predecessorEdges;
+        private int lastEdgeSource;
+        private final boolean[] bannedVertices;
+        private final boolean[] bannedEdges;
+        private final MinHeap openVertices = new MinHeap();
+        private long expandedVertexCount;
+        private long addedVertexCount; // expanded vertices already added to the statistics
+        private int peakQueueSize;
+        private long candidateBytes; // estimated bytes of the found paths and the candidates, for the budget
+
+        YenSpliterator(GraphIndex<V, E> index, int sourceId, int targetId, int k, SearchBudget.Tracker budget) {
+            super(Long.MAX_VALUE, Spliterator.ORDERED | Spliterator.NONNULL);
+            this.index = index;
+            this.offsets = index.getOffsets();
+            this.targets = index.getTargets();
+            this.weights = index.getWeights();
+            this.sourceId = sourceId;
+            this.targetId = targetId;
+            this.k = k;
+            this.budget = budget;
+            this.distances = new double[index.getVertexCount()];
+            this.predecessors = new int[index.getVertexCount()];
+            this.predecessorEdges = new int[index.getVertexCount()];
+            this.bannedVertices = new boolean[index.getVertexCount()];
+            this.bannedEdges = new boolean[targets.length];
+        }
+
+        @Override
+        public boolean tryAdvance(Consumer<? super GraphPath<V, E>> action) {
+            if (paths.size() == k) {
+                return false;
+            }
+            if (paths.isEmpty()) {
+                addCandidate(new int[0], 0, sourceId);
+            } else {
+                addDeviations(paths.get(paths.size() - 1));
+            }
+            if (statistics != null) {
+                statistics.add(expandedVertexCount - addedVertexCount, peakQueueSize);
+                addedVertexCount = expandedVertexCount;
+            }
+            // the candidates are not all there if the search stopped, the lowest of them may not be the next path
+            if (candidateOrder.isEmpty() || budget != null && budget.isExceeded()) {
+                return false;
+            }
+            CandidatePath path = candidates.get(candidateOrder.poll());
+            paths.add(path);
+            action.accept(buildPath(index, sourceId, targetId, path.edges, path.weight));
+            return true;
+        }
+
+        /**
+         * Adds the lowest deviation of the path at each of its vertices to the candidates.
+         */
+        private void addDeviations(CandidatePath path) {
+            int spurVertex = sourceId;
+            double rootWeight = 0;
+            for (int i = 0; i < path.edges.length && (budget == null || !budget.isExceeded()); i++) {
+                for (CandidatePath foundPath : paths) {
+                    if (foundPath.edges.length > i && Arrays.equals(foundPath.edges, 0, i, path.edges, 0, i)) {
+                        bannedEdges[foundPath.edges[i]] = true;
+                    }
+                }
+                addCandidate(Arrays.copyOf(path.edges, i), rootWeight, spurVertex);
+                for (CandidatePath foundPath : paths) {
+                    if (foundPath.edges.length > i) {
+                        bannedEdges[foundPath.edges[i]] = false;
+                    }
+                }
+                // the vertices of the root path cannot be visited by the deviations at the next vertices
+                bannedVertices[spurVertex] = true;
+                rootWeight += weights[path.edges[i]];
+                spurVertex = targets[path.edges[i]];
+            }
+            Arrays.fill(bannedVertices, false);
+        }
+
+        /**
+         * Searches the lowest path from the spur vertex to the target avoiding the banned vertices and edges and adds it
+         * after the root path to the candidates, unless there is none or it's already there.
+         */
+        private void addCandidate(int[] rootEdges, double rootWeight, int spurVertex) {
+            int lastEdge = searchSpurPath(spurVertex);
+            if (lastEdge < 0) {
+                return;
+            }
+            int spurLength = 1;
+            for (int v = lastEdgeSource; v != spurVertex; v = predecessors[v]) {
+                spurLength++;
+            }
+            int[] edges = Arrays.copyOf(rootEdges, rootEdges.length + spurLength);
+            int position = edges.length - 1;
+            edges[position--] = lastEdge;
+            for (int v = lastEdgeSource; v != spurVertex; v = predecessors[v]) {
+                edges[position--] = predecessorEdges[v];
+            }
+            double weight = rootWeight;
+            for (int i = rootEdges.length; i < edges.length; i++) {
+                weight += weights[edges[i]];
+            }
+            CandidatePath candidate = new CandidatePath(edges, weight);
+            if (seenCandidates.add(candidate)) {
+                candidateOrder.add(weight, candidates.size());
+                candidates.add(candidate);
+                candidateBytes += SearchBudget.PATH_BYTES + SearchBudget.PATH_EDGE_BYTES * edges.length;
+            }
+        }
+
+        /**
+         * Dijkstra from the spur vertex where the target is a sink, i.e. it's reached but never expanded, so the paths from
+         * a vertex to itself are cycles.
+         *
+         * @return last edge of the lowest path to the target, whose source is stored in {@link #lastEdgeSource}, or -1 if
+         *     the target cannot be reached
+         */
+        private int searchSpurPath(int spurVertex) {
+            Arrays.fill(distances, Double.POSITIVE_INFINITY);
+            double targetDistance = Double.POSITIVE_INFINITY;
+            int lastEdge = -1;
+            distances[spurVertex] = 0;
+            openVertices.add(0, spurVertex);
+            while (!openVertices.isEmpty()) {
+                double distance = openVertices.peekKey();
+                int vertex = openVertices.poll();
+                if (distance >= targetDistance) {
+                    break;
+                }
+                if (distance > distances[vertex]) {
+                    continue; // stale entry of a vertex reached again by a lower path
+                }
+                if (budget != null
+                    && !budget.tryExpand(openVertices.size() * SearchBudget.HEAP_ENTRY_BYTES + candidateBytes))
+                {
+                    lastEdge = -1;
+                    break;
+                }
+                expandedVertexCount++;
+                for (int e = offsets[vertex]; e < offsets[vertex + 1]; e++) {
+                    if (bannedEdges[e]) {
+                        continue;
+                    }
+                    int target = targets[e];
+                    double weight = distance + weights[e];
+                    if (target == targetId) {
+                        if (weight < targetDistance) {
+                            targetDistance = weight;
+                            lastEdge = e;
+                            lastEdgeSource = vertex;
+                        }
+                    } else if (!bannedVertices[target] && weight < distances[target]) {
+                        distances[target] = weight;
+                        predecessors[target] = vertex;
+                        predecessorEdges[target] = e;
+                        openVertices.add(weight, target);
+                    }
+                }
+                peakQueueSize = Math.max(peakQueueSize, openVertices.size());
+            }
+            openVertices.clear();
+            return lastEdge;
+        }
+    }
+
+    /**
+     * A path found by Yen's search, equal to another one with the same edges.
+     */
+    private static final class CandidatePath {
+
+        final int[] edges;
+        final double weight;
+
+        CandidatePath(int[] edges, double weight) {
+            this.edges = edges;
+            this.weight = weight;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (o == null || getClass() != o.getClass()) {
+                return false;
+            }
+            return Arrays.equals(edges, ((CandidatePath) o).edges);
+        }
+
+        @Override
+        public int hashCode() {
+            return Arrays.hashCode(edges);
+        }
+    }
+
+    /**
+     * Binary min-heap of int values ordered by double keys, ties broken by the lower value. The same value may be added
+     * more than once.
+     */
+    static final class MinHeap {
+
+        private double[] keys = new double[16];
+        private int[] values = new int[16];
+        private int size;
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        int size() {
+            return size;
+        }
+
+        void clear() {
+            size = 0;
+        }
+
+        void add(double key, int value) {
+            if (size == keys.length) {
+                keys = Arrays.copyOf(keys, 2 * size);
+                values = Arrays.copyOf(values, 2 * size);
+            }
+            int position = size++;
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (!isLess(key, value, keys[parent], values[parent])) {
+                    break;
+                }
+                keys[position] = keys[parent];
+                values[position] = values[parent];
+                position = parent;
+            }
+            keys[position] = key;
+            values[position] = value;
+        }
+
+        double peekKey() {
+            return keys[0];
+        }
+
+        int poll() {
+            int min = values[0];
+            size--;
+            if (size > 0) {
+                double key = keys[size];
+                int value = values[size];
+                int position = 0;
+                while (true) {
+                    int child = 2 * position + 1;
+                    if (child >= size) {
+                        break;
+                    }
+                    if (child + 1 < size && isLess(keys[child + 1], values[child + 1], keys[child], values[child])) {
+                        child++;
+                    }
+                    if (!isLess(keys[child], values[child], key, value)) {
+                        break;
+                    }
+                    keys[position] = keys[child];
+                    values[position] = values[child];
+                    position = child;
+                }
+                keys[position] = key;
+                values[position] = value;
+            }
+            return min;
+        }
+
+        private static boolean isLess(double key, int value, double otherKey, int otherValue) {
+            return key < otherKey || key == otherKey && value < otherValue;
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.tracing.algorithm;
+
+import com.google.inject.internal.util.Preconditions;
+import java.util.Objects;
+import java.util.Optional;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Result of a search run within a {@link SearchBudget}: either the complete result or, if the search exceeded a limit of
+ * the budget, the part found before it stopped, flagged as truncated.
+ *
+ * @param <T> the result type
+ */
+public final class PartialResult<T> {
+
+    private final T result;
+    private final SearchBudget.Limit exceededLimit; // null if the result is complete
+
+    PartialResult(@NotNull T result, SearchBudget.Limit exceededLimit) {
+        this.result = Preconditions.checkNotNull(result);
+        this.exceededLimit = exceededLimit;
+    }
+
+    /**
+     * @return the result, only a part of it if {@link #isTruncated()}
+     */
+    public T getResult() {
+        return result;
+    }
+
+    /**
+     * @return whether the search stopped before it found the complete result
+     */
+    public boolean isTruncated() {
+        return exceededLimit != null;
+    }
+
+    /**
+     * @return the limit that stopped the search, empty if the result is complete
+     */
+    public Optional<SearchBudget.Limit> getExceededLimit() {
+        return Optional.ofNullable(exceededLimit);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        PartialResult<?> that = (PartialResult<?>) o;
+        return result.equals(that.result) && exceededLimit == that.exceededLimit;
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(result, exceededLimit);
+    }
+
+    @Override
+    public String toString() {
+        return "PartialResult{" +
+            "result=" + result +
+            ", exceededLimit=" + exceededLimit +
+            '}';
+    }
+}
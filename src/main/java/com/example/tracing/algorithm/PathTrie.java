@@ -0,0 +1,158 @@
+package com.example.tracing.algorithm;
+
+import com.google.inject.internal.util.Preconditions;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+import org.jgrapht.Graph;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.GraphWalk;
+
+/**
+ * Paths from one source vertex stored as a prefix tree: node {@code n} is the path of its parent node extended by one
+ * edge, and the root, node 0, is the empty path in the source vertex. A node takes two ints, the parent node and the
+ * edge id, so paths sharing a prefix share its nodes and a million paths found by BFS take a few million ints instead of
+ * a million lists of edges. Parents always precede their children. Paths are materialized as {@link GraphPath}s only
+ * when they are asked for, one at a time.
+ *
+ * @param <V> the graph vertex type
+ * @param <E> the graph edge type
+ */
+public final class PathTrie<V, E> implements Iterable<GraphPath<V, E>> {
+
+    public static final int ROOT = 0;
+
+    private final Graph<V, E> graph;
+    private final GraphIndex<V, E> index;
+    private final int sourceId;
+    private final int[] parents;
+    private final int[] edges;
+    private final int[] pathNodes;
+
+    /**
+     * @param parents parent of each node, the root's is ignored
+     * @param edges edge id of the last edge of each node, the root's is ignored
+     * @param pathNodes nodes of the paths in the order of the paths
+     */
+    PathTrie(Graph<V, E> graph, GraphIndex<V, E> index, int sourceId, int[] parents, int[] edges, int[] pathNodes) {
+        this.graph = graph;
+        this.index = index;
+        this.sourceId = sourceId;
+        this.parents = parents;
+        this.edges = edges;
+        this.pathNodes = pathNodes;
+    }
+
+    public int getPathCount() {
+        return pathNodes.length;
+    }
+
+    /**
+     * @return number of the nodes including the root
+     */
+    public int getNodeCount() {
+        return parents.length;
+    }
+
+    /**
+     * @return node of the last edge of the path
+     */
+    public int getPathNode(int pathIndex) {
+        Preconditions.checkElementIndex(pathIndex, pathNodes.length);
+        return pathNodes[pathIndex];
+    }
+
+    /**
+     * @return parent of the node, i.e. the path without its last edge
+     */
+    public int getParent(int node) {
+        Preconditions.checkArgument(node != ROOT, "Root has no parent");
+        return parents[node];
+    }
+
+    /**
+     * @return last edge of the path of the node
+     */
+    public E getEdge(int node) {
+        Preconditions.checkArgument(node != ROOT, "Root has no edge");
+        return index.getEdge(edges[node]);
+    }
+
+    public int getPathLength(int pathIndex) {
+        int length = 0;
+        for (int node = getPathNode(pathIndex); node != ROOT; node = parents[node]) {
+            length++;
+        }
+        return length;
+    }
+
+    /**
+     * Materializes the path by following the parents from its node to the root.
+     *
+     * @return the path
+     */
+    public GraphPath<V, E> getPath(int pathIndex) {
+        int node = getPathNode(pathIndex);
+        int[] pathEdges = new int[getPathLength(pathIndex)];
+        for (int i = pathEdges.length - 1; i >= 0; i--) {
+            pathEdges[i] = edges[node];
+            node = parents[node];
+        }
+        double[] weights = index.getWeights();
+        double pathWeight = 0;
+        List<E> pathEdgeList = new ArrayList<>(pathEdges.length);
+        for (int edge : pathEdges) {
+            // summed from the source vertex like the search does, so the weight is the same to the last bit
+            pathWeight += weights[edge];
+            pathEdgeList.add(index.getEdge(edge));
+        }
+        V targetVertex = pathEdges.length == 0
+            ? index.getVertex(sourceId)
+            : index.getVertex(index.getTargets()[pathEdges[pathEdges.length - 1]]);
+        return new GraphWalk<>(graph, index.getVertex(sourceId), targetVertex, pathEdgeList, pathWeight);
+    }
+
+    /**
+     * @return iterator materializing the paths in order, one at a time
+     */
+    @Override
+    public Iterator<GraphPath<V, E>> iterator() {
+        return new Iterator<>() {
+            private int nextPathIndex;
+
+            @Override
+            public boolean hasNext() {
+                return nextPathIndex < pathNodes.length;
+            }
+
+            @Override
+            public GraphPath<V, E> next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getPath(nextPathIndex++);
+            }
+        };
+    }
+
+    /**
+     * @return sequential stream materializing the paths in order, one at a time
+     */
+    public Stream<GraphPath<V, E>> stream() {
+        return StreamSupport.stream(Spliterators.spliterator(iterator(), pathNodes.length,
+            Spliterator.ORDERED | Spliterator.NONNULL), false);
+    }
+
+    @Override
+    public String toString() {
+        return "PathTrie{" +
+            "pathCount=" + getPathCount() +
+            ", nodeCount=" + getNodeCount() +
+            '}';
+    }
+}
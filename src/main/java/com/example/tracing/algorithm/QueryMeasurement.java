@@ -0,0 +1,73 @@
+package com.example.tracing.algorithm;
+
+import com.example.tracing.model.QueryMetrics;
+import com.google.inject.internal.util.Preconditions;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Measures the wall time of a query and the bytes allocated meanwhile by the thread that started it, read from the
+ * {@link ThreadMXBean} of the JVM if it supports allocation measurement. The allocations of the worker threads of a
+ * parallel search are not included.
+ */
+public final class QueryMeasurement {
+
+    private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+    private final String queryType;
+    private final long threadId;
+    private final long startNanos;
+    private final long startAllocatedBytes;
+
+    private QueryMeasurement(String queryType) {
+        this.queryType = queryType;
+        this.threadId = Thread.currentThread().getId();
+        this.startAllocatedBytes = getAllocatedBytes(threadId);
+        this.startNanos = System.nanoTime();
+    }
+
+    /**
+     * @param queryType name of the kind of the query
+     * @return measurement started now on the current thread
+     */
+    public static QueryMeasurement start(@NotNull String queryType) {
+        return new QueryMeasurement(Preconditions.checkNotNull(queryType));
+    }
+
+    /**
+     * @return metrics of the query from the start of the measurement until now
+     */
+    public QueryMetrics finish(long labelsExpanded, int peakQueueSize, long pathsProduced) {
+        return finish(labelsExpanded, peakQueueSize, pathsProduced, null);
+    }
+
+    /**
+     * @param failure exception the query threw
+     * @return metrics of the failed query from the start of the measurement until now, with no traces
+     */
+    public QueryMetrics fail(long labelsExpanded, int peakQueueSize, @NotNull Throwable failure) {
+        return finish(labelsExpanded, peakQueueSize, 0, failure.getClass().getName());
+    }
+
+    private QueryMetrics finish(long labelsExpanded, int peakQueueSize, long pathsProduced, String failure) {
+        long wallTimeNanos = System.nanoTime() - startNanos;
+        long allocatedBytes = getAllocatedBytes(threadId);
+        return new QueryMetrics(queryType, wallTimeNanos,
+            allocatedBytes == QueryMetrics.UNKNOWN_ALLOCATED_BYTES || startAllocatedBytes == QueryMetrics.UNKNOWN_ALLOCATED_BYTES
+                ? QueryMetrics.UNKNOWN_ALLOCATED_BYTES
+                : allocatedBytes - startAllocatedBytes,
+            labelsExpanded, peakQueueSize, pathsProduced, failure);
+    }
+
+    private static long getAllocatedBytes(long threadId) {
+        if (THREADS instanceof com.sun.management.ThreadMXBean) {
+            com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) THREADS;
+            if (threads.isThreadAllocatedMemorySupported() && threads.isThreadAllocatedMemoryEnabled()) {
+                // -1 if the thread is no longer alive, the same as unknown
+                return threads.getThreadAllocatedBytes(threadId);
+            }
+        }
+        return QueryMetrics.UNKNOWN_ALLOCATED_BYTES;
+    }
+}
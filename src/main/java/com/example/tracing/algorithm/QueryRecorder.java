@@ -0,0 +1,35 @@
+package com.example.tracing.algorithm;
+
+import com.example.tracing.model.QueryMetrics;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Receives the {@link QueryMetrics} of each query answered, see {@link Traversal#setRecorder(QueryRecorder)}. Queries
+ * are measured only if the recorder {@link #isEnabled() is enabled}, so the default {@link #NO_OP} recorder costs a
+ * check per query and nothing per label. Implementations must be thread-safe, queries are answered concurrently.
+ */
+public interface QueryRecorder {
+
+    /**
+     * Recorder that is never enabled, the queries are not measured at all.
+     */
+    QueryRecorder NO_OP = new QueryRecorder() {
+        @Override
+        public boolean isEnabled() {
+            return false;
+        }
+
+        @Override
+        public void record(@NotNull QueryMetrics metrics) {
+        }
+    };
+
+    /**
+     * @return whether the queries should be measured and recorded
+     */
+    default boolean isEnabled() {
+        return true;
+    }
+
+    void record(@NotNull QueryMetrics metrics);
+}
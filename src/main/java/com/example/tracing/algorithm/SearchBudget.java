@@ -0,0 +1,338 @@
+package com.example.tracing.algorithm;
+
+import com.google.inject.internal.util.Preconditions;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Limits of an enumeration of paths, whose cost is exponential in the limit of the query, so that one query cannot run
+ * for minutes or exhaust the heap of a process shared by other queries. A search within the budget stops as soon as it
+ * has expanded {@link #getMaxLabels()} labels, i.e. partial paths, would hand over more than {@link #getMaxResults()}
+ * paths, its estimated memory exceeds {@link #getMaxMemoryBytes()}, it has run for {@link #getTimeout()} or its
+ * {@link CancellationToken} is cancelled, and returns the paths found so far as a truncated {@link PartialResult}.
+ * The memory is estimated from the number of labels waiting to be expanded and the lengths of the paths found, it's the
+ * order of magnitude of the heap the search holds, not a measurement. The clock and the token are read once every
+ * {@value #CHECK_INTERVAL} labels, so checking the budget costs a few comparisons per label. The tasks of a parallel
+ * search add their labels to a shared count every {@value #CHECK_INTERVAL} labels, so the search may expand up to that
+ * many labels per worker over the limit, and the paths it finds within the budget are not a prefix of its order.
+ * A budget holds no state of a search, the same one can be given to any number of searches, e.g. to all the queries of a
+ * client, and the timeout of each of them starts when it starts.
+ */
+public final class SearchBudget {
+
+    private static final Duration NO_TIMEOUT = Duration.ofNanos(Long.MAX_VALUE);
+    public static final SearchBudget UNLIMITED = builder().build();
+
+    static final int CHECK_INTERVAL = 1024;
+    // rough sizes of the objects the searches hold, for the memory estimate
+    static final long LABEL_BYTES = 40;
+    static final long STACK_FRAME_BYTES = 16;
+    static final long PATH_BYTES = 96;
+    static final long PATH_EDGE_BYTES = 8;
+    static final long TRIE_NODE_BYTES = 16; // parent, edge and weight of a trie node, its length is 4 bytes more
+    static final long TRIE_PATH_BYTES = 4;
+    static final long ARRAY_LABEL_BYTES = 16; // parent, edge and weight of a label kept in arrays
+    static final long HEAP_ENTRY_BYTES = 12;
+
+    private final long maxLabels;
+    private final long maxResults;
+    private final long maxMemoryBytes;
+    private final Duration timeout;
+    private final CancellationToken cancellationToken; // null if the searches cannot be cancelled
+
+    private SearchBudget(Builder builder) {
+        this.maxLabels = builder.maxLabels;
+        this.maxResults = builder.maxResults;
+        this.maxMemoryBytes = builder.maxMemoryBytes;
+        this.timeout = builder.timeout;
+        this.cancellationToken = builder.cancellationToken;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public long getMaxLabels() {
+        return maxLabels;
+    }
+
+    public long getMaxResults() {
+        return maxResults;
+    }
+
+    public long getMaxMemoryBytes() {
+        return maxMemoryBytes;
+    }
+
+    public Duration getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * @return a tracker of a search starting now
+     */
+    Tracker start() {
+        return new Tracker(this);
+    }
+
+    @Override
+    public String toString() {
+        return "SearchBudget{" +
+            "maxLabels=" + maxLabels +
+            ", maxResults=" + maxResults +
+            ", maxMemoryBytes=" + maxMemoryBytes +
+            ", timeout=" + timeout +
+            ", cancellable=" + (cancellationToken != null) +
+            '}';
+    }
+
+    /**
+     * The limit a search exceeded.
+     */
+    public enum Limit {
+        LABELS,
+        RESULTS,
+        MEMORY,
+        DEADLINE,
+        CANCELLED
+    }
+
+    /**
+     * Creates a budget, every limit that is not set is unlimited.
+     */
+    public static final class Builder {
+
+        private long maxLabels = Long.MAX_VALUE;
+        private long maxResults = Long.MAX_VALUE;
+        private long maxMemoryBytes = Long.MAX_VALUE;
+        private Duration timeout = NO_TIMEOUT;
+        private CancellationToken cancellationToken;
+
+        private Builder() {
+        }
+
+        public Builder maxLabels(long maxLabels) {
+            Preconditions.checkArgument(maxLabels >= 0, "Max labels cannot be negative");
+            this.maxLabels = maxLabels;
+            return this;
+        }
+
+        public Builder maxResults(long maxResults) {
+            Preconditions.checkArgument(maxResults >= 0, "Max results cannot be negative");
+            this.maxResults = maxResults;
+            return this;
+        }
+
+        public Builder maxMemoryBytes(long maxMemoryBytes) {
+            Preconditions.checkArgument(maxMemoryBytes >= 0, "Max memory cannot be negative");
+            this.maxMemoryBytes = maxMemoryBytes;
+            return this;
+        }
+
+        public Builder timeout(@NotNull Duration timeout) {
+            Preconditions.checkArgument(!timeout.isNegative(), "Timeout cannot be negative");
+            this.timeout = timeout;
+            return this;
+        }
+
+        public Builder cancellationToken(@NotNull CancellationToken cancellationToken) {
+            this.cancellationToken = Preconditions.checkNotNull(cancellationToken);
+            return this;
+        }
+
+        public SearchBudget build() {
+            return new SearchBudget(this);
+        }
+    }
+
+    /**
+     * Keeps track of the budget spent by one search. A tracker is used by one thread, but the trackers forked from it
+     * by {@link #fork()} for the tasks of a parallel search may add their counts to it from any thread. Once a limit is
+     * exceeded every further call fails.
+     */
+    static final class Tracker {
+
+        private final SearchBudget budget;
+        private final long startNanos;
+        private final long timeoutNanos;
+        private final Tracker parent; // tracker this one was forked from, null if it tracks the whole search
+        private final AtomicLong forkedLabelCount = new AtomicLong(); // labels added by the forked trackers
+        private long labelCount;
+        private long addedLabelCount; // labels already added to the parent
+        private long resultCount;
+        private long resultBytes; // of the parent as of the last check for a forked tracker
+        private volatile Limit exceededLimit;
+
+        private Tracker(SearchBudget budget) {
+            this.budget = budget;
+            this.startNanos = System.nanoTime();
+            this.timeoutNanos = toNanosSaturated(budget.timeout);
+            this.parent = null;
+        }
+
+        private Tracker(Tracker parent) {
+            this.budget = parent.budget;
+            this.startNanos = parent.startNanos;
+            this.timeoutNanos = parent.timeoutNanos;
+            this.parent = parent;
+        }
+
+        /**
+         * Creates the tracker of a part of the search run by another thread, e.g. a subtree of a parallel search. It
+         * adds its labels to this tracker every {@value #CHECK_INTERVAL} labels and its results right away, and fails
+         * once this tracker is exceeded. This tracker must not expand labels itself then.
+         */
+        Tracker fork() {
+            return new Tracker(this);
+        }
+
+        /**
+         * Accounts for the expansion of one more label.
+         *
+         * @param queueBytes estimated bytes of the labels waiting to be expanded
+         * @return false if the search must stop
+         */
+        boolean tryExpand(long queueBytes) {
+            if (exceededLimit != null) {
+                return false;
+            }
+            if (parent != null && parent.exceededLimit != null) {
+                return exceed(parent.exceededLimit);
+            }
+            labelCount++;
+            if (parent == null && labelCount > budget.maxLabels) {
+                return exceed(Limit.LABELS);
+            }
+            if (queueBytes > budget.maxMemoryBytes - resultBytes) {
+                return exceed(Limit.MEMORY);
+            }
+            // the first label is checked too, so a search with a cancelled token doesn't start
+            if ((labelCount & (CHECK_INTERVAL - 1)) == 1) {
+                if (parent != null) {
+                    Limit limit = parent.addForkedLabels(labelCount - addedLabelCount);
+                    addedLabelCount = labelCount;
+                    resultBytes = parent.getResultBytes();
+                    return limit == null || exceed(limit);
+                }
+                return checkInterruption();
+            }
+            return true;
+        }
+
+        /**
+         * Checks the token and the deadline, to be called before the tasks of a parallel search that this tracker
+         * doesn't expand labels for start.
+         *
+         * @return false if the search must not start
+         */
+        boolean tryStart() {
+            return exceededLimit == null && checkInterruption();
+        }
+
+        /**
+         * Adds the labels not added yet to the tracker this one was forked from, to be called when the part of the
+         * search it tracks is over.
+         */
+        void flush() {
+            if (parent != null && labelCount > addedLabelCount) {
+                Limit limit = parent.addForkedLabels(labelCount - addedLabelCount);
+                addedLabelCount = labelCount;
+                if (limit != null) {
+                    exceed(limit);
+                }
+            }
+        }
+
+        /**
+         * Accounts for one more path found.
+         *
+         * @param pathLength number of edges of the path
+         * @return false if the path is over the budget and must not be handed over
+         */
+        boolean tryAddPath(int pathLength) {
+            return tryAddResult(PATH_BYTES + PATH_EDGE_BYTES * pathLength);
+        }
+
+        /**
+         * Accounts for one more result, e.g. a path or a path of a trie.
+         *
+         * @param bytes estimated bytes of the result
+         * @return false if the result is over the budget and must not be handed over
+         */
+        boolean tryAddResult(long bytes) {
+            if (exceededLimit != null) {
+                return false;
+            }
+            if (parent != null) {
+                return parent.tryAddResult(bytes) || exceed(parent.exceededLimit);
+            }
+            synchronized (this) {
+                if (exceededLimit != null) {
+                    return false;
+                }
+                if (resultCount == budget.maxResults) {
+                    return exceed(Limit.RESULTS);
+                }
+                if (bytes > budget.maxMemoryBytes - resultBytes) {
+                    return exceed(Limit.MEMORY);
+                }
+                resultCount++;
+                resultBytes += bytes;
+                return true;
+            }
+        }
+
+        boolean isExceeded() {
+            return exceededLimit != null || parent != null && parent.isExceeded();
+        }
+
+        <T> PartialResult<T> toResult(T result) {
+            return new PartialResult<>(result, exceededLimit);
+        }
+
+        /**
+         * Adds the labels of a forked tracker and checks the limits.
+         *
+         * @return the exceeded limit or null if there is none
+         */
+        private Limit addForkedLabels(long labels) {
+            if (forkedLabelCount.addAndGet(labels) > budget.maxLabels) {
+                exceed(Limit.LABELS);
+            } else if (exceededLimit == null) {
+                checkInterruption();
+            }
+            return exceededLimit;
+        }
+
+        private synchronized long getResultBytes() {
+            return resultBytes;
+        }
+
+        private boolean checkInterruption() {
+            if (budget.cancellationToken != null && budget.cancellationToken.isCancelled()) {
+                return exceed(Limit.CANCELLED);
+            }
+            if (System.nanoTime() - startNanos >= timeoutNanos) {
+                return exceed(Limit.DEADLINE);
+            }
+            return true;
+        }
+
+        // the first limit exceeded is kept, the forked trackers may exceed several at once
+        private synchronized boolean exceed(Limit limit) {
+            if (exceededLimit == null) {
+                exceededLimit = limit;
+            }
+            return false;
+        }
+
+        private static long toNanosSaturated(Duration duration) {
+            try {
+                return duration.toNanos();
+            } catch (ArithmeticException e) {
+                return Long.MAX_VALUE;
+            }
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package com.example.tracing.algorithm;
+
+import com.example.tracing.model.QueryMetrics;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Work done by the searches of one query: the labels, i.e. partial paths, expanded and the largest number of labels
+ * waiting to be expanded at once by any of the searches. The searches count in their own fields and add the counts here
+ * once, when they are exhausted, so collecting the statistics costs nothing per label. Thread-safe, as the subtrees of a
+ * parallel search add their counts from the worker threads. The searches that cannot count their labels, e.g. those of
+ * jgrapht, mark the statistics as unknown instead.
+ */
+final class SearchStatistics {
+
+    private final LongAdder labelsExpanded = new LongAdder();
+    private final AtomicInteger peakQueueSize = new AtomicInteger();
+    private volatile boolean unknown;
+
+    void add(long expandedLabelCount, int queueSize) {
+        labelsExpanded.add(expandedLabelCount);
+        peakQueueSize.accumulateAndGet(queueSize, Math::max);
+    }
+
+    void markUnknown() {
+        unknown = true;
+    }
+
+    /**
+     * @return labels expanded or {@link QueryMetrics#UNKNOWN_LABELS_EXPANDED}
+     */
+    long getLabelsExpanded() {
+        return unknown ? QueryMetrics.UNKNOWN_LABELS_EXPANDED : labelsExpanded.sum();
+    }
+
+    /**
+     * @return largest number of labels waiting at once or {@link QueryMetrics#UNKNOWN_PEAK_QUEUE_SIZE}
+     */
+    int getPeakQueueSize() {
+        return unknown ? QueryMetrics.UNKNOWN_PEAK_QUEUE_SIZE : peakQueueSize.get();
+    }
+}
@@ -0,0 +1,420 @@
+package com.example.tracing.algorithm;
+
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.ConnectionChange;
+import com.example.tracing.model.Microservice;
+import com.google.inject.internal.util.Preconditions;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+import java.util.OptionalInt;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Shortest latencies between all pairs of microservices of a {@link CompactServiceGraph}, built once per graph and
+ * answering each question by an array lookup. Small graphs are indexed upfront by Floyd-Warshall, larger ones by Dijkstra
+ * with a primitive binary heap, run for each source vertex the first time the source is asked about.
+ * The shortest trace from a microservice back to itself is its shortest cycle, the empty trace is never returned.
+ * Traces are reconstructed on demand from the predecessor arrays.
+ * After a change of the topology {@link #withChanges(CompactServiceGraph, List)} repairs the computed rows instead of
+ * indexing the changed graph from scratch.
+ */
+public class ShortestLatencyIndex {
+
+    public static final int NO_SUCH_TRACE = -1;
+    static final int FLOYD_WARSHALL_MAX_VERTICES = 256;
+    private static final int UNREACHABLE = Integer.MAX_VALUE;
+
+    private final CompactServiceGraph graph;
+    // shortest latencies and predecessors from each source vertex, null until computed
+    private final Row[] rows;
+
+    /**
+     * Creates the index, choosing Floyd-Warshall for graphs with at most {@value #FLOYD_WARSHALL_MAX_VERTICES} vertices
+     * and Dijkstra otherwise.
+     *
+     * @param graph the graph of microservices
+     */
+    public ShortestLatencyIndex(@NotNull CompactServiceGraph graph) {
+        this(graph, graph.getVertexCount() <= FLOYD_WARSHALL_MAX_VERTICES);
+    }
+
+    ShortestLatencyIndex(@NotNull CompactServiceGraph graph, boolean floydWarshall) {
+        this.graph = Preconditions.checkNotNull(graph);
+        this.rows = floydWarshall ? floydWarshall(graph) : new Row[graph.getVertexCount()];
+    }
+
+    private ShortestLatencyIndex(CompactServiceGraph graph, Row[] rows) {
+        this.graph = graph;
+        this.rows = rows;
+    }
+
+    /**
+     * Creates the index of the changed graph from this one. A connection that got slower or was removed only affects
+     * the sources whose shortest path tree contains it, their rows are dropped and computed again by Dijkstra when asked
+     * about. A connection that got faster or was added can only shorten the traces, the other rows are repaired by
+     * Dijkstra started from the targets of such connections, which visits only the vertices whose latency decreases.
+     * Rows of the sources not affected by any change are shared with this index.
+     *
+     * @param updatedGraph the graph of this index with the changes applied, see
+     *     {@link CompactServiceGraph#withChanges(List)}
+     * @param changes changes of the connections
+     * @return index of the changed graph, this index is not modified
+     */
+    public ShortestLatencyIndex withChanges(@NotNull CompactServiceGraph updatedGraph,
+        @NotNull List<ConnectionChange> changes)
+    {
+        int[] sources = new int[changes.size()];
+        int[] targets = new int[changes.size()];
+        int increasedCount = 0;
+        int decreasedCount = 0;
+        for (ConnectionChange change : changes) {
+            int sourceId = updatedGraph.getVertexId(change.getSourceVertex());
+            int targetId = updatedGraph.getVertexId(change.getTargetVertex());
+            long oldLatency = getLatency(graph, sourceId, targetId);
+            long newLatency = getLatency(updatedGraph, sourceId, targetId);
+            // increased connections are stored from the start of the arrays, decreased ones from the end
+            if (newLatency > oldLatency) {
+                sources[increasedCount] = sourceId;
+                targets[increasedCount++] = targetId;
+            } else if (newLatency < oldLatency) {
+                decreasedCount++;
+                sources[sources.length - decreasedCount] = sourceId;
+                targets[targets.length - decreasedCount] = targetId;
+            }
+        }
+        Row[] updatedRows = Arrays.copyOf(rows, updatedGraph.getVertexCount());
+        for (int sourceId = 0; sourceId < rows.length; sourceId++) {
+            Row row = rows[sourceId];
+            if (row == null) {
+                continue;
+            }
+            if (usesAnyEdge(row, sources, targets, increasedCount)) {
+                updatedRows[sourceId] = null;
+            } else {
+                updatedRows[sourceId] = repair(updatedGraph, sourceId, row, sources, targets,
+                    sources.length - decreasedCount);
+            }
+        }
+        return new ShortestLatencyIndex(updatedGraph, updatedRows);
+    }
+
+    /**
+     * @return latency of the shortest trace from the source to the target microservice, or empty if there is no such trace
+     */
+    public OptionalInt getShortestLatency(@NotNull Microservice sourceVertex, @NotNull Microservice targetVertex) {
+        int latency = getShortestLatency(graph.getVertexId(sourceVertex), graph.getVertexId(targetVertex));
+        return latency == NO_SUCH_TRACE ? OptionalInt.empty() : OptionalInt.of(latency);
+    }
+
+    /**
+     * @return latency of the shortest trace from the source to the target vertex or {@link #NO_SUCH_TRACE}
+     */
+    public int getShortestLatency(int sourceId, int targetId) {
+        if (sourceId == CompactServiceGraph.NO_SUCH_VERTEX || targetId == CompactServiceGraph.NO_SUCH_VERTEX) {
+            return NO_SUCH_TRACE;
+        }
+        int latency = getRow(sourceId).latencies[targetId];
+        return latency == UNREACHABLE ? NO_SUCH_TRACE : latency;
+    }
+
+    /**
+     * @return microservices of the shortest trace from the source to the target microservice including both of them,
+     *     or empty if there is no such trace
+     */
+    public Optional<List<Microservice>> getShortestTrace(@NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex)
+    {
+        int[] trace = getShortestTrace(graph.getVertexId(sourceVertex), graph.getVertexId(targetVertex));
+        if (trace == null) {
+            return Optional.empty();
+        }
+        List<Microservice> microservices = new ArrayList<>(trace.length);
+        for (int vertexId : trace) {
+            microservices.add(graph.getMicroservice(vertexId));
+        }
+        return Optional.of(microservices);
+    }
+
+    /**
+     * @return ids of the vertices of the shortest trace from the source to the target vertex including both of them, or
+     *     {@code null} if there is no such trace
+     */
+    public int[] getShortestTrace(int sourceId, int targetId) {
+        if (getShortestLatency(sourceId, targetId) == NO_SUCH_TRACE) {
+            return null;
+        }
+        int[] predecessors = getRow(sourceId).predecessors;
+        int[] reversedTrace = new int[graph.getVertexCount() + 1];
+        int length = 0;
+        int vertex = targetId;
+        // do-while because the trace from a vertex to itself is a cycle and doesn't end on the first step
+        do {
+            reversedTrace[length++] = vertex;
+            vertex = predecessors[vertex];
+        } while (vertex != sourceId);
+        reversedTrace[length++] = sourceId;
+        int[] trace = new int[length];
+        for (int i = 0; i < length; i++) {
+            trace[i] = reversedTrace[length - 1 - i];
+        }
+        return trace;
+    }
+
+    public CompactServiceGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * @return latency of the connection or {@link #UNREACHABLE} if the vertices are not connected in the graph
+     */
+    private static long getLatency(CompactServiceGraph graph, int sourceId, int targetId) {
+        if (sourceId >= graph.getVertexCount() || targetId >= graph.getVertexCount()) {
+            return UNREACHABLE;
+        }
+        int edge = graph.findEdge(sourceId, targetId);
+        return edge == CompactServiceGraph.NO_SUCH_EDGE ? UNREACHABLE : graph.getEdgeLatency(edge);
+    }
+
+    /**
+     * @return true if the shortest path tree of the row contains any of the first {@code count} connections
+     */
+    private static boolean usesAnyEdge(Row row, int[] sources, int[] targets, int count) {
+        for (int i = 0; i < count; i++) {
+            if (row.predecessors[targets[i]] == sources[i]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Dijkstra seeded with the targets of the connections from {@code firstDecreased} to the end of the arrays whose
+     * latency got shorter. The row is copied before the first change, so it's returned as is when nothing changes.
+     */
+    private static Row repair(CompactServiceGraph graph, int sourceId, Row row, int[] sources, int[] targets,
+        int firstDecreased)
+    {
+        int n = graph.getVertexCount();
+        int[] latencies = row.latencies;
+        int[] predecessors = row.predecessors;
+        boolean copied = false;
+        if (latencies.length < n) {
+            latencies = copyOf(latencies, n, UNREACHABLE);
+            predecessors = copyOf(predecessors, n, CompactServiceGraph.NO_SUCH_VERTEX);
+            copied = true;
+        }
+        IntMinHeap heap = null;
+        for (int i = firstDecreased; i < sources.length; i++) {
+            // the traces start from the source with latency 0, its own entry is the shortest cycle through it
+            int latencyToSource = sources[i] == sourceId ? 0 : latencies[sources[i]];
+            if (latencyToSource == UNREACHABLE) {
+                continue;
+            }
+            long latency = (long) latencyToSource + graph.getEdgeLatency(graph.findEdge(sources[i], targets[i]));
+            if (latency < latencies[targets[i]]) {
+                if (!copied) {
+                    latencies = latencies.clone();
+                    predecessors = predecessors.clone();
+                    copied = true;
+                }
+                if (heap == null) {
+                    heap = new IntMinHeap(n, latencies);
+                }
+                latencies[targets[i]] = (int) latency;
+                predecessors[targets[i]] = sources[i];
+                heap.insertOrDecrease(targets[i]);
+            }
+        }
+        while (heap != null && !heap.isEmpty()) {
+            int vertex = heap.poll();
+            relaxOutgoingEdges(graph, vertex, latencies[vertex], latencies, predecessors, heap);
+        }
+        return copied ? new Row(latencies, predecessors) : row;
+    }
+
+    private static int[] copyOf(int[] array, int length, int fill) {
+        int[] copy = Arrays.copyOf(array, length);
+        Arrays.fill(copy, array.length, length, fill);
+        return copy;
+    }
+
+    private Row getRow(int sourceId) {
+        Row row = rows[sourceId];
+        if (row == null) {
+            // racing threads compute the same row, Row's final fields make it safe to publish without locking
+            row = dijkstra(graph, sourceId);
+            rows[sourceId] = row;
+        }
+        return row;
+    }
+
+    /**
+     * Floyd-Warshall where the distance from a vertex to itself starts as unreachable instead of 0, so it ends up as the
+     * length of the shortest cycle through the vertex.
+     */
+    private static Row[] floydWarshall(CompactServiceGraph graph) {
+        int n = graph.getVertexCount();
+        int[][] latencies = new int[n][n];
+        int[][] predecessors = new int[n][n];
+        for (int i = 0; i < n; i++) {
+            Arrays.fill(latencies[i], UNREACHABLE);
+            Arrays.fill(predecessors[i], CompactServiceGraph.NO_SUCH_VERTEX);
+            for (int e = graph.getFirstEdge(i); e < graph.getEdgeEnd(i); e++) {
+                latencies[i][graph.getEdgeTarget(e)] = graph.getEdgeLatency(e);
+                predecessors[i][graph.getEdgeTarget(e)] = i;
+            }
+        }
+        for (int k = 0; k < n; k++) {
+            int[] latenciesFromK = latencies[k];
+            int[] predecessorsFromK = predecessors[k];
+            for (int i = 0; i < n; i++) {
+                int latencyToK = latencies[i][k];
+                if (latencyToK == UNREACHABLE) {
+                    continue;
+                }
+                int[] latenciesFromI = latencies[i];
+                int[] predecessorsFromI = predecessors[i];
+                for (int j = 0; j < n; j++) {
+                    if (latenciesFromK[j] != UNREACHABLE && (long) latencyToK + latenciesFromK[j] < latenciesFromI[j]) {
+                        latenciesFromI[j] = latencyToK + latenciesFromK[j];
+                        predecessorsFromI[j] = predecessorsFromK[j];
+                    }
+                }
+            }
+        }
+        Row[] rows = new Row[n];
+        for (int i = 0; i < n; i++) {
+            rows[i] = new Row(latencies[i], predecessors[i]);
+        }
+        return rows;
+    }
+
+    /**
+     * Dijkstra where the source vertex starts as unreachable and its neighbours are relaxed first, so the source gets the
+     * length of the shortest cycle through it.
+     */
+    static Row dijkstra(CompactServiceGraph graph, int sourceId) {
+        int n = graph.getVertexCount();
+        int[] latencies = new int[n];
+        int[] predecessors = new int[n];
+        Arrays.fill(latencies, UNREACHABLE);
+        Arrays.fill(predecessors, CompactServiceGraph.NO_SUCH_VERTEX);
+        IntMinHeap heap = new IntMinHeap(n, latencies);
+        relaxOutgoingEdges(graph, sourceId, 0, latencies, predecessors, heap);
+        while (!heap.isEmpty()) {
+            int vertex = heap.poll();
+            relaxOutgoingEdges(graph, vertex, latencies[vertex], latencies, predecessors, heap);
+        }
+        return new Row(latencies, predecessors);
+    }
+
+    private static void relaxOutgoingEdges(CompactServiceGraph graph, int vertex, int latencyToVertex, int[] latencies,
+        int[] predecessors, IntMinHeap heap)
+    {
+        for (int e = graph.getFirstEdge(vertex); e < graph.getEdgeEnd(vertex); e++) {
+            int target = graph.getEdgeTarget(e);
+            long latency = (long) latencyToVertex + graph.getEdgeLatency(e);
+            if (latency < latencies[target]) {
+                latencies[target] = (int) latency;
+                predecessors[target] = vertex;
+                heap.insertOrDecrease(target);
+            }
+        }
+    }
+
+    static final class Row {
+
+        final int[] latencies;
+        final int[] predecessors;
+
+        Row(int[] latencies, int[] predecessors) {
+            this.latencies = latencies;
+            this.predecessors = predecessors;
+        }
+    }
+
+    /**
+     * Binary min-heap of vertex ids ordered by the keys array, with the position of each vertex tracked for decrease-key.
+     */
+    static final class IntMinHeap {
+
+        private final int[] heap;
+        private final int[] positions;
+        private final int[] keys;
+        private int size;
+
+        IntMinHeap(int capacity, int[] keys) {
+            this.heap = new int[capacity];
+            this.positions = new int[capacity];
+            this.keys = keys;
+            Arrays.fill(positions, -1);
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * Inserts the vertex or restores the heap order after its key was decreased.
+         */
+        void insertOrDecrease(int vertex) {
+            int position = positions[vertex];
+            if (position < 0) {
+                position = size++;
+                heap[position] = vertex;
+                positions[vertex] = position;
+            }
+            siftUp(position);
+        }
+
+        int poll() {
+            int min = heap[0];
+            positions[min] = -1;
+            size--;
+            if (size > 0) {
+                heap[0] = heap[size];
+                positions[heap[0]] = 0;
+                siftDown(0);
+            }
+            return min;
+        }
+
+        private void siftUp(int position) {
+            int vertex = heap[position];
+            while (position > 0) {
+                int parent = (position - 1) >>> 1;
+                if (keys[heap[parent]] <= keys[vertex]) {
+                    break;
+                }
+                heap[position] = heap[parent];
+                positions[heap[position]] = position;
+                position = parent;
+            }
+            heap[position] = vertex;
+            positions[vertex] = position;
+        }
+
+        private void siftDown(int position) {
+            int vertex = heap[position];
+            while (true) {
+                int child = 2 * position + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && keys[heap[child + 1]] < keys[heap[child]]) {
+                    child++;
+                }
+                if (keys[vertex] <= keys[heap[child]]) {
+                    break;
+                }
+                heap[position] = heap[child];
+                positions[heap[position]] = position;
+                position = child;
+            }
+            heap[position] = vertex;
+            positions[vertex] = position;
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.example.tracing.algorithm;
+
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.ConnectionChange;
+import com.google.inject.internal.util.Preconditions;
+import java.util.Arrays;
+import java.util.List;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Strongly connected components of a {@link CompactServiceGraph}, found once per topology by an iterative Tarjan's
+ * algorithm in O(V + E), so deep graphs don't overflow the stack. The components are numbered in topological order of
+ * the condensation: every connection leads to a vertex of the same or of a later component, so a vertex can only reach
+ * the vertices of its own and later components. Graphs have no self-loops, so a component is cyclic exactly when it has
+ * more than one vertex.
+ * A mesh is mostly a DAG with a few small cycles. The traces from a vertex that reaches no cyclic component are the
+ * paths of a DAG, they are counted for all targets at once by dynamic programming over the vertices in topological
+ * order, see {@link #getDagPathsFrom(int)}, so only the traces through cyclic components need the bounded counting.
+ * After a change of the topology {@link #withChanges(CompactServiceGraph, List)} keeps the components when only the
+ * latencies change.
+ */
+public final class StronglyConnectedComponents {
+
+    private final CompactServiceGraph graph;
+    private final int[] components; // component of each vertex
+    // vertices of the component c are in range [componentOffsets[c], componentOffsets[c + 1]) of vertices
+    private final int[] componentOffsets;
+    private final int[] vertices;
+    private final boolean[] reachesCycle; // whether a cyclic component, itself included, is reachable from the component
+
+    public StronglyConnectedComponents(@NotNull CompactServiceGraph graph) {
+        this.graph = Preconditions.checkNotNull(graph);
+        this.components = findComponents(graph);
+        int componentCount = 0;
+        for (int component : components) {
+            componentCount = Math.max(componentCount, component + 1);
+        }
+        this.componentOffsets = new int[componentCount + 1];
+        for (int component : components) {
+            componentOffsets[component + 1]++;
+        }
+        for (int c = 0; c < componentCount; c++) {
+            componentOffsets[c + 1] += componentOffsets[c];
+        }
+        this.vertices = new int[components.length];
+        int[] nextSlot = Arrays.copyOf(componentOffsets, componentCount);
+        for (int v = 0; v < components.length; v++) {
+            vertices[nextSlot[components[v]]++] = v;
+        }
+        this.reachesCycle = new boolean[componentCount];
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        // later components first, as the components reachable from a component come after it
+        for (int c = componentCount - 1; c >= 0; c--) {
+            reachesCycle[c] = isCyclic(c);
+            for (int i = componentOffsets[c]; i < componentOffsets[c + 1] && !reachesCycle[c]; i++) {
+                for (int e = offsets[vertices[i]]; e < offsets[vertices[i] + 1]; e++) {
+                    if (reachesCycle[components[targets[e]]]) {
+                        reachesCycle[c] = true;
+                        break;
+                    }
+                }
+            }
+        }
+    }
+
+    private StronglyConnectedComponents(CompactServiceGraph graph, StronglyConnectedComponents topology) {
+        this.graph = graph;
+        this.components = topology.components;
+        this.componentOffsets = topology.componentOffsets;
+        this.vertices = topology.vertices;
+        this.reachesCycle = topology.reachesCycle;
+    }
+
+    /**
+     * Creates the components of the changed graph. Latency changes don't change the components, so they are shared with
+     * these ones when no connection is added or removed, otherwise they are found again.
+     *
+     * @param updatedGraph the graph of these components with the changes applied, see
+     *     {@link CompactServiceGraph#withChanges(List)}
+     * @param changes changes of the connections
+     * @return components of the changed graph, these ones are not modified
+     */
+    public StronglyConnectedComponents withChanges(@NotNull CompactServiceGraph updatedGraph,
+        @NotNull List<ConnectionChange> changes)
+    {
+        boolean sameTopology = updatedGraph.getVertexCount() == graph.getVertexCount()
+            && changes.stream().allMatch(change -> change.getKind() == ConnectionChange.Kind.UPDATE_LATENCY);
+        return sameTopology
+            ? new StronglyConnectedComponents(updatedGraph, this)
+            : new StronglyConnectedComponents(updatedGraph);
+    }
+
+    public int getComponentCount() {
+        return reachesCycle.length;
+    }
+
+    /**
+     * @return component of the vertex, the components are numbered in topological order
+     */
+    public int getComponent(int vertexId) {
+        Preconditions.checkElementIndex(vertexId, components.length);
+        return components[vertexId];
+    }
+
+    public int getComponentSize(int component) {
+        Preconditions.checkElementIndex(component, getComponentCount());
+        return componentOffsets[component + 1] - componentOffsets[component];
+    }
+
+    /**
+     * @return whether the component has a cycle, i.e. more than one vertex
+     */
+    public boolean isCyclic(int component) {
+        return getComponentSize(component) > 1;
+    }
+
+    /**
+     * @return whether no cycle is reachable from the vertex, i.e. all the traces from it are simple paths
+     */
+    public boolean isAcyclicFrom(int vertexId) {
+        return !reachesCycle[getComponent(vertexId)];
+    }
+
+    /**
+     * Rules out the targets in earlier components in O(1), it doesn't search the graph.
+     *
+     * @return false if there is no path with at least one edge from the source to the target vertex, true if there may
+     *     be one
+     */
+    public boolean mayHavePath(int sourceId, int targetId) {
+        int sourceComponent = getComponent(sourceId);
+        int targetComponent = getComponent(targetId);
+        return sourceComponent < targetComponent || sourceComponent == targetComponent && isCyclic(sourceComponent);
+    }
+
+    public CompactServiceGraph getGraph() {
+        return graph;
+    }
+
+    /**
+     * Counts all the paths from a vertex that reaches no cycle by dynamic programming over the vertices in topological
+     * order, every component reachable from it being a single vertex, and records the number of edges and the latency
+     * of the longest path to each vertex as well. The bounded counts of a target equal its count when the limit is above
+     * its longest path.
+     *
+     * @param sourceId id of the source vertex, see {@link #isAcyclicFrom(int)}
+     * @return paths from the source vertex to each vertex
+     */
+    DagPaths getDagPathsFrom(int sourceId) {
+        Preconditions.checkArgument(isAcyclicFrom(sourceId), "A cycle is reachable from the source vertex");
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int[] latencies = graph.getLatencies();
+        long[] pathCounts = new long[vertices.length];
+        int[] maxLengths = new int[vertices.length];
+        long[] maxWeights = new long[vertices.length];
+        Arrays.fill(maxLengths, DagPaths.UNREACHABLE);
+        Arrays.fill(maxWeights, DagPaths.UNREACHABLE);
+        pathCounts[sourceId] = 1;
+        maxLengths[sourceId] = 0;
+        maxWeights[sourceId] = 0;
+        for (int i = componentOffsets[components[sourceId]]; i < vertices.length; i++) {
+            int v = vertices[i];
+            if (maxLengths[v] == DagPaths.UNREACHABLE) {
+                continue;
+            }
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                int u = targets[e];
+                pathCounts[u] = DagPaths.addSaturated(pathCounts[u], pathCounts[v]);
+                maxLengths[u] = Math.max(maxLengths[u], maxLengths[v] + 1);
+                maxWeights[u] = Math.max(maxWeights[u], maxWeights[v] + latencies[e]);
+            }
+        }
+        // the empty path is not a trace
+        pathCounts[sourceId] = 0;
+        return new DagPaths(pathCounts, maxLengths, maxWeights);
+    }
+
+    /**
+     * Tarjan's algorithm with an explicit stack of the vertices being visited and the next edge of each of them.
+     *
+     * @return component of each vertex, numbered in topological order
+     */
+    private static int[] findComponents(CompactServiceGraph graph) {
+        int vertexCount = graph.getVertexCount();
+        int[] offsets = graph.getOffsets();
+        int[] targets = graph.getTargets();
+        int[] visitOrder = new int[vertexCount]; // 0 until visited, then the order of the visit starting from 1
+        int[] lowLinks = new int[vertexCount];
+        boolean[] onStack = new boolean[vertexCount];
+        int[] stack = new int[vertexCount];
+        int stackSize = 0;
+        int[] path = new int[vertexCount];
+        int[] nextEdges = new int[vertexCount];
+        int[] components = new int[vertexCount];
+        int componentCount = 0;
+        int visitCount = 0;
+        for (int root = 0; root < vertexCount; root++) {
+            if (visitOrder[root] != 0) {
+                continue;
+            }
+            int depth = 0;
+            path[0] = root;
+            nextEdges[0] = offsets[root];
+            visitOrder[root] = lowLinks[root] = ++visitCount;
+            stack[stackSize++] = root;
+            onStack[root] = true;
+            while (depth >= 0) {
+                int v = path[depth];
+                if (nextEdges[depth] < offsets[v + 1]) {
+                    int u = targets[nextEdges[depth]++];
+                    if (visitOrder[u] == 0) {
+                        depth++;
+                        path[depth] = u;
+                        nextEdges[depth] = offsets[u];
+                        visitOrder[u] = lowLinks[u] = ++visitCount;
+                        stack[stackSize++] = u;
+                        onStack[u] = true;
+                    } else if (onStack[u]) {
+                        lowLinks[v] = Math.min(lowLinks[v], visitOrder[u]);
+                    }
+                    continue;
+                }
+                if (lowLinks[v] == visitOrder[v]) {
+                    int u;
+                    do {
+                        u = stack[--stackSize];
+                        onStack[u] = false;
+                        components[u] = componentCount;
+                    } while (u != v);
+                    componentCount++;
+                }
+                depth--;
+                if (depth >= 0) {
+                    lowLinks[path[depth]] = Math.min(lowLinks[path[depth]], lowLinks[v]);
+                }
+            }
+        }
+        // Tarjan's algorithm completes a component after all the components reachable from it, reverse the numbers
+        for (int v = 0; v < vertexCount; v++) {
+            components[v] = componentCount - 1 - components[v];
+        }
+        return components;
+    }
+
+    /**
+     * All the paths from a source vertex that reaches no cycle, see {@link #getDagPathsFrom(int)}.
+     */
+    static final class DagPaths {
+
+        static final int UNREACHABLE = -1;
+        // a count that doesn't fit into long, it stays one when added to
+        private static final long OVERFLOW = -1;
+
+        private final long[] pathCounts;
+        private final int[] maxLengths;
+        private final long[] maxWeights;
+
+        private DagPaths(long[] pathCounts, int[] maxLengths, long[] maxWeights) {
+            this.pathCounts = pathCounts;
+            this.maxLengths = maxLengths;
+            this.maxWeights = maxWeights;
+        }
+
+        /**
+         * @return number of paths with at least one edge from the source to the vertex
+         * @throws ArithmeticException if the number of paths doesn't fit into {@code long}
+         */
+        long getPathCount(int vertexId) {
+            if (pathCounts[vertexId] == OVERFLOW) {
+                throw new ArithmeticException("long overflow");
+            }
+            return pathCounts[vertexId];
+        }
+
+        /**
+         * @return number of edges of the longest path from the source to the vertex, 0 for the source and
+         *     {@link #UNREACHABLE} if there is no path
+         */
+        int getMaxPathLength(int vertexId) {
+            return maxLengths[vertexId];
+        }
+
+        /**
+         * @return latency of the longest path from the source to the vertex, 0 for the source and {@link #UNREACHABLE}
+         *     if there is no path
+         */
+        long getMaxPathWeight(int vertexId) {
+            return maxWeights[vertexId];
+        }
+
+        // counts before the paths of a long limit are ruled out may not fit into long, so they don't throw right away
+        private static long addSaturated(long x, long y) {
+            long sum = x + y;
+            return x == OVERFLOW || y == OVERFLOW || sum < 0 ? OVERFLOW : sum;
+        }
+    }
+}
@@ -1,12 +1,23 @@
 package com.example.tracing.algorithm;
 
+import com.example.tracing.model.CompactServiceGraph;
 import com.example.tracing.model.Connection;
+import com.example.tracing.model.LatencyHistogram;
 import com.example.tracing.model.Microservice;
 import com.google.inject.internal.util.Preconditions;
 import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.ToLongFunction;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 import org.jetbrains.annotations.NotNull;
 import org.jgrapht.Graph;
 import org.jgrapht.GraphPath;
@@ -16,38 +27,64 @@ import org.jgrapht.graph.GraphWalk;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+/**
+ * Queries about the traces between microservices. Each query is measured and handed over to the
+ * {@link #setRecorder(QueryRecorder) recorder} as {@link com.example.tracing.model.QueryMetrics} of the type named after
+ * the method, with the suffix {@code Compact} for the {@link CompactServiceGraph} overloads. The default recorder is
+ * {@link QueryRecorder#NO_OP}, with which the queries are not measured. A stream is measured from its creation until it's
+ * exhausted or closed, so its wall time includes the time spent by the consumer. A query that throws is recorded as
+ * failed before the exception propagates. The hop-bounded trace lists and {@code getAllPathsWithWeightLessThanSlow} are
+ * enumerated by jgrapht, whose labels cannot be counted, so their labels and queue are recorded as unknown.
+ */
 public class Traversal {
 
     private static final Logger LOG = LoggerFactory.getLogger(Traversal.class);
     public static final String ERROR_VERTICES_CANNOT_BE_EMPTY = "Vertices cannot be empty";
 
+    private static volatile QueryRecorder recorder = QueryRecorder.NO_OP;
+
+    /**
+     * @param recorder recorder of the metrics of all the queries answered from now on
+     */
+    public static void setRecorder(@NotNull QueryRecorder recorder) {
+        Traversal.recorder = Preconditions.checkNotNull(recorder);
+    }
+
+    public static QueryRecorder getRecorder() {
+        return recorder;
+    }
+
     public static Optional<GraphWalk<Microservice, Connection>> getGraphWalk(
         @NotNull Graph<Microservice, Connection> g,
         @NotNull List<Microservice> vertices)
     {
-        Preconditions.checkNotNull(g);
-        Preconditions.checkNotNull(vertices);
-        Preconditions.checkArgument(!vertices.isEmpty(), ERROR_VERTICES_CANNOT_BE_EMPTY);
+        return record("getGraphWalk", statistics -> {
+            Preconditions.checkNotNull(g);
+            Preconditions.checkNotNull(vertices);
+            Preconditions.checkArgument(!vertices.isEmpty(), ERROR_VERTICES_CANNOT_BE_EMPTY);
 
-        if (vertices.size() == 1) {
-            return Optional.of(GraphWalk.singletonWalk(g, vertices.get(0)));
-        }
-        List<Connection> edgeList = new ArrayList<>();
-        int pathWeight = 0;
-        for (int j = 0; j < vertices.size() - 1; j++) {
-            Connection edge = g.getEdge(vertices.get(j), vertices.get(j + 1));
-            if (edge != null) {
-                double edgeWeight = g.getEdgeWeight(edge);
-                pathWeight += edgeWeight;
-                LOG.debug("{}", edge);
-                edgeList.add(edge);
-            } else {
-                String trace = vertices.stream().map(Microservice::toString).collect(Collectors.joining(" -> "));
-                LOG.debug("Path does not exist: {}", trace);
-                return Optional.empty();
+            if (vertices.size() == 1) {
+                return Optional.of(GraphWalk.singletonWalk(g, vertices.get(0)));
             }
-        }
-        return Optional.of(new GraphWalk<>(g, vertices.get(0), vertices.get(vertices.size() - 1), edgeList, pathWeight));
+            List<Connection> edgeList = new ArrayList<>();
+            int pathWeight = 0;
+            for (int j = 0; j < vertices.size() - 1; j++) {
+                Connection edge = g.getEdge(vertices.get(j), vertices.get(j + 1));
+                if (edge != null) {
+                    double edgeWeight = g.getEdgeWeight(edge);
+                    pathWeight += edgeWeight;
+                    LOG.debug("{}", edge);
+                    edgeList.add(edge);
+                } else {
+                    if (LOG.isDebugEnabled()) {
+                        String trace = vertices.stream().map(Microservice::toString).collect(Collectors.joining(" -> "));
+                        LOG.debug("Path does not exist: {}", trace);
+                    }
+                    return Optional.empty();
+                }
+            }
+            return Optional.of(new GraphWalk<>(g, vertices.get(0), vertices.get(vertices.size() - 1), edgeList, pathWeight));
+        }, walk -> walk.isPresent() ? 1 : 0);
     }
 
     public static List<GraphPath<Microservice, Connection>> getAllPathsWithPathLengthUpToMax(
@@ -56,15 +93,27 @@ public class Traversal {
         @NotNull Microservice targetVertex,
         int maxPathLength)
     {
-        Preconditions.checkNotNull(g);
-        Preconditions.checkNotNull(sourceVertex);
-        Preconditions.checkNotNull(targetVertex);
+        return record("getAllPathsWithPathLengthUpToMax",
+            statistics -> findAllPathsWithPathLengthUpToMax(g, sourceVertex, targetVertex, maxPathLength, statistics),
+            List::size);
+    }
 
-        AllDirectedPaths<Microservice, Connection> allPaths = new AllDirectedPaths<>(g);
-        return allPaths.getAllPaths(sourceVertex, targetVertex, false, maxPathLength).stream()
-            // filter out self-loop like path that will appear if source and target vertices are the same
-            .filter(path -> path.getLength() > 0)
-            .collect(Collectors.toList());
+    /**
+     * Budgeted counterpart of {@link #getAllPathsWithPathLengthUpToMax(Graph, Microservice, Microservice, int)}, finds the
+     * same traces in the order of their length, but stops as soon as the search exceeds the budget.
+     *
+     * @return the traces, or the ones found before the search exceeded the budget flagged as truncated
+     */
+    public static PartialResult<List<GraphPath<Microservice, Connection>>> getAllPathsWithPathLengthUpToMax(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathLength,
+        @NotNull SearchBudget budget)
+    {
+        return record("getAllPathsWithPathLengthUpToMax", statistics -> newAllPaths(g, statistics)
+            .getAllPathsWithLengthUpToMax(sourceVertex, targetVertex, maxPathLength, budget),
+            paths -> paths.getResult().size());
     }
 
     public static List<GraphPath<Microservice, Connection>> getAllPathsWithExactPathLength(
@@ -73,9 +122,55 @@ public class Traversal {
         @NotNull Microservice targetVertex,
         int pathLength)
     {
-        return getAllPathsWithPathLengthUpToMax(g, sourceVertex, targetVertex, pathLength).stream()
-            .filter(path -> path.getLength() == pathLength)
-            .collect(Collectors.toList());
+        return record("getAllPathsWithExactPathLength",
+            statistics -> findAllPathsWithPathLengthUpToMax(g, sourceVertex, targetVertex, pathLength, statistics).stream()
+                .filter(path -> path.getLength() == pathLength)
+                .collect(Collectors.toList()),
+            List::size);
+    }
+
+    public static long countPathsWithPathLengthUpToMax(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathLength)
+    {
+        return record("countPathsWithPathLengthUpToMax", statistics -> {
+            Preconditions.checkNotNull(g);
+            return new HopBoundedPathCounter<>(g).countPathsWithLengthUpToMax(sourceVertex, targetVertex, maxPathLength);
+        }, Long::longValue);
+    }
+
+    public static long countPathsWithExactPathLength(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int pathLength)
+    {
+        return record("countPathsWithExactPathLength", statistics -> {
+            Preconditions.checkNotNull(g);
+            return new HopBoundedPathCounter<>(g).countPathsWithExactLength(sourceVertex, targetVertex, pathLength);
+        }, Long::longValue);
+    }
+
+    public static long countPathsWithPathLengthUpToMax(
+        @NotNull CompactServiceGraph g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathLength)
+    {
+        return record("countPathsWithPathLengthUpToMaxCompact",
+            statistics -> countPathsWithPathLength(g, sourceVertex, targetVertex, maxPathLength, true), Long::longValue);
+    }
+
+    public static long countPathsWithExactPathLength(
+        @NotNull CompactServiceGraph g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int pathLength)
+    {
+        return record("countPathsWithExactPathLengthCompact",
+            statistics -> countPathsWithPathLength(g, sourceVertex, targetVertex, pathLength, false), Long::longValue);
     }
 
     public static List<GraphPath<Microservice, Connection>> getAllPathsWithWeightLessThanSlow(
@@ -87,16 +182,42 @@ public class Traversal {
     )
     {
         // this is suboptimal because for larger maxPathWeight / minEdgeWeight (>40) for graphs with loops it will be very slow and blow up memory
+        // unless the search is given a SearchBudget
         // maxHops is limited to maxPathWeight / minEdgeWeight to reduce amount of returned paths
         // because weights (latency) are positive integers and therefore number of hops can't be greater than maxPathWeight / minEdgeWeight
-        return getAllPathsWithPathLengthUpToMax(g, sourceVertex, targetVertex, maxPathWeight / minEdgeWeight).stream()
-            .filter(path -> path.getWeight() < maxPathWeight)
-            .peek(path -> {
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("{}", path.getEdgeList().stream().map(Connection::toString).collect(Collectors.joining(",")));
-                }
-            })
-            .collect(Collectors.toList());
+        return record("getAllPathsWithWeightLessThanSlow", statistics ->
+            findAllPathsWithPathLengthUpToMax(g, sourceVertex, targetVertex, maxPathWeight / minEdgeWeight, statistics)
+                .stream()
+                .filter(path -> path.getWeight() < maxPathWeight)
+                .peek(path -> {
+                    if (LOG.isDebugEnabled()) {
+                        LOG.debug("{}",
+                            path.getEdgeList().stream().map(Connection::toString).collect(Collectors.joining(",")));
+                    }
+                })
+                .collect(Collectors.toList()),
+            List::size);
+    }
+
+    /**
+     * Budgeted counterpart of
+     * {@link #getAllPathsWithWeightLessThanSlow(Graph, Microservice, Microservice, int, int)}, finds the same traces in
+     * the order of their length, but stops as soon as the search exceeds the budget.
+     *
+     * @return the traces, or the ones found before the search exceeded the budget flagged as truncated
+     */
+    public static PartialResult<List<GraphPath<Microservice, Connection>>> getAllPathsWithWeightLessThanSlow(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathWeight,
+        int minEdgeWeight,
+        @NotNull SearchBudget budget
+    )
+    {
+        return record("getAllPathsWithWeightLessThanSlow", statistics -> newAllPaths(g, statistics)
+            .getAllPaths(sourceVertex, targetVertex, maxPathWeight, maxPathWeight / minEdgeWeight, budget),
+            paths -> paths.getResult().size());
     }
 
     public static List<GraphPath<Microservice, Connection>> getAllPathsWithWeightLessThan(
@@ -106,8 +227,359 @@ public class Traversal {
         int maxPathWeight
     )
     {
-        return new AllSimpleAndNonSimpleDirectedPaths<>(g)
-            .getAllPathsWithWeightLessThan(sourceVertex, targetVertex, maxPathWeight);
+        return record("getAllPathsWithWeightLessThan", statistics -> newAllPaths(g, statistics)
+            .getAllPathsWithWeightLessThan(sourceVertex, targetVertex, maxPathWeight), List::size);
+    }
+
+    /**
+     * Budgeted counterpart of {@link #getAllPathsWithWeightLessThan(Graph, Microservice, Microservice, int)}, finds the
+     * same traces in the same order, but stops as soon as the search exceeds the budget.
+     *
+     * @return the traces, or the ones found before the search exceeded the budget flagged as truncated
+     */
+    public static PartialResult<List<GraphPath<Microservice, Connection>>> getAllPathsWithWeightLessThan(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathWeight,
+        @NotNull SearchBudget budget
+    )
+    {
+        return record("getAllPathsWithWeightLessThan", statistics -> newAllPaths(g, statistics)
+            .getAllPathsWithWeightLessThan(sourceVertex, targetVertex, maxPathWeight, budget),
+            paths -> paths.getResult().size());
+    }
+
+    /**
+     * Parallel counterpart of {@link #getAllPathsWithWeightLessThan(Graph, Microservice, Microservice, int)}, returns
+     * the same paths in the same order using {@code parallelism} worker threads.
+     */
+    public static List<GraphPath<Microservice, Connection>> getAllPathsWithWeightLessThanInParallel(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathWeight,
+        int parallelism
+    )
+    {
+        return record("getAllPathsWithWeightLessThanInParallel", statistics -> newAllPaths(g, statistics)
+            .getAllPathsWithWeightLessThanInParallel(sourceVertex, targetVertex, maxPathWeight, parallelism),
+            List::size);
+    }
+
+    /**
+     * Budgeted counterpart of
+     * {@link #getAllPathsWithWeightLessThanInParallel(Graph, Microservice, Microservice, int, int)}, the worker threads
+     * share the budget and all stop as soon as the search exceeds it.
+     *
+     * @return the traces, or the ones found before the search exceeded the budget flagged as truncated, which are not
+     *     necessarily the first ones of the order
+     */
+    public static PartialResult<List<GraphPath<Microservice, Connection>>> getAllPathsWithWeightLessThanInParallel(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathWeight,
+        int parallelism,
+        @NotNull SearchBudget budget
+    )
+    {
+        return record("getAllPathsWithWeightLessThanInParallel", statistics -> newAllPaths(g, statistics)
+            .getAllPathsWithWeightLessThanInParallel(sourceVertex, targetVertex, maxPathWeight, parallelism, budget),
+            paths -> paths.getResult().size());
+    }
+
+    public static long countPathsWithWeightLessThan(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathWeight
+    )
+    {
+        return record("countPathsWithWeightLessThan", statistics -> new AllSimpleAndNonSimpleDirectedPaths<>(g)
+            .countPathsWithWeightLessThan(sourceVertex, targetVertex, maxPathWeight), Long::longValue);
+    }
+
+    /**
+     * Counts the traces {@link #getAllPathsWithWeightLessThan(Graph, Microservice, Microservice, int)} finds without
+     * building them. Like the enumeration, it rejects a source microservice that is not in the graph and finds no trace
+     * to a target microservice that is not in the graph.
+     *
+     * @throws IllegalArgumentException if the source microservice is not in the graph
+     */
+    public static long countPathsWithWeightLessThan(
+        @NotNull CompactServiceGraph g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathWeight
+    )
+    {
+        return record("countPathsWithWeightLessThanCompact", statistics -> {
+            Preconditions.checkNotNull(g);
+            Preconditions.checkNotNull(sourceVertex);
+            Preconditions.checkNotNull(targetVertex);
+
+            int sourceId = getSourceVertexId(g, sourceVertex);
+            int targetId = g.getVertexId(targetVertex);
+            if (targetId == CompactServiceGraph.NO_SUCH_VERTEX) {
+                return 0L;
+            }
+            return WeightBoundedWalkCounter.countWalksFrom(g.getOffsets(), g.getTargets(), g.getLatencies(), sourceId,
+                maxPathWeight)[targetId];
+        }, Long::longValue);
+    }
+
+    /**
+     * Distribution of the latencies of the traces counted by
+     * {@link #countPathsWithWeightLessThan(Graph, Microservice, Microservice, int)}, computed in the same pass.
+     */
+    public static LatencyHistogram getLatencyHistogramWithWeightLessThan(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathWeight
+    )
+    {
+        return record("getLatencyHistogramWithWeightLessThan", statistics -> new LatencyHistogram(
+            new AllSimpleAndNonSimpleDirectedPaths<>(g)
+                .countPathsByWeightWithWeightLessThan(sourceVertex, targetVertex, maxPathWeight)),
+            LatencyHistogram::getTotalCount);
+    }
+
+    public static LatencyHistogram getLatencyHistogramWithWeightLessThan(
+        @NotNull CompactServiceGraph g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathWeight
+    )
+    {
+        return record("getLatencyHistogramWithWeightLessThanCompact", statistics -> {
+            Preconditions.checkNotNull(g);
+            Preconditions.checkNotNull(sourceVertex);
+            Preconditions.checkNotNull(targetVertex);
+
+            int sourceId = getSourceVertexId(g, sourceVertex);
+            int targetId = g.getVertexId(targetVertex);
+            if (targetId == CompactServiceGraph.NO_SUCH_VERTEX) {
+                return new LatencyHistogram(new long[Math.max(maxPathWeight, 0)]);
+            }
+            return new LatencyHistogram(WeightBoundedWalkCounter.countWalksByWeight(g.getOffsets(), g.getTargets(),
+                g.getLatencies(), sourceId, targetId, maxPathWeight));
+        }, LatencyHistogram::getTotalCount);
+    }
+
+    /**
+     * Distribution of the latencies of the traces with at most {@code maxPathLength} hops, computed without enumerating
+     * them.
+     */
+    public static LatencyHistogram getLatencyHistogramWithPathLengthUpToMax(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathLength
+    )
+    {
+        return record("getLatencyHistogramWithPathLengthUpToMax", statistics -> new LatencyHistogram(
+            new AllSimpleAndNonSimpleDirectedPaths<>(g)
+                .countPathsByWeightWithLengthUpToMax(sourceVertex, targetVertex, maxPathLength)),
+            LatencyHistogram::getTotalCount);
+    }
+
+    public static LatencyHistogram getLatencyHistogramWithPathLengthUpToMax(
+        @NotNull CompactServiceGraph g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathLength
+    )
+    {
+        return record("getLatencyHistogramWithPathLengthUpToMaxCompact", statistics -> {
+            Preconditions.checkNotNull(g);
+            Preconditions.checkNotNull(sourceVertex);
+            Preconditions.checkNotNull(targetVertex);
+
+            int sourceId = g.getVertexId(sourceVertex);
+            int targetId = g.getVertexId(targetVertex);
+            if (sourceId == CompactServiceGraph.NO_SUCH_VERTEX || targetId == CompactServiceGraph.NO_SUCH_VERTEX) {
+                return new LatencyHistogram(new long[1]);
+            }
+            return new LatencyHistogram(HopBoundedPathCounter.countPathsByWeightFrom(g.getOffsets(), g.getTargets(),
+                g.getLatencies(), sourceId, targetId, maxPathLength));
+        }, LatencyHistogram::getTotalCount);
+    }
+
+    /**
+     * Prefix-sharing counterpart of {@link #getAllPathsWithWeightLessThan(Graph, Microservice, Microservice, int)}, the
+     * paths are built only when they are asked for. The search keeps every partial trace it expands until it's over, so
+     * it's pruned with {@link AllSimpleAndNonSimpleDirectedPaths.Pruning#DISTANCE_TO_TARGET}, which finds the same
+     * traces since latencies are integers.
+     */
+    public static PathTrie<Microservice, Connection> getPathTrieWithWeightLessThan(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathWeight
+    )
+    {
+        return record("getPathTrieWithWeightLessThan", statistics -> newPrunedAllPaths(g, statistics)
+            .getPathTrieWithWeightLessThan(sourceVertex, targetVertex, maxPathWeight), PathTrie::getPathCount);
+    }
+
+    /**
+     * Budgeted counterpart of {@link #getPathTrieWithWeightLessThan(Graph, Microservice, Microservice, int)}.
+     *
+     * @return the trie, or the trie of the traces found before the search exceeded the budget flagged as truncated
+     */
+    public static PartialResult<PathTrie<Microservice, Connection>> getPathTrieWithWeightLessThan(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathWeight,
+        @NotNull SearchBudget budget
+    )
+    {
+        return record("getPathTrieWithWeightLessThan", statistics -> newPrunedAllPaths(g, statistics)
+            .getPathTrieWithWeightLessThan(sourceVertex, targetVertex, maxPathWeight, budget),
+            trie -> trie.getResult().getPathCount());
+    }
+
+    /**
+     * Prefix-sharing counterpart of {@link #getAllPathsWithPathLengthUpToMax(Graph, Microservice, Microservice, int)},
+     * the paths are in the order of their length.
+     */
+    public static PathTrie<Microservice, Connection> getPathTrieWithPathLengthUpToMax(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathLength
+    )
+    {
+        return record("getPathTrieWithPathLengthUpToMax", statistics -> newAllPaths(g, statistics)
+            .getPathTrieWithLengthUpToMax(sourceVertex, targetVertex, maxPathLength), PathTrie::getPathCount);
+    }
+
+    /**
+     * Budgeted counterpart of {@link #getPathTrieWithPathLengthUpToMax(Graph, Microservice, Microservice, int)}.
+     *
+     * @return the trie, or the trie of the traces found before the search exceeded the budget flagged as truncated
+     */
+    public static PartialResult<PathTrie<Microservice, Connection>> getPathTrieWithPathLengthUpToMax(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathLength,
+        @NotNull SearchBudget budget
+    )
+    {
+        return record("getPathTrieWithPathLengthUpToMax", statistics -> newAllPaths(g, statistics)
+            .getPathTrieWithLengthUpToMax(sourceVertex, targetVertex, maxPathLength, budget),
+            trie -> trie.getResult().getPathCount());
+    }
+
+    /**
+     * Single-source counterpart of {@link #getAllPathsWithWeightLessThan(Graph, Microservice, Microservice, int)}, finds
+     * the paths to every microservice in one search.
+     *
+     * @return paths to each of the microservices that can be reached with latency less than {@code maxPathWeight}
+     */
+    public static Map<Microservice, List<GraphPath<Microservice, Connection>>> getAllPathsByTargetWithWeightLessThan(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        int maxPathWeight
+    )
+    {
+        return record("getAllPathsByTargetWithWeightLessThan", statistics -> newAllPaths(g, statistics)
+            .getAllPathsByTargetWithWeightLessThan(sourceVertex, maxPathWeight),
+            pathsByTarget -> pathsByTarget.values().stream().mapToLong(List::size).sum());
+    }
+
+    /**
+     * Single-source counterpart of {@link #countPathsWithWeightLessThan(CompactServiceGraph, Microservice, Microservice, int)},
+     * counts the paths to every microservice in one pass.
+     *
+     * @return number of paths to each of the microservices that can be reached with latency less than
+     *     {@code maxPathWeight}, in the order of their ids
+     */
+    public static Map<Microservice, Long> countPathsByTargetWithWeightLessThan(
+        @NotNull CompactServiceGraph g,
+        @NotNull Microservice sourceVertex,
+        int maxPathWeight
+    )
+    {
+        return record("countPathsByTargetWithWeightLessThanCompact", statistics -> {
+            Preconditions.checkNotNull(g);
+            Preconditions.checkNotNull(sourceVertex);
+
+            Map<Microservice, Long> pathCountsByTarget = new LinkedHashMap<>();
+            long[] pathCounts = WeightBoundedWalkCounter.countWalksFrom(g.getOffsets(), g.getTargets(), g.getLatencies(),
+                getSourceVertexId(g, sourceVertex), maxPathWeight);
+            for (int targetId = 0; targetId < pathCounts.length; targetId++) {
+                if (pathCounts[targetId] > 0) {
+                    pathCountsByTarget.put(g.getMicroservice(targetId), pathCounts[targetId]);
+                }
+            }
+            return pathCountsByTarget;
+        }, Traversal::sumPathCounts);
+    }
+
+    /**
+     * Streaming counterpart of {@link #getAllPathsWithPathLengthUpToMax(Graph, Microservice, Microservice, int)},
+     * paths are found lazily, one at a time, so they don't have to be kept in memory.
+     */
+    public static Stream<GraphPath<Microservice, Connection>> streamAllPathsWithPathLengthUpToMax(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathLength)
+    {
+        return recordStream("streamAllPathsWithPathLengthUpToMax", statistics -> newAllPaths(g, statistics)
+            .streamAllPathsWithLengthUpToMax(sourceVertex, targetVertex, maxPathLength));
+    }
+
+    /**
+     * Streaming counterpart of {@link #getAllPathsWithExactPathLength(Graph, Microservice, Microservice, int)},
+     * paths are found lazily, one at a time, so they don't have to be kept in memory.
+     */
+    public static Stream<GraphPath<Microservice, Connection>> streamAllPathsWithExactPathLength(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int pathLength)
+    {
+        return recordStream("streamAllPathsWithExactPathLength", statistics -> newAllPaths(g, statistics)
+            .streamAllPathsWithLengthUpToMax(sourceVertex, targetVertex, pathLength)
+            .filter(path -> path.getLength() == pathLength));
+    }
+
+    /**
+     * Streaming counterpart of {@link #getAllPathsWithWeightLessThanSlow(Graph, Microservice, Microservice, int, int)},
+     * paths are found lazily, one at a time, so they don't have to be kept in memory.
+     */
+    public static Stream<GraphPath<Microservice, Connection>> streamAllPathsWithWeightLessThanSlow(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathWeight,
+        int minEdgeWeight
+    )
+    {
+        return recordStream("streamAllPathsWithWeightLessThanSlow", statistics -> newAllPaths(g, statistics)
+            .streamAllPathsWithLengthUpToMax(sourceVertex, targetVertex, maxPathWeight / minEdgeWeight)
+            .filter(path -> path.getWeight() < maxPathWeight));
+    }
+
+    /**
+     * Streaming counterpart of {@link #getAllPathsWithWeightLessThan(Graph, Microservice, Microservice, int)},
+     * paths are found lazily, one at a time, so they don't have to be kept in memory.
+     */
+    public static Stream<GraphPath<Microservice, Connection>> streamAllPathsWithWeightLessThan(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int maxPathWeight
+    )
+    {
+        return recordStream("streamAllPathsWithWeightLessThan", statistics -> newAllPaths(g, statistics)
+            .streamAllPathsWithWeightLessThan(sourceVertex, targetVertex, maxPathWeight));
     }
 
     public static Optional<GraphPath<Microservice, Connection>> getShortestPath(
@@ -115,23 +587,267 @@ public class Traversal {
         @NotNull Microservice sourceVertex,
         @NotNull Microservice targetVertex)
     {
+        return record("getShortestPath", statistics -> {
+            Preconditions.checkNotNull(g);
+            Preconditions.checkNotNull(sourceVertex);
+            Preconditions.checkNotNull(targetVertex);
+
+            EppsteinKShortestPath<Microservice, Connection> shortestPath = new EppsteinKShortestPath<>(g);
+            List<GraphPath<Microservice, Connection>> paths = sourceVertex.equals(targetVertex)
+                // it's necessary because if source and target vertices are the same, the 0 length path will be returned
+                ? shortestPath.getPaths(sourceVertex, targetVertex, 2)
+                : shortestPath.getPaths(sourceVertex, targetVertex, 1);
+            if (paths.size() == 2) {
+                return paths.get(0).getLength() == 0 ? Optional.of(paths.get(1)) : Optional.of(paths.get(0));
+            } else if (paths.size() == 1) {
+                return Optional.of(paths.get(0));
+            } else {
+                return Optional.empty();
+            }
+        }, path -> path.isPresent() ? 1 : 0);
+    }
+
+    /**
+     * Finds the k traces with the lowest latency, from the lowest one, without enumerating the traces under a latency
+     * limit, see {@link KLowestWeightPaths}. Unlike {@link #getShortestPath(Graph, Microservice, Microservice)} it
+     * never returns the empty trace from a microservice to itself.
+     *
+     * @param allowNonSimple whether the traces may visit a microservice more than once
+     * @return at most k traces in ascending order of latency
+     */
+    public static List<GraphPath<Microservice, Connection>> getKLowestLatencyTraces(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int k,
+        boolean allowNonSimple)
+    {
+        return record("getKLowestLatencyTraces", statistics -> {
+            Preconditions.checkNotNull(g);
+            return new KLowestWeightPaths<>(g, statistics).getPaths(sourceVertex, targetVertex, k, allowNonSimple);
+        }, List::size);
+    }
+
+    /**
+     * Budgeted counterpart of {@link #getKLowestLatencyTraces(Graph, Microservice, Microservice, int, boolean)}, finds
+     * the same traces in the same order, but stops as soon as the search exceeds the budget.
+     *
+     * @return the traces, or the ones found before the search exceeded the budget flagged as truncated
+     */
+    public static PartialResult<List<GraphPath<Microservice, Connection>>> getKLowestLatencyTraces(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int k,
+        boolean allowNonSimple,
+        @NotNull SearchBudget budget)
+    {
+        return record("getKLowestLatencyTraces", statistics -> {
+            Preconditions.checkNotNull(g);
+            return new KLowestWeightPaths<>(g, statistics).getPaths(sourceVertex, targetVertex, k, allowNonSimple,
+                budget);
+        }, paths -> paths.getResult().size());
+    }
+
+    /**
+     * Streaming counterpart of {@link #getKLowestLatencyTraces(Graph, Microservice, Microservice, int, boolean)}, each
+     * trace is searched only when the stream asks for it.
+     */
+    public static Stream<GraphPath<Microservice, Connection>> streamKLowestLatencyTraces(
+        @NotNull Graph<Microservice, Connection> g,
+        @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex,
+        int k,
+        boolean allowNonSimple)
+    {
+        return recordStream("streamKLowestLatencyTraces", statistics -> {
+            Preconditions.checkNotNull(g);
+            return new KLowestWeightPaths<>(g, statistics).streamPaths(sourceVertex, targetVertex, k, allowNonSimple);
+        });
+    }
+
+    /**
+     * @return id of the source microservice, checked the same way as the enumeration checks it
+     */
+    private static int getSourceVertexId(CompactServiceGraph g, Microservice sourceVertex) {
+        int sourceId = g.getVertexId(sourceVertex);
+        Preconditions.checkArgument(sourceId != CompactServiceGraph.NO_SUCH_VERTEX,
+            "no such vertex in graph: " + sourceVertex);
+        return sourceId;
+    }
+
+    private static long countPathsWithPathLength(
+        CompactServiceGraph g,
+        Microservice sourceVertex,
+        Microservice targetVertex,
+        int pathLength,
+        boolean upToMax)
+    {
+        Preconditions.checkNotNull(g);
+        Preconditions.checkNotNull(sourceVertex);
+        Preconditions.checkNotNull(targetVertex);
+
+        int sourceId = g.getVertexId(sourceVertex);
+        int targetId = g.getVertexId(targetVertex);
+        if (sourceId == CompactServiceGraph.NO_SUCH_VERTEX || targetId == CompactServiceGraph.NO_SUCH_VERTEX) {
+            return 0;
+        }
+        return HopBoundedPathCounter.countPathsFrom(g.getOffsets(), g.getTargets(), sourceId, pathLength, upToMax)[targetId];
+    }
+
+    /**
+     * Finds the traces by the jgrapht enumeration, which doesn't count its labels, so the statistics are unknown.
+     *
+     * @param statistics statistics of the query, null if it's not measured
+     */
+    private static List<GraphPath<Microservice, Connection>> findAllPathsWithPathLengthUpToMax(
+        Graph<Microservice, Connection> g,
+        Microservice sourceVertex,
+        Microservice targetVertex,
+        int maxPathLength,
+        SearchStatistics statistics)
+    {
+        if (statistics != null) {
+            statistics.markUnknown();
+        }
         Preconditions.checkNotNull(g);
         Preconditions.checkNotNull(sourceVertex);
         Preconditions.checkNotNull(targetVertex);
 
-        EppsteinKShortestPath<Microservice, Connection> shortestPath = new EppsteinKShortestPath<>(g);
-        List<GraphPath<Microservice, Connection>> paths = sourceVertex.equals(targetVertex)
-            // it's necessary because if source and target vertices are the same, the 0 length path will be returned
-            ? shortestPath.getPaths(sourceVertex, targetVertex, 2)
-            : shortestPath.getPaths(sourceVertex, targetVertex, 1);
-        if (paths.size() == 2) {
-            return paths.get(0).getLength() == 0 ? Optional.of(paths.get(1)) : Optional.of(paths.get(0));
-        } else if (paths.size() == 1) {
-            return Optional.of(paths.get(0));
-        } else {
-            return Optional.empty();
+        AllDirectedPaths<Microservice, Connection> allPaths = new AllDirectedPaths<>(g);
+        return allPaths.getAllPaths(sourceVertex, targetVertex, false, maxPathLength).stream()
+            // filter out self-loop like path that will appear if source and target vertices are the same
+            .filter(path -> path.getLength() > 0)
+            .collect(Collectors.toList());
+    }
+
+    private static AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> newAllPaths(
+        Graph<Microservice, Connection> g,
+        SearchStatistics statistics)
+    {
+        Preconditions.checkNotNull(g);
+        return new AllSimpleAndNonSimpleDirectedPaths<>(g, AllSimpleAndNonSimpleDirectedPaths.SearchStrategy.BFS,
+            AllSimpleAndNonSimpleDirectedPaths.Pruning.NONE, statistics);
+    }
+
+    private static AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> newPrunedAllPaths(
+        Graph<Microservice, Connection> g,
+        SearchStatistics statistics)
+    {
+        Preconditions.checkNotNull(g);
+        return new AllSimpleAndNonSimpleDirectedPaths<>(g, AllSimpleAndNonSimpleDirectedPaths.SearchStrategy.BFS,
+            AllSimpleAndNonSimpleDirectedPaths.Pruning.DISTANCE_TO_TARGET, statistics);
+    }
+
+    private static long sumPathCounts(Map<Microservice, Long> pathCountsByTarget) {
+        long pathCount = 0;
+        for (long count : pathCountsByTarget.values()) {
+            pathCount += count;
         }
+        return pathCount;
     }
 
+    /**
+     * Answers the query and records its metrics if the recorder is enabled, otherwise just answers it. A query that
+     * throws is recorded as failed and the exception is rethrown.
+     *
+     * @param query answers the query, the statistics are null if the query is not measured
+     * @param pathsProduced number of the traces returned or counted by the answer
+     */
+    private static <T> T record(String queryType, Function<SearchStatistics, T> query,
+        ToLongFunction<? super T> pathsProduced)
+    {
+        QueryRecorder queryRecorder = recorder;
+        if (!queryRecorder.isEnabled()) {
+            return query.apply(null);
+        }
+        SearchStatistics statistics = new SearchStatistics();
+        QueryMeasurement measurement = QueryMeasurement.start(queryType);
+        T answer;
+        try {
+            answer = query.apply(statistics);
+        } catch (RuntimeException | Error e) {
+            queryRecorder.record(measurement.fail(statistics.getLabelsExpanded(), statistics.getPeakQueueSize(), e));
+            throw e;
+        }
+        queryRecorder.record(measurement.finish(statistics.getLabelsExpanded(), statistics.getPeakQueueSize(),
+            pathsProduced.applyAsLong(answer)));
+        return answer;
+    }
+
+    /**
+     * Streaming counterpart of {@link #record(String, Function, ToLongFunction)}, the metrics are recorded when the
+     * stream is exhausted, closed or throws, whichever comes first.
+     */
+    private static <T> Stream<T> recordStream(String queryType, Function<SearchStatistics, Stream<T>> query) {
+        QueryRecorder queryRecorder = recorder;
+        if (!queryRecorder.isEnabled()) {
+            return query.apply(null);
+        }
+        SearchStatistics statistics = new SearchStatistics();
+        QueryMeasurement measurement = QueryMeasurement.start(queryType);
+        Stream<T> paths;
+        try {
+            paths = query.apply(statistics);
+        } catch (RuntimeException | Error e) {
+            queryRecorder.record(measurement.fail(statistics.getLabelsExpanded(), statistics.getPeakQueueSize(), e));
+            throw e;
+        }
+        RecordingSpliterator<T> spliterator = new RecordingSpliterator<>(paths.spliterator(), queryRecorder,
+            measurement, statistics);
+        return StreamSupport.stream(spliterator, false)
+            .onClose(spliterator::record)
+            .onClose(paths::close);
+    }
+
+    /**
+     * Counts the traces handed over by a stream and records the metrics of the query once it's exhausted.
+     */
+    private static final class RecordingSpliterator<T> extends Spliterators.AbstractSpliterator<T> {
+
+        private final Spliterator<T> paths;
+        private final QueryRecorder recorder;
+        private final QueryMeasurement measurement;
+        private final SearchStatistics statistics;
+        private long pathCount;
+        private boolean recorded;
+
+        RecordingSpliterator(Spliterator<T> paths, QueryRecorder recorder, QueryMeasurement measurement,
+            SearchStatistics statistics)
+        {
+            super(Long.MAX_VALUE, paths.characteristics() & (Spliterator.ORDERED | Spliterator.NONNULL));
+            this.paths = paths;
+            this.recorder = recorder;
+            this.measurement = measurement;
+            this.statistics = statistics;
+        }
 
+        @Override
+        public boolean tryAdvance(Consumer<? super T> action) {
+            boolean advanced;
+            try {
+                advanced = paths.tryAdvance(action);
+            } catch (RuntimeException | Error e) {
+                if (!recorded) {
+                    recorded = true;
+                    recorder.record(measurement.fail(statistics.getLabelsExpanded(), statistics.getPeakQueueSize(), e));
+                }
+                throw e;
+            }
+            if (advanced) {
+                pathCount++;
+                return true;
+            }
+            record();
+            return false;
+        }
+
+        void record() {
+            if (!recorded) {
+                recorded = true;
+                recorder.record(measurement.finish(statistics.getLabelsExpanded(), statistics.getPeakQueueSize(),
+                    pathCount));
+            }
+        }
+    }
 }
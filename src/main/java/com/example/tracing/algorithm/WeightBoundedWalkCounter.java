@@ -0,0 +1,120 @@
+package com.example.tracing.algorithm;
+
+/**
+ * Counts non-simple paths (walks) with positive integer edge weights by dynamic programming over
+ * (vertex, path weight) states instead of enumerating the paths one by one. Runs in O(weightLimit * (V + E)) time
+ * and keeps only {@code maxEdgeWeight + 1} weight columns of V counters in memory, as a path of weight {@code w}
+ * can only be extended to weights in range ({@code w}, {@code w + maxEdgeWeight}].
+ */
+final class WeightBoundedWalkCounter {
+
+    private WeightBoundedWalkCounter() {
+    }
+
+    /**
+     * Counts all the paths with at least one edge that start in the source vertex and have weight less than
+     * {@code weightLimit}, grouped by the last vertex of the path.
+     *
+     * @param offsets CSR offsets, outgoing edges of vertex {@code v} are in range [{@code offsets[v]}, {@code offsets[v + 1]})
+     * @param targets target vertex of each edge
+     * @param weights positive integer weight of each edge
+     * @param source id of the source vertex
+     * @param weightLimit only the paths that have weight less than {@code weightLimit} are counted
+     * @return number of paths ending in each of the vertices, indexed by vertex id
+     * @throws ArithmeticException if a count overflows {@code long}
+     */
+    static long[] countWalksFrom(int[] offsets, int[] targets, int[] weights, int source, int weightLimit) {
+        return countWalksFrom(offsets, targets, weights, source, new int[] {weightLimit})[0];
+    }
+
+    /**
+     * Counts the paths like {@link #countWalksFrom(int[], int[], int[], int, int)} for several weight limits at once, in
+     * the time it takes for the highest one.
+     *
+     * @param weightLimits weight limits in ascending order
+     * @return number of paths ending in each of the vertices for each of the weight limits, indexed by the position of
+     *     the limit and vertex id
+     * @throws ArithmeticException if a count overflows {@code long}
+     */
+    static long[][] countWalksFrom(int[] offsets, int[] targets, int[] weights, int source, int[] weightLimits) {
+        return countWalksFrom(offsets, targets, weights, source, weightLimits, -1, null);
+    }
+
+    /**
+     * Counts the paths with at least one edge from the source to the target vertex with weight less than
+     * {@code weightLimit} by their weight, in the same pass as {@link #countWalksFrom(int[], int[], int[], int, int[])}.
+     *
+     * @param target id of the target vertex
+     * @return histogram of path weights, element {@code w} is the number of paths of weight {@code w}, the length is
+     *     {@code weightLimit} or 0 if the limit is not positive
+     * @throws ArithmeticException if a count overflows {@code long}
+     */
+    static long[] countWalksByWeight(int[] offsets, int[] targets, int[] weights, int source, int target,
+        int weightLimit)
+    {
+        long[] histogram = new long[Math.max(weightLimit, 0)];
+        countWalksFrom(offsets, targets, weights, source, new int[] {weightLimit}, target, histogram);
+        return histogram;
+    }
+
+    /**
+     * @param histogramTarget id of the vertex whose path counts are recorded by weight in the histogram, if it's not null
+     */
+    private static long[][] countWalksFrom(int[] offsets, int[] targets, int[] weights, int source, int[] weightLimits,
+        int histogramTarget, long[] histogram)
+    {
+        int vertexCount = offsets.length - 1;
+        long[][] pathCountsByLimit = new long[weightLimits.length][];
+        long[] pathCounts = new long[vertexCount];
+        int maxWeightLimit = weightLimits.length == 0 ? 0 : weightLimits[weightLimits.length - 1];
+        int nextLimit = 0;
+        // the limits up to 0 and the ones below the lowest weight of a path with an edge get no paths
+        while (nextLimit < weightLimits.length && weightLimits[nextLimit] <= 1) {
+            pathCountsByLimit[nextLimit++] = new long[vertexCount];
+        }
+        if (nextLimit == weightLimits.length) {
+            return pathCountsByLimit;
+        }
+        int maxEdgeWeight = 0;
+        for (int weight : weights) {
+            maxEdgeWeight = Math.max(maxEdgeWeight, weight);
+        }
+        // ring buffer of weight columns, column w % columns holds the number of paths of weight w ending in each vertex
+        int columns = Math.min(maxEdgeWeight, maxWeightLimit - 1) + 1;
+        long[][] counts = new long[columns][vertexCount];
+        counts[0][source] = 1;
+        for (int w = 0; w < maxWeightLimit; w++) {
+            // pathCounts has all the paths lighter than w now
+            while (weightLimits[nextLimit] == w) {
+                pathCountsByLimit[nextLimit++] = pathCounts.clone();
+            }
+            long[] column = counts[w % columns];
+            // the column is complete now, as the paths of weight w are extensions of lighter ones
+            if (histogram != null && w > 0) {
+                histogram[w] = column[histogramTarget];
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                long count = column[v];
+                if (count == 0) {
+                    continue;
+                }
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    int extendedWeight = w + weights[e];
+                    if (extendedWeight < maxWeightLimit) {
+                        long[] extendedColumn = counts[extendedWeight % columns];
+                        extendedColumn[targets[e]] = Math.addExact(extendedColumn[targets[e]], count);
+                    }
+                }
+                // the only path of weight 0 is the empty one in the source vertex, it's not a trace
+                if (w > 0) {
+                    pathCounts[v] = Math.addExact(pathCounts[v], count);
+                }
+                column[v] = 0;
+            }
+        }
+        while (nextLimit < weightLimits.length) {
+            pathCountsByLimit[nextLimit++] = pathCounts;
+        }
+        return pathCountsByLimit;
+    }
+}
@@ -0,0 +1,382 @@
+package com.example.tracing.model;
+
+import com.google.inject.internal.util.Preconditions;
+import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.jetbrains.annotations.NotNull;
+import org.jgrapht.Graph;
+
+/**
+ * Immutable graph of microservices stored in primitive arrays. Microservice names are interned to dense int ids from 0
+ * to {@code vertexCount - 1} and connections are stored in compressed sparse row layout: the outgoing connections of the
+ * vertex {@code v} have ids in range [{@code getFirstEdge(v)}, {@code getEdgeEnd(v)}) and are sorted by target vertex id.
+ * A connection costs two ints, so a graph with 100k connections takes less than a megabyte.
+ */
+public final class CompactServiceGraph {
+
+    public static final int NO_SUCH_VERTEX = -1;
+    public static final int NO_SUCH_EDGE = -1;
+    public static final String ERROR_DUPLICATE_EDGE_FORMAT =
+        "Graph already contains edge {%s}->{%s}. Duplicate edges are not allowed";
+    public static final String ERROR_NO_SUCH_EDGE_FORMAT = "Graph doesn't contain edge {%s}->{%s}";
+
+    private final String[] names;
+    private final Map<String, Integer> vertexIds;
+    private final int[] offsets;
+    private final int[] targets;
+    private final int[] latencies;
+
+    private CompactServiceGraph(String[] names, Map<String, Integer> vertexIds, int[] offsets, int[] targets,
+        int[] latencies)
+    {
+        this.names = names;
+        this.vertexIds = vertexIds;
+        this.offsets = offsets;
+        this.targets = targets;
+        this.latencies = latencies;
+    }
+
+    /**
+     * Creates a compact copy of the graph, later changes of the graph are not reflected in the copy.
+     *
+     * @param g the graph of microservices
+     * @return compact graph with the same vertices and connections
+     */
+    public static CompactServiceGraph fromGraph(@NotNull Graph<Microservice, Connection> g) {
+        Preconditions.checkNotNull(g);
+        Builder builder = new Builder();
+        for (Microservice vertex : g.vertexSet()) {
+            builder.addVertex(vertex.getName());
+        }
+        for (Connection edge : g.edgeSet()) {
+            builder.addConnection(g.getEdgeSource(edge).getName(), g.getEdgeTarget(edge).getName(),
+                edge.getLatencyInMs());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Creates a graph on top of arrays already in CSR layout, e.g. the ones read from a file written from
+     * {@link #getOffsets()}, {@link #getTargets()} and {@link #getLatencies()}. The arrays are validated in one pass and
+     * not copied, so they must not be modified afterwards.
+     *
+     * @param names name of each microservice indexed by vertex id
+     * @param offsets CSR offsets, {@code vertexCount + 1} of them
+     * @param targets target vertex id of each connection, sorted within the outgoing connections of each vertex
+     * @param latencies latency of each connection
+     * @return graph with the given vertices and connections
+     * @throws IllegalArgumentException if the arrays are not a valid graph
+     */
+    public static CompactServiceGraph fromArrays(@NotNull String[] names, @NotNull int[] offsets, @NotNull int[] targets,
+        @NotNull int[] latencies)
+    {
+        Preconditions.checkArgument(offsets.length == names.length + 1 && offsets[0] == 0
+            && offsets[names.length] == targets.length && latencies.length == targets.length, "Invalid CSR layout");
+        Map<String, Integer> vertexIds = new HashMap<>();
+        for (int v = 0; v < names.length; v++) {
+            Preconditions.checkArgument(vertexIds.put(Preconditions.checkNotNull(names[v]), v) == null,
+                "Duplicate microservice %s", names[v]);
+            Preconditions.checkArgument(offsets[v] <= offsets[v + 1], "Invalid CSR layout");
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                Preconditions.checkArgument(targets[e] >= 0 && targets[e] < names.length, "Unknown target vertex id");
+                Preconditions.checkArgument(targets[e] != v, "Self-loops are not allowed");
+                Preconditions.checkArgument(latencies[e] > 0, Connection.ERROR_LATENCY_MUST_BE_POSITIVE);
+                if (e > offsets[v] && targets[e] <= targets[e - 1]) {
+                    throw new IllegalArgumentException(targets[e] == targets[e - 1]
+                        ? String.format(ERROR_DUPLICATE_EDGE_FORMAT, names[v], names[targets[e]])
+                        : "Connections are not sorted by target vertex id");
+                }
+            }
+        }
+        return new CompactServiceGraph(names, vertexIds, offsets, targets, latencies);
+    }
+
+    /**
+     * Creates a copy of the graph with the changes applied in order. Vertex ids of the microservices of this graph stay
+     * the same, the microservices of added connections that are new to the graph get the next ids. Microservices are
+     * never removed. When only latencies change, the copy shares everything but the latencies with this graph.
+     *
+     * @param changes changes of the connections
+     * @return graph with the changes applied, this graph is not modified
+     * @throws IllegalArgumentException if an added connection is already in the graph or a removed or updated one isn't
+     */
+    public CompactServiceGraph withChanges(@NotNull List<ConnectionChange> changes) {
+        List<String> newNames = new ArrayList<>();
+        Map<String, Integer> newVertexIds = new HashMap<>();
+        // latency of each changed connection keyed by its packed vertex ids, 0 if the connection is removed
+        Map<Long, Integer> changedLatencies = new LinkedHashMap<>();
+        boolean latenciesOnly = true;
+        for (ConnectionChange change : changes) {
+            String sourceName = change.getSourceVertex().getName();
+            String targetName = change.getTargetVertex().getName();
+            int sourceId = getOrAddVertexId(sourceName, newNames, newVertexIds, change.getKind());
+            int targetId = getOrAddVertexId(targetName, newNames, newVertexIds, change.getKind());
+            long packedEdge = packEdge(sourceId, targetId);
+            boolean present = changedLatencies.containsKey(packedEdge)
+                ? changedLatencies.get(packedEdge) > 0
+                : sourceId < names.length && targetId < names.length && findEdge(sourceId, targetId) != NO_SUCH_EDGE;
+            if (change.getKind() == ConnectionChange.Kind.ADD) {
+                if (present) {
+                    throw new IllegalArgumentException(String.format(ERROR_DUPLICATE_EDGE_FORMAT, sourceName, targetName));
+                }
+            } else if (!present) {
+                throw new IllegalArgumentException(String.format(ERROR_NO_SUCH_EDGE_FORMAT, sourceName, targetName));
+            }
+            changedLatencies.put(packedEdge, change.getLatencyInMs());
+            latenciesOnly &= change.getKind() == ConnectionChange.Kind.UPDATE_LATENCY;
+        }
+        if (latenciesOnly) {
+            int[] changedLatencyArray = latencies.clone();
+            changedLatencies.forEach((packedEdge, latency) ->
+                changedLatencyArray[findEdge((int) (packedEdge >>> 32), (int) (long) packedEdge)] = latency);
+            return new CompactServiceGraph(names, vertexIds, offsets, targets, changedLatencyArray);
+        }
+        Builder builder = new Builder();
+        for (String name : names) {
+            builder.addVertex(name);
+        }
+        for (String name : newNames) {
+            builder.addVertex(name);
+        }
+        for (int v = 0; v < names.length; v++) {
+            for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                if (!changedLatencies.containsKey(packEdge(v, targets[e]))) {
+                    builder.addConnection(v, targets[e], latencies[e]);
+                }
+            }
+        }
+        changedLatencies.forEach((packedEdge, latency) -> {
+            if (latency > 0) {
+                builder.addConnection((int) (packedEdge >>> 32), (int) (long) packedEdge, latency);
+            }
+        });
+        return builder.build();
+    }
+
+    private int getOrAddVertexId(String name, List<String> newNames, Map<String, Integer> newVertexIds,
+        ConnectionChange.Kind kind)
+    {
+        Integer id = vertexIds.get(name);
+        if (id == null) {
+            id = newVertexIds.get(name);
+        }
+        if (id == null) {
+            // only added connections bring new microservices, the others are reported as missing by the caller
+            id = names.length + newNames.size();
+            if (kind == ConnectionChange.Kind.ADD) {
+                newNames.add(name);
+                newVertexIds.put(name, id);
+            }
+        }
+        return id;
+    }
+
+    private static long packEdge(int sourceId, int targetId) {
+        return ((long) sourceId << 32) | targetId;
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    public int getVertexCount() {
+        return names.length;
+    }
+
+    public int getEdgeCount() {
+        return targets.length;
+    }
+
+    /**
+     * @return id of the microservice or {@link #NO_SUCH_VERTEX} if the graph doesn't contain it
+     */
+    public int getVertexId(@NotNull String name) {
+        Integer id = vertexIds.get(name);
+        return id == null ? NO_SUCH_VERTEX : id;
+    }
+
+    /**
+     * @return id of the microservice or {@link #NO_SUCH_VERTEX} if the graph doesn't contain it
+     */
+    public int getVertexId(@NotNull Microservice microservice) {
+        return getVertexId(microservice.getName());
+    }
+
+    public String getName(int vertexId) {
+        return names[vertexId];
+    }
+
+    public Microservice getMicroservice(int vertexId) {
+        return new Microservice(names[vertexId]);
+    }
+
+    /**
+     * @return id of the first outgoing connection of the vertex
+     */
+    public int getFirstEdge(int vertexId) {
+        return offsets[vertexId];
+    }
+
+    /**
+     * @return id following the id of the last outgoing connection of the vertex
+     */
+    public int getEdgeEnd(int vertexId) {
+        return offsets[vertexId + 1];
+    }
+
+    public int getOutDegree(int vertexId) {
+        return offsets[vertexId + 1] - offsets[vertexId];
+    }
+
+    public int getEdgeTarget(int edgeId) {
+        return targets[edgeId];
+    }
+
+    public int getEdgeLatency(int edgeId) {
+        return latencies[edgeId];
+    }
+
+    /**
+     * Finds the connection by binary search over the outgoing connections of the source vertex.
+     *
+     * @return id of the connection or {@link #NO_SUCH_EDGE} if the vertices are not connected
+     */
+    public int findEdge(int sourceId, int targetId) {
+        int edgeId = Arrays.binarySearch(targets, offsets[sourceId], offsets[sourceId + 1], targetId);
+        return edgeId < 0 ? NO_SUCH_EDGE : edgeId;
+    }
+
+    /**
+     * Returns CSR offsets, the array is the internal storage of the graph and must not be modified.
+     */
+    public int[] getOffsets() {
+        return offsets;
+    }
+
+    /**
+     * Returns target vertex id of each connection, the array is the internal storage of the graph and must not be modified.
+     */
+    public int[] getTargets() {
+        return targets;
+    }
+
+    /**
+     * Returns latency of each connection, the array is the internal storage of the graph and must not be modified.
+     */
+    public int[] getLatencies() {
+        return latencies;
+    }
+
+    @Override
+    public String toString() {
+        return "CompactServiceGraph{" +
+            "vertexCount=" + getVertexCount() +
+            ", edgeCount=" + getEdgeCount() +
+            '}';
+    }
+
+    /**
+     * Collects microservices and connections in any order and sorts them into CSR layout on {@link #build()}.
+     */
+    public static final class Builder {
+
+        private final Map<String, Integer> vertexIds = new HashMap<>();
+        private String[] names = new String[16];
+        private int vertexCount;
+        private int[] sources = new int[16];
+        private int[] targets = new int[16];
+        private int[] latencies = new int[16];
+        private int edgeCount;
+
+        private Builder() {
+        }
+
+        /**
+         * Adds the microservice unless it's already added.
+         *
+         * @return id of the microservice
+         */
+        public int addVertex(@NotNull String name) {
+            Integer id = vertexIds.get(name);
+            if (id != null) {
+                return id;
+            }
+            if (vertexCount == names.length) {
+                names = Arrays.copyOf(names, 2 * vertexCount);
+            }
+            names[vertexCount] = name;
+            vertexIds.put(name, vertexCount);
+            return vertexCount++;
+        }
+
+        /**
+         * Adds the connection, adding its microservices if needed. Duplicate connections are reported by {@link #build()}.
+         *
+         * @return this builder
+         */
+        public Builder addConnection(@NotNull String sourceName, @NotNull String targetName, int latencyInMs) {
+            return addConnection(addVertex(sourceName), addVertex(targetName), latencyInMs);
+        }
+
+        /**
+         * Adds the connection between already added microservices. Duplicate connections are reported by {@link #build()}.
+         *
+         * @return this builder
+         */
+        public Builder addConnection(int sourceId, int targetId, int latencyInMs) {
+            Preconditions.checkArgument(sourceId >= 0 && sourceId < vertexCount, "Unknown source vertex id");
+            Preconditions.checkArgument(targetId >= 0 && targetId < vertexCount, "Unknown target vertex id");
+            Preconditions.checkArgument(sourceId != targetId, "Self-loops are not allowed");
+            Preconditions.checkArgument(latencyInMs > 0, Connection.ERROR_LATENCY_MUST_BE_POSITIVE);
+            if (edgeCount == sources.length) {
+                sources = Arrays.copyOf(sources, 2 * edgeCount);
+                targets = Arrays.copyOf(targets, 2 * edgeCount);
+                latencies = Arrays.copyOf(latencies, 2 * edgeCount);
+            }
+            sources[edgeCount] = sourceId;
+            targets[edgeCount] = targetId;
+            latencies[edgeCount] = latencyInMs;
+            edgeCount++;
+            return this;
+        }
+
+        /**
+         * @return graph containing all the added microservices and connections
+         * @throws IllegalArgumentException if the same connection was added more than once
+         */
+        public CompactServiceGraph build() {
+            int[] offsets = new int[vertexCount + 1];
+            for (int e = 0; e < edgeCount; e++) {
+                offsets[sources[e] + 1]++;
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                offsets[v + 1] += offsets[v];
+            }
+            // counting sort by source vertex, each row is then sorted by target vertex packed into the high bits
+            long[] packedEdges = new long[edgeCount];
+            int[] nextSlot = Arrays.copyOf(offsets, vertexCount);
+            for (int e = 0; e < edgeCount; e++) {
+                packedEdges[nextSlot[sources[e]]++] = ((long) targets[e] << 32) | latencies[e];
+            }
+            int[] sortedTargets = new int[edgeCount];
+            int[] sortedLatencies = new int[edgeCount];
+            for (int v = 0; v < vertexCount; v++) {
+                Arrays.sort(packedEdges, offsets[v], offsets[v + 1]);
+                for (int e = offsets[v]; e < offsets[v + 1]; e++) {
+                    sortedTargets[e] = (int) (packedEdges[e] >>> 32);
+                    sortedLatencies[e] = (int) packedEdges[e];
+                    if (e > offsets[v] && sortedTargets[e] == sortedTargets[e - 1]) {
+                        throw new IllegalArgumentException(
+                            String.format(ERROR_DUPLICATE_EDGE_FORMAT, names[v], names[sortedTargets[e]]));
+                    }
+                }
+            }
+            return new CompactServiceGraph(Arrays.copyOf(names, vertexCount), new HashMap<>(vertexIds), offsets,
+                sortedTargets, sortedLatencies);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.example.tracing.model;
+
+import com.google.inject.internal.util.Preconditions;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A change of the topology of a graph of microservices: a connection added, removed or with its latency updated.
+ * Changes are applied to a {@link CompactServiceGraph} by {@link CompactServiceGraph#withChanges(java.util.List)}.
+ */
+public final class ConnectionChange {
+
+    public enum Kind {
+        /**
+         * New connection, its microservices are added to the graph if needed.
+         */
+        ADD,
+        /**
+         * Removal of an existing connection, its microservices stay in the graph.
+         */
+        REMOVE,
+        /**
+         * New latency of an existing connection.
+         */
+        UPDATE_LATENCY
+    }
+
+    private final Kind kind;
+    private final Microservice sourceVertex;
+    private final Microservice targetVertex;
+    private final int latencyInMs;
+
+    private ConnectionChange(Kind kind, Microservice sourceVertex, Microservice targetVertex, int latencyInMs) {
+        this.kind = kind;
+        this.sourceVertex = Preconditions.checkNotNull(sourceVertex);
+        this.targetVertex = Preconditions.checkNotNull(targetVertex);
+        this.latencyInMs = latencyInMs;
+    }
+
+    public static ConnectionChange add(@NotNull Microservice sourceVertex, @NotNull Microservice targetVertex,
+        int latencyInMs)
+    {
+        Preconditions.checkArgument(latencyInMs > 0, Connection.ERROR_LATENCY_MUST_BE_POSITIVE);
+        Preconditions.checkArgument(!sourceVertex.equals(targetVertex), "Self-loops are not allowed");
+        return new ConnectionChange(Kind.ADD, sourceVertex, targetVertex, latencyInMs);
+    }
+
+    public static ConnectionChange remove(@NotNull Microservice sourceVertex, @NotNull Microservice targetVertex) {
+        return new ConnectionChange(Kind.REMOVE, sourceVertex, targetVertex, 0);
+    }
+
+    public static ConnectionChange updateLatency(@NotNull Microservice sourceVertex, @NotNull Microservice targetVertex,
+        int latencyInMs)
+    {
+        Preconditions.checkArgument(latencyInMs > 0, Connection.ERROR_LATENCY_MUST_BE_POSITIVE);
+        return new ConnectionChange(Kind.UPDATE_LATENCY, sourceVertex, targetVertex, latencyInMs);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    public Microservice getSourceVertex() {
+        return sourceVertex;
+    }
+
+    public Microservice getTargetVertex() {
+        return targetVertex;
+    }
+
+    /**
+     * @return new latency of the connection, 0 for {@link Kind#REMOVE}
+     */
+    public int getLatencyInMs() {
+        return latencyInMs;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        ConnectionChange that = (ConnectionChange) o;
+        return latencyInMs == that.latencyInMs && kind == that.kind && sourceVertex.equals(that.sourceVertex)
+            && targetVertex.equals(that.targetVertex);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, sourceVertex, targetVertex, latencyInMs);
+    }
+
+    @Override
+    public String toString() {
+        return kind == Kind.REMOVE
+            ? String.format("%s {%s}->{%s}", kind, sourceVertex, targetVertex)
+            : String.format("%s {%s}-(%d)->{%s}", kind, sourceVertex, latencyInMs, targetVertex);
+    }
+}
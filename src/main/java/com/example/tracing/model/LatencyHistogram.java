@@ -0,0 +1,133 @@
+package com.example.tracing.model;
+
+import com.google.inject.internal.util.Preconditions;
+import java.util.Arrays;
+import java.util.OptionalInt;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Distribution of the latencies of the traces between two microservices: the number of traces of each latency in ms.
+ * Percentiles are nearest-rank, i.e. the p-th percentile is the lowest latency that at least p percent of the traces
+ * don't exceed.
+ */
+public final class LatencyHistogram {
+
+    private final long[] counts;
+    private final long totalCount;
+
+    /**
+     * @param counts number of traces indexed by latency in ms, the array is not copied
+     * @throws IllegalArgumentException if any of the counts is negative
+     * @throws ArithmeticException if the total number of traces doesn't fit into {@code long}
+     */
+    public LatencyHistogram(@NotNull long[] counts) {
+        long total = 0;
+        for (long count : counts) {
+            Preconditions.checkArgument(count >= 0, "Counts cannot be negative");
+            total = Math.addExact(total, count);
+        }
+        this.counts = counts;
+        this.totalCount = total;
+    }
+
+    /**
+     * @return number of traces indexed by latency in ms, the internal storage that must not be modified
+     */
+    public long[] getCounts() {
+        return counts;
+    }
+
+    /**
+     * @return number of traces with exactly the given latency
+     */
+    public long getCount(int latencyInMs) {
+        return latencyInMs >= 0 && latencyInMs < counts.length ? counts[latencyInMs] : 0;
+    }
+
+    public long getTotalCount() {
+        return totalCount;
+    }
+
+    /**
+     * @param bucketWidth latency range of a bucket in ms
+     * @return number of traces indexed by bucket, bucket {@code i} has the latencies in range
+     *     [{@code i * bucketWidth}, {@code (i + 1) * bucketWidth})
+     */
+    public long[] getBucketCounts(int bucketWidth) {
+        Preconditions.checkArgument(bucketWidth > 0, "Bucket width must be positive");
+        long[] bucketCounts = new long[(int) (((long) counts.length + bucketWidth - 1) / bucketWidth)];
+        for (int latency = 0; latency < counts.length; latency++) {
+            bucketCounts[latency / bucketWidth] += counts[latency];
+        }
+        return bucketCounts;
+    }
+
+    /**
+     * @param percentile percentile in range (0, 100]
+     * @return lowest latency that at least {@code percentile} percent of the traces don't exceed, or empty if there are
+     *     no traces
+     */
+    public OptionalInt getPercentile(double percentile) {
+        Preconditions.checkArgument(percentile > 0 && percentile <= 100, "Percentile must be in range (0, 100]");
+        if (totalCount == 0) {
+            return OptionalInt.empty();
+        }
+        // rank of the trace in the order of latency, from 1
+        long rank = Math.max(1, (long) Math.ceil(percentile / 100 * totalCount));
+        long seen = 0;
+        for (int latency = 0; latency < counts.length; latency++) {
+            seen += counts[latency];
+            if (seen >= rank) {
+                return OptionalInt.of(latency);
+            }
+        }
+        // rounding of the rank of the highest percentiles of huge counts
+        return OptionalInt.of(getMaxLatency());
+    }
+
+    public OptionalInt getP50() {
+        return getPercentile(50);
+    }
+
+    public OptionalInt getP95() {
+        return getPercentile(95);
+    }
+
+    public OptionalInt getP99() {
+        return getPercentile(99);
+    }
+
+    private int getMaxLatency() {
+        int latency = counts.length - 1;
+        while (counts[latency] == 0) {
+            latency--;
+        }
+        return latency;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        return Arrays.equals(counts, ((LatencyHistogram) o).counts);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(counts);
+    }
+
+    @Override
+    public String toString() {
+        return String.format("LatencyHistogram{traces=%d, p50=%s, p95=%s, p99=%s}", totalCount, format(getP50()),
+            format(getP95()), format(getP99()));
+    }
+
+    private static String format(OptionalInt latency) {
+        return latency.isPresent() ? Integer.toString(latency.getAsInt()) : "-";
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.tracing.model;
+
+import com.google.inject.internal.util.Preconditions;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Interns microservice names to dense int ids from 0 to {@code size() - 1} in the order they are first seen, so each
+ * name and its {@link Microservice} are created once however many connections refer to it. Names are looked up by
+ * their UTF-8 bytes in an open addressing hash table, so a name read from a byte buffer is only decoded into a
+ * {@code String} the first time it's seen.
+ */
+public final class MicroserviceTable {
+
+    private static final int EMPTY_SLOT = -1;
+
+    private byte[][] utf8Names = new byte[16][];
+    private int[] hashes = new int[16];
+    private Microservice[] microservices = new Microservice[16];
+    private int size;
+    // ids of the names by their hash, the table is at most half full
+    private int[] slots = newSlots(32);
+
+    /**
+     * @return id of the name, the same one every time the same name is interned
+     */
+    public int intern(@NotNull String name) {
+        byte[] utf8Name = name.getBytes(StandardCharsets.UTF_8);
+        return intern(utf8Name, 0, utf8Name.length);
+    }
+
+    /**
+     * @param utf8Name buffer containing the UTF-8 encoded name, it isn't kept
+     * @param offset index of the first byte of the name
+     * @param length number of bytes of the name
+     * @return id of the name, the same one every time the same name is interned
+     */
+    public int intern(@NotNull byte[] utf8Name, int offset, int length) {
+        Preconditions.checkArgument(length > 0, "Microservice name cannot be empty");
+        int hash = hash(utf8Name, offset, length);
+        int mask = slots.length - 1;
+        int slot = hash & mask;
+        while (slots[slot] != EMPTY_SLOT) {
+            int id = slots[slot];
+            if (hashes[id] == hash
+                && Arrays.equals(utf8Names[id], 0, utf8Names[id].length, utf8Name, offset, offset + length))
+            {
+                return id;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return add(Arrays.copyOfRange(utf8Name, offset, offset + length), hash, slot);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public String getName(int id) {
+        return getMicroservice(id).getName();
+    }
+
+    public Microservice getMicroservice(int id) {
+        Preconditions.checkElementIndex(id, size);
+        return microservices[id];
+    }
+
+    private int add(byte[] utf8Name, int hash, int slot) {
+        if (size == microservices.length) {
+            utf8Names = Arrays.copyOf(utf8Names, 2 * size);
+            hashes = Arrays.copyOf(hashes, 2 * size);
+            microservices = Arrays.copyOf(microservices, 2 * size);
+        }
+        int id = size++;
+        utf8Names[id] = utf8Name;
+        hashes[id] = hash;
+        microservices[id] = new Microservice(new String(utf8Name, StandardCharsets.UTF_8));
+        slots[slot] = id;
+        if (2 * size > slots.length) {
+            rehash(2 * slots.length);
+        }
+        return id;
+    }
+
+    private void rehash(int capacity) {
+        slots = newSlots(capacity);
+        int mask = capacity - 1;
+        for (int id = 0; id < size; id++) {
+            int slot = hashes[id] & mask;
+            while (slots[slot] != EMPTY_SLOT) {
+                slot = (slot + 1) & mask;
+            }
+            slots[slot] = id;
+        }
+    }
+
+    private static int[] newSlots(int capacity) {
+        int[] slots = new int[capacity];
+        Arrays.fill(slots, EMPTY_SLOT);
+        return slots;
+    }
+
+    private static int hash(byte[] bytes, int offset, int length) {
+        int hash = 1;
+        for (int i = offset; i < offset + length; i++) {
+            hash = 31 * hash + bytes[i];
+        }
+        // spread the high bits to the low ones used for the slot
+        return hash ^ (hash >>> 16);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.tracing.model;
+
+import com.google.inject.internal.util.Preconditions;
+import java.util.List;
+import java.util.Objects;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * A question about the traces of a graph of microservices, e.g. the number of traces from C to C with at most 3 hops.
+ * Every query but {@link Kind#WALK_LATENCY} is about the traces from a source to a target microservice.
+ */
+public final class Query {
+
+    public static final String ERROR_QUERY_NEEDS_SOURCE_AND_TARGET = "Query needs a source and a target microservice";
+    public static final String ERROR_LIMIT_CANNOT_BE_NEGATIVE = "Limit cannot be negative";
+
+    public enum Kind {
+        /**
+         * Latency of the trace through the given microservices.
+         */
+        WALK_LATENCY("walk-latency", false),
+        /**
+         * Number of traces with at most {@link #getLimit()} hops.
+         */
+        COUNT_UP_TO_HOPS("count-up-to-hops", true),
+        /**
+         * Number of traces with exactly {@link #getLimit()} hops.
+         */
+        COUNT_EXACT_HOPS("count-exact-hops", true),
+        /**
+         * Latency of the shortest trace.
+         */
+        SHORTEST_LATENCY("shortest-latency", false),
+        /**
+         * Number of traces with latency less than {@link #getLimit()}.
+         */
+        COUNT_LATENCY_LESS_THAN("count-latency-less-than", true);
+
+        private final String keyword;
+        private final boolean limited;
+
+        Kind(String keyword, boolean limited) {
+            this.keyword = keyword;
+            this.limited = limited;
+        }
+
+        /**
+         * @return name of the kind in a query file
+         */
+        public String getKeyword() {
+            return keyword;
+        }
+
+        /**
+         * @return whether the queries of this kind have a limit
+         */
+        public boolean isLimited() {
+            return limited;
+        }
+    }
+
+    private final Kind kind;
+    private final List<Microservice> microservices;
+    private final int limit;
+
+    private Query(Kind kind, List<Microservice> microservices, int limit) {
+        this.kind = kind;
+        this.microservices = microservices;
+        this.limit = limit;
+    }
+
+    public static Query walkLatency(@NotNull List<Microservice> microservices) {
+        Preconditions.checkArgument(microservices.size() >= 2, ERROR_QUERY_NEEDS_SOURCE_AND_TARGET);
+        return new Query(Kind.WALK_LATENCY, List.copyOf(microservices), 0);
+    }
+
+    public static Query shortestLatency(@NotNull Microservice sourceVertex, @NotNull Microservice targetVertex) {
+        return new Query(Kind.SHORTEST_LATENCY, List.of(sourceVertex, targetVertex), 0);
+    }
+
+    /**
+     * @param kind one of the {@link Kind#isLimited() limited} kinds
+     */
+    public static Query limited(@NotNull Kind kind, @NotNull Microservice sourceVertex,
+        @NotNull Microservice targetVertex, int limit)
+    {
+        Preconditions.checkArgument(kind.isLimited(), "Query kind " + kind + " has no limit");
+        Preconditions.checkArgument(limit >= 0, ERROR_LIMIT_CANNOT_BE_NEGATIVE);
+        return new Query(kind, List.of(sourceVertex, targetVertex), limit);
+    }
+
+    public Kind getKind() {
+        return kind;
+    }
+
+    /**
+     * @return microservices of the trace for {@link Kind#WALK_LATENCY}, the source and the target one otherwise
+     */
+    public List<Microservice> getMicroservices() {
+        return microservices;
+    }
+
+    public Microservice getSourceVertex() {
+        return microservices.get(0);
+    }
+
+    public Microservice getTargetVertex() {
+        return microservices.get(microservices.size() - 1);
+    }
+
+    /**
+     * @return hop or latency limit of the {@link Kind#isLimited() limited} queries, 0 for the others
+     */
+    public int getLimit() {
+        return limit;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        Query query = (Query) o;
+        return limit == query.limit && kind == query.kind && microservices.equals(query.microservices);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(kind, microservices, limit);
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder query = new StringBuilder(kind.getKeyword());
+        for (Microservice microservice : microservices) {
+            query.append(' ').append(microservice);
+        }
+        if (kind.isLimited()) {
+            query.append(' ').append(limit);
+        }
+        return query.toString();
+    }
+}
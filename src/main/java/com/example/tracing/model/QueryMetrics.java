@@ -0,0 +1,133 @@
+package com.example.tracing.model;
+
+import com.google.inject.internal.util.Preconditions;
+import java.util.Objects;
+import java.util.Optional;
+import org.jetbrains.annotations.NotNull;
+
+/**
+ * Cost of answering one query: wall time, bytes allocated by the thread that answered it, labels, i.e. partial paths,
+ * expanded by the search, the largest number of labels waiting to be expanded at once and the number of traces returned
+ * or counted. The searches that don't expand labels, e.g. the counting by dynamic programming, report 0 labels. The
+ * searches of other libraries, e.g. the jgrapht enumeration behind the hop-bounded trace lists, expand labels that
+ * cannot be counted and report {@link #UNKNOWN_LABELS_EXPANDED} and {@link #UNKNOWN_PEAK_QUEUE_SIZE}.
+ * A query that throws is recorded too, with the cost up to the failure, no traces and the class of the exception.
+ */
+public final class QueryMetrics {
+
+    public static final long UNKNOWN_ALLOCATED_BYTES = -1;
+    public static final long UNKNOWN_LABELS_EXPANDED = -1;
+    public static final int UNKNOWN_PEAK_QUEUE_SIZE = -1;
+
+    private final String queryType;
+    private final long wallTimeNanos;
+    private final long allocatedBytes;
+    private final long labelsExpanded;
+    private final int peakQueueSize;
+    private final long pathsProduced;
+    private final String failure; // null if the query was answered
+
+    /**
+     * @param queryType name of the kind of the query, e.g. the name of the {@code Traversal} method answering it
+     * @param allocatedBytes bytes allocated or {@link #UNKNOWN_ALLOCATED_BYTES} if the JVM doesn't measure them
+     */
+    public QueryMetrics(@NotNull String queryType, long wallTimeNanos, long allocatedBytes, long labelsExpanded,
+        int peakQueueSize, long pathsProduced)
+    {
+        this(queryType, wallTimeNanos, allocatedBytes, labelsExpanded, peakQueueSize, pathsProduced, null);
+    }
+
+    /**
+     * @param failure name of the class of the exception the query threw, or {@code null} if it was answered
+     */
+    public QueryMetrics(@NotNull String queryType, long wallTimeNanos, long allocatedBytes, long labelsExpanded,
+        int peakQueueSize, long pathsProduced, String failure)
+    {
+        this.queryType = Preconditions.checkNotNull(queryType);
+        this.wallTimeNanos = wallTimeNanos;
+        this.allocatedBytes = allocatedBytes;
+        this.labelsExpanded = labelsExpanded;
+        this.peakQueueSize = peakQueueSize;
+        this.pathsProduced = pathsProduced;
+        this.failure = failure;
+    }
+
+    public String getQueryType() {
+        return queryType;
+    }
+
+    public long getWallTimeNanos() {
+        return wallTimeNanos;
+    }
+
+    /**
+     * @return bytes allocated or {@link #UNKNOWN_ALLOCATED_BYTES} if the JVM doesn't measure them
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes;
+    }
+
+    /**
+     * @return labels expanded or {@link #UNKNOWN_LABELS_EXPANDED} if the search doesn't count them
+     */
+    public long getLabelsExpanded() {
+        return labelsExpanded;
+    }
+
+    /**
+     * @return largest number of labels waiting at once or {@link #UNKNOWN_PEAK_QUEUE_SIZE} if the search doesn't count
+     *     them
+     */
+    public int getPeakQueueSize() {
+        return peakQueueSize;
+    }
+
+    public long getPathsProduced() {
+        return pathsProduced;
+    }
+
+    /**
+     * @return name of the class of the exception the query threw, or empty if it was answered
+     */
+    public Optional<String> getFailure() {
+        return Optional.ofNullable(failure);
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (o == null || getClass() != o.getClass()) {
+            return false;
+        }
+        QueryMetrics that = (QueryMetrics) o;
+        return wallTimeNanos == that.wallTimeNanos && allocatedBytes == that.allocatedBytes
+            && labelsExpanded == that.labelsExpanded && peakQueueSize == that.peakQueueSize
+            && pathsProduced == that.pathsProduced && queryType.equals(that.queryType)
+            && Objects.equals(failure, that.failure);
+    }
+
+    @Override
+    public int hashCode() {
+        return Objects.hash(queryType, wallTimeNanos, allocatedBytes, labelsExpanded, peakQueueSize, pathsProduced,
+            failure);
+    }
+
+    @Override
+    public String toString() {
+        return "QueryMetrics{" +
+            "queryType='" + queryType + '\'' +
+            ", wallTimeNanos=" + wallTimeNanos +
+            ", allocatedBytes=" + allocatedBytes +
+            ", labelsExpanded=" + labelsExpanded +
+            ", peakQueueSize=" + peakQueueSize +
+            ", pathsProduced=" + pathsProduced +
+            ", failure=" + failure +
+            '}';
+    }
+}
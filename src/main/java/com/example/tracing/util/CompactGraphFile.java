@@ -0,0 +1,188 @@
+package com.example.tracing.util;
+
+import com.example.tracing.model.CompactServiceGraph;
+import com.google.inject.internal.util.Preconditions;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Binary snapshot of a {@link CompactServiceGraph}, so a graph parsed once from the text input is loaded at the next
+ * startup by copying its arrays out of a memory-mapped file, without parsing and without an object per connection.
+ * All numbers are little-endian ints. The file consists of:
+ * <ol>
+ *     <li>header: magic number, format version, vertex count, edge count, length of the name bytes and CRC32 of the
+ *     rest of the file</li>
+ *     <li>CSR offsets, targets and latencies as returned by the graph</li>
+ *     <li>name dictionary: offset of the end of each name in the name bytes, then the UTF-8 name bytes</li>
+ * </ol>
+ * The ints come before the name bytes, so all of them are aligned.
+ */
+public final class CompactGraphFile {
+
+    private static final Logger LOG = LoggerFactory.getLogger(CompactGraphFile.class);
+    // "DTCG" read as a little-endian int
+    static final int MAGIC = 0x47435444;
+    static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 6 * Integer.BYTES;
+    private static final int CHECKSUM_POSITION = 5 * Integer.BYTES;
+
+    public static final String ERROR_NOT_A_COMPACT_GRAPH_FILE = "File is not a compact graph file";
+    public static final String ERROR_UNSUPPORTED_VERSION_FORMAT = "Unsupported compact graph file version %d";
+    public static final String ERROR_SIZE_MISMATCH = "Size of the compact graph file doesn't match its header";
+    public static final String ERROR_EMPTY_NAME = "Compact graph file has a microservice with an empty name";
+    public static final String ERROR_CHECKSUM_MISMATCH = "Checksum of the compact graph file doesn't match, it's corrupted";
+
+    private CompactGraphFile() {
+    }
+
+    /**
+     * Writes the graph to a temporary file next to the target one and moves it in place of the target, so a reader of
+     * the target never sees a partially written file.
+     *
+     * @param g the graph
+     * @param path file the graph is written to, replaced if it exists
+     * @throws IOException if the file cannot be written
+     */
+    public static void write(CompactServiceGraph g, Path path) throws IOException {
+        Preconditions.checkNotNull(g);
+        byte[][] nameBytes = new byte[g.getVertexCount()][];
+        long nameBytesLength = 0;
+        for (int v = 0; v < nameBytes.length; v++) {
+            nameBytes[v] = g.getName(v).getBytes(StandardCharsets.UTF_8);
+            nameBytesLength += nameBytes[v].length;
+        }
+        Preconditions.checkArgument(nameBytesLength <= Integer.MAX_VALUE, "Names don't fit into the file");
+        long size = getSize(g.getVertexCount(), g.getEdgeCount(), (int) nameBytesLength);
+        Preconditions.checkArgument(size <= Integer.MAX_VALUE, "Graph doesn't fit into the file");
+
+        Path absolutePath = path.toAbsolutePath();
+        Path temporaryPath = Files.createTempFile(absolutePath.getParent(), absolutePath.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporaryPath, StandardOpenOption.READ, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING))
+            {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+                buffer.order(ByteOrder.LITTLE_ENDIAN);
+                buffer.putInt(MAGIC)
+                    .putInt(FORMAT_VERSION)
+                    .putInt(g.getVertexCount())
+                    .putInt(g.getEdgeCount())
+                    .putInt((int) nameBytesLength)
+                    .putInt(0);
+                IntBuffer ints = buffer.asIntBuffer();
+                ints.put(g.getOffsets()).put(g.getTargets()).put(g.getLatencies());
+                int nameEnd = 0;
+                for (byte[] name : nameBytes) {
+                    nameEnd += name.length;
+                    ints.put(nameEnd);
+                }
+                buffer.position(buffer.position() + ints.position() * Integer.BYTES);
+                for (byte[] name : nameBytes) {
+                    buffer.put(name);
+                }
+                buffer.putInt(CHECKSUM_POSITION, checksum(buffer));
+                buffer.force();
+            }
+            Files.move(temporaryPath, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryPath);
+        }
+        LOG.debug("Wrote {} to {} in {} bytes", g, path, size);
+    }
+
+    /**
+     * Loads the graph from a file written by {@link #write(CompactServiceGraph, Path)}. The arrays of the graph are
+     * copied out of the mapped file in bulk, so the file can be changed or deleted afterwards.
+     *
+     * @param path compact graph file
+     * @return the graph
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if the file is not a compact graph file, has an unsupported version or is
+     *     corrupted
+     */
+    public static CompactServiceGraph read(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size < HEADER_SIZE) {
+                throw new IllegalArgumentException(ERROR_NOT_A_COMPACT_GRAPH_FILE);
+            }
+            Preconditions.checkArgument(size <= Integer.MAX_VALUE, ERROR_SIZE_MISMATCH);
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            buffer.order(ByteOrder.LITTLE_ENDIAN);
+            Preconditions.checkArgument(buffer.getInt() == MAGIC, ERROR_NOT_A_COMPACT_GRAPH_FILE);
+            int version = buffer.getInt();
+            if (version != FORMAT_VERSION) {
+                throw new IllegalArgumentException(String.format(ERROR_UNSUPPORTED_VERSION_FORMAT, version));
+            }
+            int vertexCount = buffer.getInt();
+            int edgeCount = buffer.getInt();
+            int nameBytesLength = buffer.getInt();
+            int expectedChecksum = buffer.getInt();
+            Preconditions.checkArgument(vertexCount >= 0 && edgeCount >= 0 && nameBytesLength >= 0
+                && getSize(vertexCount, edgeCount, nameBytesLength) == size, ERROR_SIZE_MISMATCH);
+            Preconditions.checkArgument(checksum(buffer) == expectedChecksum, ERROR_CHECKSUM_MISMATCH);
+
+            IntBuffer ints = buffer.asIntBuffer();
+            int[] offsets = new int[vertexCount + 1];
+            int[] targets = new int[edgeCount];
+            int[] latencies = new int[edgeCount];
+            int[] nameEnds = new int[vertexCount];
+            ints.get(offsets).get(targets).get(latencies).get(nameEnds);
+            byte[] nameBytes = new byte[nameBytesLength];
+            buffer.position(buffer.position() + ints.position() * Integer.BYTES).get(nameBytes);
+            String[] names = new String[vertexCount];
+            int nameStart = 0;
+            for (int v = 0; v < vertexCount; v++) {
+                Preconditions.checkArgument(nameEnds[v] >= nameStart && nameEnds[v] <= nameBytesLength,
+                    ERROR_SIZE_MISMATCH);
+                Preconditions.checkArgument(nameEnds[v] > nameStart, ERROR_EMPTY_NAME);
+                names[v] = new String(nameBytes, nameStart, nameEnds[v] - nameStart, StandardCharsets.UTF_8);
+                nameStart = nameEnds[v];
+            }
+            // the names take all the name bytes, nothing is left after the last one
+            Preconditions.checkArgument(nameStart == nameBytesLength, ERROR_SIZE_MISMATCH);
+            CompactServiceGraph g = CompactServiceGraph.fromArrays(names, offsets, targets, latencies);
+            LOG.debug("Read {} from {}", g, path);
+            return g;
+        }
+    }
+
+    /**
+     * @return whether the file starts with the magic number of a compact graph file
+     * @throws IOException if the file cannot be read
+     */
+    public static boolean isCompactGraphFile(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer magic = ByteBuffer.allocate(Integer.BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            while (magic.hasRemaining() && channel.read(magic) >= 0) {
+                // read until the magic number is complete or the file ends
+            }
+            return !magic.hasRemaining() && magic.getInt(0) == MAGIC;
+        }
+    }
+
+    private static long getSize(int vertexCount, int edgeCount, int nameBytesLength) {
+        return HEADER_SIZE + Integer.BYTES * ((vertexCount + 1L) + 2L * edgeCount + vertexCount) + nameBytesLength;
+    }
+
+    /**
+     * @return CRC32 of everything after the header, the position of the buffer is not changed
+     */
+    private static int checksum(ByteBuffer buffer) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.duplicate().position(HEADER_SIZE).limit(buffer.capacity()));
+        return (int) crc.getValue();
+    }
+}
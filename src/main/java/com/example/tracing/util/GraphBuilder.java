@@ -1,9 +1,17 @@
 package com.example.tracing.util;
 
+import com.example.tracing.model.CompactServiceGraph;
 import com.example.tracing.model.Connection;
+import com.example.tracing.model.ConnectionChange;
 import com.example.tracing.model.Microservice;
+import com.example.tracing.model.MicroserviceTable;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.AbstractMap;
 import java.util.AbstractMap.SimpleImmutableEntry;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -16,14 +24,21 @@ public class GraphBuilder {
     private static final Logger LOG = LoggerFactory.getLogger(GraphBuilder.class);
     private static final String TRACE_INPUT_FORMAT = "([A-Z])([A-Z])(\\d+)";
     private static final Pattern TRACE_INPUT = Pattern.compile(TRACE_INPUT_FORMAT);
+    private static final String EXTENDED_TRACE_INPUT_FORMAT = "([^\\s,>:]+)>([^\\s,>:]+):(\\d+)";
+    private static final Pattern EXTENDED_TRACE_INPUT = Pattern.compile(EXTENDED_TRACE_INPUT_FORMAT);
     private static final String TRACE_DOES_NOR_MATCH_THE_FORMAT = "Trace doesn't match the format";
     public static final String ERROR_SELF_LOOPS_NOT_ALLOWED = "Self-loops are not allowed";
+    public static final String ERROR_EMPTY_INPUT = "Graph input has no trace";
     public static final String ERROR_TRACE_DOES_NOT_MATCH_FORMAT = TRACE_DOES_NOR_MATCH_THE_FORMAT + " "+ TRACE_INPUT_FORMAT;
+    public static final String ERROR_EXTENDED_TRACE_DOES_NOT_MATCH_FORMAT =
+        TRACE_DOES_NOR_MATCH_THE_FORMAT + " " + EXTENDED_TRACE_INPUT_FORMAT;
 
     /**
      * Builds simple directed weighted graph from the scanner initialized with the graph input in format ([a-Z])([a-Z])(\d+)
      * where first group is source microservice, the second group is target microservice, and the third one is a connection latency
-     * between them
+     * between them. Traces can also be in the extended format ([^\s,>:]+)>([^\s,>:]+):(\d+), e.g.
+     * {@code checkout-api>payments:12}, for microservices named by more than a single letter. Each microservice is
+     * created once, see {@link MicroserviceTable}
      * @param s Scanner initialized with graph input file
      * @return SimpleImmutableEntry containing a graph build from the scanner and minimal edge weight the graph has
      */
@@ -32,40 +47,180 @@ public class GraphBuilder {
     )
     {
         SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        MicroserviceTable microservices = new MicroserviceTable();
         int minEdgeWeight = Integer.MAX_VALUE;
+        if (!s.hasNext()) {
+            throw new IllegalArgumentException(ERROR_EMPTY_INPUT);
+        }
         while (s.hasNext()) {
-            String next = s.next();
-            Matcher traceMatcher = TRACE_INPUT.matcher(next);
-            if (traceMatcher.matches()) {
-                Microservice sourceVertex = new Microservice(traceMatcher.group(1));
-                Microservice targetVertex = new Microservice(traceMatcher.group(2));
-                if (sourceVertex.equals(targetVertex)) {
-                    throw new IllegalArgumentException(ERROR_SELF_LOOPS_NOT_ALLOWED);
-                }
-                if (!g.containsVertex(sourceVertex)) {
-                    g.addVertex(sourceVertex);
-                }
-                if (!g.containsVertex(targetVertex)) {
-                    g.addVertex(targetVertex);
-                }
-                if (!g.containsEdge(sourceVertex, targetVertex)) {
-                    int weight = Integer.parseInt(traceMatcher.group(3));
-                    minEdgeWeight = Math.min(minEdgeWeight, weight);
-                    Connection c = new Connection(weight);
-                    g.addEdge(sourceVertex, targetVertex, c);
-                    g.setEdgeWeight(sourceVertex, targetVertex, c.getLatencyInMs());
-                } else {
-                    LOG.error("Graph already contains edge {}->{}. Duplicate edges are not allowed", sourceVertex,
-                        targetVertex);
-                    throw new IllegalArgumentException(String
-                        .format("Graph already contains edge {%s}->{%s}. Duplicate edges are not allowed", sourceVertex,
-                            targetVertex));
+            Matcher traceMatcher = matchTrace(s.next());
+            int weight = Integer.parseInt(traceMatcher.group(3));
+            addConnection(g, microservices.getMicroservice(microservices.intern(traceMatcher.group(1))),
+                microservices.getMicroservice(microservices.intern(traceMatcher.group(2))), weight);
+            minEdgeWeight = Math.min(minEdgeWeight, weight);
+        }
+        return new AbstractMap.SimpleImmutableEntry<>(g, minEdgeWeight);
+    }
+
+    /**
+     * Builds the same graph as {@link #buildGraphFromInput(Scanner)} from a graph input file read by
+     * {@link TraceFileReader}, which is much faster than the scanner on big files.
+     * @param path graph input file
+     * @return SimpleImmutableEntry containing a graph build from the file and minimal edge weight the graph has
+     * @throws IOException if the file cannot be read
+     */
+    public static SimpleImmutableEntry<SimpleDirectedWeightedGraph<Microservice, Connection>, Integer> buildGraphFromFile(
+        Path path
+    ) throws IOException
+    {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        MicroserviceTable microservices = new MicroserviceTable();
+        int[] minEdgeWeight = {Integer.MAX_VALUE};
+        TraceFileReader.read(path, microservices, (sourceId, targetId, latency) -> {
+            addConnection(g, microservices.getMicroservice(sourceId), microservices.getMicroservice(targetId), latency);
+            minEdgeWeight[0] = Math.min(minEdgeWeight[0], latency);
+        });
+        return new AbstractMap.SimpleImmutableEntry<>(g, minEdgeWeight[0]);
+    }
+
+    /**
+     * Builds compact graph from the scanner initialized with the graph input in the same format as
+     * {@link #buildGraphFromInput(Scanner)} does, without creating jgrapht vertex and edge objects.
+     * @param s Scanner initialized with graph input file
+     * @return compact graph build from the scanner
+     */
+    public static CompactServiceGraph buildCompactGraphFromInput(Scanner s) {
+        CompactServiceGraph.Builder builder = CompactServiceGraph.builder();
+        if (!s.hasNext()) {
+            throw new IllegalArgumentException(ERROR_EMPTY_INPUT);
+        }
+        while (s.hasNext()) {
+            Matcher traceMatcher = matchTrace(s.next());
+            builder.addConnection(traceMatcher.group(1), traceMatcher.group(2), Integer.parseInt(traceMatcher.group(3)));
+        }
+        return builder.build();
+    }
+
+    /**
+     * Builds the same compact graph as {@link #buildCompactGraphFromInput(Scanner)} from a graph input file read by
+     * {@link TraceFileReader}.
+     * @param path graph input file
+     * @return compact graph build from the file
+     * @throws IOException if the file cannot be read
+     */
+    public static CompactServiceGraph buildCompactGraphFromFile(Path path) throws IOException {
+        CompactServiceGraph.Builder builder = CompactServiceGraph.builder();
+        MicroserviceTable microservices = new MicroserviceTable();
+        int[] vertexCount = {0};
+        TraceFileReader.read(path, microservices, (sourceId, targetId, latency) -> {
+            // both the table and the builder number the microservices in the order they are first seen
+            while (vertexCount[0] < microservices.size()) {
+                builder.addVertex(microservices.getName(vertexCount[0]++));
+            }
+            builder.addConnection(sourceId, targetId, latency);
+        });
+        return builder.build();
+    }
+
+    /**
+     * Loads compact graph from either a file written by {@link CompactGraphFile#write(CompactServiceGraph, Path)} or a
+     * graph input file, told apart by the magic number at the start of the compact graph file.
+     * @param path compact graph file or graph input file
+     * @return compact graph loaded from the file
+     * @throws IOException if the file cannot be read
+     */
+    public static CompactServiceGraph loadCompactGraph(Path path) throws IOException {
+        return CompactGraphFile.isCompactGraphFile(path) ? CompactGraphFile.read(path) : buildCompactGraphFromFile(path);
+    }
+
+    /**
+     * Applies the changes to the graph in order. Connections are immutable, so a latency update replaces the connection
+     * with a new one. Microservices are never removed. The graph is not changed if any change cannot be applied.
+     * A {@link CompactServiceGraph} is changed by {@link CompactServiceGraph#withChanges(List)} instead.
+     * @param g graph built by {@link #buildGraphFromInput(Scanner)} or {@link #buildGraphFromFile(Path)}
+     * @param changes changes of the connections
+     * @throws IllegalArgumentException if an added connection is already in the graph or a removed or updated one isn't
+     */
+    public static void applyChanges(SimpleDirectedWeightedGraph<Microservice, Connection> g,
+        List<ConnectionChange> changes)
+    {
+        validateChanges(g, changes);
+        for (ConnectionChange change : changes) {
+            Microservice sourceVertex = change.getSourceVertex();
+            Microservice targetVertex = change.getTargetVertex();
+            if (change.getKind() != ConnectionChange.Kind.ADD) {
+                g.removeEdge(sourceVertex, targetVertex);
+            }
+            if (change.getKind() != ConnectionChange.Kind.REMOVE) {
+                addConnection(g, sourceVertex, targetVertex, change.getLatencyInMs());
+            }
+        }
+    }
+
+    /**
+     * Checks the changes against the graph before any of them is applied, so a failing change doesn't leave the graph
+     * half changed. The connections added or removed by the earlier changes of the batch are taken into account.
+     */
+    private static void validateChanges(SimpleDirectedWeightedGraph<Microservice, Connection> g,
+        List<ConnectionChange> changes)
+    {
+        // whether each connection changed by the batch so far is in the graph after the change
+        Map<SimpleImmutableEntry<Microservice, Microservice>, Boolean> changedConnections = new HashMap<>();
+        for (ConnectionChange change : changes) {
+            Microservice sourceVertex = change.getSourceVertex();
+            Microservice targetVertex = change.getTargetVertex();
+            SimpleImmutableEntry<Microservice, Microservice> connection =
+                new SimpleImmutableEntry<>(sourceVertex, targetVertex);
+            Boolean changedPresence = changedConnections.get(connection);
+            boolean present = changedPresence != null
+                ? changedPresence
+                : g.containsVertex(sourceVertex) && g.containsVertex(targetVertex)
+                    && g.containsEdge(sourceVertex, targetVertex);
+            if (change.getKind() == ConnectionChange.Kind.ADD) {
+                if (present) {
+                    throw new IllegalArgumentException(String.format(CompactServiceGraph.ERROR_DUPLICATE_EDGE_FORMAT,
+                        sourceVertex.getName(), targetVertex.getName()));
                 }
-            } else {
-                LOG.error(TRACE_DOES_NOR_MATCH_THE_FORMAT + ": {}", next);
-                throw new IllegalArgumentException(ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+            } else if (!present) {
+                throw new IllegalArgumentException(String.format(CompactServiceGraph.ERROR_NO_SUCH_EDGE_FORMAT,
+                    sourceVertex.getName(), targetVertex.getName()));
             }
+            changedConnections.put(connection, change.getKind() != ConnectionChange.Kind.REMOVE);
         }
-        return new AbstractMap.SimpleImmutableEntry<>(g, minEdgeWeight);
+    }
+
+    private static void addConnection(SimpleDirectedWeightedGraph<Microservice, Connection> g, Microservice sourceVertex,
+        Microservice targetVertex, int weight)
+    {
+        if (!g.containsVertex(sourceVertex)) {
+            g.addVertex(sourceVertex);
+        }
+        if (!g.containsVertex(targetVertex)) {
+            g.addVertex(targetVertex);
+        }
+        if (!g.containsEdge(sourceVertex, targetVertex)) {
+            Connection c = new Connection(weight);
+            g.addEdge(sourceVertex, targetVertex, c);
+            g.setEdgeWeight(sourceVertex, targetVertex, c.getLatencyInMs());
+        } else {
+            LOG.error("Graph already contains edge {}->{}. Duplicate edges are not allowed", sourceVertex,
+                targetVertex);
+            throw new IllegalArgumentException(
+                String.format(CompactServiceGraph.ERROR_DUPLICATE_EDGE_FORMAT, sourceVertex, targetVertex));
+        }
+    }
+
+    private static Matcher matchTrace(String trace) {
+        boolean extendedFormat = trace.indexOf('>') >= 0;
+        Matcher traceMatcher = (extendedFormat ? EXTENDED_TRACE_INPUT : TRACE_INPUT).matcher(trace);
+        if (!traceMatcher.matches()) {
+            LOG.error(TRACE_DOES_NOR_MATCH_THE_FORMAT + ": {}", trace);
+            throw new IllegalArgumentException(
+                extendedFormat ? ERROR_EXTENDED_TRACE_DOES_NOT_MATCH_FORMAT : ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+        }
+        if (traceMatcher.group(1).equals(traceMatcher.group(2))) {
+            throw new IllegalArgumentException(ERROR_SELF_LOOPS_NOT_ALLOWED);
+        }
+        return traceMatcher;
     }
 }
@@ -0,0 +1,126 @@
+package com.example.tracing.util;
+
+import com.example.tracing.model.Microservice;
+import com.example.tracing.model.MicroserviceTable;
+import com.example.tracing.model.Query;
+import com.example.tracing.model.Query.Kind;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.regex.Pattern;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Parses query files with one query per line: the {@link Kind#getKeyword() keyword} of the query kind followed by
+ * whitespace separated microservice names and the limit, if the kind has one. Blank lines and lines starting with
+ * {@code #} are skipped.
+ * <pre>
+ * walk-latency A B C
+ * count-up-to-hops C C 3
+ * count-exact-hops A C 4
+ * shortest-latency checkout-api payments
+ * count-latency-less-than C C 30
+ * </pre>
+ */
+public class QueryParser {
+
+    private static final Logger LOG = LoggerFactory.getLogger(QueryParser.class);
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Map<String, Kind> KINDS = new HashMap<>();
+    public static final String ERROR_QUERY_DOES_NOT_MATCH_FORMAT_AT_LINE = "Query doesn't match the format at line %d: %s";
+    public static final String ERROR_LIMIT_IS_NOT_AN_INT = "Limit is not an int: ";
+
+    static {
+        for (Kind kind : Kind.values()) {
+            KINDS.put(kind.getKeyword(), kind);
+        }
+    }
+
+    public static List<Query> parseQueries(Path path) throws IOException {
+        try (BufferedReader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            return parseQueries(reader);
+        }
+    }
+
+    /**
+     * @param reader query file content, not closed by the call
+     * @return queries in the order they appear in the input
+     * @throws IllegalArgumentException if a query doesn't match the format
+     */
+    public static List<Query> parseQueries(Reader reader) throws IOException {
+        BufferedReader lines = reader instanceof BufferedReader ? (BufferedReader) reader : new BufferedReader(reader);
+        // queries about the same microservices share the Microservice instances
+        MicroserviceTable microservices = new MicroserviceTable();
+        List<Query> queries = new ArrayList<>();
+        String line;
+        int lineNumber = 0;
+        while ((line = lines.readLine()) != null) {
+            lineNumber++;
+            String trimmedLine = line.trim();
+            if (trimmedLine.isEmpty() || trimmedLine.startsWith("#")) {
+                continue;
+            }
+            try {
+                queries.add(parseQuery(WHITESPACE.split(trimmedLine), microservices));
+            } catch (IllegalArgumentException e) {
+                LOG.error("Query doesn't match the format at line {}: {}", lineNumber, e.getMessage());
+                throw new IllegalArgumentException(
+                    String.format(ERROR_QUERY_DOES_NOT_MATCH_FORMAT_AT_LINE, lineNumber, trimmedLine), e);
+            }
+        }
+        return queries;
+    }
+
+    /**
+     * @param query a single query in the format of a query file line, e.g. {@code shortest-latency A C}
+     * @return the query
+     * @throws IllegalArgumentException if the query doesn't match the format
+     */
+    public static Query parseQuery(String query) {
+        String trimmedQuery = query.trim();
+        if (trimmedQuery.isEmpty()) {
+            throw new IllegalArgumentException("Query is empty");
+        }
+        return parseQuery(WHITESPACE.split(trimmedQuery), new MicroserviceTable());
+    }
+
+    private static Query parseQuery(String[] tokens, MicroserviceTable microservices) {
+        Kind kind = KINDS.get(tokens[0]);
+        if (kind == null) {
+            throw new IllegalArgumentException("Unknown query kind " + tokens[0]);
+        }
+        int microserviceCount = kind.isLimited() ? tokens.length - 2 : tokens.length - 1;
+        if (kind == Kind.WALK_LATENCY ? microserviceCount < 2 : microserviceCount != 2) {
+            throw new IllegalArgumentException(Query.ERROR_QUERY_NEEDS_SOURCE_AND_TARGET);
+        }
+        List<Microservice> queryMicroservices = new ArrayList<>(microserviceCount);
+        for (int i = 1; i <= microserviceCount; i++) {
+            queryMicroservices.add(microservices.getMicroservice(microservices.intern(tokens[i])));
+        }
+        switch (kind) {
+            case WALK_LATENCY:
+                return Query.walkLatency(queryMicroservices);
+            case SHORTEST_LATENCY:
+                return Query.shortestLatency(queryMicroservices.get(0), queryMicroservices.get(1));
+            default:
+                return Query.limited(kind, queryMicroservices.get(0), queryMicroservices.get(1),
+                    parseLimit(tokens[tokens.length - 1]));
+        }
+    }
+
+    private static int parseLimit(String token) {
+        try {
+            return Integer.parseInt(token);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException(ERROR_LIMIT_IS_NOT_AN_INT + token, e);
+        }
+    }
+}
@@ -0,0 +1,291 @@
+package com.example.tracing.util;
+
+import com.example.tracing.model.MicroserviceTable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Reads graph input from a memory-mapped file, byte by byte, without creating a {@code String} or a {@code Matcher}
+ * per trace. Traces can be in either of the formats {@link GraphBuilder#buildGraphFromInput(java.util.Scanner)} accepts:
+ * {@code AB5} or {@code checkout-api>payments:12}. The input is split the way a scanner with
+ * {@link FileReaderUtil#INPUT_DELIMITER} splits it: a single comma with optional whitespace around it separates the
+ * traces and may also come before the first or after the last one. Whitespace anywhere else, e.g. a trailing newline,
+ * is a part of a trace and fails the format, as does an empty trace between two commas. An input with no trace is
+ * rejected. Microservice names are interned to ids by a {@link MicroserviceTable}.
+ */
+public final class TraceFileReader {
+
+    private static final Logger LOG = LoggerFactory.getLogger(TraceFileReader.class);
+    // files bigger than this are mapped region by region
+    static final long MAX_MAPPED_REGION_SIZE = 1 << 30;
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    private static final int EXPECT_TRACE = 0;
+    private static final int IN_SOURCE = 1; // or in a trace in the single letter format, until '>' shows up
+    private static final int IN_TARGET = 2;
+    private static final int EXPECT_LATENCY = 3;
+    private static final int IN_LATENCY = 4;
+    private static final int EXPECT_DELIMITER = 5; // whitespace after a trace, the trace is pending until a comma
+    private static final int EXPECT_FIRST_TRACE = 6;
+    private static final int IN_LEADING_WHITESPACE = 7;
+
+    /**
+     * Receives the traces in the order they appear in the input.
+     */
+    @FunctionalInterface
+    public interface TraceHandler {
+
+        /**
+         * @param sourceId id of the source microservice in the {@link MicroserviceTable}
+         * @param targetId id of the target microservice in the {@link MicroserviceTable}, never the same as the source one
+         * @param latency latency of the connection, not validated
+         */
+        void onTrace(int sourceId, int targetId, int latency);
+    }
+
+    private final MicroserviceTable microservices;
+    private final TraceHandler handler;
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    private byte[] token = new byte[64]; // bytes of the name or the single letter format trace being read
+    private int tokenLength;
+    private int state = EXPECT_FIRST_TRACE;
+    private int sourceId;
+    private int latency;
+    private long position;
+    private boolean pendingExtendedTrace;
+    private boolean traceRead;
+
+    private TraceFileReader(MicroserviceTable microservices, TraceHandler handler) {
+        this.microservices = microservices;
+        this.handler = handler;
+    }
+
+    /**
+     * Reads all the traces of the file and hands them over to the handler.
+     *
+     * @param path graph input file
+     * @param microservices table the microservice names are interned to
+     * @param handler receiver of the traces
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if a trace doesn't match the format or is a self-loop, or the file has no trace
+     */
+    public static void read(Path path, MicroserviceTable microservices, TraceHandler handler) throws IOException {
+        TraceFileReader reader = new TraceFileReader(microservices, handler);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            for (long regionStart = 0; regionStart < size; regionStart += MAX_MAPPED_REGION_SIZE) {
+                MappedByteBuffer region = channel.map(FileChannel.MapMode.READ_ONLY, regionStart,
+                    Math.min(MAX_MAPPED_REGION_SIZE, size - regionStart));
+                reader.read(region);
+            }
+        }
+        reader.finish();
+    }
+
+    private void read(ByteBuffer buffer) {
+        while (buffer.hasRemaining()) {
+            int length = Math.min(chunk.length, buffer.remaining());
+            buffer.get(chunk, 0, length);
+            for (int i = 0; i < length; i++) {
+                accept(chunk[i]);
+                position++;
+            }
+        }
+    }
+
+    private void accept(byte b) {
+        switch (state) {
+            case EXPECT_FIRST_TRACE:
+                if (isNameByte(b)) {
+                    appendToToken(b);
+                    state = IN_SOURCE;
+                } else if (b == ',') {
+                    state = EXPECT_TRACE;
+                } else if (isWhitespace(b)) {
+                    state = IN_LEADING_WHITESPACE;
+                } else {
+                    throw formatError(GraphBuilder.ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+                }
+                break;
+            case IN_LEADING_WHITESPACE:
+                if (b == ',') {
+                    state = EXPECT_TRACE;
+                } else if (!isWhitespace(b)) {
+                    throw formatError(GraphBuilder.ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+                }
+                break;
+            case EXPECT_TRACE:
+                if (isNameByte(b)) {
+                    appendToToken(b);
+                    state = IN_SOURCE;
+                } else if (!isWhitespace(b)) {
+                    throw formatError(GraphBuilder.ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+                }
+                break;
+            case IN_SOURCE:
+                if (isNameByte(b)) {
+                    appendToToken(b);
+                } else if (b == '>') {
+                    sourceId = microservices.intern(token, 0, tokenLength);
+                    tokenLength = 0;
+                    state = IN_TARGET;
+                } else if (b == ',') {
+                    endSingleLetterTrace();
+                    state = EXPECT_TRACE;
+                } else if (isWhitespace(b)) {
+                    pendingExtendedTrace = false;
+                    state = EXPECT_DELIMITER;
+                } else {
+                    throw formatError(GraphBuilder.ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+                }
+                break;
+            case IN_TARGET:
+                if (isNameByte(b)) {
+                    appendToToken(b);
+                } else if (b == ':' && tokenLength > 0) {
+                    state = EXPECT_LATENCY;
+                } else {
+                    throw formatError(GraphBuilder.ERROR_EXTENDED_TRACE_DOES_NOT_MATCH_FORMAT);
+                }
+                break;
+            case EXPECT_LATENCY:
+                if (!isDigit(b)) {
+                    throw formatError(GraphBuilder.ERROR_EXTENDED_TRACE_DOES_NOT_MATCH_FORMAT);
+                }
+                latency = b - '0';
+                state = IN_LATENCY;
+                break;
+            case IN_LATENCY:
+                if (isDigit(b)) {
+                    latency = appendDigit(latency, b, GraphBuilder.ERROR_EXTENDED_TRACE_DOES_NOT_MATCH_FORMAT);
+                } else if (b == ',') {
+                    endExtendedTrace();
+                    state = EXPECT_TRACE;
+                } else if (isWhitespace(b)) {
+                    pendingExtendedTrace = true;
+                    state = EXPECT_DELIMITER;
+                } else {
+                    throw formatError(GraphBuilder.ERROR_EXTENDED_TRACE_DOES_NOT_MATCH_FORMAT);
+                }
+                break;
+            case EXPECT_DELIMITER:
+                if (b == ',') {
+                    endPendingTrace();
+                    state = EXPECT_TRACE;
+                } else if (!isWhitespace(b)) {
+                    throw pendingTraceFormatError();
+                }
+                break;
+            default:
+                throw new IllegalStateException("Unknown state " + state);
+        }
+    }
+
+    private void finish() {
+        if (state == IN_SOURCE) {
+            endSingleLetterTrace();
+        } else if (state == IN_LATENCY) {
+            endExtendedTrace();
+        } else if (state == IN_TARGET || state == EXPECT_LATENCY) {
+            throw formatError(GraphBuilder.ERROR_EXTENDED_TRACE_DOES_NOT_MATCH_FORMAT);
+        } else if (state == EXPECT_DELIMITER) {
+            // whitespace after the last trace isn't followed by a comma, so it's a part of the trace
+            throw pendingTraceFormatError();
+        } else if (state == IN_LEADING_WHITESPACE) {
+            throw formatError(GraphBuilder.ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+        }
+        if (!traceRead) {
+            throw new IllegalArgumentException(GraphBuilder.ERROR_EMPTY_INPUT);
+        }
+    }
+
+    /**
+     * Validates the token read so far as a trace in the ([A-Z])([A-Z])(\d+) format.
+     */
+    private void endSingleLetterTrace() {
+        if (tokenLength < 3 || !isLetter(token[0]) || !isLetter(token[1])) {
+            throw formatError(GraphBuilder.ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+        }
+        int singleLetterLatency = 0;
+        for (int i = 2; i < tokenLength; i++) {
+            if (!isDigit(token[i])) {
+                throw formatError(GraphBuilder.ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+            }
+            singleLetterLatency = appendDigit(singleLetterLatency, token[i], GraphBuilder.ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+        }
+        if (token[0] == token[1]) {
+            throw new IllegalArgumentException(GraphBuilder.ERROR_SELF_LOOPS_NOT_ALLOWED);
+        }
+        tokenLength = 0;
+        traceRead = true;
+        handler.onTrace(microservices.intern(token, 0, 1), microservices.intern(token, 1, 1), singleLetterLatency);
+    }
+
+    private void endExtendedTrace() {
+        int targetId = microservices.intern(token, 0, tokenLength);
+        tokenLength = 0;
+        if (sourceId == targetId) {
+            throw new IllegalArgumentException(GraphBuilder.ERROR_SELF_LOOPS_NOT_ALLOWED);
+        }
+        traceRead = true;
+        handler.onTrace(sourceId, targetId, latency);
+    }
+
+    private void endPendingTrace() {
+        if (pendingExtendedTrace) {
+            endExtendedTrace();
+        } else {
+            endSingleLetterTrace();
+        }
+    }
+
+    private IllegalArgumentException pendingTraceFormatError() {
+        return formatError(pendingExtendedTrace ? GraphBuilder.ERROR_EXTENDED_TRACE_DOES_NOT_MATCH_FORMAT
+            : GraphBuilder.ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+    }
+
+    private void appendToToken(byte b) {
+        if (tokenLength == token.length) {
+            token = Arrays.copyOf(token, 2 * tokenLength);
+        }
+        token[tokenLength++] = b;
+    }
+
+    private int appendDigit(int number, byte digit, String formatErrorMessage) {
+        if (number > (Integer.MAX_VALUE - (digit - '0')) / 10) {
+            throw formatError(formatErrorMessage);
+        }
+        return 10 * number + digit - '0';
+    }
+
+    private IllegalArgumentException formatError(String message) {
+        LOG.error("Trace doesn't match the format at byte {}", position);
+        return new IllegalArgumentException(message);
+    }
+
+    /**
+     * @return true if the byte may be a part of a microservice name, i.e. it's not whitespace or one of ",>:"
+     */
+    private static boolean isNameByte(byte b) {
+        return b != ',' && b != '>' && b != ':' && !isWhitespace(b);
+    }
+
+    private static boolean isLetter(byte b) {
+        return b >= 'A' && b <= 'Z';
+    }
+
+    private static boolean isDigit(byte b) {
+        return b >= '0' && b <= '9';
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f' || b == 0x0B;
+    }
+}
@@ -0,0 +1,162 @@
+package com.example.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.util.CompactGraphFile;
+import com.example.tracing.util.GraphBuilder;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.zip.CRC32;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CompactGraphFileTest {
+
+    // positions in the header of the file: magic, version, vertex count, edge count, name bytes length and checksum
+    private static final int NAME_BYTES_LENGTH_POSITION = 4 * Integer.BYTES;
+    private static final int CHECKSUM_POSITION = 5 * Integer.BYTES;
+    private static final int HEADER_SIZE = 6 * Integer.BYTES;
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testWriteAndRead_graphWithLongAndNonAsciiNames_sameGraph() throws IOException {
+        CompactServiceGraph g = CompactServiceGraph.builder()
+            .addConnection("checkout-api", "payments", 12)
+            .addConnection("payments", "ledger-\u00fc", 3)
+            .addConnection("ledger-\u00fc", "checkout-api", 7)
+            .addConnection("checkout-api", "ledger-\u00fc", 1234567)
+            .build();
+        Path path = tempDir.resolve("graph.bin");
+
+        CompactGraphFile.write(g, path);
+        CompactServiceGraph readGraph = CompactGraphFile.read(path);
+
+        assertSameGraph(readGraph, g);
+        assertThat(readGraph.getVertexId("ledger-\u00fc")).isEqualTo(g.getVertexId("ledger-\u00fc"));
+        assertThat(CompactGraphFile.isCompactGraphFile(path)).isTrue();
+        assertThat(Files.list(tempDir)).containsExactly(path);
+    }
+
+    @Test
+    public void testLoadCompactGraph_inputFileAndItsCompactFile_sameGraph() throws IOException {
+        Path input = Files.writeString(tempDir.resolve("input.txt"), "AB5, BC4, CD8, DC8, DE6, AD5, CE2, EB3, AE7");
+        Path compact = tempDir.resolve("input.bin");
+
+        CompactServiceGraph g = GraphBuilder.loadCompactGraph(input);
+        CompactGraphFile.write(g, compact);
+
+        assertThat(CompactGraphFile.isCompactGraphFile(input)).isFalse();
+        assertSameGraph(GraphBuilder.loadCompactGraph(compact), g);
+    }
+
+    @Test
+    public void testWriteAndRead_emptyAndRandomGraphs_sameGraph() throws IOException {
+        Random random = new Random(19);
+        Path path = tempDir.resolve("graph.bin");
+        for (int vertexCount = 0; vertexCount < 40; vertexCount += 4) {
+            CompactServiceGraph.Builder builder = CompactServiceGraph.builder();
+            for (int v = 0; v < vertexCount; v++) {
+                builder.addVertex("S" + v);
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                for (int u = 0; u < vertexCount; u++) {
+                    if (u != v && random.nextInt(4) == 0) {
+                        builder.addConnection(v, u, 1 + random.nextInt(1000));
+                    }
+                }
+            }
+            CompactServiceGraph g = builder.build();
+            CompactGraphFile.write(g, path);
+            assertSameGraph(CompactGraphFile.read(path), g);
+        }
+    }
+
+    @Test
+    public void testRead_corruptedFiles_throwsIllegalArgumentException() throws IOException {
+        CompactServiceGraph g = GraphBuilder.buildCompactGraphFromInput(new Scanner("AB5 BC4 CA3"));
+        Path path = tempDir.resolve("graph.bin");
+        CompactGraphFile.write(g, path);
+        byte[] bytes = Files.readAllBytes(path);
+
+        byte[] flippedLatency = bytes.clone();
+        flippedLatency[flippedLatency.length - 20] ^= 1;
+        assertThatThrownBy(() -> CompactGraphFile.read(Files.write(path, flippedLatency)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(CompactGraphFile.ERROR_CHECKSUM_MISMATCH);
+
+        assertThatThrownBy(() -> CompactGraphFile.read(Files.write(path, Arrays.copyOf(bytes, bytes.length - 1))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(CompactGraphFile.ERROR_SIZE_MISMATCH);
+
+        byte[] nextVersion = bytes.clone();
+        nextVersion[4] = 2;
+        assertThatThrownBy(() -> CompactGraphFile.read(Files.write(path, nextVersion)))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(String.format(CompactGraphFile.ERROR_UNSUPPORTED_VERSION_FORMAT, 2));
+
+        assertThatThrownBy(() -> CompactGraphFile.read(Files.writeString(path, "AB5, BC4, CA3, CD7, DA1")))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(CompactGraphFile.ERROR_NOT_A_COMPACT_GRAPH_FILE);
+    }
+
+    @Test
+    public void testRead_nameBytesAfterLastName_throwsIllegalArgumentException() throws IOException {
+        CompactServiceGraph g = GraphBuilder.buildCompactGraphFromInput(new Scanner("AB5 BC4 CA3"));
+        Path path = tempDir.resolve("graph.bin");
+        CompactGraphFile.write(g, path);
+        byte[] bytes = Files.readAllBytes(path);
+
+        // one more name byte in the header and at the end of the file, so the size and the checksum still match
+        ByteBuffer trailingByte = ByteBuffer.wrap(Arrays.copyOf(bytes, bytes.length + 1)).order(ByteOrder.LITTLE_ENDIAN);
+        trailingByte.put(bytes.length, (byte) 'X');
+        trailingByte.putInt(NAME_BYTES_LENGTH_POSITION, trailingByte.getInt(NAME_BYTES_LENGTH_POSITION) + 1);
+        assertThatThrownBy(() -> CompactGraphFile.read(Files.write(path, withChecksum(trailingByte))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(CompactGraphFile.ERROR_SIZE_MISMATCH);
+    }
+
+    @Test
+    public void testRead_emptyName_throwsIllegalArgumentException() throws IOException {
+        CompactServiceGraph g = GraphBuilder.buildCompactGraphFromInput(new Scanner("AB5 BC4 CA3"));
+        Path path = tempDir.resolve("graph.bin");
+        CompactGraphFile.write(g, path);
+        byte[] bytes = Files.readAllBytes(path);
+
+        // the end of the first name is followed by the name bytes "ABC", set it to 0, so the first name is empty
+        ByteBuffer emptyName = ByteBuffer.wrap(bytes.clone()).order(ByteOrder.LITTLE_ENDIAN);
+        emptyName.putInt(bytes.length - 3 - 3 * Integer.BYTES, 0);
+        assertThatThrownBy(() -> CompactGraphFile.read(Files.write(path, withChecksum(emptyName))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(CompactGraphFile.ERROR_EMPTY_NAME);
+    }
+
+    /**
+     * @return the bytes of the file with the checksum in the header updated to match the rest of the file
+     */
+    private static byte[] withChecksum(ByteBuffer file) {
+        CRC32 crc = new CRC32();
+        crc.update(file.duplicate().position(HEADER_SIZE));
+        file.putInt(CHECKSUM_POSITION, (int) crc.getValue());
+        return file.array();
+    }
+
+    private static void assertSameGraph(CompactServiceGraph actual, CompactServiceGraph expected) {
+        assertThat(actual.getVertexCount()).isEqualTo(expected.getVertexCount());
+        for (int v = 0; v < expected.getVertexCount(); v++) {
+            assertThat(actual.getName(v)).isEqualTo(expected.getName(v));
+        }
+        assertThat(actual.getOffsets()).containsExactly(expected.getOffsets());
+        assertThat(actual.getTargets()).containsExactly(expected.getTargets());
+        assertThat(actual.getLatencies()).containsExactly(expected.getLatencies());
+    }
+}
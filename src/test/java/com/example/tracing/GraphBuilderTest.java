@@ -3,18 +3,28 @@ package com.example.tracing;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 
+import com.example.tracing.model.CompactServiceGraph;
 import com.example.tracing.model.Connection;
+import com.example.tracing.model.ConnectionChange;
 import com.example.tracing.model.Microservice;
 import com.example.tracing.util.FileReaderUtil;
 import com.example.tracing.util.GraphBuilder;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.AbstractMap.SimpleImmutableEntry;
 import java.util.List;
 import java.util.Scanner;
+import java.util.concurrent.Callable;
 import org.jgrapht.graph.SimpleDirectedWeightedGraph;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
 
 class GraphBuilderTest {
 
+    @TempDir
+    Path tempDir;
+
     @Test
     public void testBuildGraph_inputHasSelfLoop_throwsIllegalArgumentException() {
         Scanner s = new Scanner("AA5");
@@ -89,4 +99,319 @@ class GraphBuilderTest {
         assertThat(actualGraph.getValue()).isEqualTo(1);
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testBuildCompactGraph_graphWithCycle_ok() {
+        Scanner s = new Scanner("AB1, BC5, CA2, AC7");
+        s.useDelimiter(FileReaderUtil.INPUT_DELIMITER);
+        CompactServiceGraph g = GraphBuilder.buildCompactGraphFromInput(s);
+        assertThat(g.getVertexCount()).isEqualTo(3);
+        assertThat(g.getEdgeCount()).isEqualTo(4);
+        int a = g.getVertexId("A");
+        int b = g.getVertexId("B");
+        int c = g.getVertexId("C");
+        assertThat(g.getOutDegree(a)).isEqualTo(2);
+        assertThat(g.getEdgeLatency(g.findEdge(a, b))).isEqualTo(1);
+        assertThat(g.getEdgeLatency(g.findEdge(a, c))).isEqualTo(7);
+        assertThat(g.getEdgeLatency(g.findEdge(b, c))).isEqualTo(5);
+        assertThat(g.getEdgeLatency(g.findEdge(c, a))).isEqualTo(2);
+        assertThat(g.findEdge(b, a)).isEqualTo(CompactServiceGraph.NO_SUCH_EDGE);
+        assertThat(g.getVertexId("D")).isEqualTo(CompactServiceGraph.NO_SUCH_VERTEX);
+    }
+
+    @Test
+    public void testBuildCompactGraph_inputHasDuplicateEdges_throwsIllegalArgumentException() {
+        Scanner s = new Scanner("AB1,BC2,AB5");
+        s.useDelimiter(FileReaderUtil.INPUT_DELIMITER);
+        assertThatThrownBy(() -> GraphBuilder.buildCompactGraphFromInput(s))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Graph already contains edge {A}->{B}. Duplicate edges are not allowed");
+    }
+
+    @Test
+    public void testBuildCompactGraph_inputHasSelfLoop_throwsIllegalArgumentException() {
+        Scanner s = new Scanner("AA5");
+        assertThatThrownBy(() -> GraphBuilder.buildCompactGraphFromInput(s))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(GraphBuilder.ERROR_SELF_LOOPS_NOT_ALLOWED);
+    }
+
+    @Test
+    public void testBuildGraphFromFile_sameInputAsScanner_sameGraph() throws IOException {
+        String input = "AB5, BC4, CD8, DC8, DE6, AD5, CE2, EB3, AE7";
+        Scanner s = new Scanner(input);
+        s.useDelimiter(FileReaderUtil.INPUT_DELIMITER);
+        SimpleImmutableEntry<SimpleDirectedWeightedGraph<Microservice, Connection>, Integer> expectedGraph = GraphBuilder
+            .buildGraphFromInput(s);
+        // whitespace around the commas is allowed
+        SimpleImmutableEntry<SimpleDirectedWeightedGraph<Microservice, Connection>, Integer> actualGraph = GraphBuilder
+            .buildGraphFromFile(writeInput(input.replace(", ", " ,\n")));
+        assertThat(actualGraph.getKey().vertexSet()).containsExactlyElementsOf(expectedGraph.getKey().vertexSet());
+        assertThat(actualGraph.getKey().edgeSet()).hasSize(9);
+        for (Connection c : expectedGraph.getKey().edgeSet()) {
+            Microservice source = expectedGraph.getKey().getEdgeSource(c);
+            Microservice target = expectedGraph.getKey().getEdgeTarget(c);
+            assertThat(actualGraph.getKey().getEdge(source, target))
+                .isNotNull()
+                .extracting(Connection::getLatencyInMs)
+                .isEqualTo(c.getLatencyInMs());
+            assertThat(actualGraph.getKey().getEdgeWeight(actualGraph.getKey().getEdge(source, target)))
+                .isEqualTo(c.getLatencyInMs());
+        }
+        assertThat(actualGraph.getValue()).isEqualTo(2);
+    }
+
+    @Test
+    public void testBuildCompactGraphFromFile_graphWithCycle_ok() throws IOException {
+        CompactServiceGraph g = GraphBuilder.buildCompactGraphFromFile(writeInput("AB1, BC5, CA2, AC1234567"));
+        assertThat(g.getVertexCount()).isEqualTo(3);
+        assertThat(g.getEdgeCount()).isEqualTo(4);
+        assertThat(g.getEdgeLatency(g.findEdge(g.getVertexId("A"), g.getVertexId("C")))).isEqualTo(1234567);
+        assertThat(g.getEdgeLatency(g.findEdge(g.getVertexId("C"), g.getVertexId("A")))).isEqualTo(2);
+    }
+
+    @Test
+    public void testBuildGraphFromFile_emptyFile_throwsIllegalArgumentException() throws IOException {
+        Path empty = writeInput("");
+        assertThatThrownBy(() -> GraphBuilder.buildGraphFromFile(empty))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(GraphBuilder.ERROR_EMPTY_INPUT);
+        Path onlyDelimiter = writeInput(" ,\n");
+        assertThatThrownBy(() -> GraphBuilder.buildCompactGraphFromFile(onlyDelimiter))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(GraphBuilder.ERROR_EMPTY_INPUT);
+    }
+
+    @Test
+    public void testBuildGraphFromFile_edgeCaseInputs_sameOutcomeAsScanner() throws IOException {
+        List<String> inputs = List.of("AB1, BC2,", "AB1, BC2\n", " \n", "", ",", ",AB1", " ,AB1", " AB1", "AB1,,BC2",
+            "AB1, ,", "a>b:1,\n", "a>b:1 ", "AA1 ");
+        for (String input : inputs) {
+            Scanner s = new Scanner(input);
+            s.useDelimiter(FileReaderUtil.INPUT_DELIMITER);
+            Path path = writeInput(input);
+            assertThat(buildOutcome(() -> GraphBuilder.buildGraphFromFile(path).getKey().edgeSet().size()))
+                .as("input '%s'", input)
+                .isEqualTo(buildOutcome(() -> GraphBuilder.buildGraphFromInput(s).getKey().edgeSet().size()));
+        }
+        assertThat(GraphBuilder.buildGraphFromFile(writeInput("AB1, BC2,")).getKey().edgeSet()).hasSize(2);
+        Path trailingNewline = writeInput("AB1, BC2\n");
+        assertThatThrownBy(() -> GraphBuilder.buildCompactGraphFromFile(trailingNewline))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(GraphBuilder.ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+    }
+
+    @Test
+    public void testBuildGraphFromFile_inputDoesNotMatchTheFormat_throwsIllegalArgumentException() throws IOException {
+        for (String input : List.of("ABC1", "AB", "AB1,,BC2", "AB1 BC2", "aB1", "AB1x", "AB-1", "AB99999999999")) {
+            Path path = writeInput(input);
+            assertThatThrownBy(() -> GraphBuilder.buildGraphFromFile(path))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage(GraphBuilder.ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+            assertThatThrownBy(() -> GraphBuilder.buildCompactGraphFromFile(path))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage(GraphBuilder.ERROR_TRACE_DOES_NOT_MATCH_FORMAT);
+        }
+    }
+
+    @Test
+    public void testBuildGraphFromFile_inputHasSelfLoop_throwsIllegalArgumentException() throws IOException {
+        Path path = writeInput("AB1, CC5");
+        assertThatThrownBy(() -> GraphBuilder.buildGraphFromFile(path))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(GraphBuilder.ERROR_SELF_LOOPS_NOT_ALLOWED);
+        assertThatThrownBy(() -> GraphBuilder.buildCompactGraphFromFile(path))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(GraphBuilder.ERROR_SELF_LOOPS_NOT_ALLOWED);
+    }
+
+    @Test
+    public void testBuildGraphFromFile_inputHasDuplicateEdges_throwsIllegalArgumentException() throws IOException {
+        Path path = writeInput("AB1,BC2,AB5");
+        assertThatThrownBy(() -> GraphBuilder.buildGraphFromFile(path))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Graph already contains edge {A}->{B}. Duplicate edges are not allowed");
+        assertThatThrownBy(() -> GraphBuilder.buildCompactGraphFromFile(path))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Graph already contains edge {A}->{B}. Duplicate edges are not allowed");
+    }
+
+    @Test
+    public void testBuildGraphFromFile_inputHasZeroWeight_throwsIllegalArgumentException() throws IOException {
+        Path path = writeInput("AB0");
+        assertThatThrownBy(() -> GraphBuilder.buildGraphFromFile(path))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(Connection.ERROR_LATENCY_MUST_BE_POSITIVE);
+        assertThatThrownBy(() -> GraphBuilder.buildCompactGraphFromFile(path))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(Connection.ERROR_LATENCY_MUST_BE_POSITIVE);
+    }
+
+    @Test
+    public void testBuildGraph_extendedFormat_ok() {
+        Scanner s = new Scanner("checkout-api>payments:12, payments>ledger:3,AB4, ledger>checkout-api:7");
+        s.useDelimiter(FileReaderUtil.INPUT_DELIMITER);
+        SimpleImmutableEntry<SimpleDirectedWeightedGraph<Microservice, Connection>, Integer> actualGraph = GraphBuilder
+            .buildGraphFromInput(s);
+        assertThat(actualGraph.getKey().vertexSet()).extracting(Microservice::getName)
+            .containsExactlyElementsOf(List.of("checkout-api", "payments", "ledger", "A", "B"));
+        assertThat(actualGraph.getKey().getEdge(new Microservice("checkout-api"), new Microservice("payments")))
+            .isNotNull()
+            .extracting(Connection::getLatencyInMs)
+            .isEqualTo(12);
+        assertThat(actualGraph.getKey().edgeSet()).hasSize(4);
+        assertThat(actualGraph.getValue()).isEqualTo(3);
+    }
+
+    @Test
+    public void testBuildGraph_extendedFormatDoesNotMatch_throwsIllegalArgumentException() {
+        for (String input : List.of("checkout-api>:12", "checkout-api>payments", "a>b>c:1", "a>b:x")) {
+            Scanner s = new Scanner(input);
+            assertThatThrownBy(() -> GraphBuilder.buildGraphFromInput(s))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage(GraphBuilder.ERROR_EXTENDED_TRACE_DOES_NOT_MATCH_FORMAT);
+        }
+        Scanner s = new Scanner("payments>payments:1");
+        assertThatThrownBy(() -> GraphBuilder.buildGraphFromInput(s))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(GraphBuilder.ERROR_SELF_LOOPS_NOT_ALLOWED);
+    }
+
+    @Test
+    public void testBuildGraphFromFile_extendedFormat_sameGraphAsScanner() throws IOException {
+        String input = "checkout-api>payments:12, payments>ledger:3,AB4 ,\nledger>checkout-api:7";
+        Scanner s = new Scanner(input.replace("\n", ""));
+        s.useDelimiter(FileReaderUtil.INPUT_DELIMITER);
+        SimpleDirectedWeightedGraph<Microservice, Connection> expectedGraph = GraphBuilder.buildGraphFromInput(s).getKey();
+        SimpleDirectedWeightedGraph<Microservice, Connection> actualGraph =
+            GraphBuilder.buildGraphFromFile(writeInput(input)).getKey();
+        CompactServiceGraph compactGraph = GraphBuilder.buildCompactGraphFromFile(writeInput(input));
+
+        assertThat(actualGraph.vertexSet()).containsExactlyElementsOf(expectedGraph.vertexSet());
+        assertThat(compactGraph.getVertexCount()).isEqualTo(5);
+        assertThat(compactGraph.getEdgeCount()).isEqualTo(4);
+        for (Connection c : expectedGraph.edgeSet()) {
+            Microservice source = expectedGraph.getEdgeSource(c);
+            Microservice target = expectedGraph.getEdgeTarget(c);
+            assertThat(actualGraph.getEdge(source, target).getLatencyInMs()).isEqualTo(c.getLatencyInMs());
+            assertThat(compactGraph.getEdgeLatency(
+                compactGraph.findEdge(compactGraph.getVertexId(source), compactGraph.getVertexId(target))))
+                .isEqualTo(c.getLatencyInMs());
+        }
+    }
+
+    @Test
+    public void testBuildCompactGraphFromFile_tensOfThousandsOfServices_ok() throws IOException {
+        int serviceCount = 50_000;
+        StringBuilder input = new StringBuilder();
+        for (int i = 0; i < serviceCount; i++) {
+            input.append(i == 0 ? "" : ",\n").append("service-").append(i).append('>').append("service-")
+                .append((i + 1) % serviceCount).append(':').append(1 + i % 10);
+        }
+        CompactServiceGraph g = GraphBuilder.buildCompactGraphFromFile(writeInput(input.toString()));
+        assertThat(g.getVertexCount()).isEqualTo(serviceCount);
+        assertThat(g.getEdgeCount()).isEqualTo(serviceCount);
+        int last = g.getVertexId("service-" + (serviceCount - 1));
+        assertThat(g.getEdgeTarget(g.getFirstEdge(last))).isEqualTo(g.getVertexId("service-0"));
+        assertThat(g.getEdgeLatency(g.getFirstEdge(last))).isEqualTo(10);
+    }
+
+    @Test
+    public void testBuildGraphFromFile_extendedFormatDoesNotMatch_throwsIllegalArgumentException() throws IOException {
+        for (String input : List.of("checkout-api>:12", "checkout-api>payments", "a>b>c:1", "a>b:x", "a>b:1 c")) {
+            Path path = writeInput(input);
+            assertThatThrownBy(() -> GraphBuilder.buildCompactGraphFromFile(path))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageStartingWith("Trace doesn't match the format");
+        }
+        Path path = writeInput("payments>ledger:1, payments>payments:1");
+        assertThatThrownBy(() -> GraphBuilder.buildGraphFromFile(path))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage(GraphBuilder.ERROR_SELF_LOOPS_NOT_ALLOWED);
+        Path duplicatePath = writeInput("payments>ledger:1, payments>ledger:2");
+        assertThatThrownBy(() -> GraphBuilder.buildCompactGraphFromFile(duplicatePath))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Graph already contains edge {payments}->{ledger}. Duplicate edges are not allowed");
+    }
+
+    @Test
+    public void testApplyChanges_addRemoveAndUpdate_sameGraphAsCompactGraph() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g =
+            GraphBuilder.buildGraphFromInput(new Scanner("AB5 BC4 CA3")).getKey();
+        CompactServiceGraph compactGraph = GraphBuilder.buildCompactGraphFromInput(new Scanner("AB5 BC4 CA3"));
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        Microservice vD = new Microservice("D");
+        List<ConnectionChange> changes = List.of(
+            ConnectionChange.updateLatency(vA, vB, 7),
+            ConnectionChange.remove(vB, vC),
+            ConnectionChange.add(vC, vD, 2),
+            ConnectionChange.add(vB, vC, 1));
+
+        GraphBuilder.applyChanges(g, changes);
+        CompactServiceGraph changedGraph = compactGraph.withChanges(changes);
+
+        assertThat(g.vertexSet()).containsExactlyInAnyOrder(vA, vB, vC, vD);
+        assertThat(g.getEdge(vA, vB).getLatencyInMs()).isEqualTo(7);
+        assertThat(g.getEdgeWeight(g.getEdge(vA, vB))).isEqualTo(7);
+        assertThat(g.getEdge(vB, vC).getLatencyInMs()).isEqualTo(1);
+        assertThat(g.getEdge(vC, vD).getLatencyInMs()).isEqualTo(2);
+        assertThat(g.edgeSet()).hasSize(4);
+        assertThat(changedGraph.getVertexId(vD)).isEqualTo(3);
+        for (Connection c : g.edgeSet()) {
+            int edge = changedGraph.findEdge(changedGraph.getVertexId(g.getEdgeSource(c)),
+                changedGraph.getVertexId(g.getEdgeTarget(c)));
+            assertThat(changedGraph.getEdgeLatency(edge)).isEqualTo(c.getLatencyInMs());
+        }
+        assertThat(changedGraph.getEdgeCount()).isEqualTo(4);
+        // the original compact graph is not changed
+        assertThat(compactGraph.getEdgeLatency(compactGraph.findEdge(0, 1))).isEqualTo(5);
+        assertThat(compactGraph.getVertexCount()).isEqualTo(3);
+    }
+
+    @Test
+    public void testApplyChanges_changeCannotBeApplied_throwsIllegalArgumentExceptionAndGraphNotChanged() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g =
+            GraphBuilder.buildGraphFromInput(new Scanner("AB5 BC4")).getKey();
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+
+        assertThatThrownBy(() -> GraphBuilder.applyChanges(g,
+            List.of(ConnectionChange.remove(vA, vB), ConnectionChange.updateLatency(vA, vB, 3))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Graph doesn't contain edge {A}->{B}");
+        assertThatThrownBy(() -> GraphBuilder.applyChanges(g, List.of(ConnectionChange.add(vB, vC, 3))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Graph already contains edge {B}->{C}. Duplicate edges are not allowed");
+        assertThatThrownBy(() -> GraphBuilder.applyChanges(g,
+            List.of(ConnectionChange.remove(vC, new Microservice("D")))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Graph doesn't contain edge {C}->{D}");
+        // a connection added earlier in the same batch is a duplicate too
+        assertThatThrownBy(() -> GraphBuilder.applyChanges(g,
+            List.of(ConnectionChange.add(vA, vC, 1), ConnectionChange.add(vA, vC, 2))))
+            .isInstanceOf(IllegalArgumentException.class)
+            .hasMessage("Graph already contains edge {A}->{C}. Duplicate edges are not allowed");
+        assertThat(g.edgeSet()).hasSize(2);
+        assertThat(g.containsEdge(vA, vC)).isFalse();
+        assertThat(g.getEdge(vA, vB).getLatencyInMs()).isEqualTo(5);
+    }
+
+    private static String buildOutcome(Callable<Integer> build) throws IOException {
+        try {
+            return "edges: " + build.call();
+        } catch (IllegalArgumentException e) {
+            return "error: " + e.getMessage();
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private Path writeInput(String input) throws IOException {
+        return Files.writeString(Files.createTempFile(tempDir, "input", ".txt"), input);
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.example.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.tracing.algorithm.ShortestLatencyIndex;
+import com.example.tracing.algorithm.Traversal;
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.ConnectionChange;
+import com.example.tracing.model.Microservice;
+import com.example.tracing.model.Query;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class LiveGraphTest {
+
+    @TempDir
+    Path tempDir;
+
+    @Test
+    public void testApplyChanges_concurrentReaders_eachSnapshotConsistent() throws Exception {
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        // the latency of each connection is the version of the snapshot + 1
+        LiveGraph graph = new LiveGraph(CompactServiceGraph.builder()
+            .addConnection("A", "B", 1)
+            .addConnection("B", "C", 1)
+            .build());
+        AtomicBoolean changing = new AtomicBoolean(true);
+        ExecutorService readers = Executors.newFixedThreadPool(3);
+        try {
+            List<Future<Integer>> snapshotsRead = new ArrayList<>();
+            for (int reader = 0; reader < 3; reader++) {
+                snapshotsRead.add(readers.submit(() -> {
+                    long lastVersion = -1;
+                    int count = 0;
+                    do {
+                        GraphSnapshot snapshot = graph.getSnapshot();
+                        assertThat(snapshot.getVersion()).isGreaterThanOrEqualTo(lastVersion);
+                        lastVersion = snapshot.getVersion();
+                        int latency = (int) (2 * (snapshot.getVersion() + 1));
+                        ShortestLatencyIndex index = new ShortestLatencyIndex(snapshot.getCompactGraph());
+                        assertThat(index.getShortestLatency(vA, vC)).hasValue(latency);
+                        assertThat(snapshot.getExecutor().execute(
+                            List.of(Query.shortestLatency(vA, vC))))
+                            .containsExactly(Integer.toString(latency));
+                        assertThat(Traversal.getShortestPath(snapshot.getGraph(), vA, vC).orElseThrow().getWeight())
+                            .isEqualTo(latency);
+                        count++;
+                    } while (changing.get());
+                    return count;
+                }));
+            }
+            for (int latency = 2; latency <= 200; latency++) {
+                graph.applyChanges(List.of(
+                    ConnectionChange.updateLatency(vA, vB, latency),
+                    ConnectionChange.updateLatency(vB, vC, latency)));
+            }
+            changing.set(false);
+            for (Future<Integer> reader : snapshotsRead) {
+                assertThat(reader.get()).isPositive();
+            }
+        } finally {
+            readers.shutdown();
+        }
+        assertThat(graph.getSnapshot().getVersion()).isEqualTo(199);
+        assertThatThrownBy(() -> graph.applyChanges(List.of(ConnectionChange.remove(vC, vA))))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(graph.getSnapshot().getVersion()).isEqualTo(199);
+    }
+
+    @Test
+    public void testStartReloading_inputFileChanged_newSnapshotPublished() throws Exception {
+        Path input = Files.writeString(tempDir.resolve("input.txt"), "AB5");
+        Microservice vA = new Microservice("A");
+        Microservice vC = new Microservice("C");
+        try (LiveGraph graph = new LiveGraph(CompactServiceGraph.builder().addConnection("A", "B", 5).build())) {
+            graph.startReloading(input, Duration.ofMillis(10));
+            GraphSnapshot loaded = graph.getSnapshot();
+
+            Files.writeString(input, "AB7, BC1");
+            // file systems with coarse timestamps may keep the time of the first write
+            Files.setLastModifiedTime(input, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (graph.getSnapshot() == loaded && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+
+            GraphSnapshot reloaded = graph.getSnapshot();
+            assertThat(reloaded.getVersion()).isEqualTo(1);
+            assertThat(reloaded.getExecutor().execute(List.of(Query.shortestLatency(vA, vC))))
+                .containsExactly("8");
+            assertThat(loaded.getCompactGraph().getVertexCount()).isEqualTo(2);
+
+            // the reloader would otherwise race the writes below and may load the truncated file
+            graph.close();
+            Files.writeString(input, "AB7, BC");
+            assertThatThrownBy(() -> graph.reload(input)).isInstanceOf(IllegalArgumentException.class);
+            assertThat(graph.getSnapshot()).isSameAs(reloaded);
+
+            // closing waits for the reloader, so it can be started again
+            Files.writeString(input, "AB7, BC1");
+            graph.startReloading(input, Duration.ofMillis(10));
+        }
+    }
+}
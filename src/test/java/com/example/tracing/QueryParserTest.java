@@ -0,0 +1,51 @@
+package com.example.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.tracing.model.Microservice;
+import com.example.tracing.model.Query;
+import com.example.tracing.model.Query.Kind;
+import com.example.tracing.util.QueryParser;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.jupiter.api.Test;
+
+class QueryParserTest {
+
+    @Test
+    public void testParseQueries_allKinds_ok() throws IOException {
+        List<Query> queries = QueryParser.parseQueries(new StringReader(
+            "# comment\n"
+                + "walk-latency checkout-api payments ledger\n"
+                + "\n"
+                + "  count-up-to-hops C C 3\n"
+                + "count-exact-hops A\tC 4\n"
+                + "shortest-latency checkout-api payments\n"
+                + "count-latency-less-than C C 30\n"));
+        Microservice checkout = new Microservice("checkout-api");
+        Microservice payments = new Microservice("payments");
+        Microservice vA = new Microservice("A");
+        Microservice vC = new Microservice("C");
+        assertThat(queries).containsExactly(
+            Query.walkLatency(List.of(checkout, payments, new Microservice("ledger"))),
+            Query.limited(Kind.COUNT_UP_TO_HOPS, vC, vC, 3),
+            Query.limited(Kind.COUNT_EXACT_HOPS, vA, vC, 4),
+            Query.shortestLatency(checkout, payments),
+            Query.limited(Kind.COUNT_LATENCY_LESS_THAN, vC, vC, 30));
+        assertThat(queries.get(3).getSourceVertex()).isSameAs(queries.get(0).getSourceVertex());
+    }
+
+    @Test
+    public void testParseQueries_queryDoesNotMatchTheFormat_throwsIllegalArgumentException() {
+        for (String query : List.of("latency A B", "walk-latency A", "count-up-to-hops A B", "count-up-to-hops A B C 3",
+            "count-exact-hops A B x", "count-exact-hops A B -1", "shortest-latency A B 3"))
+        {
+            assertThatThrownBy(() -> QueryParser.parseQueries(new StringReader("walk-latency A B\n" + query)))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage(String.format(QueryParser.ERROR_QUERY_DOES_NOT_MATCH_FORMAT_AT_LINE, 2, query));
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.example.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import com.example.tracing.algorithm.BatchQueryExecutor;
+import com.example.tracing.algorithm.QueryRecorder;
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.QueryMetrics;
+import com.example.tracing.util.QueryParser;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.jupiter.api.Test;
+
+class QueryServerTest {
+
+    private static final CompactServiceGraph GRAPH = CompactServiceGraph.builder()
+        .addConnection("A", "B", 5)
+        .addConnection("B", "C", 4)
+        .addConnection("C", "D", 8)
+        .addConnection("D", "C", 8)
+        .addConnection("D", "E", 6)
+        .addConnection("A", "D", 5)
+        .addConnection("C", "E", 2)
+        .addConnection("E", "B", 3)
+        .addConnection("A", "E", 7)
+        .build();
+
+    @Test
+    public void testServe_readmeQueriesWithCommentAndInvalidQuery_oneAnswerPerQuery() throws IOException {
+        QueryServer server = new QueryServer(new LiveGraph(GRAPH));
+        StringWriter out = new StringWriter();
+
+        server.serve(new StringReader("walk-latency A B C\n"
+            + "# comment\n"
+            + "\n"
+            + "walk-latency A E D\n"
+            + "count-exact-hops A C\n"
+            + "shortest-latency B B\n"), out);
+
+        assertThat(out.toString()).isEqualTo("9\n"
+            + BatchQueryExecutor.NO_SUCH_TRACE + "\n"
+            + QueryServer.ERROR_PREFIX + "Query needs a source and a target microservice\n"
+            + "9\n");
+    }
+
+    @Test
+    public void testAnswer_limitAboveMaximum_errorAnswered() {
+        QueryServer server = new QueryServer(new LiveGraph(GRAPH), QueryRecorder.NO_OP, 10, 100);
+
+        assertThat(server.answer("count-up-to-hops C C 3")).isEqualTo("2");
+        assertThat(server.answer("count-exact-hops A C 10")).doesNotStartWith(QueryServer.ERROR_PREFIX);
+        assertThat(server.answer("count-exact-hops A C 11"))
+            .isEqualTo(QueryServer.ERROR_PREFIX + "Limit 11 of count-exact-hops is larger than the maximum 10");
+        assertThat(server.answer("count-latency-less-than C C 30")).isEqualTo("7");
+        assertThat(server.answer("count-latency-less-than C C 101"))
+            .isEqualTo(QueryServer.ERROR_PREFIX + "Limit 101 of count-latency-less-than is larger than the maximum 100");
+        assertThat(server.answer("count-up-to-hops C C 99999999999"))
+            .isEqualTo(QueryServer.ERROR_PREFIX + QueryParser.ERROR_LIMIT_IS_NOT_AN_INT + "99999999999");
+        assertThat(new QueryServer(new LiveGraph(GRAPH)).answer("count-exact-hops A C " + Integer.MAX_VALUE))
+            .startsWith(QueryServer.ERROR_PREFIX);
+    }
+
+    @Test
+    public void testAnswer_recorder_metricsOfAnsweredQueriesByKeyword() {
+        List<QueryMetrics> recorded = new ArrayList<>();
+        QueryServer server = new QueryServer(new LiveGraph(GRAPH), recorded::add);
+
+        server.answer("count-latency-less-than C C 30");
+        server.answer("walk-latency A E D");
+        server.answer("shortest-latency A C");
+        server.answer("count-exact-hops A");
+
+        assertThat(recorded)
+            .extracting(QueryMetrics::getQueryType, QueryMetrics::getPathsProduced, QueryMetrics::getLabelsExpanded)
+            .containsExactly(tuple("count-latency-less-than", 7L, 0L), tuple("walk-latency", 0L, 0L),
+                tuple("shortest-latency", 1L, 0L));
+    }
+
+    @Test
+    public void testAcceptConnections_concurrentClients_eachClientGetsItsAnswers() throws Exception {
+        ExecutorService clients = Executors.newFixedThreadPool(4);
+        try (QueryServer server = new QueryServer(new LiveGraph(GRAPH))) {
+            int port = server.bind(0);
+            CompletableFuture<Void> acceptor = CompletableFuture.runAsync(() -> {
+                try {
+                    server.acceptConnections();
+                } catch (IOException e) {
+                    throw new IllegalStateException(e);
+                }
+            });
+            List<Future<List<String>>> answers = new ArrayList<>();
+            for (int client = 0; client < 4; client++) {
+                answers.add(clients.submit(() -> ask(port, "count-up-to-hops C C 3", "count-exact-hops A C 4",
+                    "count-latency-less-than C C 30", "shortest-latency A C")));
+            }
+            for (Future<List<String>> clientAnswers : answers) {
+                assertThat(clientAnswers.get()).containsExactly("2", "3", "7", "9");
+            }
+            server.close();
+            acceptor.get();
+        } finally {
+            clients.shutdown();
+        }
+    }
+
+    private static List<String> ask(int port, String... queries) throws IOException {
+        try (Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+            Writer out = new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8);
+            BufferedReader in = new BufferedReader(
+                new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8)))
+        {
+            List<String> answers = new ArrayList<>();
+            for (String query : queries) {
+                out.write(query + "\n");
+                out.flush();
+                answers.add(in.readLine());
+            }
+            return answers;
+        }
+    }
+}
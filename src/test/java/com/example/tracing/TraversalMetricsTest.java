@@ -0,0 +1,59 @@
+package com.example.tracing;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+
+import com.example.tracing.model.QueryMetrics;
+import javax.management.MBeanServer;
+import javax.management.MBeanServerFactory;
+import javax.management.ObjectName;
+import javax.management.openmbean.CompositeData;
+import org.junit.jupiter.api.Test;
+
+class TraversalMetricsTest {
+
+    @Test
+    public void testRecord_queriesOfTwoTypes_aggregatedPerType() {
+        TraversalMetrics metrics = new TraversalMetrics();
+
+        metrics.record(new QueryMetrics("count", 100, 64, 0, 0, 7));
+        metrics.record(new QueryMetrics("walk", 50, QueryMetrics.UNKNOWN_ALLOCATED_BYTES, 3, 2, 1));
+        metrics.record(new QueryMetrics("count", 300, 32, 0, 0, Long.MAX_VALUE));
+        metrics.record(new QueryMetrics("walk", 20, 8, QueryMetrics.UNKNOWN_LABELS_EXPANDED,
+            QueryMetrics.UNKNOWN_PEAK_QUEUE_SIZE, 0, IllegalStateException.class.getName()));
+
+        assertThat(metrics.getQueryCount()).isEqualTo(4);
+        assertThat(metrics.getQueryTypes())
+            .extracting(TraversalMetrics.QueryTypeMetrics::getQueryType, TraversalMetrics.QueryTypeMetrics::getQueryCount,
+                TraversalMetrics.QueryTypeMetrics::getFailedQueryCount,
+                TraversalMetrics.QueryTypeMetrics::getMeanWallTimeNanos,
+                TraversalMetrics.QueryTypeMetrics::getMaxWallTimeNanos,
+                TraversalMetrics.QueryTypeMetrics::getTotalAllocatedBytes,
+                TraversalMetrics.QueryTypeMetrics::getMaxLabelsExpanded,
+                TraversalMetrics.QueryTypeMetrics::getMaxPeakQueueSize,
+                TraversalMetrics.QueryTypeMetrics::getTotalPathsProduced)
+            .containsExactly(
+                tuple("count", 2L, 0L, 200L, 300L, 96L, 0L, 0, Long.MAX_VALUE),
+                tuple("walk", 2L, 1L, 35L, 50L, 8L, 3L, 2, 1L));
+
+        metrics.reset();
+        assertThat(metrics.getQueryCount()).isZero();
+        assertThat(metrics.getQueryTypes()).isEmpty();
+    }
+
+    @Test
+    public void testRegister_mBeanServer_queryTypesReadableAsAttribute() throws Exception {
+        MBeanServer server = MBeanServerFactory.newMBeanServer();
+        TraversalMetrics metrics = new TraversalMetrics();
+        metrics.record(new QueryMetrics("count-exact-hops", 100, 64, 0, 0, 3));
+
+        ObjectName name = metrics.register(server);
+
+        assertThat(name.getCanonicalName()).isEqualTo(TraversalMetrics.OBJECT_NAME);
+        assertThat(server.getAttribute(name, "QueryCount")).isEqualTo(1L);
+        CompositeData[] queryTypes = (CompositeData[]) server.getAttribute(name, "QueryTypes");
+        assertThat(queryTypes).hasSize(1);
+        assertThat(queryTypes[0].get("queryType")).isEqualTo("count-exact-hops");
+        assertThat(queryTypes[0].get("totalPathsProduced")).isEqualTo(3L);
+    }
+}
@@ -4,11 +4,20 @@ import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.tuple;
 
+import com.example.tracing.algorithm.PartialResult;
+import com.example.tracing.algorithm.QueryRecorder;
+import com.example.tracing.algorithm.SearchBudget;
 import com.example.tracing.algorithm.Traversal;
+import com.example.tracing.model.CompactServiceGraph;
 import com.example.tracing.model.Connection;
 import com.example.tracing.model.Microservice;
+import com.example.tracing.model.QueryMetrics;
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 import org.jgrapht.GraphPath;
 import org.jgrapht.graph.GraphWalk;
 import org.jgrapht.graph.SimpleDirectedWeightedGraph;
@@ -331,6 +340,41 @@ class TraversalTest {
                 );
         }
 
+        @Test
+        public void testCountPathsWithWeightLessThan_microserviceNotInGraph_sameAsEnumeration() {
+            SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+            Microservice vA = new Microservice("A");
+            Microservice vB = new Microservice("B");
+            Microservice vX = new Microservice("X");
+            g.addVertex(vA);
+            g.addVertex(vB);
+            Connection vAvB = new Connection(1);
+            g.addEdge(vA, vB, vAvB);
+            g.setEdgeWeight(vA, vB, 1);
+            CompactServiceGraph compactGraph = CompactServiceGraph.fromGraph(g);
+
+            assertThatThrownBy(() -> Traversal.getAllPathsWithWeightLessThan(g, vX, vB, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("no such vertex in graph: " + vX);
+            assertThatThrownBy(() -> Traversal.countPathsWithWeightLessThan(g, vX, vB, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("no such vertex in graph: " + vX);
+            assertThatThrownBy(() -> Traversal.countPathsWithWeightLessThan(compactGraph, vX, vB, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("no such vertex in graph: " + vX);
+            assertThatThrownBy(() -> Traversal.getLatencyHistogramWithWeightLessThan(compactGraph, vX, vB, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("no such vertex in graph: " + vX);
+            assertThatThrownBy(() -> Traversal.countPathsByTargetWithWeightLessThan(compactGraph, vX, 10))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessage("no such vertex in graph: " + vX);
+
+            assertThat(Traversal.getAllPathsWithWeightLessThan(g, vA, vX, 10)).isEmpty();
+            assertThat(Traversal.countPathsWithWeightLessThan(g, vA, vX, 10)).isZero();
+            assertThat(Traversal.countPathsWithWeightLessThan(compactGraph, vA, vX, 10)).isZero();
+            assertThat(Traversal.getLatencyHistogramWithWeightLessThan(compactGraph, vA, vX, 10).getTotalCount()).isZero();
+        }
+
         @Test
         public void testGetAllPathWithMaxLength_simpleGraphNoPathBetweenVertices_emptyList() {
             SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
@@ -418,6 +462,8 @@ class TraversalTest {
 
             List<GraphPath<Microservice, Connection>> allPaths = Traversal.getAllPathsWithExactPathLength(g, vA, vC, 4);
             assertThat(allPaths.size()).isEqualTo(1);
+            assertThat(Traversal.countPathsWithExactPathLength(CompactServiceGraph.fromGraph(g), vA, vC, 4)).isEqualTo(1);
+            assertThat(Traversal.countPathsWithPathLengthUpToMax(CompactServiceGraph.fromGraph(g), vA, vC, 4)).isEqualTo(4);
             assertThat(allPaths)
                 .extracting(GraphPath::getStartVertex, GraphPath::getEndVertex, GraphPath::getVertexList, GraphPath::getLength, GraphPath::getWeight)
                 .containsOnly(
@@ -475,6 +521,194 @@ class TraversalTest {
 
             List<GraphPath<Microservice, Connection>> allPaths = Traversal.getAllPathsWithWeightLessThan(g, vA, vC, 10);
             assertThat(allPaths).hasSameElementsAs(allPathsSlow);
+            assertThat(Traversal.countPathsWithWeightLessThan(g, vA, vC, 10)).isEqualTo(allPaths.size());
+            assertThat(Traversal.countPathsWithWeightLessThan(CompactServiceGraph.fromGraph(g), vA, vC, 10))
+                .isEqualTo(allPaths.size());
+
+            Map<Microservice, List<GraphPath<Microservice, Connection>>> allPathsByTarget =
+                Traversal.getAllPathsByTargetWithWeightLessThan(g, vA, 10);
+            assertThat(allPathsByTarget).containsOnlyKeys(vB, vC, vD, vE);
+            assertThat(allPathsByTarget.get(vC)).containsExactlyElementsOf(allPaths);
+            Map<Microservice, Long> pathCountsByTarget =
+                Traversal.countPathsByTargetWithWeightLessThan(CompactServiceGraph.fromGraph(g), vA, 10);
+            assertThat(pathCountsByTarget).containsOnlyKeys(vB, vC, vD, vE);
+            allPathsByTarget.forEach((target, paths) ->
+                assertThat(pathCountsByTarget.get(target)).isEqualTo(paths.size()));
+        }
+
+        @Test
+        public void testStreamAllPaths_graphWithLoop_sameAsListsAndStopsEarly() {
+            SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+            Microservice vA = new Microservice("A");
+            Microservice vB = new Microservice("B");
+            Microservice vC = new Microservice("C");
+            Microservice vD = new Microservice("D");
+            g.addVertex(vA);
+            g.addVertex(vB);
+            g.addVertex(vC);
+            g.addVertex(vD);
+            g.addEdge(vA, vB, new Connection(1));
+            g.setEdgeWeight(vA, vB, 1);
+            g.addEdge(vB, vC, new Connection(2));
+            g.setEdgeWeight(vB, vC, 2);
+            g.addEdge(vC, vD, new Connection(3));
+            g.setEdgeWeight(vC, vD, 3);
+            g.addEdge(vD, vC, new Connection(2));
+            g.setEdgeWeight(vD, vC, 2);
+            g.addEdge(vA, vC, new Connection(2));
+            g.setEdgeWeight(vA, vC, 2);
+
+            assertThat(Traversal.streamAllPathsWithPathLengthUpToMax(g, vA, vC, 6))
+                .extracting(GraphPath::getVertexList)
+                .hasSameElementsAs(Traversal.getAllPathsWithPathLengthUpToMax(g, vA, vC, 6).stream()
+                    .map(GraphPath::getVertexList).collect(Collectors.toList()));
+            assertThat(Traversal.streamAllPathsWithExactPathLength(g, vA, vC, 5))
+                .extracting(GraphPath::getVertexList)
+                .containsExactly(List.of(vA, vC, vD, vC, vD, vC));
+            assertThat(Traversal.streamAllPathsWithWeightLessThanSlow(g, vA, vC, 20, 1))
+                .hasSameElementsAs(Traversal.getAllPathsWithWeightLessThanSlow(g, vA, vC, 20, 1));
+            assertThat(Traversal.streamAllPathsWithWeightLessThan(g, vA, vC, 20))
+                .containsExactlyElementsOf(Traversal.getAllPathsWithWeightLessThan(g, vA, vC, 20));
+            assertThat(Traversal.streamAllPathsWithWeightLessThan(g, vA, vC, Integer.MAX_VALUE).limit(3))
+                .extracting(GraphPath::getVertexList)
+                .containsExactly(List.of(vA, vC), List.of(vA, vB, vC), List.of(vA, vC, vD, vC));
+        }
+
+        @Test
+        public void testBudgetedQueries_graphWithLoopAndLargeLimit_truncatedPrefixReturned() {
+            SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+            Microservice vA = new Microservice("A");
+            Microservice vB = new Microservice("B");
+            Microservice vC = new Microservice("C");
+            Microservice vD = new Microservice("D");
+            g.addVertex(vA);
+            g.addVertex(vB);
+            g.addVertex(vC);
+            g.addVertex(vD);
+            g.addEdge(vA, vB, new Connection(1));
+            g.setEdgeWeight(vA, vB, 1);
+            g.addEdge(vB, vC, new Connection(2));
+            g.setEdgeWeight(vB, vC, 2);
+            g.addEdge(vC, vD, new Connection(3));
+            g.setEdgeWeight(vC, vD, 3);
+            g.addEdge(vD, vC, new Connection(2));
+            g.setEdgeWeight(vD, vC, 2);
+            g.addEdge(vA, vC, new Connection(2));
+            g.setEdgeWeight(vA, vC, 2);
+
+            PartialResult<List<GraphPath<Microservice, Connection>>> hops =
+                Traversal.getAllPathsWithPathLengthUpToMax(g, vA, vC, 6, SearchBudget.UNLIMITED);
+            assertThat(hops.isTruncated()).isFalse();
+            assertThat(hops.getResult())
+                .extracting(GraphPath::getVertexList)
+                .hasSameElementsAs(Traversal.getAllPathsWithPathLengthUpToMax(g, vA, vC, 6).stream()
+                    .map(GraphPath::getVertexList).collect(Collectors.toList()));
+
+            // millions of traces without the budget
+            PartialResult<List<GraphPath<Microservice, Connection>>> slow = Traversal.getAllPathsWithWeightLessThanSlow(
+                g, vA, vC, 1_000_000, 1, SearchBudget.builder().maxResults(100).build());
+            assertThat(slow.getExceededLimit()).contains(SearchBudget.Limit.RESULTS);
+            assertThat(slow.getResult()).hasSize(100);
+            assertThat(slow.getResult().subList(0, 3))
+                .extracting(GraphPath::getVertexList)
+                .containsExactly(List.of(vA, vC), List.of(vA, vB, vC), List.of(vA, vC, vD, vC));
+
+            PartialResult<List<GraphPath<Microservice, Connection>>> weight = Traversal.getAllPathsWithWeightLessThan(
+                g, vA, vC, Integer.MAX_VALUE, SearchBudget.builder().maxLabels(1_000).build());
+            assertThat(weight.getExceededLimit()).contains(SearchBudget.Limit.LABELS);
+            assertThat(weight.getResult()).isNotEmpty();
+
+            assertThat(Traversal.getAllPathsWithWeightLessThanInParallel(g, vA, vC, Integer.MAX_VALUE, 2,
+                SearchBudget.builder().maxLabels(10_000).build()).getExceededLimit())
+                .contains(SearchBudget.Limit.LABELS);
+            assertThat(Traversal.getPathTrieWithWeightLessThan(g, vA, vC, Integer.MAX_VALUE,
+                SearchBudget.builder().maxResults(100).build()).getResult().getPathCount()).isEqualTo(100);
+            assertThat(Traversal.getPathTrieWithPathLengthUpToMax(g, vA, vC, 6, SearchBudget.UNLIMITED).getResult()
+                .getPathCount()).isEqualTo(hops.getResult().size());
+            PartialResult<List<GraphPath<Microservice, Connection>>> lowest = Traversal.getKLowestLatencyTraces(
+                g, vA, vC, 1_000_000, true, SearchBudget.builder().maxResults(3).build());
+            assertThat(lowest.getExceededLimit()).contains(SearchBudget.Limit.RESULTS);
+            assertThat(lowest.getResult()).extracting(GraphPath::getVertexList)
+                .containsExactly(List.of(vA, vC), List.of(vA, vB, vC), List.of(vA, vC, vD, vC));
+        }
+
+        @Test
+        public void testSetRecorder_listAndShortCircuitedStream_metricsOfEachQueryRecorded() {
+            SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+            Microservice vA = new Microservice("A");
+            Microservice vB = new Microservice("B");
+            Microservice vC = new Microservice("C");
+            Microservice vD = new Microservice("D");
+            g.addVertex(vA);
+            g.addVertex(vB);
+            g.addVertex(vC);
+            g.addVertex(vD);
+            g.addEdge(vA, vB, new Connection(1));
+            g.setEdgeWeight(vA, vB, 1);
+            g.addEdge(vB, vC, new Connection(2));
+            g.setEdgeWeight(vB, vC, 2);
+            g.addEdge(vC, vD, new Connection(3));
+            g.setEdgeWeight(vC, vD, 3);
+            g.addEdge(vD, vC, new Connection(2));
+            g.setEdgeWeight(vD, vC, 2);
+            g.addEdge(vA, vC, new Connection(2));
+            g.setEdgeWeight(vA, vC, 2);
+            List<QueryMetrics> recorded = new ArrayList<>();
+
+            List<GraphPath<Microservice, Connection>> paths;
+            Traversal.setRecorder(recorded::add);
+            try {
+                paths = Traversal.getAllPathsWithWeightLessThan(g, vA, vC, 20);
+                try (Stream<GraphPath<Microservice, Connection>> stream =
+                    Traversal.streamAllPathsWithWeightLessThan(g, vA, vC, Integer.MAX_VALUE))
+                {
+                    assertThat(stream.limit(3)).hasSize(3);
+                }
+            } finally {
+                Traversal.setRecorder(QueryRecorder.NO_OP);
+            }
+            Traversal.getAllPathsWithWeightLessThan(g, vA, vC, 20);
+
+            assertThat(recorded).extracting(QueryMetrics::getQueryType)
+                .containsExactly("getAllPathsWithWeightLessThan", "streamAllPathsWithWeightLessThan");
+            QueryMetrics listMetrics = recorded.get(0);
+            assertThat(listMetrics.getPathsProduced()).isEqualTo(paths.size());
+            assertThat(listMetrics.getLabelsExpanded()).isGreaterThan(paths.size());
+            assertThat(listMetrics.getPeakQueueSize()).isPositive();
+            assertThat(listMetrics.getWallTimeNanos()).isPositive();
+            assertThat(listMetrics.getAllocatedBytes()).isNotZero();
+            QueryMetrics streamMetrics = recorded.get(1);
+            assertThat(streamMetrics.getPathsProduced()).isEqualTo(3);
+            assertThat(streamMetrics.getLabelsExpanded()).isPositive().isLessThan(listMetrics.getLabelsExpanded());
+        }
+
+        @Test
+        public void testSetRecorder_failingAndJgraphtQueries_failureAndUnknownLabelsRecorded() {
+            SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+            Microservice vA = new Microservice("A");
+            Microservice vB = new Microservice("B");
+            g.addVertex(vA);
+            g.addVertex(vB);
+            g.addEdge(vA, vB, new Connection(1));
+            g.setEdgeWeight(vA, vB, 1);
+            List<QueryMetrics> recorded = new ArrayList<>();
+
+            Traversal.setRecorder(recorded::add);
+            try {
+                assertThatThrownBy(() -> Traversal.getGraphWalk(g, List.of()))
+                    .isInstanceOf(IllegalArgumentException.class);
+                assertThat(Traversal.getAllPathsWithPathLengthUpToMax(g, vA, vB, 3)).hasSize(1);
+            } finally {
+                Traversal.setRecorder(QueryRecorder.NO_OP);
+            }
+
+            assertThat(recorded).extracting(QueryMetrics::getQueryType, QueryMetrics::getFailure)
+                .containsExactly(
+                    tuple("getGraphWalk", Optional.of(IllegalArgumentException.class.getName())),
+                    tuple("getAllPathsWithPathLengthUpToMax", Optional.empty()));
+            assertThat(recorded.get(0).getPathsProduced()).isZero();
+            assertThat(recorded.get(1).getLabelsExpanded()).isEqualTo(QueryMetrics.UNKNOWN_LABELS_EXPANDED);
+            assertThat(recorded.get(1).getPeakQueueSize()).isEqualTo(QueryMetrics.UNKNOWN_PEAK_QUEUE_SIZE);
         }
     }
-}
\ No newline at end of file
+}
@@ -1,11 +1,19 @@
 package com.example.tracing.algorithm;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.assertj.core.api.Assertions.tuple;
 
 import com.example.tracing.model.Connection;
 import com.example.tracing.model.Microservice;
+import java.time.Duration;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 import org.jgrapht.GraphPath;
 import org.jgrapht.graph.SimpleDirectedWeightedGraph;
 import org.junit.jupiter.api.Test;
@@ -125,4 +133,531 @@ class AllSimpleAndNonSimpleDirectedPathsTest {
             );
     }
 
-}
\ No newline at end of file
+    @Test
+    public void testCountPathsWithWeightLessThan_graphWithLoop_threePathsCounted() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        Microservice vD = new Microservice("D");
+        g.addVertex(vA);
+        g.addVertex(vB);
+        g.addVertex(vC);
+        g.addVertex(vD);
+        Connection vAvB = new Connection(1);
+        g.addEdge(vA, vB, vAvB);
+        g.setEdgeWeight(vA, vB, 1);
+        Connection vBvC = new Connection(2);
+        g.addEdge(vB, vC, vBvC);
+        g.setEdgeWeight(vB, vC, 2);
+        Connection vCvD = new Connection(3);
+        g.addEdge(vC, vD, vCvD);
+        g.setEdgeWeight(vC, vD, 3);
+        Connection vDvC = new Connection(2);
+        g.addEdge(vD, vC, vDvC);
+        g.setEdgeWeight(vD, vC, 2);
+        Connection vAvC = new Connection(2);
+        g.addEdge(vA, vC, vAvC);
+        g.setEdgeWeight(vA, vC, 2);
+
+        AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> allPathsFinder = new AllSimpleAndNonSimpleDirectedPaths<>(g);
+        assertThat(allPathsFinder.countPathsWithWeightLessThan(vA, vC, 8)).isEqualTo(3);
+        assertThat(allPathsFinder.countPathsWithWeightLessThan(vA, vC, 8))
+            .isEqualTo(allPathsFinder.getAllPathsWithWeightLessThan(vA, vC, 8.).size());
+        assertThat(allPathsFinder.countPathsWithWeightLessThan(vC, vC, 30))
+            .isEqualTo(allPathsFinder.getAllPathsWithWeightLessThan(vC, vC, 30.).size());
+    }
+
+    @Test
+    public void testCountPathsWithWeightLessThan_startAndEndVertexIsTheSame_emptyPathNotCounted() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        g.addVertex(vA);
+        g.addVertex(vB);
+        Connection vAvB = new Connection(1);
+        g.addEdge(vA, vB, vAvB);
+        g.setEdgeWeight(vA, vB, 1);
+        Connection vBvA = new Connection(3);
+        g.addEdge(vB, vA, vBvA);
+        g.setEdgeWeight(vB, vA, 3);
+
+        AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> allPathsFinder = new AllSimpleAndNonSimpleDirectedPaths<>(g);
+        assertThat(allPathsFinder.countPathsWithWeightLessThan(vA, vA, 4)).isZero();
+        assertThat(allPathsFinder.countPathsWithWeightLessThan(vA, vA, 5)).isEqualTo(1);
+        assertThat(allPathsFinder.countPathsWithWeightLessThan(vA, vA, 9)).isEqualTo(2);
+    }
+
+    @Test
+    public void testGetAllPathsWithWeightLessThan_depthFirstSearch_samePathsAsBreadthFirstSearch() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        Microservice vD = new Microservice("D");
+        Microservice vE = new Microservice("E");
+        g.addVertex(vA);
+        g.addVertex(vB);
+        g.addVertex(vC);
+        g.addVertex(vD);
+        g.addVertex(vE);
+        g.addEdge(vA, vB, new Connection(5));
+        g.setEdgeWeight(vA, vB, 5);
+        g.addEdge(vB, vC, new Connection(4));
+        g.setEdgeWeight(vB, vC, 4);
+        g.addEdge(vC, vD, new Connection(8));
+        g.setEdgeWeight(vC, vD, 8);
+        g.addEdge(vD, vC, new Connection(8));
+        g.setEdgeWeight(vD, vC, 8);
+        g.addEdge(vD, vE, new Connection(6));
+        g.setEdgeWeight(vD, vE, 6);
+        g.addEdge(vA, vD, new Connection(5));
+        g.setEdgeWeight(vA, vD, 5);
+        g.addEdge(vC, vE, new Connection(2));
+        g.setEdgeWeight(vC, vE, 2);
+        g.addEdge(vE, vB, new Connection(3));
+        g.setEdgeWeight(vE, vB, 3);
+        g.addEdge(vA, vE, new Connection(7));
+        g.setEdgeWeight(vA, vE, 7);
+
+        AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> bfs = new AllSimpleAndNonSimpleDirectedPaths<>(g);
+        AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> dfs =
+            new AllSimpleAndNonSimpleDirectedPaths<>(g, AllSimpleAndNonSimpleDirectedPaths.SearchStrategy.DFS);
+        List<GraphPath<Microservice, Connection>> dfsPaths = dfs.getAllPathsWithWeightLessThan(vC, vC, 30.);
+        assertThat(dfsPaths).hasSize(7);
+        assertThat(dfsPaths)
+            .extracting(GraphPath::getVertexList, GraphPath::getWeight)
+            .containsExactlyInAnyOrderElementsOf(bfs.getAllPathsWithWeightLessThan(vC, vC, 30.).stream()
+                .map(path -> tuple(path.getVertexList(), path.getWeight()))
+                .collect(Collectors.toList()));
+        assertThat(dfs.streamAllPathsWithLengthUpToMax(vA, vC, 6))
+            .extracting(GraphPath::getVertexList)
+            .containsExactlyInAnyOrderElementsOf(bfs.streamAllPathsWithLengthUpToMax(vA, vC, 6)
+                .map(GraphPath::getVertexList)
+                .collect(Collectors.toList()));
+        assertThat(dfs.streamAllPathsWithWeightLessThan(vA, vC, Double.POSITIVE_INFINITY).limit(2))
+            .extracting(GraphPath::getVertexList)
+            .containsExactly(List.of(vA, vB, vC), List.of(vA, vB, vC, vD, vC));
+        assertThat(dfs.getAllPathsWithWeightLessThan(vA, new Microservice("F"), 30.)).isEmpty();
+    }
+
+    @Test
+    public void testGetAllPathsByTargetWithWeightLessThan_graphWithLoop_samePathsAsSingleTargetSearches() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        Microservice vD = new Microservice("D");
+        Microservice vE = new Microservice("E");
+        Microservice vF = new Microservice("F");
+        g.addVertex(vA);
+        g.addVertex(vB);
+        g.addVertex(vC);
+        g.addVertex(vD);
+        g.addVertex(vE);
+        g.addVertex(vF);
+        g.addEdge(vA, vB, new Connection(5));
+        g.setEdgeWeight(vA, vB, 5);
+        g.addEdge(vB, vC, new Connection(4));
+        g.setEdgeWeight(vB, vC, 4);
+        g.addEdge(vC, vD, new Connection(8));
+        g.setEdgeWeight(vC, vD, 8);
+        g.addEdge(vD, vC, new Connection(8));
+        g.setEdgeWeight(vD, vC, 8);
+        g.addEdge(vD, vE, new Connection(6));
+        g.setEdgeWeight(vD, vE, 6);
+        g.addEdge(vA, vD, new Connection(5));
+        g.setEdgeWeight(vA, vD, 5);
+        g.addEdge(vC, vE, new Connection(2));
+        g.setEdgeWeight(vC, vE, 2);
+        g.addEdge(vE, vB, new Connection(3));
+        g.setEdgeWeight(vE, vB, 3);
+        g.addEdge(vA, vE, new Connection(7));
+        g.setEdgeWeight(vA, vE, 7);
+
+        for (AllSimpleAndNonSimpleDirectedPaths.SearchStrategy searchStrategy
+            : AllSimpleAndNonSimpleDirectedPaths.SearchStrategy.values())
+        {
+            AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> paths =
+                new AllSimpleAndNonSimpleDirectedPaths<>(g, searchStrategy);
+            Map<Microservice, List<GraphPath<Microservice, Connection>>> pathsByTarget =
+                paths.getAllPathsByTargetWithWeightLessThan(vC, 30.);
+            Map<Microservice, Long> pathCountsByTarget = paths.countPathsByTargetWithWeightLessThan(vC, 30);
+
+            // A and F can't be reached from C
+            assertThat(pathsByTarget).containsOnlyKeys(vB, vC, vD, vE);
+            assertThat(pathCountsByTarget).containsOnlyKeys(vB, vC, vD, vE);
+            for (Microservice target : pathsByTarget.keySet()) {
+                List<List<Microservice>> expected = paths.getAllPathsWithWeightLessThan(vC, target, 30.).stream()
+                    .map(GraphPath::getVertexList)
+                    .collect(Collectors.toList());
+                assertThat(pathsByTarget.get(target))
+                    .extracting(GraphPath::getVertexList)
+                    .containsExactlyElementsOf(expected);
+                assertThat(pathCountsByTarget.get(target)).isEqualTo(expected.size());
+            }
+            assertThat(pathCountsByTarget.get(vC)).isEqualTo(7);
+
+            Set<Microservice> targets = new LinkedHashSet<>(List.of(vF, vE, vC));
+            assertThat(paths.getAllPathsByTargetWithWeightLessThan(vC, targets, 30.))
+                .containsExactly(
+                    Map.entry(vF, List.of()),
+                    Map.entry(vE, pathsByTarget.get(vE)),
+                    Map.entry(vC, pathsByTarget.get(vC)));
+            assertThat(paths.countPathsByTargetWithWeightLessThan(vC, targets, 30))
+                .containsExactly(Map.entry(vF, 0L), Map.entry(vE, pathCountsByTarget.get(vE)), Map.entry(vC, 7L));
+        }
+    }
+
+    @Test
+    public void testGetAllPathsWithWeightLessThanInParallel_randomGraph_samePathsInSameOrderAsSequential() {
+        Random random = new Random(11);
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (int v = 0; v < 8; v++) {
+            g.addVertex(new Microservice("S" + v));
+        }
+        for (int i = 0; i < 24; i++) {
+            // a ring S0 -> S1 -> ... -> S7 -> S0 with random chords
+            Microservice source = new Microservice("S" + (i < 8 ? i : random.nextInt(8)));
+            Microservice target = new Microservice("S" + (i < 8 ? (i + 1) % 8 : random.nextInt(8)));
+            if (!source.equals(target) && !g.containsEdge(source, target)) {
+                Connection c = new Connection(1 + random.nextInt(5));
+                g.addEdge(source, target, c);
+                g.setEdgeWeight(source, target, c.getLatencyInMs());
+            }
+        }
+        Microservice vS0 = new Microservice("S0");
+        Microservice vS4 = new Microservice("S4");
+
+        for (AllSimpleAndNonSimpleDirectedPaths.SearchStrategy searchStrategy
+            : AllSimpleAndNonSimpleDirectedPaths.SearchStrategy.values())
+        {
+            AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> paths =
+                new AllSimpleAndNonSimpleDirectedPaths<>(g, searchStrategy);
+            for (Microservice target : List.of(vS0, vS4)) {
+                List<List<Microservice>> expected = paths.getAllPathsWithWeightLessThan(vS0, target, 25.).stream()
+                    .map(GraphPath::getVertexList)
+                    .collect(Collectors.toList());
+                assertThat(expected).hasSizeGreaterThan(10);
+                for (int parallelism : List.of(1, 4)) {
+                    assertThat(paths.getAllPathsWithWeightLessThanInParallel(vS0, target, 25., parallelism))
+                        .extracting(GraphPath::getVertexList)
+                        .containsExactlyElementsOf(expected);
+                    assertThat(paths.countPathsWithWeightLessThanInParallel(vS0, target, 25., parallelism))
+                        .isEqualTo(expected.size());
+                }
+                assertThat(paths.getAllPathsWithWeightLessThanInParallel(vS0, target, 25.))
+                    .extracting(GraphPath::getVertexList)
+                    .containsExactlyElementsOf(expected);
+                assertThat(paths.countPathsWithWeightLessThanInParallel(vS0, target, 25.)).isEqualTo(expected.size());
+            }
+        }
+    }
+
+    @Test
+    public void testCountPathsByWeight_randomGraph_sameAsWeightsOfEnumeratedPaths() {
+        Random random = new Random(18);
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (int v = 0; v < 6; v++) {
+            g.addVertex(new Microservice("S" + v));
+        }
+        for (int i = 0; i < 16; i++) {
+            Microservice source = new Microservice("S" + random.nextInt(6));
+            Microservice target = new Microservice("S" + random.nextInt(6));
+            if (!source.equals(target) && !g.containsEdge(source, target)) {
+                Connection c = new Connection(1 + random.nextInt(6));
+                g.addEdge(source, target, c);
+                g.setEdgeWeight(source, target, c.getLatencyInMs());
+            }
+        }
+        AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> paths = new AllSimpleAndNonSimpleDirectedPaths<>(g);
+
+        for (Microservice source : g.vertexSet()) {
+            for (Microservice target : g.vertexSet()) {
+                long[] expectedByWeight = new long[30];
+                paths.getAllPathsWithWeightLessThan(source, target, 30.)
+                    .forEach(path -> expectedByWeight[(int) path.getWeight()]++);
+                assertThat(paths.countPathsByWeightWithWeightLessThan(source, target, 30)).containsExactly(expectedByWeight);
+
+                long[] actualByLength = paths.countPathsByWeightWithLengthUpToMax(source, target, 4);
+                long[] expectedByLength = new long[actualByLength.length];
+                paths.streamAllPathsWithLengthUpToMax(source, target, 4)
+                    .forEach(path -> expectedByLength[(int) path.getWeight()]++);
+                assertThat(actualByLength).containsExactly(expectedByLength);
+            }
+        }
+    }
+
+    @Test
+    public void testGetPathTrie_randomGraph_samePathsInSameOrderAsBreadthFirstSearch() {
+        Random random = new Random(21);
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (int v = 0; v < 7; v++) {
+            g.addVertex(new Microservice("S" + v));
+        }
+        for (int i = 0; i < 20; i++) {
+            Microservice source = new Microservice("S" + random.nextInt(7));
+            Microservice target = new Microservice("S" + random.nextInt(7));
+            if (!source.equals(target) && !g.containsEdge(source, target)) {
+                Connection c = new Connection(1 + random.nextInt(6));
+                g.addEdge(source, target, c);
+                g.setEdgeWeight(source, target, c.getLatencyInMs());
+            }
+        }
+        AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> paths = new AllSimpleAndNonSimpleDirectedPaths<>(g);
+
+        for (Microservice source : g.vertexSet()) {
+            for (Microservice target : g.vertexSet()) {
+                List<GraphPath<Microservice, Connection>> expected = paths.getAllPathsWithWeightLessThan(source, target, 25.);
+                PathTrie<Microservice, Connection> trie = paths.getPathTrieWithWeightLessThan(source, target, 25.);
+                assertThat(trie.getPathCount()).isEqualTo(expected.size());
+                assertThat(trie.stream().collect(Collectors.toList()))
+                    .extracting(GraphPath::getEdgeList, GraphPath::getWeight, GraphPath::getStartVertex, GraphPath::getEndVertex)
+                    .containsExactlyElementsOf(expected.stream()
+                        .map(path -> tuple(path.getEdgeList(), path.getWeight(), path.getStartVertex(), path.getEndVertex()))
+                        .collect(Collectors.toList()));
+                // a node per distinct prefix of the paths
+                assertThat(trie.getNodeCount()).isEqualTo(1 + expected.stream()
+                    .flatMap(path -> IntStream.rangeClosed(1, path.getLength())
+                        .mapToObj(length -> path.getEdgeList().subList(0, length)))
+                    .distinct()
+                    .count());
+
+                assertThat(paths.getPathTrieWithLengthUpToMax(source, target, 4))
+                    .extracting(GraphPath::getEdgeList)
+                    .containsExactlyElementsOf(paths.streamAllPathsWithLengthUpToMax(source, target, 4)
+                        .map(GraphPath::getEdgeList)
+                        .collect(Collectors.toList()));
+            }
+        }
+    }
+
+    @Test
+    public void testGetAllPathsWithWeightLessThan_distanceToTargetPruning_samePathsInSameOrder() {
+        Random random = new Random(22);
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (int v = 0; v < 8; v++) {
+            g.addVertex(new Microservice("S" + v));
+        }
+        for (int i = 0; i < 22; i++) {
+            Microservice source = new Microservice("S" + random.nextInt(8));
+            Microservice target = new Microservice("S" + random.nextInt(8));
+            if (!source.equals(target) && !g.containsEdge(source, target)) {
+                Connection c = new Connection(1 + random.nextInt(6));
+                g.addEdge(source, target, c);
+                g.setEdgeWeight(source, target, c.getLatencyInMs());
+            }
+        }
+
+        for (AllSimpleAndNonSimpleDirectedPaths.SearchStrategy searchStrategy
+            : AllSimpleAndNonSimpleDirectedPaths.SearchStrategy.values())
+        {
+            AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> paths =
+                new AllSimpleAndNonSimpleDirectedPaths<>(g, searchStrategy);
+            AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> prunedPaths = new AllSimpleAndNonSimpleDirectedPaths<>(
+                g, searchStrategy, AllSimpleAndNonSimpleDirectedPaths.Pruning.DISTANCE_TO_TARGET);
+            for (Microservice source : g.vertexSet()) {
+                for (Microservice target : g.vertexSet()) {
+                    List<List<Connection>> expected = paths.getAllPathsWithWeightLessThan(source, target, 22.).stream()
+                        .map(GraphPath::getEdgeList)
+                        .collect(Collectors.toList());
+                    assertThat(prunedPaths.getAllPathsWithWeightLessThan(source, target, 22.))
+                        .extracting(GraphPath::getEdgeList)
+                        .containsExactlyElementsOf(expected);
+                    assertThat(prunedPaths.getAllPathsWithWeightLessThanInParallel(source, target, 22., 4))
+                        .extracting(GraphPath::getEdgeList)
+                        .containsExactlyElementsOf(expected);
+                    assertThat(prunedPaths.countPathsWithWeightLessThanInParallel(source, target, 22., 4))
+                        .isEqualTo(expected.size());
+                    assertThat(prunedPaths.getPathTrieWithWeightLessThan(source, target, 22.))
+                        .extracting(GraphPath::getEdgeList)
+                        .containsExactlyElementsOf(paths.getPathTrieWithWeightLessThan(source, target, 22.).stream()
+                            .map(GraphPath::getEdgeList)
+                            .collect(Collectors.toList()));
+                    assertThat(prunedPaths.streamAllPathsWithLengthUpToMax(source, target, 4))
+                        .extracting(GraphPath::getEdgeList)
+                        .containsExactlyElementsOf(paths.streamAllPathsWithLengthUpToMax(source, target, 4)
+                            .map(GraphPath::getEdgeList)
+                            .collect(Collectors.toList()));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGetPathTrie_readmeGraphTracesFromCToC_prefixesShared() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (String trace : List.of("AB5", "BC4", "CD8", "DC8", "DE6", "AD5", "CE2", "EB3", "AE7")) {
+            Microservice source = new Microservice(trace.substring(0, 1));
+            Microservice target = new Microservice(trace.substring(1, 2));
+            g.addVertex(source);
+            g.addVertex(target);
+            Connection c = new Connection(Integer.parseInt(trace.substring(2)));
+            g.addEdge(source, target, c);
+            g.setEdgeWeight(source, target, c.getLatencyInMs());
+        }
+        Microservice vC = new Microservice("C");
+
+        PathTrie<Microservice, Connection> trie = new AllSimpleAndNonSimpleDirectedPaths<>(g)
+            .getPathTrieWithWeightLessThan(vC, vC, 30.);
+
+        assertThat(trie).extracting(GraphPath::getWeight).containsExactlyInAnyOrder(9., 16., 18., 21., 25., 25., 27.);
+        // 7 paths of 34 edges in total take 19 nodes besides the root
+        assertThat(trie.getNodeCount()).isEqualTo(20);
+        // C-E-B-C-E-B-C-E-B-C extends C-E-B-C-E-B-C, the paths are in the order of their length
+        int longestPath = trie.getPathCount() - 1;
+        assertThat(trie.getPathLength(longestPath)).isEqualTo(9);
+        assertThat(trie.getPathLength(longestPath - 1)).isEqualTo(6);
+        int node = trie.getPathNode(longestPath);
+        assertThat(trie.getEdge(node).getLatencyInMs()).isEqualTo(4);
+        assertThat(trie.getParent(trie.getParent(trie.getParent(node)))).isEqualTo(trie.getPathNode(longestPath - 1));
+    }
+
+    @Test
+    public void testGetAllPathsWithWeightLessThan_budget_prefixOfPathsFlaggedAsTruncated() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = readmeGraph();
+        Microservice vC = new Microservice("C");
+        for (AllSimpleAndNonSimpleDirectedPaths.SearchStrategy strategy
+            : AllSimpleAndNonSimpleDirectedPaths.SearchStrategy.values())
+        {
+            AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> allPaths =
+                new AllSimpleAndNonSimpleDirectedPaths<>(g, strategy);
+            List<GraphPath<Microservice, Connection>> paths = allPaths.getAllPathsWithWeightLessThan(vC, vC, 30.);
+
+            PartialResult<List<GraphPath<Microservice, Connection>>> unlimited =
+                allPaths.getAllPathsWithWeightLessThan(vC, vC, 30., SearchBudget.UNLIMITED);
+            assertThat(unlimited.isTruncated()).isFalse();
+            assertThat(unlimited.getExceededLimit()).isEmpty();
+            assertThat(unlimited.getResult()).extracting(GraphPath::getEdgeList)
+                .containsExactlyElementsOf(paths.stream().map(GraphPath::getEdgeList).collect(Collectors.toList()));
+
+            PartialResult<List<GraphPath<Microservice, Connection>>> firstThree = allPaths.getAllPathsWithWeightLessThan(
+                vC, vC, 30., SearchBudget.builder().maxResults(3).build());
+            assertThat(firstThree.getExceededLimit()).contains(SearchBudget.Limit.RESULTS);
+            assertThat(firstThree.getResult()).extracting(GraphPath::getEdgeList)
+                .containsExactlyElementsOf(paths.subList(0, 3).stream().map(GraphPath::getEdgeList)
+                    .collect(Collectors.toList()));
+            // exactly as many paths as the budget allows are a complete result
+            assertThat(allPaths.getAllPathsWithWeightLessThan(vC, vC, 30., SearchBudget.builder().maxResults(7).build())
+                .isTruncated()).isFalse();
+            assertThat(allPaths.getAllPathsWithLengthUpToMax(vC, vC, 3, SearchBudget.builder().maxResults(1).build())
+                .getResult()).hasSize(1);
+        }
+    }
+
+    @Test
+    public void testGetAllPathsWithWeightLessThan_largeLimitOfGraphWithLoops_stoppedByEachLimit() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = readmeGraph();
+        Microservice vA = new Microservice("A");
+        Microservice vC = new Microservice("C");
+        CancellationToken cancelled = new CancellationToken();
+        cancelled.cancel();
+        for (AllSimpleAndNonSimpleDirectedPaths.SearchStrategy strategy
+            : AllSimpleAndNonSimpleDirectedPaths.SearchStrategy.values())
+        {
+            AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> allPaths =
+                new AllSimpleAndNonSimpleDirectedPaths<>(g, strategy);
+
+            assertThat(allPaths.getAllPathsWithWeightLessThan(vA, vC, 1_000.,
+                SearchBudget.builder().maxLabels(100).build()).getExceededLimit())
+                .contains(SearchBudget.Limit.LABELS);
+            assertThat(allPaths.getAllPathsWithWeightLessThan(vA, vC, 1_000.,
+                SearchBudget.builder().maxMemoryBytes(10_000).build()).getExceededLimit())
+                .contains(SearchBudget.Limit.MEMORY);
+            PartialResult<List<GraphPath<Microservice, Connection>>> cancelledResult =
+                allPaths.getAllPathsWithWeightLessThan(vA, vC, 1_000.,
+                    SearchBudget.builder().cancellationToken(cancelled).build());
+            assertThat(cancelledResult.getExceededLimit()).contains(SearchBudget.Limit.CANCELLED);
+            assertThat(cancelledResult.getResult()).isEmpty();
+            assertThat(allPaths.getAllPathsWithLengthUpToMax(vA, vC, 1_000,
+                SearchBudget.builder().timeout(Duration.ZERO).build()).getExceededLimit())
+                .contains(SearchBudget.Limit.DEADLINE);
+        }
+    }
+
+    @Test
+    public void testGetPathTrieWithWeightLessThan_budget_triesOfPrefixOfPathsFlaggedAsTruncated() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = readmeGraph();
+        Microservice vA = new Microservice("A");
+        Microservice vC = new Microservice("C");
+        AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> allPaths = new AllSimpleAndNonSimpleDirectedPaths<>(g);
+        List<GraphPath<Microservice, Connection>> paths = allPaths.getAllPathsWithWeightLessThan(vC, vC, 30.);
+
+        PartialResult<PathTrie<Microservice, Connection>> unlimited =
+            allPaths.getPathTrieWithWeightLessThan(vC, vC, 30., SearchBudget.UNLIMITED);
+        assertThat(unlimited.isTruncated()).isFalse();
+        assertThat(unlimited.getResult().getPathCount()).isEqualTo(paths.size());
+
+        PartialResult<PathTrie<Microservice, Connection>> firstThree =
+            allPaths.getPathTrieWithWeightLessThan(vC, vC, 30., SearchBudget.builder().maxResults(3).build());
+        assertThat(firstThree.getExceededLimit()).contains(SearchBudget.Limit.RESULTS);
+        assertThat(firstThree.getResult().getPathCount()).isEqualTo(3);
+        for (int i = 0; i < 3; i++) {
+            assertThat(firstThree.getResult().getPath(i).getEdgeList()).isEqualTo(paths.get(i).getEdgeList());
+        }
+        assertThat(allPaths.getPathTrieWithLengthUpToMax(vA, vC, 1_000, SearchBudget.builder().maxLabels(100).build())
+            .getExceededLimit()).contains(SearchBudget.Limit.LABELS);
+        assertThat(allPaths.getPathTrieWithWeightLessThan(vA, vC, 1_000.,
+            SearchBudget.builder().maxMemoryBytes(10_000).build()).getExceededLimit())
+            .contains(SearchBudget.Limit.MEMORY);
+    }
+
+    @Test
+    public void testGetAllPathsWithWeightLessThanInParallel_budget_sharedByAllTasks() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = readmeGraph();
+        Microservice vA = new Microservice("A");
+        Microservice vC = new Microservice("C");
+        CancellationToken cancelled = new CancellationToken();
+        cancelled.cancel();
+        AllSimpleAndNonSimpleDirectedPaths<Microservice, Connection> allPaths = new AllSimpleAndNonSimpleDirectedPaths<>(g);
+        List<List<Connection>> paths = allPaths.getAllPathsWithWeightLessThan(vA, vC, 60.).stream()
+            .map(GraphPath::getEdgeList).collect(Collectors.toList());
+
+        PartialResult<List<GraphPath<Microservice, Connection>>> unlimited =
+            allPaths.getAllPathsWithWeightLessThanInParallel(vA, vC, 60., 4, SearchBudget.UNLIMITED);
+        assertThat(unlimited.isTruncated()).isFalse();
+        assertThat(unlimited.getResult()).extracting(GraphPath::getEdgeList).containsExactlyElementsOf(paths);
+
+        PartialResult<List<GraphPath<Microservice, Connection>>> someOfThem =
+            allPaths.getAllPathsWithWeightLessThanInParallel(vA, vC, 60., 4, SearchBudget.builder().maxResults(10).build());
+        assertThat(someOfThem.getExceededLimit()).contains(SearchBudget.Limit.RESULTS);
+        assertThat(someOfThem.getResult()).hasSize(10);
+        assertThat(paths).containsAll(someOfThem.getResult().stream().map(GraphPath::getEdgeList)
+            .collect(Collectors.toList()));
+
+        // the labels of all the tasks count towards the same limit
+        assertThat(allPaths.getAllPathsWithWeightLessThanInParallel(vA, vC, 1_000., 4,
+            SearchBudget.builder().maxLabels(10_000).build()).getExceededLimit())
+            .contains(SearchBudget.Limit.LABELS);
+        PartialResult<List<GraphPath<Microservice, Connection>>> cancelledResult =
+            allPaths.getAllPathsWithWeightLessThanInParallel(vA, vC, 1_000., 4,
+                SearchBudget.builder().cancellationToken(cancelled).build());
+        assertThat(cancelledResult.getExceededLimit()).contains(SearchBudget.Limit.CANCELLED);
+        assertThat(cancelledResult.getResult()).isEmpty();
+    }
+
+    @Test
+    public void testSearchBudgetBuilder_negativeLimit_throwsException() {
+        assertThatThrownBy(() -> SearchBudget.builder().maxLabels(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SearchBudget.builder().maxResults(-1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SearchBudget.builder().maxMemoryBytes(-1))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> SearchBudget.builder().timeout(Duration.ofMillis(-1)))
+            .isInstanceOf(IllegalArgumentException.class);
+        assertThat(SearchBudget.UNLIMITED.getTimeout()).isGreaterThan(Duration.ofDays(365));
+    }
+
+    private static SimpleDirectedWeightedGraph<Microservice, Connection> readmeGraph() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (String trace : List.of("AB5", "BC4", "CD8", "DC8", "DE6", "AD5", "CE2", "EB3", "AE7")) {
+            Microservice source = new Microservice(trace.substring(0, 1));
+            Microservice target = new Microservice(trace.substring(1, 2));
+            g.addVertex(source);
+            g.addVertex(target);
+            Connection c = new Connection(Integer.parseInt(trace.substring(2)));
+            g.addEdge(source, target, c);
+            g.setEdgeWeight(source, target, c.getLatencyInMs());
+        }
+        return g;
+    }
+}
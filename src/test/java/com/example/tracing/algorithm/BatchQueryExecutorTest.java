@@ -0,0 +1,187 @@
+package com.example.tracing.algorithm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.Connection;
+import com.example.tracing.model.ConnectionChange;
+import com.example.tracing.model.Microservice;
+import com.example.tracing.model.Query;
+import com.example.tracing.model.Query.Kind;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+import org.junit.jupiter.api.Test;
+
+class BatchQueryExecutorTest {
+
+    @Test
+    public void testExecute_readmeQueries_expectedResultsInInputOrder() {
+        CompactServiceGraph g = CompactServiceGraph.builder()
+            .addConnection("A", "B", 5)
+            .addConnection("B", "C", 4)
+            .addConnection("C", "D", 8)
+            .addConnection("D", "C", 8)
+            .addConnection("D", "E", 6)
+            .addConnection("A", "D", 5)
+            .addConnection("C", "E", 2)
+            .addConnection("E", "B", 3)
+            .addConnection("A", "E", 7)
+            .build();
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        Microservice vD = new Microservice("D");
+        Microservice vE = new Microservice("E");
+        List<Query> queries = List.of(
+            Query.walkLatency(List.of(vA, vB, vC)),
+            Query.walkLatency(List.of(vA, vD)),
+            Query.walkLatency(List.of(vA, vD, vC)),
+            Query.walkLatency(List.of(vA, vE, vB, vC, vD)),
+            Query.walkLatency(List.of(vA, vE, vD)),
+            Query.limited(Kind.COUNT_UP_TO_HOPS, vC, vC, 3),
+            Query.limited(Kind.COUNT_EXACT_HOPS, vA, vC, 4),
+            Query.shortestLatency(vA, vC),
+            Query.shortestLatency(vB, vB),
+            Query.limited(Kind.COUNT_LATENCY_LESS_THAN, vC, vC, 30),
+            Query.limited(Kind.COUNT_EXACT_HOPS, vC, vC, 0),
+            Query.limited(Kind.COUNT_LATENCY_LESS_THAN, vC, new Microservice("F"), 30),
+            Query.shortestLatency(vA, new Microservice("F")));
+
+        assertThat(new BatchQueryExecutor(g).execute(queries)).containsExactly(
+            "9", "5", "13", "22", BatchQueryExecutor.NO_SUCH_TRACE, "2", "3", "9", "9", "7", "0", "0",
+            BatchQueryExecutor.NO_SUCH_TRACE);
+    }
+
+    @Test
+    public void testExecute_randomGraphAndQueries_sameResultsAsTraversal() {
+        Random random = new Random(3);
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (int v = 0; v < 12; v++) {
+            g.addVertex(new Microservice("S" + v));
+        }
+        for (int i = 0; i < 30; i++) {
+            Microservice source = new Microservice("S" + random.nextInt(12));
+            Microservice target = new Microservice("S" + random.nextInt(12));
+            if (!source.equals(target) && !g.containsEdge(source, target)) {
+                Connection c = new Connection(1 + random.nextInt(9));
+                g.addEdge(source, target, c);
+                g.setEdgeWeight(source, target, c.getLatencyInMs());
+            }
+        }
+        List<Query> queries = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 300; i++) {
+            Microservice source = new Microservice("S" + random.nextInt(4));
+            Microservice target = new Microservice("S" + random.nextInt(12));
+            int limit = random.nextInt(8);
+            switch (random.nextInt(3)) {
+                case 0:
+                    queries.add(Query.limited(Kind.COUNT_UP_TO_HOPS, source, target, limit));
+                    expected.add(Long.toString(Traversal.countPathsWithPathLengthUpToMax(g, source, target, limit)));
+                    break;
+                case 1:
+                    queries.add(Query.limited(Kind.COUNT_EXACT_HOPS, source, target, limit));
+                    expected.add(Long.toString(Traversal.countPathsWithExactPathLength(g, source, target, limit)));
+                    break;
+                default:
+                    queries.add(Query.limited(Kind.COUNT_LATENCY_LESS_THAN, source, target, 4 * limit));
+                    expected.add(Long.toString(Traversal.countPathsWithWeightLessThan(g, source, target, 4 * limit)));
+            }
+        }
+
+        assertThat(new BatchQueryExecutor(CompactServiceGraph.fromGraph(g)).execute(queries))
+            .containsExactlyElementsOf(expected);
+    }
+
+    @Test
+    public void testExecute_mostlyAcyclicGraph_sameResultsAsTraversal() {
+        Random random = new Random(23);
+        SimpleDirectedWeightedGraph<Microservice, Connection> g =
+            StronglyConnectedComponentsTest.randomMostlyAcyclicGraph(random, 16);
+        List<Query> queries = new ArrayList<>();
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 400; i++) {
+            Microservice source = new Microservice("S" + random.nextInt(16));
+            Microservice target = new Microservice("S" + random.nextInt(16));
+            int limit = random.nextInt(10);
+            switch (random.nextInt(3)) {
+                case 0:
+                    queries.add(Query.limited(Kind.COUNT_UP_TO_HOPS, source, target, limit));
+                    expected.add(Long.toString(Traversal.countPathsWithPathLengthUpToMax(g, source, target, limit)));
+                    break;
+                case 1:
+                    queries.add(Query.limited(Kind.COUNT_EXACT_HOPS, source, target, limit));
+                    expected.add(Long.toString(Traversal.countPathsWithExactPathLength(g, source, target, limit)));
+                    break;
+                default:
+                    queries.add(Query.limited(Kind.COUNT_LATENCY_LESS_THAN, source, target, 6 * limit));
+                    expected.add(Long.toString(Traversal.countPathsWithWeightLessThan(g, source, target, 6 * limit)));
+            }
+        }
+        BatchQueryExecutor executor = new BatchQueryExecutor(CompactServiceGraph.fromGraph(g));
+
+        assertThat(executor.execute(queries)).containsExactlyElementsOf(expected);
+        StronglyConnectedComponents components = executor.getComponents();
+        assertThat(components.getComponentCount()).isGreaterThan(components.getGraph().getVertexCount() / 2);
+    }
+
+    @Test
+    public void testExecute_highestLatencyLimitOverflows_lowerLimitsStillCounted() {
+        CompactServiceGraph g = CompactServiceGraph.builder()
+            .addConnection("A", "B", 1)
+            .addConnection("B", "A", 1)
+            .addConnection("B", "C", 1)
+            .addConnection("C", "B", 1)
+            .addConnection("A", "C", 1)
+            .addConnection("C", "A", 1)
+            .build();
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        // the number of traces doubles with each hop, so it overflows long for the highest limit only
+        List<Query> queries = List.of(
+            Query.limited(Kind.COUNT_LATENCY_LESS_THAN, vA, vA, 10),
+            Query.limited(Kind.COUNT_LATENCY_LESS_THAN, vA, vA, 1000),
+            Query.limited(Kind.COUNT_LATENCY_LESS_THAN, vA, vB, 20),
+            Query.limited(Kind.COUNT_LATENCY_LESS_THAN, vA, vB, 1000));
+
+        assertThat(new BatchQueryExecutor(g).execute(queries)).containsExactly(
+            "340", BatchQueryExecutor.COUNT_OVERFLOWS, "349525", BatchQueryExecutor.COUNT_OVERFLOWS);
+    }
+
+    @Test
+    public void testWithChanges_latencyTicksAndNewConnection_resultsOfChangedGraph() {
+        CompactServiceGraph g = CompactServiceGraph.builder()
+            .addConnection("A", "B", 5)
+            .addConnection("B", "C", 4)
+            .addConnection("A", "C", 20)
+            .build();
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        Microservice vD = new Microservice("D");
+        List<Query> queries = List.of(
+            Query.shortestLatency(vA, vC),
+            Query.limited(Kind.COUNT_UP_TO_HOPS, vA, vC, 3),
+            Query.shortestLatency(vA, vD),
+            Query.limited(Kind.COUNT_UP_TO_HOPS, vA, vD, 3));
+        BatchQueryExecutor executor = new BatchQueryExecutor(g);
+        assertThat(executor.execute(queries)).containsExactly("9", "2", BatchQueryExecutor.NO_SUCH_TRACE, "0");
+
+        BatchQueryExecutor slower = executor.withChanges(List.of(ConnectionChange.updateLatency(vB, vC, 30)));
+        BatchQueryExecutor faster = slower.withChanges(List.of(ConnectionChange.updateLatency(vA, vC, 2)));
+        BatchQueryExecutor extended = faster.withChanges(List.of(ConnectionChange.add(vC, vD, 1)));
+        BatchQueryExecutor shrunk = extended.withChanges(List.of(ConnectionChange.remove(vA, vB)));
+        assertThat(faster.getComponents().getComponentCount()).isEqualTo(3);
+        assertThat(extended.getComponents().getComponentCount()).isEqualTo(4);
+
+        assertThat(slower.execute(queries)).containsExactly("20", "2", BatchQueryExecutor.NO_SUCH_TRACE, "0");
+        assertThat(faster.execute(queries)).containsExactly("2", "2", BatchQueryExecutor.NO_SUCH_TRACE, "0");
+        assertThat(extended.execute(queries)).containsExactly("2", "2", "3", "2");
+        assertThat(shrunk.execute(queries)).containsExactly("2", "1", "3", "1");
+        // the executors of the earlier graphs are not affected
+        assertThat(executor.execute(queries)).containsExactly("9", "2", BatchQueryExecutor.NO_SUCH_TRACE, "0");
+    }
+
+}
@@ -0,0 +1,74 @@
+package com.example.tracing.algorithm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.util.GraphBuilder;
+import java.util.Random;
+import java.util.Scanner;
+import org.junit.jupiter.api.Test;
+
+class EdgeHashIndexTest {
+
+    @Test
+    public void testGetWalkLatency_readmeGraph_latencyOrNoSuchTrace() {
+        CompactServiceGraph g = GraphBuilder.buildCompactGraphFromInput(
+            new Scanner("AB5 BC4 CD8 DC8 DE6 AD5 CE2 EB3 AE7"));
+        EdgeHashIndex index = new EdgeHashIndex(g);
+        int a = g.getVertexId("A");
+        int b = g.getVertexId("B");
+        int c = g.getVertexId("C");
+        int d = g.getVertexId("D");
+        int e = g.getVertexId("E");
+
+        assertThat(index.getWalkLatency(new int[] {a, b, c})).isEqualTo(9);
+        assertThat(index.getWalkLatency(new int[] {a, e, b, c, d})).isEqualTo(22);
+        assertThat(index.getWalkLatency(new int[] {a, e, d})).isEqualTo(EdgeHashIndex.NO_SUCH_TRACE);
+        assertThat(index.getWalkLatency(new int[] {a, CompactServiceGraph.NO_SUCH_VERTEX}))
+            .isEqualTo(EdgeHashIndex.NO_SUCH_TRACE);
+        assertThat(index.getWalkLatency(new int[] {c})).isZero();
+        // A-B-C, A-D, A-E-D and A-E-B-C-D in one array
+        assertThat(index.getWalkLatencies(new int[] {a, b, c, a, d, a, e, d, a, e, b, c, d}, new int[] {0, 3, 5, 8, 13}))
+            .containsExactly(9, 5, EdgeHashIndex.NO_SUCH_TRACE, 22);
+        assertThatThrownBy(() -> index.getWalkLatency(new int[0])).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testFindEdge_randomGraphs_sameAsBinarySearch() {
+        Random random = new Random(20);
+        for (int vertexCount = 1; vertexCount < 60; vertexCount += 7) {
+            CompactServiceGraph.Builder builder = CompactServiceGraph.builder();
+            for (int v = 0; v < vertexCount; v++) {
+                builder.addVertex("S" + v);
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                for (int u = 0; u < vertexCount; u++) {
+                    if (u != v && random.nextInt(3) == 0) {
+                        builder.addConnection(v, u, 1 + random.nextInt(10));
+                    }
+                }
+            }
+            CompactServiceGraph g = builder.build();
+            EdgeHashIndex index = new EdgeHashIndex(g);
+
+            for (int v = 0; v < vertexCount; v++) {
+                for (int u = 0; u < vertexCount; u++) {
+                    assertThat(index.findEdge(v, u)).isEqualTo(g.findEdge(v, u));
+                }
+            }
+            int[][] traces = new int[100][];
+            long[] expectedLatencies = new long[traces.length];
+            for (int i = 0; i < traces.length; i++) {
+                traces[i] = random.ints(1 + random.nextInt(4), 0, vertexCount).toArray();
+                for (int j = 1; j < traces[i].length && expectedLatencies[i] != EdgeHashIndex.NO_SUCH_TRACE; j++) {
+                    int edge = g.findEdge(traces[i][j - 1], traces[i][j]);
+                    expectedLatencies[i] = edge == CompactServiceGraph.NO_SUCH_EDGE
+                        ? EdgeHashIndex.NO_SUCH_TRACE
+                        : expectedLatencies[i] + g.getEdgeLatency(edge);
+                }
+            }
+            assertThat(index.getWalkLatencies(traces)).containsExactly(expectedLatencies);
+        }
+    }
+}
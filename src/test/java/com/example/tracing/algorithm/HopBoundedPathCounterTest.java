@@ -0,0 +1,139 @@
+package com.example.tracing.algorithm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.tracing.model.Connection;
+import com.example.tracing.model.Microservice;
+import org.jgrapht.alg.shortestpath.AllDirectedPaths;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+import org.junit.jupiter.api.Test;
+
+class HopBoundedPathCounterTest {
+
+    @Test
+    public void testCountPaths_graphWithLoops_sameCountsAsEnumeration() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        Microservice vD = new Microservice("D");
+        Microservice vE = new Microservice("E");
+        g.addVertex(vA);
+        g.addVertex(vB);
+        g.addVertex(vC);
+        g.addVertex(vD);
+        g.addVertex(vE);
+        g.addEdge(vA, vB, new Connection(5));
+        g.addEdge(vB, vC, new Connection(4));
+        g.addEdge(vC, vD, new Connection(8));
+        g.addEdge(vD, vC, new Connection(8));
+        g.addEdge(vD, vE, new Connection(6));
+        g.addEdge(vA, vD, new Connection(5));
+        g.addEdge(vC, vE, new Connection(2));
+        g.addEdge(vE, vB, new Connection(3));
+        g.addEdge(vA, vE, new Connection(7));
+
+        HopBoundedPathCounter<Microservice, Connection> counter = new HopBoundedPathCounter<>(g);
+        assertThat(counter.countPathsWithLengthUpToMax(vC, vC, 3)).isEqualTo(2);
+        assertThat(counter.countPathsWithExactLength(vA, vC, 4)).isEqualTo(3);
+
+        AllDirectedPaths<Microservice, Connection> allPaths = new AllDirectedPaths<>(g);
+        for (int hops = 1; hops <= 6; hops++) {
+            long[][] exactCounts = counter.getExactLengthPathCounts(hops);
+            long[][] upToMaxCounts = counter.getLengthUpToMaxPathCounts(hops);
+            for (Microservice source : g.vertexSet()) {
+                for (Microservice target : g.vertexSet()) {
+                    int finalHops = hops;
+                    long expectedUpToMax = allPaths.getAllPaths(source, target, false, hops).stream()
+                        .filter(path -> path.getLength() > 0)
+                        .count();
+                    long expectedExact = allPaths.getAllPaths(source, target, false, hops).stream()
+                        .filter(path -> path.getLength() == finalHops)
+                        .count();
+                    int i = counter.getVertexId(source);
+                    int j = counter.getVertexId(target);
+                    assertThat(counter.countPathsWithLengthUpToMax(source, target, hops)).isEqualTo(expectedUpToMax);
+                    assertThat(counter.countPathsWithExactLength(source, target, hops)).isEqualTo(expectedExact);
+                    assertThat(upToMaxCounts[i][j]).isEqualTo(expectedUpToMax);
+                    assertThat(exactCounts[i][j]).isEqualTo(expectedExact);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCountPaths_cycleWithLargeHopCount_countedWithoutEnumeration() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        g.addVertex(vA);
+        g.addVertex(vB);
+        g.addVertex(vC);
+        g.addEdge(vA, vB, new Connection(1));
+        g.addEdge(vB, vA, new Connection(1));
+        g.addEdge(vB, vC, new Connection(1));
+        g.addEdge(vC, vA, new Connection(1));
+
+        HopBoundedPathCounter<Microservice, Connection> counter = new HopBoundedPathCounter<>(g);
+        long[][] upToMaxCounts = counter.getLengthUpToMaxPathCounts(50);
+        long expected = 0;
+        for (int hops = 1; hops <= 50; hops++) {
+            expected += counter.countPathsWithExactLength(vA, vA, hops);
+        }
+        assertThat(counter.countPathsWithLengthUpToMax(vA, vA, 50)).isEqualTo(expected);
+        assertThat(upToMaxCounts[counter.getVertexId(vA)][counter.getVertexId(vA)]).isEqualTo(expected);
+        assertThat(counter.countPathsWithExactLength(vA, vA, 0)).isZero();
+    }
+
+    @Test
+    public void testGetExactLengthPathCounts_sumOfPowersOverflows_exactLengthStillCounted() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        g.addVertex(vA);
+        g.addVertex(vB);
+        g.addVertex(vC);
+        g.addEdge(vA, vB, new Connection(1));
+        g.addEdge(vB, vA, new Connection(1));
+        g.addEdge(vB, vC, new Connection(1));
+        g.addEdge(vC, vA, new Connection(1));
+
+        HopBoundedPathCounter<Microservice, Connection> counter = new HopBoundedPathCounter<>(g);
+        // the first length whose counts up to it overflow, while the counts of exactly that length still fit
+        int pathLength = 1;
+        while (true) {
+            try {
+                counter.getLengthUpToMaxPathCounts(pathLength);
+                pathLength++;
+            } catch (ArithmeticException e) {
+                break;
+            }
+        }
+        long[][] counts = counter.getExactLengthPathCounts(pathLength);
+        assertThat(counts[counter.getVertexId(vA)][counter.getVertexId(vA)])
+            .isEqualTo(counter.countPathsWithExactLength(vA, vA, pathLength))
+            .isPositive();
+    }
+
+    @Test
+    public void testCountPathsByWeightFrom_largeLimit_histogramSizedByReachedWeights() {
+        // A -> B -> C with weights 3 and 4, and a cycle D <-> E with weights of 2^23 - 1
+        int[] offsets = {0, 1, 2, 2, 3, 4};
+        int[] targets = {1, 2, 4, 3};
+        int[] weights = {3, 4, (1 << 23) - 1, (1 << 23) - 1};
+
+        long[] acyclicCounts = HopBoundedPathCounter.countPathsByWeightFrom(offsets, targets, weights, 0, 2,
+            Integer.MAX_VALUE);
+        assertThat(acyclicCounts).hasSize(8);
+        assertThat(acyclicCounts[7]).isEqualTo(1);
+        assertThat(HopBoundedPathCounter.countPathsByWeightFrom(offsets, targets, weights, 2, 0, Integer.MAX_VALUE))
+            .containsExactly(0);
+        assertThat(HopBoundedPathCounter.countPathsByWeightFrom(offsets, targets, weights, 3, 3, 2)[(1 << 24) - 2])
+            .isEqualTo(1);
+        assertThatThrownBy(() -> HopBoundedPathCounter.countPathsByWeightFrom(offsets, targets, weights, 3, 3, 3))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,146 @@
+package com.example.tracing.algorithm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.Connection;
+import com.example.tracing.model.ConnectionChange;
+import com.example.tracing.model.Microservice;
+import java.util.List;
+import java.util.Random;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+import org.junit.jupiter.api.Test;
+
+class HopCountCacheTest {
+
+    @Test
+    public void testCountPaths_randomGraphHopsInRandomOrder_sameCountsAsTraversal() {
+        Random random = new Random(5);
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (int v = 0; v < 10; v++) {
+            g.addVertex(new Microservice("S" + v));
+        }
+        for (int i = 0; i < 25; i++) {
+            Microservice source = new Microservice("S" + random.nextInt(10));
+            Microservice target = new Microservice("S" + random.nextInt(10));
+            if (!source.equals(target) && !g.containsEdge(source, target)) {
+                g.addEdge(source, target, new Connection(1));
+            }
+        }
+        HopCountCache cache = new HopCountCache(CompactServiceGraph.fromGraph(g), 3);
+        // 4 vectors per source, the longer paths are counted beyond them
+        HopCountCache smallCache = new HopCountCache(CompactServiceGraph.fromGraph(g), 3, 3 * 4 * Long.BYTES * 10);
+
+        for (int i = 0; i < 200; i++) {
+            Microservice source = new Microservice("S" + random.nextInt(10));
+            Microservice target = new Microservice("S" + random.nextInt(10));
+            int hops = random.nextInt(10);
+            assertThat(cache.countPathsWithExactLength(source, target, hops))
+                .isEqualTo(Traversal.countPathsWithExactPathLength(g, source, target, hops));
+            assertThat(cache.countPathsWithLengthUpToMax(source, target, hops))
+                .isEqualTo(Traversal.countPathsWithPathLengthUpToMax(g, source, target, hops));
+            assertThat(cache.getCachedSourceCount()).isLessThanOrEqualTo(3);
+            assertThat(smallCache.countPathsWithExactLength(source, target, hops))
+                .isEqualTo(Traversal.countPathsWithExactPathLength(g, source, target, hops));
+            assertThat(smallCache.countPathsWithLengthUpToMax(source, target, hops))
+                .isEqualTo(Traversal.countPathsWithPathLengthUpToMax(g, source, target, hops));
+        }
+        assertThat(cache.countPathsWithExactLength(new Microservice("S0"), new Microservice("X"), 3)).isZero();
+    }
+
+    @Test
+    public void testCountPaths_moreSourcesThanCapacity_leastRecentlyUsedSourceEvicted() {
+        CompactServiceGraph g = CompactServiceGraph.builder()
+            .addConnection("A", "B", 1)
+            .addConnection("B", "C", 1)
+            .addConnection("C", "D", 1)
+            .build();
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        Microservice vD = new Microservice("D");
+        HopCountCache cache = new HopCountCache(g, 2);
+
+        assertThat(cache.countPathsWithExactLength(vA, vD, 3)).isEqualTo(1);
+        assertThat(cache.countPathsWithExactLength(vB, vD, 2)).isEqualTo(1);
+        assertThat(cache.getCachedSourceCount()).isEqualTo(2);
+        // A becomes the most recently used source, so B is evicted for C
+        assertThat(cache.countPathsWithLengthUpToMax(vA, vD, 100)).isEqualTo(1);
+        assertThat(cache.countPathsWithExactLength(vC, vD, 1)).isEqualTo(1);
+        assertThat(cache.getCachedSourceCount()).isEqualTo(2);
+        // the graph has no cycles, so there are no paths longer than 3 edges
+        assertThat(cache.countPathsWithExactLength(vA, vD, Integer.MAX_VALUE)).isZero();
+        assertThat(cache.countPathsWithLengthUpToMax(vD, vD, 5)).isZero();
+    }
+
+    @Test
+    public void testCountPaths_countOverflows_throwsArithmeticExceptionAndKeepsShorterCounts() {
+        CompactServiceGraph.Builder builder = CompactServiceGraph.builder();
+        for (int i = 0; i < 8; i++) {
+            for (int j = 0; j < 8; j++) {
+                if (i != j) {
+                    builder.addConnection("S" + i, "S" + j, 1);
+                }
+            }
+        }
+        HopCountCache cache = new HopCountCache(builder.build());
+        Microservice vS0 = new Microservice("S0");
+        Microservice vS1 = new Microservice("S1");
+
+        assertThatThrownBy(() -> cache.countPathsWithExactLength(vS0, vS1, 40))
+            .isInstanceOf(ArithmeticException.class);
+        // (7^2 + 1) / 8 paths of 2 edges between two different vertices of the complete graph with 8 vertices
+        assertThat(cache.countPathsWithExactLength(vS0, vS1, 2)).isEqualTo(6);
+    }
+
+    @Test
+    public void testCountPaths_largeHopLimitOnRing_cachedBytesBoundedAndCountsStreamed() {
+        CompactServiceGraph.Builder builder = CompactServiceGraph.builder();
+        int vertexCount = 100;
+        for (int v = 0; v < vertexCount; v++) {
+            builder.addConnection("S" + v, "S" + (v + 1) % vertexCount, 1);
+        }
+        CompactServiceGraph g = builder.build();
+        // 10 vectors per source
+        long maxBytes = 2 * 10 * Long.BYTES * vertexCount;
+        HopCountCache cache = new HopCountCache(g, 2, maxBytes);
+        Microservice vS0 = new Microservice("S0");
+        Microservice vS1 = new Microservice("S1");
+
+        assertThat(cache.countPathsWithExactLength(vS0, vS0, 1_000_000)).isEqualTo(1);
+        assertThat(cache.countPathsWithExactLength(vS0, vS1, 1_000_000)).isZero();
+        assertThat(cache.countPathsWithLengthUpToMax(vS0, vS0, 1_000_000)).isEqualTo(10_000);
+        assertThat(cache.countPathsWithLengthUpToMax(vS0, vS1, 1_000_001)).isEqualTo(10_001);
+        assertThat(cache.countPathsWithLengthUpToMax(vS0, vS1, 5)).isEqualTo(1);
+        assertThat(cache.getCachedBytes()).isLessThanOrEqualTo(maxBytes);
+        assertThat(new HopCountCache(g, 2, 0).countPathsWithExactLength(vS0, vS0, 300)).isEqualTo(1);
+    }
+
+    @Test
+    public void testWithChanges_randomChanges_sameCountsAsNewCache() {
+        Random random = new Random(13);
+        CompactServiceGraph g = CompactServiceGraph.builder().addConnection("S0", "S1", 5).build();
+        for (int i = 0; i < 10; i++) {
+            g = g.withChanges(ShortestLatencyIndexTest.randomChanges(g, random));
+        }
+        HopCountCache cache = new HopCountCache(g, 4);
+        for (int round = 0; round < 100; round++) {
+            for (int i = 0; i < 3; i++) {
+                cache.countPathsWithExactLength(random.nextInt(g.getVertexCount()), 0, random.nextInt(6));
+            }
+            List<ConnectionChange> changes = ShortestLatencyIndexTest.randomChanges(g, random);
+            g = g.withChanges(changes);
+            cache = cache.withChanges(g, changes);
+            assertThat(cache.getGraph()).isSameAs(g);
+            HopCountCache expected = new HopCountCache(g);
+            for (int source = 0; source < g.getVertexCount(); source++) {
+                for (int target = 0; target < g.getVertexCount(); target++) {
+                    int hops = random.nextInt(8);
+                    assertThat(cache.countPathsWithLengthUpToMax(source, target, hops))
+                        .isEqualTo(expected.countPathsWithLengthUpToMax(source, target, hops));
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.tracing.algorithm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.tracing.model.Connection;
+import com.example.tracing.model.Microservice;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.stream.Collectors;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+import org.junit.jupiter.api.Test;
+
+class KLowestWeightPathsTest {
+
+    @Test
+    public void testGetKLowestLatencyTraces_readmeGraphCyclesThroughC_ascendingLatencies() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (String trace : List.of("AB5", "BC4", "CD8", "DC8", "DE6", "AD5", "CE2", "EB3", "AE7")) {
+            Microservice source = new Microservice(trace.substring(0, 1));
+            Microservice target = new Microservice(trace.substring(1, 2));
+            g.addVertex(source);
+            g.addVertex(target);
+            Connection c = new Connection(Integer.parseInt(trace.substring(2)));
+            g.addEdge(source, target, c);
+            g.setEdgeWeight(c, c.getLatencyInMs());
+        }
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        Microservice vE = new Microservice("E");
+
+        List<GraphPath<Microservice, Connection>> simpleCycles = Traversal.getKLowestLatencyTraces(g, vC, vC, 10, false);
+        assertThat(simpleCycles).extracting(GraphPath::getWeight).containsExactly(9., 16., 21.);
+        assertThat(simpleCycles.get(0).getVertexList()).containsExactly(vC, vE, vB, vC);
+        assertThat(Traversal.streamKLowestLatencyTraces(g, vC, vC, 10, true).limit(5).map(GraphPath::getWeight))
+            .containsExactly(9., 16., 18., 21., 25.);
+        assertThat(Traversal.getKLowestLatencyTraces(g, vA, vC, 1, true).get(0).getVertexList())
+            .containsExactly(vA, vB, vC);
+        assertThat(Traversal.getKLowestLatencyTraces(g, vA, vA, 3, true)).isEmpty();
+        assertThat(Traversal.getKLowestLatencyTraces(g, vA, vC, 0, false)).isEmpty();
+        assertThatThrownBy(() -> Traversal.getKLowestLatencyTraces(g, vA, new Microservice("F"), 1, false))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void testGetPaths_budget_prefixOfPathsFlaggedAsTruncated() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (String trace : List.of("AB5", "BC4", "CD8", "DC8", "DE6", "AD5", "CE2", "EB3", "AE7")) {
+            Microservice source = new Microservice(trace.substring(0, 1));
+            Microservice target = new Microservice(trace.substring(1, 2));
+            g.addVertex(source);
+            g.addVertex(target);
+            Connection c = new Connection(Integer.parseInt(trace.substring(2)));
+            g.addEdge(source, target, c);
+            g.setEdgeWeight(c, c.getLatencyInMs());
+        }
+        Microservice vC = new Microservice("C");
+        CancellationToken cancelled = new CancellationToken();
+        cancelled.cancel();
+        KLowestWeightPaths<Microservice, Connection> kLowest = new KLowestWeightPaths<>(g);
+        for (boolean allowNonSimple : new boolean[] {false, true}) {
+            List<GraphPath<Microservice, Connection>> paths = kLowest.getPaths(vC, vC, 3, allowNonSimple);
+
+            PartialResult<List<GraphPath<Microservice, Connection>>> unlimited =
+                kLowest.getPaths(vC, vC, 3, allowNonSimple, SearchBudget.UNLIMITED);
+            assertThat(unlimited.isTruncated()).isFalse();
+            assertThat(unlimited.getResult()).isEqualTo(paths);
+
+            PartialResult<List<GraphPath<Microservice, Connection>>> firstTwo =
+                kLowest.getPaths(vC, vC, 3, allowNonSimple, SearchBudget.builder().maxResults(2).build());
+            assertThat(firstTwo.getExceededLimit()).contains(SearchBudget.Limit.RESULTS);
+            assertThat(firstTwo.getResult()).isEqualTo(paths.subList(0, 2));
+
+            PartialResult<List<GraphPath<Microservice, Connection>>> cancelledResult =
+                kLowest.getPaths(vC, vC, 3, allowNonSimple, SearchBudget.builder().cancellationToken(cancelled).build());
+            assertThat(cancelledResult.getExceededLimit()).contains(SearchBudget.Limit.CANCELLED);
+            assertThat(cancelledResult.getResult()).isEmpty();
+        }
+        assertThat(kLowest.getPaths(vC, vC, 1_000, true, SearchBudget.builder().maxLabels(100).build())
+            .getExceededLimit()).contains(SearchBudget.Limit.LABELS);
+        assertThat(kLowest.getPaths(vC, vC, 1_000, true, SearchBudget.builder().maxMemoryBytes(1_000).build())
+            .getExceededLimit()).contains(SearchBudget.Limit.MEMORY);
+    }
+
+    @Test
+    public void testGetKLowestLatencyTraces_randomGraphs_sameLatenciesAsSortedEnumeration() {
+        Random random = new Random(17);
+        for (int round = 0; round < 20; round++) {
+            SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+            for (int v = 0; v < 8; v++) {
+                g.addVertex(new Microservice("S" + v));
+            }
+            for (int i = 0; i < 20; i++) {
+                Microservice source = new Microservice("S" + random.nextInt(8));
+                Microservice target = new Microservice("S" + random.nextInt(8));
+                if (!source.equals(target) && !g.containsEdge(source, target)) {
+                    Connection c = new Connection(1 + random.nextInt(9));
+                    g.addEdge(source, target, c);
+                    g.setEdgeWeight(c, c.getLatencyInMs());
+                }
+            }
+            Microservice source = new Microservice("S" + random.nextInt(8));
+            Microservice target = new Microservice("S" + random.nextInt(8));
+            for (boolean allowNonSimple : List.of(true, false)) {
+                List<GraphPath<Microservice, Connection>> traces =
+                    Traversal.getKLowestLatencyTraces(g, source, target, 12, allowNonSimple);
+                // every trace not heavier than the heaviest one found, the found ones must be the lightest of them
+                int weightLimit = traces.isEmpty() ? 60 : (int) traces.get(traces.size() - 1).getWeight() + 1;
+                List<Double> expectedWeights = Traversal.getAllPathsWithWeightLessThan(g, source, target, weightLimit)
+                    .stream()
+                    .filter(path -> path.getLength() > 0 && (allowNonSimple || isSimple(path)))
+                    .map(GraphPath::getWeight)
+                    .sorted()
+                    .limit(12)
+                    .collect(Collectors.toList());
+                assertThat(traces).extracting(GraphPath::getWeight).containsExactlyElementsOf(expectedWeights);
+                for (GraphPath<Microservice, Connection> trace : traces) {
+                    assertThat(trace.getStartVertex()).isEqualTo(source);
+                    assertThat(trace.getEndVertex()).isEqualTo(target);
+                    assertThat(Traversal.getGraphWalk(g, trace.getVertexList()).orElseThrow().getWeight())
+                        .isEqualTo(trace.getWeight());
+                    assertThat(allowNonSimple || isSimple(trace)).isTrue();
+                }
+                assertThat(traces.stream().map(GraphPath::getEdgeList).distinct()).hasSameSizeAs(traces);
+            }
+        }
+    }
+
+    /**
+     * @return true if the path visits no vertex twice, but the source being the target
+     */
+    private static boolean isSimple(GraphPath<Microservice, Connection> path) {
+        List<Microservice> vertices = path.getVertexList();
+        return new HashSet<>(vertices.subList(1, vertices.size())).size() == vertices.size() - 1
+            && !vertices.subList(1, vertices.size() - 1).contains(vertices.get(0));
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.tracing.algorithm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.Connection;
+import com.example.tracing.model.ConnectionChange;
+import com.example.tracing.model.Microservice;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Random;
+import org.jgrapht.GraphPath;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+import org.junit.jupiter.api.Test;
+
+class ShortestLatencyIndexTest {
+
+    @Test
+    public void testShortestLatency_graphWithLoops_shortestPathsAndCyclesFound() {
+        CompactServiceGraph g = CompactServiceGraph.builder()
+            .addConnection("A", "B", 5)
+            .addConnection("B", "C", 4)
+            .addConnection("C", "D", 8)
+            .addConnection("D", "C", 8)
+            .addConnection("D", "E", 6)
+            .addConnection("A", "D", 5)
+            .addConnection("C", "E", 2)
+            .addConnection("E", "B", 3)
+            .addConnection("A", "E", 7)
+            .build();
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        Microservice vE = new Microservice("E");
+
+        for (boolean floydWarshall : List.of(true, false)) {
+            ShortestLatencyIndex index = new ShortestLatencyIndex(g, floydWarshall);
+            assertThat(index.getShortestLatency(vA, vC)).hasValue(9);
+            assertThat(index.getShortestTrace(vA, vC)).hasValue(List.of(vA, vB, vC));
+            assertThat(index.getShortestLatency(vB, vB)).hasValue(9);
+            assertThat(index.getShortestTrace(vB, vB)).hasValue(List.of(vB, vC, vE, vB));
+            assertThat(index.getShortestLatency(vB, vA)).isEmpty();
+            assertThat(index.getShortestTrace(vB, vA)).isEmpty();
+            assertThat(index.getShortestLatency(vA, vA)).isEmpty();
+            assertThat(index.getShortestLatency(vA, new Microservice("F"))).isEmpty();
+        }
+    }
+
+    @Test
+    public void testShortestLatency_randomGraph_sameLatenciesAsEppstein() {
+        Random random = new Random(7);
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (int v = 0; v < 30; v++) {
+            g.addVertex(new Microservice("S" + v));
+        }
+        for (int i = 0; i < 90; i++) {
+            Microservice source = new Microservice("S" + random.nextInt(30));
+            Microservice target = new Microservice("S" + random.nextInt(30));
+            if (!source.equals(target) && !g.containsEdge(source, target)) {
+                Connection c = new Connection(1 + random.nextInt(20));
+                g.addEdge(source, target, c);
+                g.setEdgeWeight(source, target, c.getLatencyInMs());
+            }
+        }
+        CompactServiceGraph compactGraph = CompactServiceGraph.fromGraph(g);
+        ShortestLatencyIndex floydWarshall = new ShortestLatencyIndex(compactGraph, true);
+        ShortestLatencyIndex dijkstra = new ShortestLatencyIndex(compactGraph, false);
+
+        for (Microservice source : g.vertexSet()) {
+            for (Microservice target : g.vertexSet()) {
+                // Eppstein returns the empty path from a vertex to itself when the vertex is not on a cycle
+                Optional<GraphPath<Microservice, Connection>> expected = Traversal.getShortestPath(g, source, target)
+                    .filter(path -> path.getLength() > 0);
+                for (ShortestLatencyIndex index : List.of(floydWarshall, dijkstra)) {
+                    if (expected.isPresent()) {
+                        int expectedLatency = (int) expected.get().getWeight();
+                        assertThat(index.getShortestLatency(source, target)).hasValue(expectedLatency);
+                        List<Microservice> trace = index.getShortestTrace(source, target).orElseThrow();
+                        assertThat(trace.get(0)).isEqualTo(source);
+                        assertThat(trace.get(trace.size() - 1)).isEqualTo(target);
+                        assertThat(Traversal.getGraphWalk(g, trace).orElseThrow().getWeight()).isEqualTo(expectedLatency);
+                    } else {
+                        assertThat(index.getShortestLatency(source, target)).isEmpty();
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testWithChanges_randomChanges_sameLatenciesAsNewIndex() {
+        Random random = new Random(11);
+        CompactServiceGraph g = CompactServiceGraph.builder().addConnection("S0", "S1", 5).build();
+        for (int i = 0; i < 20; i++) {
+            g = g.withChanges(randomChanges(g, random));
+        }
+        for (boolean floydWarshall : List.of(true, false)) {
+            CompactServiceGraph graph = g;
+            ShortestLatencyIndex index = new ShortestLatencyIndex(graph, floydWarshall);
+            for (int round = 0; round < 100; round++) {
+                // ask about some sources, so that there are rows to repair
+                index.getShortestLatency(random.nextInt(graph.getVertexCount()), 0);
+                List<ConnectionChange> changes = randomChanges(graph, random);
+                graph = graph.withChanges(changes);
+                index = index.withChanges(graph, changes);
+                ShortestLatencyIndex expected = new ShortestLatencyIndex(graph, false);
+                for (int source = 0; source < graph.getVertexCount(); source++) {
+                    for (int target = 0; target < graph.getVertexCount(); target++) {
+                        int latency = index.getShortestLatency(source, target);
+                        assertThat(latency).isEqualTo(expected.getShortestLatency(source, target));
+                        if (latency != ShortestLatencyIndex.NO_SUCH_TRACE) {
+                            assertThat(getLatency(graph, index.getShortestTrace(source, target))).isEqualTo(latency);
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @return one to three changes valid when applied in order, adding a new microservice now and then
+     */
+    static List<ConnectionChange> randomChanges(CompactServiceGraph g, Random random) {
+        List<ConnectionChange> changes = new ArrayList<>();
+        CompactServiceGraph changedGraph = g;
+        for (int i = 1 + random.nextInt(3); i > 0; i--) {
+            Microservice source = new Microservice("S" + random.nextInt(changedGraph.getVertexCount() + 1));
+            Microservice target = new Microservice("S" + random.nextInt(changedGraph.getVertexCount() + 1));
+            if (source.equals(target)) {
+                continue;
+            }
+            int sourceId = changedGraph.getVertexId(source);
+            int targetId = changedGraph.getVertexId(target);
+            boolean present = sourceId != CompactServiceGraph.NO_SUCH_VERTEX && targetId != CompactServiceGraph.NO_SUCH_VERTEX
+                && changedGraph.findEdge(sourceId, targetId) != CompactServiceGraph.NO_SUCH_EDGE;
+            ConnectionChange change;
+            if (!present) {
+                change = ConnectionChange.add(source, target, 1 + random.nextInt(20));
+            } else if (random.nextInt(3) == 0) {
+                change = ConnectionChange.remove(source, target);
+            } else {
+                change = ConnectionChange.updateLatency(source, target, 1 + random.nextInt(20));
+            }
+            changes.add(change);
+            changedGraph = changedGraph.withChanges(List.of(change));
+        }
+        return changes;
+    }
+
+    private static long getLatency(CompactServiceGraph g, int[] trace) {
+        long latency = 0;
+        for (int i = 1; i < trace.length; i++) {
+            latency += g.getEdgeLatency(g.findEdge(trace[i - 1], trace[i]));
+        }
+        return latency;
+    }
+}
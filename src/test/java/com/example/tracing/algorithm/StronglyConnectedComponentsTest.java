@@ -0,0 +1,174 @@
+package com.example.tracing.algorithm;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.example.tracing.model.CompactServiceGraph;
+import com.example.tracing.model.Connection;
+import com.example.tracing.model.ConnectionChange;
+import com.example.tracing.model.Microservice;
+import com.example.tracing.util.GraphBuilder;
+import java.util.List;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.Set;
+import org.jgrapht.alg.connectivity.KosarajuStrongConnectivityInspector;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+import org.junit.jupiter.api.Test;
+
+class StronglyConnectedComponentsTest {
+
+    @Test
+    public void testComponents_readmeGraph_cycleThroughBCDEAfterA() {
+        CompactServiceGraph g = GraphBuilder.buildCompactGraphFromInput(
+            new Scanner("AB5 BC4 CD8 DC8 DE6 AD5 CE2 EB3 AE7"));
+        StronglyConnectedComponents components = new StronglyConnectedComponents(g);
+        int a = g.getVertexId("A");
+        int c = g.getVertexId("C");
+
+        assertThat(components.getComponentCount()).isEqualTo(2);
+        assertThat(components.getComponent(a)).isZero();
+        assertThat(components.isCyclic(0)).isFalse();
+        assertThat(components.getComponentSize(1)).isEqualTo(4);
+        for (String name : List.of("B", "C", "D", "E")) {
+            assertThat(components.getComponent(g.getVertexId(name))).isEqualTo(1);
+        }
+        assertThat(components.isAcyclicFrom(a)).isFalse();
+        assertThat(components.mayHavePath(a, c)).isTrue();
+        assertThat(components.mayHavePath(c, c)).isTrue();
+        assertThat(components.mayHavePath(c, a)).isFalse();
+        assertThat(components.mayHavePath(a, a)).isFalse();
+    }
+
+    @Test
+    public void testComponents_randomGraphs_sameAsKosarajuAndInTopologicalOrder() {
+        Random random = new Random(23);
+        for (int vertexCount = 1; vertexCount < 60; vertexCount += 6) {
+            SimpleDirectedWeightedGraph<Microservice, Connection> g = randomMostlyAcyclicGraph(random, vertexCount);
+            CompactServiceGraph compactGraph = CompactServiceGraph.fromGraph(g);
+            StronglyConnectedComponents components = new StronglyConnectedComponents(compactGraph);
+
+            List<Set<Microservice>> expected = new KosarajuStrongConnectivityInspector<>(g).stronglyConnectedSets();
+            assertThat(components.getComponentCount()).isEqualTo(expected.size());
+            for (Set<Microservice> expectedComponent : expected) {
+                int component = components.getComponent(compactGraph.getVertexId(expectedComponent.iterator().next()));
+                assertThat(components.getComponentSize(component)).isEqualTo(expectedComponent.size());
+                for (Microservice vertex : expectedComponent) {
+                    assertThat(components.getComponent(compactGraph.getVertexId(vertex))).isEqualTo(component);
+                }
+            }
+            for (int v = 0; v < vertexCount; v++) {
+                for (int e = compactGraph.getFirstEdge(v); e < compactGraph.getEdgeEnd(v); e++) {
+                    assertThat(components.getComponent(compactGraph.getEdgeTarget(e)))
+                        .isGreaterThanOrEqualTo(components.getComponent(v));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testGetDagPathsFrom_randomGraphs_sameAsBoundedCounts() {
+        Random random = new Random(24);
+        int acyclicSources = 0;
+        for (int vertexCount = 2; vertexCount < 40; vertexCount += 5) {
+            CompactServiceGraph g = CompactServiceGraph.fromGraph(randomMostlyAcyclicGraph(random, vertexCount));
+            StronglyConnectedComponents components = new StronglyConnectedComponents(g);
+            for (int source = 0; source < vertexCount; source++) {
+                if (!components.isAcyclicFrom(source)) {
+                    continue;
+                }
+                acyclicSources++;
+                StronglyConnectedComponents.DagPaths dagPaths = components.getDagPathsFrom(source);
+                long[] pathCounts = HopBoundedPathCounter.countPathsFrom(g.getOffsets(), g.getTargets(), source,
+                    vertexCount, true);
+                for (int target = 0; target < vertexCount; target++) {
+                    assertThat(dagPaths.getPathCount(target)).isEqualTo(pathCounts[target]);
+                    int maxLength = dagPaths.getMaxPathLength(target);
+                    long maxWeight = dagPaths.getMaxPathWeight(target);
+                    if (pathCounts[target] == 0) {
+                        assertThat(maxLength)
+                            .isEqualTo(target == source ? 0 : StronglyConnectedComponents.DagPaths.UNREACHABLE);
+                        continue;
+                    }
+                    assertThat(HopBoundedPathCounter.countPathsFrom(g.getOffsets(), g.getTargets(), source, maxLength,
+                        false)[target]).isPositive();
+                    assertThat(WeightBoundedWalkCounter.countWalksFrom(g.getOffsets(), g.getTargets(), g.getLatencies(),
+                        source, (int) maxWeight + 1)[target]).isEqualTo(pathCounts[target]);
+                    assertThat(WeightBoundedWalkCounter.countWalksFrom(g.getOffsets(), g.getTargets(), g.getLatencies(),
+                        source, (int) maxWeight)[target]).isLessThan(pathCounts[target]);
+                }
+            }
+        }
+        assertThat(acyclicSources).isGreaterThan(20);
+    }
+
+    @Test
+    public void testComponents_longChain_noStackOverflow() {
+        CompactServiceGraph.Builder builder = CompactServiceGraph.builder();
+        int vertexCount = 200_000;
+        for (int v = 0; v < vertexCount; v++) {
+            builder.addVertex("S" + v);
+        }
+        for (int v = 1; v < vertexCount; v++) {
+            builder.addConnection(v - 1, v, 1);
+        }
+        StronglyConnectedComponents components = new StronglyConnectedComponents(builder.build());
+
+        assertThat(components.getComponentCount()).isEqualTo(vertexCount);
+        assertThat(components.isAcyclicFrom(0)).isTrue();
+        StronglyConnectedComponents.DagPaths dagPaths = components.getDagPathsFrom(0);
+        assertThat(dagPaths.getPathCount(vertexCount - 1)).isEqualTo(1);
+        assertThat(dagPaths.getMaxPathLength(vertexCount - 1)).isEqualTo(vertexCount - 1);
+    }
+
+    @Test
+    public void testWithChanges_latencyUpdateAndNewCycle_componentsOfChangedGraph() {
+        CompactServiceGraph g = CompactServiceGraph.builder()
+            .addConnection("A", "B", 5)
+            .addConnection("B", "C", 4)
+            .build();
+        Microservice vA = new Microservice("A");
+        Microservice vB = new Microservice("B");
+        Microservice vC = new Microservice("C");
+        StronglyConnectedComponents components = new StronglyConnectedComponents(g);
+
+        List<ConnectionChange> slower = List.of(ConnectionChange.updateLatency(vB, vC, 30));
+        StronglyConnectedComponents updated = components.withChanges(g.withChanges(slower), slower);
+        List<ConnectionChange> cycle = List.of(ConnectionChange.add(vC, vA, 1));
+        StronglyConnectedComponents cyclic = components.withChanges(g.withChanges(cycle), cycle);
+
+        assertThat(updated.getComponentCount()).isEqualTo(3);
+        assertThat(updated.getDagPathsFrom(g.getVertexId(vA)).getMaxPathWeight(g.getVertexId(vC))).isEqualTo(35);
+        assertThat(cyclic.getComponentCount()).isEqualTo(1);
+        assertThat(cyclic.isAcyclicFrom(g.getVertexId(vA))).isFalse();
+        assertThat(components.isAcyclicFrom(g.getVertexId(vA))).isTrue();
+    }
+
+    /**
+     * @return graph whose connections go from lower to higher numbers but for a few going back, which close cycles
+     */
+    static SimpleDirectedWeightedGraph<Microservice, Connection> randomMostlyAcyclicGraph(Random random,
+        int vertexCount)
+    {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g = new SimpleDirectedWeightedGraph<>(Connection.class);
+        for (int v = 0; v < vertexCount; v++) {
+            g.addVertex(new Microservice("S" + v));
+        }
+        for (int i = 0; i < 2 * vertexCount; i++) {
+            int source = random.nextInt(vertexCount);
+            int target = random.nextInt(vertexCount);
+            if (target < source && random.nextInt(8) != 0) {
+                int swap = source;
+                source = target;
+                target = swap;
+            }
+            Microservice sourceVertex = new Microservice("S" + source);
+            Microservice targetVertex = new Microservice("S" + target);
+            if (source != target && !g.containsEdge(sourceVertex, targetVertex)) {
+                Connection c = new Connection(1 + random.nextInt(9));
+                g.addEdge(sourceVertex, targetVertex, c);
+                g.setEdgeWeight(sourceVertex, targetVertex, c.getLatencyInMs());
+            }
+        }
+        return g;
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.tracing.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.example.tracing.algorithm.Traversal;
+import com.example.tracing.util.GraphBuilder;
+import java.util.OptionalInt;
+import java.util.Scanner;
+import org.jgrapht.graph.SimpleDirectedWeightedGraph;
+import org.junit.jupiter.api.Test;
+
+class LatencyHistogramTest {
+
+    private static final String README_GRAPH = "AB5 BC4 CD8 DC8 DE6 AD5 CE2 EB3 AE7";
+
+    @Test
+    public void testGetPercentile_readmeGraphTracesFromCToC_nearestRankLatencies() {
+        CompactServiceGraph g = GraphBuilder.buildCompactGraphFromInput(new Scanner(README_GRAPH));
+        Microservice vC = new Microservice("C");
+
+        // 9, 16, 18, 21, 25, 25, 27
+        LatencyHistogram histogram = Traversal.getLatencyHistogramWithWeightLessThan(g, vC, vC, 30);
+        assertThat(histogram.getCounts()).hasSize(30);
+        assertThat(histogram.getTotalCount()).isEqualTo(7);
+        assertThat(histogram.getCount(25)).isEqualTo(2);
+        assertThat(histogram.getCount(30)).isZero();
+        assertThat(histogram.getPercentile(1)).hasValue(9);
+        assertThat(histogram.getP50()).hasValue(21);
+        assertThat(histogram.getP95()).hasValue(27);
+        assertThat(histogram.getP99()).hasValue(27);
+        assertThat(histogram.getPercentile(100)).hasValue(27);
+        assertThat(histogram.getBucketCounts(10)).containsExactly(1, 2, 4);
+        assertThat(histogram.toString()).isEqualTo("LatencyHistogram{traces=7, p50=21, p95=27, p99=27}");
+    }
+
+    @Test
+    public void testGetLatencyHistogramWithPathLengthUpToMax_readmeGraph_sameForBothGraphs() {
+        SimpleDirectedWeightedGraph<Microservice, Connection> g =
+            GraphBuilder.buildGraphFromInput(new Scanner(README_GRAPH)).getKey();
+        CompactServiceGraph compactGraph = GraphBuilder.buildCompactGraphFromInput(new Scanner(README_GRAPH));
+        Microservice vC = new Microservice("C");
+
+        // C-D-C (16) and C-E-B-C (9)
+        LatencyHistogram histogram = Traversal.getLatencyHistogramWithPathLengthUpToMax(compactGraph, vC, vC, 3);
+        assertThat(histogram.getTotalCount()).isEqualTo(2);
+        assertThat(histogram.getCount(9)).isEqualTo(1);
+        assertThat(histogram.getCount(16)).isEqualTo(1);
+        assertThat(Traversal.getLatencyHistogramWithPathLengthUpToMax(g, vC, vC, 3)).isEqualTo(histogram);
+        assertThat(Traversal.getLatencyHistogramWithWeightLessThan(g, vC, vC, 30))
+            .isEqualTo(Traversal.getLatencyHistogramWithWeightLessThan(compactGraph, vC, vC, 30));
+    }
+
+    @Test
+    public void testGetPercentile_noTraces_empty() {
+        LatencyHistogram histogram = new LatencyHistogram(new long[5]);
+
+        assertThat(histogram.getTotalCount()).isZero();
+        assertThat(histogram.getP50()).isEqualTo(OptionalInt.empty());
+        assertThat(histogram.toString()).isEqualTo("LatencyHistogram{traces=0, p50=-, p95=-, p99=-}");
+        assertThatThrownBy(() -> histogram.getPercentile(0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> histogram.getBucketCounts(0)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,55 @@
+package com.example.tracing.model;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.charset.StandardCharsets;
+import org.junit.jupiter.api.Test;
+
+class MicroserviceTableTest {
+
+    @Test
+    public void testIntern_sameNameTwice_sameIdAndMicroservice() {
+        MicroserviceTable table = new MicroserviceTable();
+        int checkout = table.intern("checkout-api");
+        int payments = table.intern("payments");
+        byte[] buffer = "  checkout-api>payments:12".getBytes(StandardCharsets.UTF_8);
+
+        assertThat(checkout).isZero();
+        assertThat(payments).isEqualTo(1);
+        assertThat(table.intern(buffer, 2, 12)).isEqualTo(checkout);
+        assertThat(table.intern(buffer, 15, 8)).isEqualTo(payments);
+        assertThat(table.intern("checkout")).isEqualTo(2);
+        assertThat(table.size()).isEqualTo(3);
+        assertThat(table.getMicroservice(checkout)).isSameAs(table.getMicroservice(table.intern("checkout-api")));
+        assertThat(table.getName(payments)).isEqualTo("payments");
+    }
+
+    @Test
+    public void testIntern_manyNames_denseIdsInOrderOfInterning() {
+        MicroserviceTable table = new MicroserviceTable();
+        for (int i = 0; i < 100_000; i++) {
+            assertThat(table.intern("service-" + i)).isEqualTo(i);
+        }
+        for (int i = 0; i < 100_000; i++) {
+            assertThat(table.intern("service-" + i)).isEqualTo(i);
+            assertThat(table.getMicroservice(i)).isEqualTo(new Microservice("service-" + i));
+        }
+        assertThat(table.size()).isEqualTo(100_000);
+    }
+
+    @Test
+    public void testIntern_nonAsciiName_decodedAsUtf8() {
+        MicroserviceTable table = new MicroserviceTable();
+        byte[] name = "caf\u00e9-api".getBytes(StandardCharsets.UTF_8);
+        assertThat(table.getName(table.intern(name, 0, name.length))).isEqualTo("caf\u00e9-api");
+        assertThat(table.intern("caf\u00e9-api")).isZero();
+    }
+
+    @Test
+    public void testIntern_emptyName_throwsIllegalArgumentException() {
+        assertThatThrownBy(() -> new MicroserviceTable().intern(""))
+            .isInstanceOf(IllegalArgumentException.class);
+    }
+
+}